@@ -99,6 +99,7 @@ dependencies {
 */
 
 dependencies {
+    implementation(project(":core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.constraintlayout)
@@ -162,4 +163,7 @@ dependencies {
     implementation("com.google.guava:guava:32.1.2-jre") // or the latest version
     implementation("com.android.volley:volley:1.2.1")
     implementation("com.google.auth:google-auth-library-oauth2-http:1.19.0")
+
+    // Scheduled lottery draws
+    implementation("androidx.work:work-runtime:2.9.1")
 }
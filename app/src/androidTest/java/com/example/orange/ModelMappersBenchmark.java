@@ -0,0 +1,229 @@
+package com.example.orange;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.orange.data.firebase.ModelMappers;
+import com.example.orange.data.model.Event;
+import com.example.orange.data.model.Notification;
+import com.example.orange.data.model.User;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the per-document cost of ModelMappers with DocumentSnapshot.toObject on
+ * documents shaped like production ones, and checks both produce the same objects.
+ * Results are logged under the ModelMappersBenchmark tag.
+ *
+ * Documents are written to and read from the local cache of a separate Firestore
+ * instance whose network is disabled, so nothing reaches the real project.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class ModelMappersBenchmark {
+    private static final String TAG = "ModelMappersBenchmark";
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2000;
+
+    private static FirebaseFirestore db;
+
+    /**
+     * A mapping under measurement.
+     */
+    private interface Mapping {
+        Object map(DocumentSnapshot document);
+    }
+
+    /**
+     * Creates an offline Firestore instance for the benchmark documents.
+     */
+    @BeforeClass
+    public static void setUpFirestore() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp app = FirebaseApp.initializeApp(context, new FirebaseOptions.Builder()
+                .setProjectId("orange-benchmark")
+                .setApplicationId("1:0:android:0")
+                .setApiKey("benchmark")
+                .build(), "benchmark");
+        db = FirebaseFirestore.getInstance(app);
+        Tasks.await(db.disableNetwork());
+    }
+
+    /**
+     * Benchmarks an event with no inline entrants.
+     */
+    @Test
+    public void benchmarkEvent() throws Exception {
+        DocumentSnapshot document = write("events/plain", eventData(0));
+        assertSameEvent(document.toObject(Event.class), ModelMappers.toEvent(document));
+        compare("event", document, d -> d.toObject(Event.class), ModelMappers::toEvent);
+    }
+
+    /**
+     * Benchmarks an older event still holding 1000 entrants and their locations inline.
+     */
+    @Test
+    public void benchmarkLegacyEvent() throws Exception {
+        DocumentSnapshot document = write("events/legacy", eventData(1000));
+        assertSameEvent(document.toObject(Event.class), ModelMappers.toEvent(document));
+        compare("legacy event (1000 entrants)", document, d -> d.toObject(Event.class), ModelMappers::toEvent);
+    }
+
+    /**
+     * Benchmarks a user in 50 events.
+     */
+    @Test
+    public void benchmarkUser() throws Exception {
+        DocumentSnapshot document = write("users/user", userData(50));
+        User expected = document.toObject(User.class);
+        User actual = ModelMappers.toUser(document);
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getUserType(), actual.getUserType());
+        assertEquals(expected.getFcmToken(), actual.getFcmToken());
+        assertEquals(expected.isReceiveNotifications(), actual.isReceiveNotifications());
+        assertEquals(expected.getEventsWaitlisted(), actual.getEventsWaitlisted());
+        assertEquals(expected.getEventsParticipating(), actual.getEventsParticipating());
+        compare("user (50 events)", document, d -> d.toObject(User.class), ModelMappers::toUser);
+    }
+
+    /**
+     * Benchmarks a notification.
+     */
+    @Test
+    public void benchmarkNotification() throws Exception {
+        Map<String, Object> data = new HashMap<>();
+        data.put("eventId", "event1");
+        data.put("userId", "user1");
+        data.put("type", "SELECTED_TO_PARTICIPATE");
+        data.put("status", "PENDING");
+        data.put("createdAt", new Timestamp(1700000000, 0));
+        data.put("updatedAt", new Timestamp(1700000100, 0));
+        DocumentSnapshot document = write("notifications/notification", data);
+        Notification expected = document.toObject(Notification.class);
+        Notification actual = ModelMappers.toNotification(document);
+        assertEquals(expected.toString(), actual.toString());
+        compare("notification", document, d -> d.toObject(Notification.class), ModelMappers::toNotification);
+    }
+
+    private static void compare(String name, DocumentSnapshot document, Mapping reflective, Mapping direct) {
+        double reflectiveNanos = measure(document, reflective);
+        double directNanos = measure(document, direct);
+        Log.i(TAG, String.format("%s: toObject %.1f us, mapper %.1f us per document (%.1fx)",
+                name, reflectiveNanos / 1000, directNanos / 1000, reflectiveNanos / directNanos));
+    }
+
+    private static double measure(DocumentSnapshot document, Mapping mapping) {
+        for (int i = 0; i < WARMUP; i++) {
+            mapping.map(document);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapping.map(document);
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    private static DocumentSnapshot write(String path, Map<String, Object> data) throws Exception {
+        // With the network disabled the write completes in the local cache only
+        db.document(path).set(data);
+        return Tasks.await(db.document(path).get(Source.CACHE));
+    }
+
+    private static void assertSameEvent(Event expected, Event actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getStartDate(), actual.getStartDate());
+        assertEquals(expected.getRegistrationDeadline(), actual.getRegistrationDeadline());
+        assertEquals(expected.getPrice(), actual.getPrice());
+        assertEquals(expected.getCapacity(), actual.getCapacity());
+        assertEquals(expected.getWaitlistLimit(), actual.getWaitlistLimit());
+        assertEquals(expected.getOrganizerId(), actual.getOrganizerId());
+        assertEquals(expected.getGeolocationEvent(), actual.getGeolocationEvent());
+        assertEquals(expected.getLotteryMode(), actual.getLotteryMode());
+        assertEquals(expected.getAcceptWindowHours(), actual.getAcceptWindowHours());
+    }
+
+    private static Map<String, Object> eventData(int legacyEntrants) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("title", "Community swim lessons");
+        data.put("description", "Ten weeks of beginner swim lessons at the community pool. Bring a towel and goggles.");
+        data.put("startDate", new Timestamp(1700000000, 0));
+        data.put("endDate", new Timestamp(1706000000, 0));
+        data.put("registrationOpens", new Timestamp(1690000000, 0));
+        data.put("registrationDeadline", new Timestamp(1699000000, 0));
+        data.put("lotteryDrawDate", new Timestamp(1699100000, 0));
+        data.put("price", 60L);
+        data.put("capacity", 40L);
+        data.put("waitlistLimit", 500L);
+        data.put("acceptWindowHours", 48L);
+        data.put("organizerId", "organizer_ORGANIZER");
+        data.put("facilityId", "facility1");
+        data.put("eventImageId", "image1");
+        data.put("qr_hash", "3f2a9c0d7e1b4a5f8c6d2e9b0a1f3c5d");
+        data.put("geolocationEvent", true);
+        data.put("queuedAdmission", false);
+        data.put("lotteryMode", "UNIFORM");
+        if (legacyEntrants > 0) {
+            List<String> waitingList = new ArrayList<>();
+            Map<String, Object> location = new HashMap<>();
+            for (int i = 0; i < legacyEntrants; i++) {
+                String userId = "device" + i + "_ENTRANT";
+                waitingList.add(userId);
+                Map<String, Object> point = new HashMap<>();
+                point.put("latitude", 53.5 + i * 1e-4);
+                point.put("longitude", -113.5 - i * 1e-4);
+                location.put(userId, point);
+            }
+            data.put("waitingList", waitingList);
+            data.put("participants", new ArrayList<>());
+            data.put("selectedParticipants", new ArrayList<>());
+            data.put("cancelledList", new ArrayList<>());
+            data.put("location", location);
+        }
+        return data;
+    }
+
+    private static Map<String, Object> userData(int events) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("username", "Jordan");
+        data.put("userType", "ENTRANT");
+        data.put("email", "jordan@example.com");
+        data.put("phone", "780-555-0100");
+        data.put("deviceId", "device1");
+        data.put("fcmToken", "fcm-token-0123456789abcdef0123456789abcdef");
+        data.put("receiveNotifications", true);
+        data.put("receiveOrganizerNotifications", true);
+        data.put("receiveAdminNotifications", false);
+        List<String> waitlisted = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            waitlisted.add("event" + i);
+        }
+        data.put("eventsWaitlisted", waitlisted);
+        data.put("eventsParticipating", Arrays.asList("eventA", "eventB"));
+        data.put("eventsOrganizing", new ArrayList<>());
+        data.put("eventsCancelled", new ArrayList<>());
+        return data;
+    }
+}
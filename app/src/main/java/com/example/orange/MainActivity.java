@@ -14,8 +14,11 @@ import android.widget.Toast;
 import android.Manifest;
 
 
+import com.example.orange.data.firebase.DataGateways;
 import com.example.orange.data.firebase.FirebaseService;
 import com.example.orange.data.firebase.FirebaseCallback;
+import com.example.orange.data.gateway.InMemoryGateway;
+import com.example.orange.data.lottery.LotteryDrawWorker;
 import com.example.orange.data.model.User;
 import com.example.orange.data.model.UserSession;
 import com.example.orange.data.model.UserType;
@@ -50,6 +53,8 @@ import com.google.firebase.messaging.FirebaseMessagingService;
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     private static final int RC_NOTIFICATION  = 99 ;
+    // Debug builds started with this extra set run against an in-memory store
+    public static final String EXTRA_IN_MEMORY_GATEWAY = "inMemoryGateway";
     private ActivityMainBinding binding;
     private FirebaseService firebaseService;
     private FirebaseFirestore db;
@@ -78,6 +83,11 @@ public class MainActivity extends AppCompatActivity {
         if (FirebaseApp.getApps(this).isEmpty()) {
             FirebaseApp.initializeApp(this);
         }
+        if (BuildConfig.IS_TESTING && savedInstanceState == null
+                && getIntent().getBooleanExtra(EXTRA_IN_MEMORY_GATEWAY, false)) {
+            DataGateways.setOverride(new InMemoryGateway());
+        }
+        LotteryDrawWorker.schedule(this);
 
 
         firebaseService = new FirebaseService();
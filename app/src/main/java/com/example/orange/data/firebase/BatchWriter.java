@@ -0,0 +1,267 @@
+package com.example.orange.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.GatewayBatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BatchWriter commits any number of writes by splitting them into batches of at
+ * most 500 operations, the Firestore limit for a single write batch.
+ *
+ * Batches are committed a few at a time. A batch that fails is retried with a
+ * growing delay; each batch is atomic, so a retry never applies half a batch.
+ * Writes should target fixed document IDs so that a batch whose commit succeeded
+ * but whose acknowledgement was lost can be retried without creating duplicates.
+ * Batches that still fail after the last attempt stay queued, and calling commit
+ * again retries only those.
+ *
+ * Must be used from the main thread.
+ */
+public class BatchWriter {
+    private static final String TAG = "BatchWriter";
+    public static final int MAX_WRITES_PER_BATCH = 500;
+    private static final int DEFAULT_MAX_PARALLEL = 4;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 500;
+
+    /**
+     * Receives progress updates while a BatchWriter commits.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after each batch commits.
+         *
+         * @param committedWrites The number of writes committed so far.
+         * @param totalWrites     The number of writes being committed.
+         */
+        void onProgress(int committedWrites, int totalWrites);
+    }
+
+    /**
+     * One queued write.
+     */
+    private interface Operation {
+        void apply(GatewayBatch batch);
+    }
+
+    private final DataGateway gateway;
+    private final int maxParallel;
+    private final int maxAttempts;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final List<Operation> queued = new ArrayList<>();
+    private final Deque<List<Operation>> pending = new ArrayDeque<>();
+    private final List<List<Operation>> failed = new ArrayList<>();
+    private boolean committing;
+
+    private int totalWrites;
+    private int committedWrites;
+    private int running;
+    private Exception lastError;
+    private ProgressListener progressListener;
+    private FirebaseCallback<Void> callback;
+
+    /**
+     * Creates a writer with the default parallelism and retry count.
+     *
+     * @param gateway The gateway to write through.
+     */
+    public BatchWriter(DataGateway gateway) {
+        this(gateway, DEFAULT_MAX_PARALLEL, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param gateway     The gateway to write through.
+     * @param maxParallel The most batches committed at the same time.
+     * @param maxAttempts The number of times a batch is tried before it is reported as failed.
+     */
+    public BatchWriter(DataGateway gateway, int maxParallel, int maxAttempts) {
+        this.gateway = gateway;
+        this.maxParallel = Math.max(1, maxParallel);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Queues a write that replaces a document.
+     *
+     * @param path The path of the document to write.
+     * @param data The fields to write.
+     * @return This writer.
+     */
+    public BatchWriter set(String path, Map<String, Object> data) {
+        queued.add(batch -> batch.set(path, data, false));
+        return this;
+    }
+
+    /**
+     * Queues a write that merges into a document.
+     *
+     * @param path  The path of the document to write.
+     * @param data  The fields to write.
+     * @param merge Whether to merge into the existing document rather than replace it.
+     * @return This writer.
+     */
+    public BatchWriter set(String path, Map<String, Object> data, boolean merge) {
+        queued.add(batch -> batch.set(path, data, merge));
+        return this;
+    }
+
+    /**
+     * Queues an update of fields in an existing document.
+     *
+     * @param path The path of the document to update.
+     * @param data The fields to update.
+     * @return This writer.
+     */
+    public BatchWriter update(String path, Map<String, Object> data) {
+        queued.add(batch -> batch.update(path, data));
+        return this;
+    }
+
+    /**
+     * Queues the deletion of a document.
+     *
+     * @param path The path of the document to delete.
+     * @return This writer.
+     */
+    public BatchWriter delete(String path) {
+        queued.add(batch -> batch.delete(path));
+        return this;
+    }
+
+    /**
+     * Gets the number of writes queued or left over from a failed commit.
+     *
+     * @return The number of writes not yet committed.
+     */
+    public int getPendingWriteCount() {
+        int count = queued.size();
+        for (List<Operation> chunk : failed) {
+            count += chunk.size();
+        }
+        return count;
+    }
+
+    /**
+     * Commits all queued writes.
+     *
+     * @param callback A callback to handle the result of the operation.
+     */
+    public void commit(FirebaseCallback<Void> callback) {
+        commit(null, callback);
+    }
+
+    /**
+     * Commits all queued writes, together with any batches that failed in a previous commit.
+     * The callback fails if any batch still fails after its last attempt.
+     *
+     * @param progressListener Receives progress after each batch commits, may be null.
+     * @param callback         A callback to handle the result of the operation.
+     */
+    public void commit(ProgressListener progressListener, FirebaseCallback<Void> callback) {
+        if (committing) {
+            callback.onFailure(new IllegalStateException("A commit is already in progress"));
+            return;
+        }
+        pending.addAll(failed);
+        failed.clear();
+        for (int start = 0; start < queued.size(); start += MAX_WRITES_PER_BATCH) {
+            int end = Math.min(start + MAX_WRITES_PER_BATCH, queued.size());
+            pending.add(new ArrayList<>(queued.subList(start, end)));
+        }
+        queued.clear();
+
+        if (pending.isEmpty()) {
+            callback.onSuccess(null);
+            return;
+        }
+
+        committing = true;
+        this.progressListener = progressListener;
+        this.callback = callback;
+        totalWrites = 0;
+        for (List<Operation> chunk : pending) {
+            totalWrites += chunk.size();
+        }
+        committedWrites = 0;
+        running = 0;
+        lastError = null;
+        startNext();
+    }
+
+    /**
+     * Starts pending batches until the parallelism limit is reached, and finishes the
+     * commit once nothing is pending or running.
+     */
+    private void startNext() {
+        while (running < maxParallel && !pending.isEmpty()) {
+            running++;
+            commitChunk(pending.poll(), 1);
+        }
+        if (running == 0 && pending.isEmpty()) {
+            finish();
+        }
+    }
+
+    /**
+     * Commits one batch, retrying it with a growing delay until it succeeds or runs out of attempts.
+     *
+     * @param chunk   The writes in the batch.
+     * @param attempt The attempt number, starting at 1.
+     */
+    private void commitChunk(List<Operation> chunk, int attempt) {
+        GatewayBatch batch = gateway.batch();
+        for (Operation operation : chunk) {
+            operation.apply(batch);
+        }
+        // The gateway may complete on any thread; the writer's state is only touched on the main thread
+        batch.commit().whenComplete((done, error) -> handler.post(() -> {
+            if (error == null) {
+                running--;
+                committedWrites += chunk.size();
+                if (progressListener != null) {
+                    progressListener.onProgress(committedWrites, totalWrites);
+                }
+                startNext();
+                return;
+            }
+            Exception e = error instanceof Exception ? (Exception) error : new Exception(error);
+            if (attempt < maxAttempts) {
+                Log.w(TAG, "Batch of " + chunk.size() + " writes failed, retrying (attempt " + attempt + ")", e);
+                handler.postDelayed(() -> commitChunk(chunk, attempt + 1), RETRY_DELAY_MS * attempt);
+                return;
+            }
+            Log.e(TAG, "Batch of " + chunk.size() + " writes failed after " + attempt + " attempts", e);
+            running--;
+            failed.add(chunk);
+            lastError = e;
+            startNext();
+        }));
+    }
+
+    /**
+     * Reports the result of the commit to its callback.
+     */
+    private void finish() {
+        committing = false;
+        FirebaseCallback<Void> done = callback;
+        callback = null;
+        progressListener = null;
+        if (failed.isEmpty()) {
+            done.onSuccess(null);
+        } else {
+            done.onFailure(new Exception("Failed to commit " + getPendingWriteCount() + " of " + totalWrites + " writes", lastError));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.orange.data.firebase;
+
+import com.example.orange.BuildConfig;
+import com.example.orange.data.gateway.DataGateway;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+/**
+ * DataGateways chooses the DataGateway the app reads and writes through.
+ * Release builds always use Firestore; debug builds may swap in another
+ * gateway, such as InMemoryGateway, for load testing.
+ */
+public final class DataGateways {
+    private static DataGateway firestoreGateway;
+    private static DataGateway override;
+
+    private DataGateways() {
+    }
+
+    /**
+     * Returns the gateway to use.
+     *
+     * @return The override in debug builds if one is set, otherwise the Firestore gateway.
+     */
+    public static synchronized DataGateway get() {
+        if (BuildConfig.IS_TESTING && override != null) {
+            return override;
+        }
+        if (firestoreGateway == null) {
+            firestoreGateway = new FirestoreGateway(FirebaseFirestore.getInstance());
+        }
+        return firestoreGateway;
+    }
+
+    /**
+     * Replaces the gateway returned by get(). Only allowed in debug builds.
+     *
+     * @param gateway The gateway to use, or null to go back to Firestore.
+     */
+    public static synchronized void setOverride(DataGateway gateway) {
+        if (!BuildConfig.IS_TESTING) {
+            throw new IllegalStateException("Gateway overrides are only allowed in debug builds");
+        }
+        override = gateway;
+    }
+}
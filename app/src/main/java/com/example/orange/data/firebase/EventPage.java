@@ -0,0 +1,56 @@
+package com.example.orange.data.firebase;
+
+import com.example.orange.data.model.EventSummary;
+
+import java.util.List;
+
+/**
+ * One page of event summaries returned by a cursor-paginated query.
+ * The cursor is the ID of the last document on the page and is passed back
+ * to fetch the page that follows it.
+ */
+public class EventPage {
+    private final List<EventSummary> events;
+    private final String lastEventId;
+    private final boolean hasMore;
+
+    /**
+     * Constructor
+     *
+     * @param events      The summaries of the events on this page.
+     * @param lastEventId The ID of the last document read, used as the next cursor.
+     * @param hasMore     Whether another page may follow this one.
+     */
+    public EventPage(List<EventSummary> events, String lastEventId, boolean hasMore) {
+        this.events = events;
+        this.lastEventId = lastEventId;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Events getter
+     *
+     * @return List<EventSummary>: summaries of the events on this page
+     */
+    public List<EventSummary> getEvents() {
+        return events;
+    }
+
+    /**
+     * LastEventId getter
+     *
+     * @return String: cursor for the next page, or null if the page was empty
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * HasMore getter
+     *
+     * @return boolean: true if a following page may exist
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
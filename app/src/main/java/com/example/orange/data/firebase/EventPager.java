@@ -0,0 +1,149 @@
+package com.example.orange.data.firebase;
+
+import com.example.orange.data.model.EventSummary;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * EventPager walks the event summaries one page at a time and keeps the
+ * following page prefetched, so scrolling to the end of a list can usually be
+ * served without waiting on the network.
+ *
+ * Must be used from the main thread.
+ */
+public class EventPager {
+    private final FirebaseService firebaseService;
+    private final int pageSize;
+
+    private String cursor;
+    private boolean exhausted;
+    private boolean fetching;
+    private EventPage prefetched;
+    private Exception prefetchError;
+    private FirebaseCallback<List<EventSummary>> waiting;
+    private int generation;
+
+    /**
+     * Constructor
+     *
+     * @param firebaseService The service used to run the page queries.
+     * @param pageSize        The number of events per page.
+     */
+    public EventPager(FirebaseService firebaseService, int pageSize) {
+        this.firebaseService = firebaseService;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Delivers the next page of event summaries. If the page was prefetched it is delivered
+     * immediately; either way the page after it starts loading in the background.
+     * Calls made while a page is already owed to a caller are ignored.
+     *
+     * @param callback A callback to handle the result of the operation.
+     */
+    public void loadNextPage(FirebaseCallback<List<EventSummary>> callback) {
+        if (waiting != null) {
+            return;
+        }
+        if (prefetched != null) {
+            EventPage page = prefetched;
+            prefetched = null;
+            prefetch();
+            callback.onSuccess(page.getEvents());
+            return;
+        }
+        if (prefetchError != null) {
+            Exception e = prefetchError;
+            prefetchError = null;
+            callback.onFailure(e);
+            return;
+        }
+        if (exhausted && !fetching) {
+            callback.onSuccess(Collections.<EventSummary>emptyList());
+            return;
+        }
+        waiting = callback;
+        prefetch();
+    }
+
+    /**
+     * Whether more events may be available, either prefetched or still on the server.
+     *
+     * @return true if loadNextPage could return more events.
+     */
+    public boolean hasMore() {
+        return prefetched != null || fetching || !exhausted;
+    }
+
+    /**
+     * Whether a caller is currently waiting on a page.
+     *
+     * @return true while a requested page is loading.
+     */
+    public boolean isLoading() {
+        return waiting != null;
+    }
+
+    /**
+     * Starts over from the first page. Results of queries still in flight are discarded.
+     */
+    public void reset() {
+        generation++;
+        cursor = null;
+        exhausted = false;
+        fetching = false;
+        prefetched = null;
+        prefetchError = null;
+        waiting = null;
+    }
+
+    /**
+     * Fetches the page after the current cursor unless one is already loading,
+     * already prefetched, or the collection has been read to the end.
+     */
+    private void prefetch() {
+        if (fetching || prefetched != null || exhausted) {
+            return;
+        }
+        fetching = true;
+        final int requestGeneration = generation;
+        firebaseService.getEventSummariesPage(cursor, pageSize, new FirebaseCallback<EventPage>() {
+            @Override
+            public void onSuccess(EventPage page) {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                fetching = false;
+                if (page.getLastEventId() != null) {
+                    cursor = page.getLastEventId();
+                }
+                exhausted = !page.hasMore();
+
+                if (waiting != null) {
+                    FirebaseCallback<List<EventSummary>> callback = waiting;
+                    waiting = null;
+                    prefetch();
+                    callback.onSuccess(page.getEvents());
+                } else {
+                    prefetched = page;
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                fetching = false;
+                if (waiting != null) {
+                    FirebaseCallback<List<EventSummary>> callback = waiting;
+                    waiting = null;
+                    callback.onFailure(e);
+                } else {
+                    prefetchError = e;
+                }
+            }
+        });
+    }
+}
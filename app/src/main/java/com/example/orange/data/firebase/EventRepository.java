@@ -0,0 +1,240 @@
+package com.example.orange.data.firebase;
+
+import android.util.Log;
+
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.GatewayQuery;
+import com.example.orange.data.model.EventSummary;
+import com.example.orange.data.summaries.EventSummaryStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * EventRepository keeps an in-memory, ID-keyed copy of every event's summary.
+ * A single query listener applies each change to the map, so screens
+ * can read the current events without downloading the whole collection again
+ * and can subscribe to incremental changes instead of refetching. Listening to
+ * the summaries rather than the events keeps entrant lists and locations that
+ * older events hold inline out of memory.
+ *
+ * All methods must be called from the main thread; listener results are posted
+ * there as well, whichever gateway delivers them.
+ */
+public class EventRepository {
+    private static final String TAG = "EventRepository";
+    private static EventRepository instance;
+
+    private final DataGateway gateway;
+    private final Map<String, EventSummary> events = new LinkedHashMap<>();
+    // The stored fields behind each cached summary, to tell modified events from unchanged ones
+    private final Map<String, Map<String, Object>> eventData = new HashMap<>();
+    private final List<EventChangeListener> listeners = new ArrayList<>();
+    private final List<FirebaseCallback<List<EventSummary>>> pendingReads = new ArrayList<>();
+    private DataGateway.Registration registration;
+    private boolean loaded;
+
+    /**
+     * Receives incremental changes to the events collection once the initial
+     * snapshot has been loaded.
+     */
+    public interface EventChangeListener {
+        /**
+         * Called when an event is created.
+         * @param event The new event.
+         */
+        void onEventAdded(EventSummary event);
+
+        /**
+         * Called when an existing event changes.
+         * @param event The updated event.
+         */
+        void onEventModified(EventSummary event);
+
+        /**
+         * Called when an event is deleted.
+         * @param event The last known copy of the deleted event.
+         */
+        void onEventRemoved(EventSummary event);
+    }
+
+    /**
+     * Returns the shared repository instance.
+     *
+     * @return The EventRepository singleton.
+     */
+    public static synchronized EventRepository getInstance() {
+        if (instance == null) {
+            instance = new EventRepository();
+        }
+        return instance;
+    }
+
+    private EventRepository() {
+        gateway = DataGateways.get();
+    }
+
+    /**
+     * Returns every known event. Served from memory once the first snapshot has
+     * arrived; otherwise the callback runs as soon as it does.
+     *
+     * @param callback A callback to handle the result of the operation.
+     */
+    public void getAllEvents(FirebaseCallback<List<EventSummary>> callback) {
+        ensureListening();
+        if (loaded) {
+            callback.onSuccess(getCachedEvents());
+        } else {
+            pendingReads.add(callback);
+        }
+    }
+
+    /**
+     * Returns a copy of the events currently held in memory.
+     *
+     * @return List of cached events, empty if nothing has been loaded yet.
+     */
+    public List<EventSummary> getCachedEvents() {
+        return new ArrayList<>(events.values());
+    }
+
+    /**
+     * Looks up a single cached event.
+     *
+     * @param eventId The ID of the event.
+     * @return The cached summary, or null if it is not known.
+     */
+    public EventSummary getCachedEvent(String eventId) {
+        return events.get(eventId);
+    }
+
+    /**
+     * Whether the initial snapshot of the collection has been received.
+     *
+     * @return true once reads are served from memory.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Registers a listener for incremental changes and starts the snapshot
+     * listener if it is not already running.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(EventChangeListener listener) {
+        ensureListening();
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Unregisters a previously added listener. Screens should call this when
+     * their view is destroyed.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(EventChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Detaches the snapshot listener and drops the cached events.
+     */
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        events.clear();
+        eventData.clear();
+        loaded = false;
+    }
+
+    /**
+     * Attaches the collection snapshot listener if it is not already attached.
+     */
+    private void ensureListening() {
+        if (registration != null) {
+            return;
+        }
+        // Events older than their summaries appear through the listener as they are built
+        new FirebaseService().ensureEventSummaries();
+        GatewayQuery query = GatewayQuery.collection(EventSummaryStore.COLLECTION);
+        DataGateway.Registration[] attached = new DataGateway.Registration[1];
+        attached[0] = gateway.listen(query, (documents, e) -> FirebaseFutures.MAIN_THREAD.execute(() -> {
+            if (registration != attached[0]) {
+                // Results from a listener that has since been stopped
+                return;
+            }
+            if (e != null) {
+                Log.e(TAG, "Events snapshot listener failed", e);
+                // Drop the registration so the next read attaches a fresh listener
+                registration.remove();
+                registration = null;
+                List<FirebaseCallback<List<EventSummary>>> failed = new ArrayList<>(pendingReads);
+                pendingReads.clear();
+                for (FirebaseCallback<List<EventSummary>> callback : failed) {
+                    callback.onFailure(e);
+                }
+                return;
+            }
+            if (documents == null) {
+                return;
+            }
+
+            // Only forward deltas after the initial load; the first snapshot is
+            // delivered to pending reads as a complete list instead.
+            boolean notify = loaded;
+            Set<String> removed = new HashSet<>(events.keySet());
+            for (DocumentData document : documents) {
+                String eventId = document.getId();
+                removed.remove(eventId);
+                Map<String, Object> data = document.getData();
+                Map<String, Object> previous = eventData.put(eventId, data);
+                if (data.equals(previous)) {
+                    continue;
+                }
+                EventSummary event = ModelMappers.toEventSummary(document);
+                boolean added = events.put(eventId, event) == null;
+                if (notify) {
+                    for (EventChangeListener listener : new ArrayList<>(listeners)) {
+                        if (added) {
+                            listener.onEventAdded(event);
+                        } else {
+                            listener.onEventModified(event);
+                        }
+                    }
+                }
+            }
+            for (String eventId : removed) {
+                eventData.remove(eventId);
+                EventSummary event = events.remove(eventId);
+                if (notify && event != null) {
+                    for (EventChangeListener listener : new ArrayList<>(listeners)) {
+                        listener.onEventRemoved(event);
+                    }
+                }
+            }
+
+            if (!loaded) {
+                loaded = true;
+                Log.d(TAG, "Initial events snapshot loaded: " + events.size());
+                List<FirebaseCallback<List<EventSummary>>> ready = new ArrayList<>(pendingReads);
+                pendingReads.clear();
+                for (FirebaseCallback<List<EventSummary>> callback : ready) {
+                    callback.onSuccess(getCachedEvents());
+                }
+            }
+        }));
+        registration = attached[0];
+    }
+}
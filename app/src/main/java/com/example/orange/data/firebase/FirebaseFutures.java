@@ -0,0 +1,190 @@
+package com.example.orange.data.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.orange.data.gateway.RetryPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * FirebaseFutures turns FirebaseService's callback methods into CompletableFutures and
+ * provides the combinators screens need to use them: waiting on several reads at once,
+ * giving up after a timeout, and dropping results once a screen is destroyed.
+ *
+ * Independent reads started one after another run concurrently:
+ *
+ *     CompletableFuture<User> user = firebaseService.getUserById(userId);
+ *     CompletableFuture<Event> event = firebaseService.getEventById(eventId);
+ *     FirebaseFutures.bindTo(getViewLifecycleOwner(), user.thenCombine(event, ...))
+ *             .whenCompleteAsync(..., FirebaseFutures.MAIN_THREAD);
+ */
+public final class FirebaseFutures {
+    /**
+     * Runs continuations on the main thread, for touching views.
+     */
+    public static final Executor MAIN_THREAD = new Handler(Looper.getMainLooper())::post;
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FirebaseFutures");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A FirebaseService call that reports its result to a callback.
+     *
+     * @param <T> The type of the result.
+     */
+    public interface Call<T> {
+        void start(FirebaseCallback<T> callback);
+    }
+
+    private FirebaseFutures() {
+    }
+
+    /**
+     * Starts a callback-based call and returns its result as a future.
+     *
+     * @param call The call, such as callback -> firebaseService.getUserById(userId, callback).
+     * @param <T>  The type of the result.
+     * @return A future completed by the call's callback.
+     */
+    public static <T> CompletableFuture<T> of(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.start(new FirebaseCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Adapts a future to a callback, for callers not yet using futures. The callback runs
+     * on the main thread; it is not called if the future was cancelled.
+     *
+     * @param future   The future.
+     * @param callback The callback.
+     * @param <T>      The type of the result.
+     */
+    public static <T> void toCallback(CompletableFuture<T> future, FirebaseCallback<T> callback) {
+        future.whenCompleteAsync((result, error) -> {
+            if (error == null) {
+                callback.onSuccess(result);
+                return;
+            }
+            Throwable cause = RetryPolicy.unwrap(error);
+            if (cause instanceof CancellationException) {
+                return;
+            }
+            callback.onFailure(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+        }, MAIN_THREAD);
+    }
+
+    /**
+     * Waits for all of the given futures. The reads behind them run concurrently.
+     *
+     * @param futures The futures.
+     * @param <T>     The type of their results.
+     * @return A future with the results in the order given, failing as soon as any of them fails.
+     */
+    public static <T> CompletableFuture<List<T>> all(List<? extends CompletableFuture<? extends T>> futures) {
+        CompletableFuture<List<T>> result = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    List<T> values = new ArrayList<>();
+                    for (CompletableFuture<? extends T> future : futures) {
+                        values.add(future.join());
+                    }
+                    return values;
+                });
+        // allOf waits for every future; fail at the first failure instead
+        for (CompletableFuture<? extends T> future : futures) {
+            future.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(RetryPolicy.unwrap(error));
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Fails a future with a TimeoutException if it has not completed in time.
+     *
+     * @param future  The future.
+     * @param timeout How long to wait.
+     * @param unit    The unit of timeout.
+     * @param <T>     The type of the result.
+     * @return A future with the same outcome, or failing with TimeoutException.
+     */
+    public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeout, TimeUnit unit) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeoutTask = timer.schedule(
+                () -> result.completeExceptionally(new TimeoutException("Timed out after " + unit.toMillis(timeout) + " ms")),
+                timeout, unit);
+        future.whenComplete((value, error) -> {
+            timeoutTask.cancel(false);
+            if (error != null) {
+                result.completeExceptionally(RetryPolicy.unwrap(error));
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Ties a future to a lifecycle: once the owner is destroyed the returned future is
+     * cancelled, so continuations attached to it never touch a dead screen. Pass a
+     * fragment's view lifecycle owner to stop at onDestroyView. Must be called on the main thread.
+     *
+     * @param owner  The lifecycle owner.
+     * @param future The future.
+     * @param <T>    The type of the result.
+     * @return A future with the same outcome, cancelled if the owner is destroyed first.
+     */
+    public static <T> CompletableFuture<T> bindTo(LifecycleOwner owner, CompletableFuture<T> future) {
+        CompletableFuture<T> bound = new CompletableFuture<>();
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            bound.cancel(false);
+            return bound;
+        }
+        LifecycleEventObserver observer = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                bound.cancel(false);
+            }
+        };
+        lifecycle.addObserver(observer);
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                bound.completeExceptionally(RetryPolicy.unwrap(error));
+            } else {
+                bound.complete(value);
+            }
+        });
+        // Observers must be removed on the main thread
+        bound.whenCompleteAsync((value, error) -> lifecycle.removeObserver(observer), MAIN_THREAD);
+        return bound;
+    }
+}
@@ -1,51 +1,121 @@
 package com.example.orange.data.firebase;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.entrants.IntakeCompactor;
+import com.example.orange.data.entrants.InvitationResponse;
+import com.example.orange.data.entrants.JoinTicket;
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.FieldOp;
+import com.example.orange.data.gateway.GatewayBatch;
+import com.example.orange.data.gateway.GatewayQuery;
+import com.example.orange.data.gateway.RetryPolicy;
+import com.example.orange.data.lottery.DrawOrderStore;
+import com.example.orange.data.lottery.DrawResult;
+import com.example.orange.data.lottery.DrawSchedule;
 import com.example.orange.data.model.Event;
+import com.example.orange.data.model.EventCounters;
+import com.example.orange.data.model.EventEntry;
+import com.example.orange.data.model.EventRole;
+import com.example.orange.data.model.EventSummary;
 import com.example.orange.data.model.Facility;
 import com.example.orange.data.model.ImageData;
 import com.example.orange.data.model.Notification;
+import com.example.orange.data.model.NotificationStatus;
 import com.example.orange.data.model.NotificationType;
 import com.example.orange.data.model.User;
 import com.example.orange.data.model.UserType;
-import com.google.android.gms.tasks.Task;
-import com.google.android.gms.tasks.Tasks;
+import com.example.orange.data.summaries.EventSummaryStore;
 import com.google.firebase.firestore.Blob;
-import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FieldValue;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
 import com.example.orange.data.model.UserSession;
-import com.google.firebase.firestore.QuerySnapshot;
-import com.google.firebase.firestore.SetOptions;
-import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * FirebaseService provides methods to interact with Firebase Firestore.
  * It handles operations for users and events.
  *
+ * Every read and write goes through the DataGateway from DataGateways, so debug
+ * builds can run the app against InMemoryGateway instead of the live project.
+ *
  * @author graham flokstra
  */
 public class FirebaseService {
     private static final String TAG = "FirebaseService";
-    private FirebaseFirestore db;
+    private static final String NOTIFICATIONS = "notifications";
+    // Firestore allows at most 30 values in a whereIn filter
+    private static final int WHERE_IN_LIMIT = 30;
+    // User fetches currently in flight, shared so concurrent requests for one ID make one read
+    private static final Map<String, CompletableFuture<User>> inFlightUsers = new HashMap<>();
+    // Counters last read per event, used to turn away joins to full events without a transaction
+    private static final Map<String, CounterSnapshot> cachedCounters = new HashMap<>();
+    // How long a cached counter snapshot may be used to refuse a join
+    private static final long COUNTER_SNAPSHOT_TTL_MILLIS = 30 * 1000L;
+    // Organizers last read, so answering an invitation does not wait on reading the organizer
+    private static final Map<String, UserSnapshot> cachedOrganizers = new HashMap<>();
+    // How long a cached organizer is used; only their push token is read from it
+    private static final long ORGANIZER_TTL_MILLIS = 10 * 60 * 1000L;
+    // Events whose summary counts are being refreshed; true if they changed again meanwhile
+    private static final Map<String, Boolean> summaryRefreshes = new HashMap<>();
+    // Whether summaries are known to exist for events created before them
+    private static volatile boolean summariesBackfilled;
+    // Delivers gateway results to callbacks on the main thread, as Firestore listeners are
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Maps read results to model objects off the main thread; two threads keep reflection
+    // from competing with the UI for cores while still overlapping back-to-back reads
+    private static final ExecutorService mappingExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "FirebaseService-mapping");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Total time spent mapping read results, and how many results were mapped
+    private static final AtomicLong mappingNanos = new AtomicLong();
+    private static final AtomicLong mappingCount = new AtomicLong();
+    // Mappings slower than a frame are logged
+    private static final long SLOW_MAPPING_NANOS = 16_000_000L;
+    private final DataGateway gateway;
+    private final EntrantStore entrantStore;
+    private final DrawOrderStore drawOrderStore;
+    private final DrawSchedule drawSchedule;
+    private final IntakeCompactor intakeCompactor;
+    private final EventSummaryStore eventSummaryStore;
     private UserSession currentUserSession; // Hold the session of the logged-in user
 
     /**
      * Constructor for FirebaseService.
-     * Initializes the Firestore instance.
+     * Uses the gateway chosen by DataGateways.
      */
     public FirebaseService() {
-        db = FirebaseFirestore.getInstance();
+        gateway = DataGateways.get();
+        entrantStore = new EntrantStore(gateway);
+        drawOrderStore = new DrawOrderStore(gateway, entrantStore);
+        drawSchedule = new DrawSchedule(gateway);
+        intakeCompactor = new IntakeCompactor(gateway, entrantStore);
+        eventSummaryStore = new EventSummaryStore(gateway);
     }
 
     /**
@@ -57,16 +127,7 @@ public class FirebaseService {
      */
     public void getUserByDeviceIdAndType(String deviceId, UserType userType, FirebaseCallback<User> callback) {
         String userId = generateUserId(deviceId, userType);
-        db.collection("users").document(userId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
-                        callback.onSuccess(user);
-                    } else {
-                        callback.onSuccess(null);
-                    }
-                })
-                .addOnFailureListener(callback::onFailure);
+        readMapped(gateway.get(userPath(userId)), ModelMappers::toUser, callback);
     }
 
     /**
@@ -123,25 +184,33 @@ public class FirebaseService {
     public void createUser(User user, FirebaseCallback<String> callback) {
         String userId = generateUserId(user.getDeviceId(), user.getUserType());
         user.setId(userId); // Set the user's ID
-        db.collection("users").document(userId)
-                .set(user)
-                .addOnSuccessListener(aVoid -> callback.onSuccess(userId))
-                .addOnFailureListener(callback::onFailure);
+        deliver(gateway.set(userPath(userId), ModelMappers.toData(user), false)
+                .thenApplyAsync(done -> {
+                    user.clearChanges();
+                    return userId;
+                }, FirebaseFutures.MAIN_THREAD), "creating user", callback);
     }
 
 
     /**
-     * Updates an existing user in Firestore.
+     * Updates an existing user in Firestore. Only the fields changed since the user was
+     * read or last saved are written, so the membership lists are left alone unless they
+     * changed, and concurrent updates to other fields are not overwritten.
      *
-     * @param user
-     * @param callback
+     * @param user     The user with updated information.
+     * @param callback A callback to handle the result of the operation.
      */
     public void updateUser(User user, FirebaseCallback<Void> callback) {
-        String userId = user.getId(); // Use the user's existing ID
-        db.collection("users").document(userId)
-                .set(user)
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        Map<String, Object> changes = user.getChanges();
+        if (changes.isEmpty()) {
+            callback.onSuccess(null);
+            return;
+        }
+        deliver(gateway.update(userPath(user.getId()), ModelMappers.toData(changes))
+                .thenApplyAsync(done -> {
+                    user.markSaved(changes);
+                    return (Void) null;
+                }, FirebaseFutures.MAIN_THREAD), "updating user", callback);
     }
 
 
@@ -156,6 +225,16 @@ public class FirebaseService {
         return deviceId + "_" + userType.toString();
     }
 
+    /**
+     * Returns the path of a user document.
+     *
+     * @param userId The ID of the user.
+     * @return The document path.
+     */
+    private static String userPath(String userId) {
+        return "users/" + userId;
+    }
+
     /**
      * Retrieves a user by their unique user ID from Firebase Firestore.
      *
@@ -164,17 +243,88 @@ public class FirebaseService {
      *                 or null if the user is not found.
      */
     public void getUserById(String userId, FirebaseCallback<User> callback) {
-        db.collection("users").document(userId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
-                        callback.onSuccess(user);
-                    } else {
-                        callback.onSuccess(null);
+        readMapped(gateway.get(userPath(userId)), ModelMappers::toUser, callback);
+    }
+
+    /**
+     * Retrieves a user by their unique user ID, as a future.
+     *
+     * @param userId The unique identifier of the user.
+     * @return A future with the User, or null if the user is not found.
+     */
+    public CompletableFuture<User> getUserById(String userId) {
+        return FirebaseFutures.of(callback -> getUserById(userId, callback));
+    }
+
+    /**
+     * Retrieves several users at once using whereIn queries of at most 30 IDs each, run in
+     * parallel. Requests for a user whose fetch is already in flight share that fetch
+     * instead of issuing another read.
+     *
+     * @param userIds  The IDs of the users to retrieve.
+     * @param callback The callback to handle the response, which provides a map from user ID
+     *                 to User in the order the IDs were given. Users that do not exist are left out.
+     */
+    public void getUsersByIds(Collection<String> userIds, FirebaseCallback<Map<String, User>> callback) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Map<String, CompletableFuture<User>> userFutures = new HashMap<>();
+        List<String> toFetch = new ArrayList<>();
+
+        synchronized (inFlightUsers) {
+            for (String id : ids) {
+                CompletableFuture<User> pending = inFlightUsers.get(id);
+                if (pending == null) {
+                    pending = new CompletableFuture<>();
+                    inFlightUsers.put(id, pending);
+                    toFetch.add(id);
+                }
+                userFutures.put(id, pending);
+            }
+        }
+
+        for (int i = 0; i < toFetch.size(); i += WHERE_IN_LIMIT) {
+            List<String> chunk = new ArrayList<>(toFetch.subList(i, Math.min(i + WHERE_IN_LIMIT, toFetch.size())));
+            gateway.query(GatewayQuery.collection("users").whereIn(GatewayQuery.DOCUMENT_ID, chunk))
+                    .whenCompleteAsync((documents, error) -> {
+                        // Users are mapped off the main thread; only the assembled map is delivered there
+                        long start = System.nanoTime();
+                        Map<String, User> found = new HashMap<>();
+                        if (error == null) {
+                            for (DocumentData document : documents) {
+                                found.put(document.getId(), ModelMappers.toUser(document));
+                            }
+                        }
+                        recordMapping(System.nanoTime() - start);
+                        for (String id : chunk) {
+                            CompletableFuture<User> pending;
+                            synchronized (inFlightUsers) {
+                                pending = inFlightUsers.remove(id);
+                            }
+                            if (pending == null) {
+                                continue;
+                            }
+                            if (error == null) {
+                                pending.complete(found.get(id));
+                            } else {
+                                pending.completeExceptionally(error);
+                            }
+                        }
+                    }, mappingExecutor);
+        }
+
+        CompletableFuture<Map<String, User>> users = CompletableFuture
+                .allOf(userFutures.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    Map<String, User> found = new LinkedHashMap<>();
+                    for (String id : ids) {
+                        User user = userFutures.get(id).join();
+                        if (user != null) {
+                            found.put(id, user);
+                        }
                     }
-                })
-                .addOnFailureListener(callback::onFailure);
+                    return found;
+                });
+        deliver(users, "fetching users by ID", callback);
     }
 
     /**
@@ -187,20 +337,19 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void createEvent(Event event, String userId, FirebaseCallback<String> callback) {
-        DocumentReference newEventRef = db.collection("events").document();
-        event.setId(newEventRef.getId());
+        event.setId(gateway.newId());
 
-        DocumentReference userRef = db.collection("users").document(userId);
+        String userPath = userPath(userId);
 
-        db.runTransaction(transaction -> {
+        CompletableFuture<String> created = gateway.<Void>runTransaction(transaction -> {
             // Retrieve the user document
-            DocumentSnapshot userSnapshot = transaction.get(userRef);
-            if (!userSnapshot.exists()) {
+            DocumentData userDocument = transaction.get(userPath);
+            if (!userDocument.exists()) {
                 throw new FirebaseServiceException("Organizer does not exist");
             }
 
             // Optionally, verify that the user is an organizer
-            User user = userSnapshot.toObject(User.class);
+            User user = ModelMappers.toUser(userDocument);
             if (user == null || user.getUserType() != UserType.ORGANIZER) {
                 throw new FirebaseServiceException("User is not an organizer");
             }
@@ -210,19 +359,22 @@ public class FirebaseService {
             event.setFacilityId(user.getFacilityId());
 
             // Create the event document
-            transaction.set(newEventRef, event);
+            transaction.set(EntrantStore.eventPath(event.getId()), ModelMappers.toData(event), false);
 
             // Update the user's eventsOrganizing list
-            transaction.update(userRef, "eventsOrganizing", FieldValue.arrayUnion(event.getId()));
+            Map<String, Object> organizing = new HashMap<>();
+            organizing.put("eventsOrganizing", FieldOp.arrayUnion(event.getId()));
+            transaction.update(userPath, organizing);
 
             return null;
-        }).addOnSuccessListener(aVoid -> {
+        }).thenComposeAsync(done -> {
             Log.d(TAG, "Event created successfully in Firestore and organizer's list updated");
-            callback.onSuccess(event.getId());
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Failed to create event in Firestore", e);
-            callback.onFailure(e);
-        });
+            event.clearChanges();
+            scheduleLotteryDraw(event);
+            // The organizer's list shows the summary, so it is written before reporting success
+            return refreshSummary(event.getId()).thenApply(refreshed -> event.getId());
+        }, FirebaseFutures.MAIN_THREAD);
+        deliver(created, "creating event", callback);
     }
 
     /**
@@ -241,24 +393,50 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void getEventById(String eventId, FirebaseCallback<Event> callback) {
-        db.collection("events").document(eventId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    Event event = documentSnapshot.toObject(Event.class);
-                    callback.onSuccess(event);
-                })
-                .addOnFailureListener(e -> callback.onFailure(e));
+        readMapped(gateway.get(EntrantStore.eventPath(eventId)), ModelMappers::toEvent, callback);
     }
 
     /**
-     * Updates an existing event in Firestore.
+     * Retrieves an event by its ID, as a future.
+     *
+     * @param eventId The ID of the event to retrieve.
+     * @return A future with the Event, or null if it does not exist.
+     */
+    public CompletableFuture<Event> getEventById(String eventId) {
+        return FirebaseFutures.of(callback -> getEventById(eventId, callback));
+    }
+
+    /**
+     * Updates an existing event in Firestore. Only the fields changed since the event was
+     * read or last saved are written, and the summary, draw schedule and waitlist counters
+     * are only brought up to date when a field they depend on changed.
      *
      * @param event    The Event object with updated information.
      * @param callback A callback to handle the result of the operation.
      */
     public void updateEvent(Event event, FirebaseCallback<Void> callback) {
-        db.collection("events").document(event.getId()).set(event)
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(e -> callback.onFailure(e));
+        Map<String, Object> changes = event.getChanges();
+        if (changes.isEmpty()) {
+            callback.onSuccess(null);
+            return;
+        }
+        CompletableFuture<Void> updated = gateway.update(EntrantStore.eventPath(event.getId()), ModelMappers.toData(changes))
+                .thenComposeAsync(done -> {
+                    event.markSaved(changes);
+                    if (changes.containsKey("lotteryDrawDate")) {
+                        scheduleLotteryDraw(event);
+                    }
+                    CompletableFuture<Void> refreshed = CompletableFuture.completedFuture(null);
+                    if (!Collections.disjoint(changes.keySet(), EventSummaryStore.FIELDS)) {
+                        refreshed = refreshSummary(event.getId());
+                    }
+                    if (changes.containsKey("waitlistLimit") && event.getWaitlistLimit() != null) {
+                        // Existing shards may hold more than their share of the new limit
+                        return refreshed.thenCompose(refreshDone -> entrantStore.rebalanceWaitlist(event.getId()));
+                    }
+                    return refreshed;
+                }, FirebaseFutures.MAIN_THREAD);
+        deliver(updated, "updating event", callback);
     }
 
     /**
@@ -275,29 +453,27 @@ public class FirebaseService {
                 if (event != null) {
                     String imageId = event.getEventImageId();
                     // Proceed to delete the event
-                    db.collection("events").document(eventId).delete()
-                            .addOnSuccessListener(aVoid -> {
-                                // If there's an associated image, delete it
-                                if (imageId != null) {
-                                    deleteImage(imageId, new FirebaseCallback<Void>() {
-                                        @Override
-                                        public void onSuccess(Void result) {
-                                            callback.onSuccess(null);
-                                        }
+                    deliver(gateway.delete(EntrantStore.eventPath(eventId)), "deleting event", new FirebaseCallback<Void>() {
+                        @Override
+                        public void onSuccess(Void deleted) {
+                        // Removes the summary, now that the event is gone
+                        refreshSummary(eventId);
+                        // If there's an associated image, delete it
+                        if (imageId != null) {
+                            deleteImage(imageId, callback);
+                        } else {
+                            callback.onSuccess(null);
+                        }
+                    }
 
-                                        @Override
-                                        public void onFailure(Exception e) {
-                                            callback.onFailure(e);
-                                        }
-                                    });
-                                } else {
-                                    callback.onSuccess(null);
-                                }
-                            })
-                            .addOnFailureListener(callback::onFailure);
-                } else {
-                    callback.onFailure(new Exception("Event not found"));
-                }
+                    @Override
+                    public void onFailure(Exception e) {
+                        callback.onFailure(e);
+                    }
+                });
+            } else {
+                callback.onFailure(new Exception("Event not found"));
+            }
             }
 
             @Override
@@ -315,22 +491,8 @@ public class FirebaseService {
      * @param callback Callback for success or failure.
      */
     public void addToEventWaitlist(String eventId, String userId, FirebaseCallback<Void> callback) {
-        getEventById(eventId, new FirebaseCallback<Event>() {
-            @Override
-            public void onSuccess(Event event) {
-                if (event != null) {
-                    event.addToWaitingList(userId);
-                    updateEvent(event, callback);
-                } else {
-                    callback.onFailure(new Exception("Event not found"));
-                }
-            }
-
-            @Override
-            public void onFailure(Exception e) {
-                callback.onFailure(e);
-            }
-        });
+        moveEntrant(eventId, userId, Arrays.asList(null, EventRole.CANCELLED), EventRole.WAITLISTED,
+                "adding user to waitlist", callback);
     }
 
     /**
@@ -340,22 +502,8 @@ public class FirebaseService {
      * @param callback Callback for success or failure.
      */
     public void removeFromEventWaitlist(String eventId, String userId, FirebaseCallback<Void> callback) {
-        getEventById(eventId, new FirebaseCallback<Event>() {
-            @Override
-            public void onSuccess(Event event) {
-                if (event != null) {
-                    event.removeFromWaitingList(userId);
-                    updateEvent(event, callback);
-                } else {
-                    callback.onFailure(new Exception("Event not found"));
-                }
-            }
-
-            @Override
-            public void onFailure(Exception e) {
-                callback.onFailure(e);
-            }
-        });
+        moveEntrant(eventId, userId, Collections.singletonList(EventRole.WAITLISTED), null,
+                "removing user from waitlist", callback);
     }
 
     /**
@@ -364,24 +512,32 @@ public class FirebaseService {
      * @param callback Callback for success or failure.
      */
     public void moveFromWaitlistToParticipants(String eventId, FirebaseCallback<Void> callback) {
-        getEventById(eventId, new FirebaseCallback<Event>() {
-            @Override
-            public void onSuccess(Event event) {
-                if (event != null && !event.getWaitingList().isEmpty() && !event.isFull()) {
-                    String userId = event.getWaitingList().get(0);
-                    event.removeFromWaitingList(userId);
-                    event.addParticipant(userId);
-                    updateEvent(event, callback);
-                } else {
-                    callback.onFailure(new Exception("No users in waitlist or event is full"));
-                }
-            }
-
-            @Override
-            public void onFailure(Exception e) {
-                callback.onFailure(e);
-            }
-        });
+        // Reads are safe to repeat; the move is made safe by its request ID
+        CompletableFuture<DocumentData> eventFuture = retried(() -> gateway.get(EntrantStore.eventPath(eventId)));
+        CompletableFuture<EventCounters> countersFuture = retried(() -> entrantStore.getCounters(eventId));
+        CompletableFuture<List<DocumentData>> waitlistFuture = retried(() -> gateway.query(
+                GatewayQuery.collection(EntrantStore.entriesPath(eventId))
+                        .whereEqualTo("status", EventRole.WAITLISTED.name())
+                        .limit(1)));
+        CompletableFuture<Boolean> moved = CompletableFuture.allOf(eventFuture, countersFuture, waitlistFuture)
+                .thenCompose(done -> {
+                    DocumentData eventDocument = eventFuture.join();
+                    if (!eventDocument.exists()) {
+                        throw new FirebaseServiceException("Event not found");
+                    }
+                    Long capacity = eventDocument.getLong("capacity");
+                    EventCounters counters = countersFuture.join();
+                    List<DocumentData> waitlist = waitlistFuture.join();
+                    if (waitlist.isEmpty() || (capacity != null && counters.getTaken() >= capacity)) {
+                        throw new FirebaseServiceException("No users in waitlist or event is full");
+                    }
+                    String userId = waitlist.get(0).getId();
+                    String requestId = UUID.randomUUID().toString();
+                    return retried(() -> entrantStore.move(eventId, userId,
+                            Collections.singletonList(EventRole.WAITLISTED), EventRole.PARTICIPANT, requestId));
+                });
+        deliver(refreshingCounts(eventId, moved).thenApply(done -> (Void) null),
+                "moving user from waitlist to participants", callback);
     }
 
     /**
@@ -389,145 +545,280 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void getAllEvents(FirebaseCallback<List<Event>> callback) {
-        db.collection("events")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Event> events = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                        Event event = document.toObject(Event.class);
-                        if (event != null) {
-                            events.add(event);
-                        }
-                    }
-                    callback.onSuccess(events);
-                })
-                .addOnFailureListener(callback::onFailure);
+        readMapped(gateway.query(GatewayQuery.collection(EntrantStore.EVENTS)),
+                documents -> toObjects(documents, ModelMappers::toEvent), callback);
+    }
+
+    /**
+     * Retrieves one page of event summaries ordered by event ID, starting after the given
+     * cursor. Use EventPager to walk the events page by page with prefetching.
+     *
+     * @param startAfterId The ID of the last event of the previous page, or null for the first page.
+     * @param pageSize     The maximum number of events to return.
+     * @param callback     A callback to handle the result of the operation.
+     */
+    public void getEventSummariesPage(String startAfterId, int pageSize, FirebaseCallback<EventPage> callback) {
+        afterSummaryBackfill(() -> {
+            GatewayQuery query = GatewayQuery.collection(EventSummaryStore.COLLECTION)
+                    .orderBy(GatewayQuery.DOCUMENT_ID, false)
+                    .limit(pageSize);
+            if (startAfterId != null) {
+                query = query.startAfter(startAfterId);
+            }
+            readMapped(gateway.query(query), documents -> {
+                List<EventSummary> events = toObjects(documents, ModelMappers::toEventSummary);
+                String lastEventId = documents.isEmpty() ? startAfterId : documents.get(documents.size() - 1).getId();
+                return new EventPage(events, lastEventId, documents.size() == pageSize);
+            }, callback);
+        });
     }
 
     /**
      * Retrieves all events associated with a user, whether they are in the waitlist,
-     * selected participants, or confirmed participants.     *
+     * selected participants, or confirmed participants. The event IDs come from the
+     * user's membership index, so this costs one document read plus one query per
+     * 30 events.
+     *
      * @author Graham Flokstra
      * @param userId   String representing the unique ID of the current user.
      * @param callback FirebaseCallback<List<Event>> to handle the result, providing a list of Event objects
      *                 the user is associated with (either in the participants or waiting list).
      */
-
     public void getUserEvents(String userId, FirebaseCallback<List<Event>> callback) {
-        List<Event> combinedEvents = new ArrayList<>();
-
-        // Query 1: Events where the user is in the waitingList
-        Task<QuerySnapshot> waitlistTask = db.collection("events")
-                .whereArrayContains("waitingList", userId)
-                .get();
-
-        // Query 2: Events where the user is in the selectedParticipants
-        Task<QuerySnapshot> selectedTask = db.collection("events")
-                .whereArrayContains("selectedParticipants", userId)
-                .get();
-
-        // Query 3: Events where the user is in the participants
-        Task<QuerySnapshot> participantsTask = db.collection("events")
-                .whereArrayContains("participants", userId)
-                .get();
-
-        // Execute all queries asynchronously
-        Tasks.whenAllComplete(waitlistTask, selectedTask, participantsTask)
-                .addOnSuccessListener(task -> {
-                    for (Task<?> individualTask : task) {
-                        if (individualTask.isSuccessful()) {
-                            QuerySnapshot snapshot = ((Task<QuerySnapshot>) individualTask).getResult();
-                            for (DocumentSnapshot document : snapshot.getDocuments()) {
-                                Event event = document.toObject(Event.class);
-                                if (event != null && !combinedEvents.contains(event)) {
-                                    combinedEvents.add(event);
-                                }
-                            }
-                        } else {
-                            // Log individual query failures but continue processing
-                            Log.e("FirebaseService", "Error fetching user events: " + individualTask.getException());
-                        }
-                    }
-
-                    // Logging for debugging
-                    Log.d("FirebaseService", "Total Events Found: " + combinedEvents.size());
-                    for (Event event : combinedEvents) {
-                        Log.d("FirebaseService", "Event ID: " + event.getId());
-                        Log.d("FirebaseService", "Participants: " + event.getParticipants());
-                        Log.d("FirebaseService", "Selected Participants: " + event.getSelectedParticipants());
-                        Log.d("FirebaseService", "Waitlist: " + event.getWaitingList());
-                    }
-
-                    callback.onSuccess(combinedEvents);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("FirebaseService", "Error fetching user events", e);
-                    callback.onFailure(e);
-                });
+        getUserEventsWithoutCancelled(userId, callback);
     }
 
     /**
      * Retrieves all events associated with a user, whether they are in the waitlist,
-     * selected participants, or confirmed participants.
+     * selected participants, or confirmed participants. Events the user has cancelled
+     * or declined are left out.
+     *
      * @author Graham Flokstra
      * @param userId   String representing the unique ID of the current user.
      * @param callback FirebaseCallback<List<Event>> to handle the result, providing a list of Event objects
      *                 the user is associated with (either in the participants or waiting list).
      */
-
     public void getUserEventsWithoutCancelled(String userId, FirebaseCallback<List<Event>> callback) {
-        List<Event> combinedEvents = new ArrayList<>();
-
-        // Query 1: Events where the user is in the waitingList
-        Task<QuerySnapshot> waitlistTask = db.collection("events")
-                .whereArrayContains("waitingList", userId)
-                .get();
-
-        // Query 2: Events where the user is in the selectedParticipants
-        Task<QuerySnapshot> selectedTask = db.collection("events")
-                .whereArrayContains("selectedParticipants", userId)
-                .get();
-
-        // Query 3: Events where the user is in the participants
-        Task<QuerySnapshot> participantsTask = db.collection("events")
-                .whereArrayContains("participants", userId)
-                .get();
-
-        // Execute all queries asynchronously
-        Tasks.whenAllComplete(waitlistTask, selectedTask, participantsTask)
-                .addOnSuccessListener(task -> {
-                    for (Task<?> individualTask : task) {
-                        if (individualTask.isSuccessful()) {
-                            QuerySnapshot snapshot = ((Task<QuerySnapshot>) individualTask).getResult();
-                            for (DocumentSnapshot document : snapshot.getDocuments()) {
-                                Event event = document.toObject(Event.class);
-                                if (event != null && !combinedEvents.contains(event)) {
-                                    combinedEvents.add(event);
-                                }
-                            }
+        getUserMemberships(userId, new FirebaseCallback<Map<String, EventRole>>() {
+            @Override
+            public void onSuccess(Map<String, EventRole> memberships) {
+                List<String> eventIds = new ArrayList<>();
+                for (Map.Entry<String, EventRole> membership : memberships.entrySet()) {
+                    if (membership.getValue() != EventRole.CANCELLED) {
+                        eventIds.add(membership.getKey());
+                    }
+                }
+                getEventsByIds(eventIds, callback);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Error fetching user events", e);
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the user's membership index: a map from event ID to the user's role in
+     * that event. Users whose index has never been built are indexed from the event
+     * lists on first read.
+     *
+     * @param userId   The ID of the user.
+     * @param callback A callback to handle the result of the operation.
+     */
+    public void getUserMemberships(String userId, FirebaseCallback<Map<String, EventRole>> callback) {
+        // Null marks an index that has not been built yet
+        readMapped(gateway.get("memberships/" + userId),
+                document -> Boolean.TRUE.equals(document.get("indexed"))
+                        ? parseMemberships(document.get("events")) : null,
+                new FirebaseCallback<Map<String, EventRole>>() {
+                    @Override
+                    public void onSuccess(Map<String, EventRole> memberships) {
+                        if (memberships != null) {
+                            callback.onSuccess(memberships);
                         } else {
-                            // Log individual query failures but continue processing
-                            Log.e("FirebaseService", "Error fetching user events: " + individualTask.getException());
+                            buildMembershipIndex(userId, callback);
                         }
                     }
 
-                    // Logging for debugging
-                    Log.d("FirebaseService", "Total Events Found: " + combinedEvents.size());
-                    for (Event event : combinedEvents) {
-                        Log.d("FirebaseService", "Event ID: " + event.getId());
-                        Log.d("FirebaseService", "Participants: " + event.getParticipants());
-                        Log.d("FirebaseService", "Selected Participants: " + event.getSelectedParticipants());
-                        Log.d("FirebaseService", "Waitlist: " + event.getWaitingList());
+                    @Override
+                    public void onFailure(Exception e) {
+                        callback.onFailure(e);
                     }
-
-                    callback.onSuccess(combinedEvents);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("FirebaseService", "Error fetching user events", e);
-                    callback.onFailure(e);
                 });
     }
 
+    /**
+     * Retrieves the user's membership index, as a future.
+     *
+     * @param userId The ID of the user.
+     * @return A future with a map from event ID to the user's role in that event.
+     */
+    public CompletableFuture<Map<String, EventRole>> getUserMemberships(String userId) {
+        return FirebaseFutures.of(callback -> getUserMemberships(userId, callback));
+    }
+
+    /**
+     * Retrieves events by ID using whereIn queries of at most 30 IDs each. IDs that no
+     * longer exist are skipped; the result keeps the order of the given IDs.
+     *
+     * @param eventIds The IDs of the events to fetch.
+     * @param callback A callback to handle the result of the operation.
+     */
+    public void getEventsByIds(Collection<String> eventIds, FirebaseCallback<List<Event>> callback) {
+        getByIds(EntrantStore.EVENTS, eventIds, ModelMappers::toEvent, callback);
+    }
+
+    /**
+     * Retrieves several events at once, as a future.
+     *
+     * @param eventIds The IDs of the events to retrieve.
+     * @return A future with the events found.
+     */
+    public CompletableFuture<List<Event>> getEventsByIds(Collection<String> eventIds) {
+        return FirebaseFutures.of(callback -> getEventsByIds(eventIds, callback));
+    }
+
+    /**
+     * Retrieves the summaries of events by ID, for list screens. Events without a summary
+     * are skipped, and their summaries rebuilt in the background for the next read.
+     *
+     * @param eventIds The IDs of the events.
+     * @param callback A callback receiving the summaries in the order of the given IDs.
+     */
+    public void getEventSummariesByIds(Collection<String> eventIds, FirebaseCallback<List<EventSummary>> callback) {
+        afterSummaryBackfill(() -> getByIds(EventSummaryStore.COLLECTION, eventIds, ModelMappers::toEventSummary,
+                new FirebaseCallback<List<EventSummary>>() {
+                    @Override
+                    public void onSuccess(List<EventSummary> summaries) {
+                        Set<String> missing = new LinkedHashSet<>(eventIds);
+                        for (EventSummary summary : summaries) {
+                            missing.remove(summary.getId());
+                        }
+                        for (String eventId : missing) {
+                            refreshSummaryCounts(eventId);
+                        }
+                        callback.onSuccess(summaries);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        callback.onFailure(e);
+                    }
+                }));
+    }
+
+    /**
+     * Retrieves documents of a collection by ID using whereIn queries of at most 30 IDs
+     * each. IDs that do not exist are skipped; the result keeps the order of the given IDs.
+     *
+     * @param collection The collection to read.
+     * @param ids        The IDs of the documents.
+     * @param mapper     Maps each document to its model.
+     * @param callback   A callback to handle the result of the operation.
+     * @param <T>        The type of the model.
+     */
+    private <T> void getByIds(String collection, Collection<String> ids, Mapper<DocumentData, T> mapper,
+                              FirebaseCallback<List<T>> callback) {
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (unique.isEmpty()) {
+            callback.onSuccess(new ArrayList<>());
+            return;
+        }
+
+        List<CompletableFuture<List<DocumentData>>> reads = new ArrayList<>();
+        for (int i = 0; i < unique.size(); i += WHERE_IN_LIMIT) {
+            List<String> chunk = unique.subList(i, Math.min(i + WHERE_IN_LIMIT, unique.size()));
+            reads.add(gateway.query(GatewayQuery.collection(collection).whereIn(GatewayQuery.DOCUMENT_ID, chunk)));
+        }
+
+        readMapped(FirebaseFutures.all(reads), results -> {
+            Map<String, T> found = new HashMap<>();
+            for (List<DocumentData> result : results) {
+                for (DocumentData document : result) {
+                    T model = mapper.map(document);
+                    if (model != null) {
+                        found.put(document.getId(), model);
+                    }
+                }
+            }
+            List<T> models = new ArrayList<>();
+            for (String id : unique) {
+                T model = found.get(id);
+                if (model != null) {
+                    models.add(model);
+                }
+            }
+            Log.d(TAG, "Fetched " + models.size() + " of " + unique.size() + " " + collection + " by ID");
+            return models;
+        }, callback);
+    }
+
+    /**
+     * Builds a user's membership index from the event lists and saves it, so later reads
+     * only need the membership document. Used for users created before the index existed.
+     *
+     * @param userId   The ID of the user.
+     * @param callback A callback to handle the result of the operation.
+     */
+    private void buildMembershipIndex(String userId, FirebaseCallback<Map<String, EventRole>> callback) {
+        GatewayQuery events = GatewayQuery.collection(EntrantStore.EVENTS);
+        // Later roles win, so a user on several lists gets the furthest-along role
+        EventRole[] roles = {EventRole.CANCELLED, EventRole.WAITLISTED, EventRole.SELECTED, EventRole.PARTICIPANT};
+        List<CompletableFuture<List<DocumentData>>> reads = Arrays.asList(
+                gateway.query(events.whereArrayContains("cancelledList", userId)),
+                gateway.query(events.whereArrayContains("waitingList", userId)),
+                gateway.query(events.whereArrayContains("selectedParticipants", userId)),
+                gateway.query(events.whereArrayContains("participants", userId)));
+
+        CompletableFuture<Map<String, EventRole>> built = FirebaseFutures.all(reads).thenApply(results -> {
+            Map<String, EventRole> memberships = new LinkedHashMap<>();
+            for (int i = 0; i < results.size(); i++) {
+                for (DocumentData document : results.get(i)) {
+                    memberships.put(document.getId(), roles[i]);
+                }
+            }
+
+            Map<String, Object> indexed = new HashMap<>();
+            for (Map.Entry<String, EventRole> membership : memberships.entrySet()) {
+                indexed.put(membership.getKey(), membership.getValue().name());
+            }
+            Map<String, Object> index = new HashMap<>();
+            index.put("events", indexed);
+            index.put("indexed", true);
+            gateway.set("memberships/" + userId, index, true).whenComplete((done, error) -> {
+                if (error != null) {
+                    Log.w(TAG, "Error saving membership index", error);
+                } else {
+                    Log.d(TAG, "Membership index built for " + userId);
+                }
+            });
+            return memberships;
+        });
+        deliver(built, "building membership index", callback);
+    }
+
+    /**
+     * Converts the stored events map of a membership document into roles, skipping
+     * values that do not name a known role.
+     *
+     * @param value The raw "events" field.
+     * @return Map from event ID to role.
+     */
+    private Map<String, EventRole> parseMemberships(Object value) {
+        Map<String, EventRole> memberships = new LinkedHashMap<>();
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                try {
+                    memberships.put(String.valueOf(entry.getKey()), EventRole.valueOf(String.valueOf(entry.getValue())));
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "Unknown event role: " + entry.getValue());
+                }
+            }
+        }
+        return memberships;
+    }
 
     /**
      * Removes a specified user from the list of participants in a given event.
@@ -539,10 +830,8 @@ public class FirebaseService {
      * @param callback FirebaseCallback<Void> to handle the success or failure of the operation.
      */
     public void removeFromEventParticipants(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        eventRef.update("participants", FieldValue.arrayRemove(userId))
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        moveEntrant(eventId, userId, Collections.singletonList(EventRole.PARTICIPANT), null,
+                "removing user from participants", callback);
     }
 
     /**
@@ -555,10 +844,8 @@ public class FirebaseService {
      * @param callback FirebaseCallback<Void> to handle the success or failure of the operation.
      */
     public void addToSelectedParticipants(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        eventRef.update("selectedParticipants", FieldValue.arrayUnion(userId))
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        moveEntrant(eventId, userId, Arrays.asList(null, EventRole.WAITLISTED), EventRole.SELECTED,
+                "adding user to selected participants", callback);
     }
 
     /**
@@ -571,10 +858,8 @@ public class FirebaseService {
      * @param callback FirebaseCallback<Void> to handle the success or failure of the operation.
      */
     public void removeFromSelectedParticipants(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        eventRef.update("selectedParticipants", FieldValue.arrayRemove(userId))
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        moveEntrant(eventId, userId, Collections.singletonList(EventRole.SELECTED), null,
+                "removing user from selected participants", callback);
     }
 
     /**
@@ -585,111 +870,784 @@ public class FirebaseService {
      * @param callback    FirebaseCallback<List<Event>> to handle the result, providing a list of Event objects.
      */
     public void getOrganizerEvents(String organizerId, FirebaseCallback<List<Event>> callback) {
-        db.collection("events")
-                .whereEqualTo("organizerId", organizerId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Event> events = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                        Event event = document.toObject(Event.class);
-                        if (event != null) {
-                            events.add(event);
-                        }
-                    }
-                    callback.onSuccess(events);
-                })
-                .addOnFailureListener(callback::onFailure);
-    }
-    public void storeEventHash(String eventId, String hash) {
-        Map<String, Object> hashData = new HashMap<>();
-        hashData.put("qr_hash", hash);
-
-        db.collection("events").document(eventId)
-                .set(hashData, SetOptions.merge())
-                .addOnSuccessListener(aVoid -> Log.d("FirebaseService", "Hash stored successfully"))
-                .addOnFailureListener(e -> Log.w("FirebaseService", "Error storing hash", e));
+        readMapped(gateway.query(GatewayQuery.collection(EntrantStore.EVENTS).whereEqualTo("organizerId", organizerId)), documents -> {
+            List<Event> events = new ArrayList<>();
+            List<String> legacyEventIds = new ArrayList<>();
+            for (DocumentData document : documents) {
+                Event event = ModelMappers.toEvent(document);
+                if (event != null) {
+                    events.add(event);
+                }
+                // Events created before entries existed still keep entrants inline
+                if (hasLegacyEntrants(document.getData())) {
+                    legacyEventIds.add(document.getId());
+                }
+            }
+            return new WithLegacyEvents<>(events, legacyEventIds);
+        }, migratingLegacyEvents(callback));
     }
 
     /**
-     * Retrieves a list of entrants on the waiting list for a specific event.
-     *
+     * Retrieves the summaries of the events created by an organizer, for their list of
+     * events. Events still holding entrants inline are migrated in the background.
      *
-     * @param eventId  The ID of the event to retrieve waitlist details.
-     * @param callback Callback to handle the result of the operation.
+     * @param organizerId The ID of the organizer.
+     * @param callback    A callback receiving the summaries.
      */
-    public void getEventWaitlist(String eventId, FirebaseCallback<List<String>> callback) {
-        db.collection("events").document(eventId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Event event = documentSnapshot.toObject(Event.class);
-                        if (event != null && event.getWaitingList() != null) {
-                            callback.onSuccess(event.getWaitingList());
-                        } else {
-                            callback.onSuccess(new ArrayList<>());
+    public void getOrganizerEventSummaries(String organizerId, FirebaseCallback<List<EventSummary>> callback) {
+        afterSummaryBackfill(() -> readMapped(
+                gateway.query(GatewayQuery.collection(EventSummaryStore.COLLECTION).whereEqualTo("organizerId", organizerId)),
+                documents -> {
+                    List<EventSummary> summaries = toObjects(documents, ModelMappers::toEventSummary);
+                    List<String> legacyEventIds = new ArrayList<>();
+                    for (EventSummary summary : summaries) {
+                        if (summary.hasLegacyEntrants()) {
+                            legacyEventIds.add(summary.getId());
                         }
-                    } else {
-                        callback.onFailure(new Exception("Event not found"));
                     }
-                })
-                .addOnFailureListener(callback::onFailure);
+                    return new WithLegacyEvents<>(summaries, legacyEventIds);
+                }, migratingLegacyEvents(callback)));
     }
 
     /**
-     * Adds a user to the waitlist of an event and updates the user's waitlisted events.
-     *
-     * @param eventId  The ID of the event to join.
-     * @param userId   The ID of the user joining the event.
-     * @param callback A callback to handle success or failure.
+     * A mapped read result together with the IDs of the events in it that still keep
+     * entrants inline, so mapping stays free of writes.
      */
-    public void joinEventWaitlist(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        DocumentReference userRef = db.collection("users").document(userId);
+    private static final class WithLegacyEvents<T> {
+        final T value;
+        final List<String> legacyEventIds;
 
-        db.runTransaction(transaction -> {
-            // Retrieve the event and user documents
-            DocumentSnapshot eventSnapshot = transaction.get(eventRef);
-            DocumentSnapshot userSnapshot = transaction.get(userRef);
+        WithLegacyEvents(T value, List<String> legacyEventIds) {
+            this.value = value;
+            this.legacyEventIds = legacyEventIds;
+        }
+    }
 
-            if (!eventSnapshot.exists()) {
-                throw new FirebaseServiceException("Event does not exist.");
+    /**
+     * Wraps a callback so that, once a mapped result has been delivered, the legacy
+     * events found while mapping are migrated in the background.
+     *
+     * @param callback The callback receiving the mapped value.
+     * @param <T>      The type of the mapped value.
+     * @return A callback for readMapped.
+     */
+    private <T> FirebaseCallback<WithLegacyEvents<T>> migratingLegacyEvents(FirebaseCallback<T> callback) {
+        return new FirebaseCallback<WithLegacyEvents<T>>() {
+            @Override
+            public void onSuccess(WithLegacyEvents<T> result) {
+                callback.onSuccess(result.value);
+                for (String eventId : result.legacyEventIds) {
+                    migrateLegacyEntries(eventId, new FirebaseCallback<Void>() {
+                        @Override
+                        public void onSuccess(Void migrated) {
+                            Log.d(TAG, "Migrated legacy entrants for event " + eventId);
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            Log.e(TAG, "Error migrating legacy entrants for event " + eventId, e);
+                        }
+                    });
+                }
             }
 
-            if (!userSnapshot.exists()) {
-                throw new FirebaseServiceException("User does not exist.");
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
             }
+        };
+    }
 
-            Event event = eventSnapshot.toObject(Event.class);
-            User user = userSnapshot.toObject(User.class);
+    public void storeEventHash(String eventId, String hash) {
+        Map<String, Object> hashData = new HashMap<>();
+        hashData.put("qr_hash", hash);
 
-            if (event == null || user == null) {
-                throw new FirebaseServiceException("Failed to parse Event or User data.");
+        gateway.set(EntrantStore.eventPath(eventId), hashData, true).whenComplete((done, error) -> {
+            if (error != null) {
+                Log.w("FirebaseService", "Error storing hash", error);
+            } else {
+                Log.d("FirebaseService", "Hash stored successfully");
             }
+        });
+    }
 
-            // Check if the user is already a participant or on the waitlist
-            if (event.getParticipants().contains(userId)) {
-                throw new FirebaseServiceException("You are already a participant of this event.");
+    /**
+     * Stores the full ranking from an event's lottery draw, so replacement draws can
+     * continue down it instead of reshuffling the waitlist.
+     *
+     * @param eventId  The ID of the event drawn.
+     * @param ranking  Every waitlisted entrant, in draw order, with the draw's seed.
+     * @param cursor   How many ranked entrants the draw already used.
+     * @param callback Callback for success or failure.
+     */
+    public void saveDrawOrder(String eventId, DrawResult ranking, int cursor, FirebaseCallback<Void> callback) {
+        deliver(drawOrderStore.save(eventId, ranking, cursor), "saving draw order", callback);
+    }
+
+    /**
+     * Schedules an event's main lottery draw for its lottery draw date. Events without
+     * a draw date are left for the organizer to draw. A failure is only logged; the
+     * organizer can still draw by hand.
+     *
+     * @param event The event to schedule.
+     */
+    private void scheduleLotteryDraw(Event event) {
+        if (event.getLotteryDrawDate() == null) {
+            return;
+        }
+        deliver(drawSchedule.schedule(event.getId(), event.getLotteryDrawDate().toDate()),
+                "scheduling lottery draw", new FirebaseCallback<Boolean>() {
+                    @Override
+                    public void onSuccess(Boolean changed) {
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                    }
+                });
+    }
+
+    /**
+     * Claims an event's main lottery draw, so no other device runs it at the same time.
+     *
+     * @param eventId  The ID of the event.
+     * @param manual   Whether an organizer started the draw rather than the scheduler.
+     * @param callback Callback receiving whether the claim succeeded; false means the
+     *                 draw is already running, or for the scheduler, already done.
+     */
+    public void claimDraw(String eventId, boolean manual, FirebaseCallback<Boolean> callback) {
+        deliver(drawSchedule.claim(eventId, new Date(), manual), "claiming lottery draw", callback);
+    }
+
+    /**
+     * Records how a claimed main lottery draw ended.
+     *
+     * @param eventId  The ID of the event.
+     * @param success  Whether the draw ran.
+     * @param callback Callback for success or failure.
+     */
+    public void completeDraw(String eventId, boolean success, FirebaseCallback<Void> callback) {
+        deliver(drawSchedule.complete(eventId, success, new Date()), "completing lottery draw", callback);
+    }
+
+    /**
+     * Moves the next entrants in an event's stored draw order who are still waitlisted
+     * to selected participants.
+     *
+     * @param eventId  The ID of the event.
+     * @param count    The number of entrants wanted.
+     * @param callback Callback receiving the users moved, in rank order, and why the draw
+     *                 stopped: fewer than count are moved once the stored ranking runs out,
+     *                 if there is none, or if the event has no open places left.
+     */
+    public void selectFromDrawOrder(String eventId, int count, FirebaseCallback<DrawOrderStore.Selection> callback) {
+        deliver(refreshingCounts(eventId, drawOrderStore.selectNext(eventId, count)), "selecting from draw order", callback);
+    }
+
+    /**
+     * Retrieves a list of entrants on the waiting list for a specific event.
+     *
+     *
+     * @param eventId  The ID of the event to retrieve waitlist details.
+     * @param callback Callback to handle the result of the operation.
+     */
+    public void getEventWaitlist(String eventId, FirebaseCallback<List<String>> callback) {
+        deliver(entrantStore.getWaitlist(eventId), "retrieving waitlist", callback);
+    }
+
+    /**
+     * Retrieves the lottery weight of every user on an event's waitlist.
+     *
+     * @param eventId  The ID of the event.
+     * @param callback Callback receiving each waitlisted user's weight, keyed by user ID.
+     */
+    public void getEventWaitlistWeights(String eventId, FirebaseCallback<Map<String, Double>> callback) {
+        deliver(entrantStore.getWaitlistWeights(eventId), "retrieving waitlist weights", callback);
+    }
+
+    /**
+     * Sets a user's lottery weight in an event that draws by weight.
+     *
+     * @param eventId  The ID of the event.
+     * @param userId   The ID of the user.
+     * @param weight   The weight, which must be positive; higher weights are drawn more often.
+     * @param callback Callback for success or failure.
+     */
+    public void setEntrantWeight(String eventId, String userId, double weight, FirebaseCallback<Void> callback) {
+        deliver(entrantStore.setWeight(eventId, userId, weight), "setting entrant weight", callback);
+    }
+
+    /**
+     * Retrieves the entries of an event, optionally limited to one role.
+     *
+     * @param eventId  The ID of the event.
+     * @param role     The role to filter by, or null for every entry.
+     * @param callback Callback to handle the result of the operation.
+     */
+    public void getEventEntries(String eventId, EventRole role, FirebaseCallback<List<EventEntry>> callback) {
+        GatewayQuery query = GatewayQuery.collection(EntrantStore.entriesPath(eventId));
+        if (role != null) {
+            query = query.whereEqualTo("status", role.name());
+        }
+        readMapped(gateway.query(query), documents -> toObjects(documents, ModelMappers::toEventEntry), callback);
+    }
+
+    /**
+     * Retrieves an event's entrant counts by summing its counter shards, without reading
+     * any entries. At most one document per shard is read.
+     *
+     * @param eventId  The ID of the event.
+     * @param callback Callback to handle the result of the operation.
+     */
+    public void getEventCounters(String eventId, FirebaseCallback<EventCounters> callback) {
+        deliver(entrantStore.getCounters(eventId).thenApply(counters -> {
+            synchronized (cachedCounters) {
+                cachedCounters.put(eventId, new CounterSnapshot(counters, System.currentTimeMillis()));
             }
+            return counters;
+        }), "retrieving event counters", callback);
+    }
 
-            if (event.getWaitingList().contains(userId)) {
-                throw new FirebaseServiceException("You are already on the waitlist for this event.");
+    /**
+     * Retrieves an event's entrant counts, as a future.
+     *
+     * @param eventId The ID of the event.
+     * @return A future with the counters.
+     */
+    public CompletableFuture<EventCounters> getEventCounters(String eventId) {
+        return FirebaseFutures.of(callback -> getEventCounters(eventId, callback));
+    }
+
+    /**
+     * Checks locally whether joining an event would be refused, using the event's
+     * registration window and the last counters read for it, or else the counts in its
+     * summary, so doomed joins skip the transaction. Joins that pass are still checked
+     * in the join transaction.
+     *
+     * @param event The summary of the event to join.
+     * @return The message to show the user if the join would be refused, or null.
+     */
+    public String precheckJoin(EventSummary event) {
+        long waitlist = event.getCounters().getWaitlist();
+        synchronized (cachedCounters) {
+            CounterSnapshot snapshot = cachedCounters.get(event.getId());
+            if (snapshot != null && System.currentTimeMillis() - snapshot.readAt < COUNTER_SNAPSHOT_TTL_MILLIS) {
+                waitlist = snapshot.counters.getWaitlist();
+            }
+        }
+        return EntrantStore.registrationRefusal(
+                event.getRegistrationOpens() != null ? event.getRegistrationOpens().toDate() : null,
+                event.getRegistrationDeadline() != null ? event.getRegistrationDeadline().toDate() : null,
+                event.getWaitlistLimit() != null ? event.getWaitlistLimit().longValue() : null,
+                waitlist, System.currentTimeMillis());
+    }
+
+    /**
+     * Recomputes an event's counters from its entries and stores the result, replacing
+     * whatever the shards held. Use this to repair counters after entries were changed
+     * outside FirebaseService.
+     *
+     * @param eventId  The ID of the event.
+     * @param callback Callback to handle the result of the operation.
+     */
+    public void rebuildEventCounters(String eventId, FirebaseCallback<EventCounters> callback) {
+        CompletableFuture<EventCounters> rebuilt = gateway.query(GatewayQuery.collection(EntrantStore.entriesPath(eventId)))
+                .thenCompose(documents -> {
+                    EventCounters counters = new EventCounters();
+                    for (DocumentData document : documents) {
+                        EventRole role = EntrantStore.parseRole(document.getString("status"));
+                        if (role != null) {
+                            counters.add(EventCounters.fieldFor(role), 1);
+                        }
+                    }
+
+                    // Shard 0 holds the totals, except the waitlist, which is spread to keep
+                    // every shard within its share of a waitlist limit
+                    long[] waitlist = EntrantStore.spreadWaitlist(counters.getWaitlist());
+                    GatewayBatch batch = gateway.batch();
+                    for (int shard = 0; shard < EntrantStore.COUNTER_SHARDS; shard++) {
+                        Map<String, Object> values = new HashMap<>();
+                        values.put(EventCounters.WAITLIST, waitlist[shard]);
+                        values.put(EventCounters.SELECTED, shard == 0 ? counters.getSelected() : 0L);
+                        values.put(EventCounters.PARTICIPANTS, shard == 0 ? counters.getParticipants() : 0L);
+                        values.put(EventCounters.CANCELLED, shard == 0 ? counters.getCancelled() : 0L);
+                        batch.set(EntrantStore.counterShardsPath(eventId) + "/" + shard, values, false);
+                    }
+                    return batch.commit().thenApply(done -> counters);
+                });
+        deliver(refreshingCounts(eventId, rebuilt), "rebuilding event counters", callback);
+    }
+
+    /**
+     * Moves legacy entrants stored inline on an event document (waitingList, participants,
+     * selectedParticipants, cancelledList and location) into the entries subcollection, then
+     * removes the inline fields. Safe to run more than once.
+     *
+     * @param eventId  The ID of the event to migrate.
+     * @param callback Callback to handle success or failure.
+     */
+    public void migrateLegacyEntries(String eventId, FirebaseCallback<Void> callback) {
+        deliver(gateway.get(EntrantStore.eventPath(eventId)), "reading legacy entrants", new FirebaseCallback<DocumentData>() {
+            @Override
+            public void onSuccess(DocumentData eventDocument) {
+                if (!eventDocument.exists() || !hasLegacyEntrants(eventDocument.getData())) {
+                    callback.onSuccess(null);
+                    return;
+                }
+
+                // Later lists win, so a user on several lists gets the furthest-along role
+                Map<String, EventRole> roles = new LinkedHashMap<>();
+                putLegacyRoles(roles, eventDocument.get("cancelledList"), EventRole.CANCELLED);
+                putLegacyRoles(roles, eventDocument.get("waitingList"), EventRole.WAITLISTED);
+                putLegacyRoles(roles, eventDocument.get("selectedParticipants"), EventRole.SELECTED);
+                putLegacyRoles(roles, eventDocument.get("participants"), EventRole.PARTICIPANT);
+                Object location = eventDocument.get("location");
+                Map<?, ?> locations = location instanceof Map ? (Map<?, ?>) location : new HashMap<>();
+
+                BatchWriter writer = new BatchWriter(gateway);
+                EventCounters migrated = new EventCounters();
+                for (Map.Entry<String, EventRole> role : roles.entrySet()) {
+                    String userId = role.getKey();
+                    Map<String, Object> entry = new HashMap<>();
+                    entry.put("eventId", eventId);
+                    entry.put("status", role.getValue().name());
+                    entry.put("joinedAt", FieldOp.serverTimestamp());
+                    Object userLocation = locations.get(userId);
+                    if (userLocation instanceof Map) {
+                        entry.put("latitude", ((Map<?, ?>) userLocation).get("latitude"));
+                        entry.put("longitude", ((Map<?, ?>) userLocation).get("longitude"));
+                    }
+                    writer.set(EntrantStore.entryPath(eventId, userId), entry, true);
+                    writer.set("memberships/" + userId, EntrantStore.membershipData(eventId, role.getValue()), true);
+                    migrated.add(EventCounters.fieldFor(role.getValue()), 1);
+                }
+
+                // Entry and membership writes are idempotent, so failed batches can simply be retried
+                writer.commit(new FirebaseCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void result) {
+                        // Counters and inline field removal commit together, and only once
+                        CompletableFuture<Void> finished = gateway.runTransaction(transaction -> {
+                            DocumentData current = transaction.get(EntrantStore.eventPath(eventId));
+                            if (!current.exists() || !hasLegacyEntrants(current.getData())) {
+                                return null;
+                            }
+                            // The waitlist is respread with the migrated users, so every shard stays
+                            // within its share of a waitlist limit; shard 0 takes the other roles
+                            long waitlist = EntrantStore.readCounters(transaction, eventId).getWaitlist();
+                            long[] spread = EntrantStore.spreadWaitlist(waitlist + migrated.getWaitlist());
+                            for (int shard = 0; shard < EntrantStore.COUNTER_SHARDS; shard++) {
+                                Map<String, Object> values = new HashMap<>();
+                                values.put(EventCounters.WAITLIST, spread[shard]);
+                                if (shard == 0) {
+                                    values.put(EventCounters.SELECTED, FieldOp.increment(migrated.getSelected()));
+                                    values.put(EventCounters.PARTICIPANTS, FieldOp.increment(migrated.getParticipants()));
+                                    values.put(EventCounters.CANCELLED, FieldOp.increment(migrated.getCancelled()));
+                                }
+                                transaction.set(EntrantStore.counterShardsPath(eventId) + "/" + shard, values, true);
+                            }
+                            Map<String, Object> removals = new HashMap<>();
+                            for (String field : EntrantStore.LEGACY_ENTRANT_FIELDS) {
+                                removals.put(field, FieldOp.delete());
+                            }
+                            transaction.update(current.getPath(), removals);
+                            return null;
+                        });
+                        // The summary drops its legacy flag and picks up the migrated counts
+                        deliver(finished.thenCompose(done -> refreshSummary(eventId)), "migrating legacy entrants", callback);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        callback.onFailure(e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Whether an event document still stores entrants inline.
+     *
+     * @param eventData The event document's data.
+     * @return true if any legacy entrant field is present.
+     */
+    private boolean hasLegacyEntrants(Map<String, Object> eventData) {
+        if (eventData == null) {
+            return false;
+        }
+        for (String field : EntrantStore.LEGACY_ENTRANT_FIELDS) {
+            if (eventData.containsKey(field)) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            // Add user to the event's waiting list
-            transaction.update(eventRef, "waitingList", FieldValue.arrayUnion(userId));
+    /**
+     * Records a role for every user ID in a raw legacy list field.
+     *
+     * @param roles  The map to add to.
+     * @param value  The raw list field, which may be missing.
+     * @param role   The role the list represents.
+     */
+    private void putLegacyRoles(Map<String, EventRole> roles, Object value, EventRole role) {
+        if (value instanceof List) {
+            for (Object userId : (List<?>) value) {
+                if (userId != null) {
+                    roles.put(userId.toString(), role);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a user to a new role in an event in one transaction. The entry is read first, and
+     * nothing is written unless the user's current role is one of the allowed starting roles.
+     *
+     * @param eventId     The ID of the event.
+     * @param userId      The ID of the user.
+     * @param allowedFrom The roles the user may currently hold; null stands for no role.
+     * @param to          The new role, or null to remove the user from the event.
+     * @param action      Description of the change, used for logging.
+     * @param callback    Callback for success or failure.
+     */
+    private void moveEntrant(String eventId, String userId, List<EventRole> allowedFrom, EventRole to,
+                             String action, FirebaseCallback<Void> callback) {
+        String requestId = UUID.randomUUID().toString();
+        CompletableFuture<Boolean> moved = retried(() -> entrantStore.move(eventId, userId, allowedFrom, to, requestId));
+        deliver(refreshingCounts(eventId, moved).thenApply(done -> (Void) null), action, callback);
+    }
 
-            // Add event to the user's eventsWaitlisted
-            transaction.update(userRef, "eventsWaitlisted", FieldValue.arrayUnion(eventId));
+    /**
+     * Runs a gateway operation, retrying it with jittered backoff while it fails for
+     * transient reasons, so callers get one outcome instead of a failure they must retry.
+     * Only pass operations that are safe to repeat: reads, or writes carrying a request ID.
+     *
+     * @param operation The operation; started again for each attempt.
+     * @param <T>       The type of the result.
+     * @return A future with the operation's outcome.
+     */
+    private static <T> CompletableFuture<T> retried(RetryPolicy.Operation<T> operation) {
+        return RetryPolicy.DEFAULT.run(operation, FirestoreGateway::isTransient);
+    }
 
+    /**
+     * Rewrites an event's summary after the event itself changed, or removes it once the
+     * event is deleted. Summaries are derived data, so a failure is logged rather than
+     * failing the change that caused it.
+     *
+     * @param eventId The ID of the event.
+     * @return A future completing once the summary is written or the attempt has failed.
+     */
+    private CompletableFuture<Void> refreshSummary(String eventId) {
+        return retried(() -> eventSummaryStore.refresh(eventId)).exceptionally(error -> {
+            Log.e(TAG, "Failed to refresh summary of event " + eventId, error);
             return null;
-        }).addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "User successfully added to waitlist");
-            callback.onSuccess(null);
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error adding user to waitlist", e);
+        });
+    }
+
+    /**
+     * Refreshes an event's summary counts once a change to its entrants succeeds.
+     *
+     * @param eventId The ID of the event.
+     * @param change  The change.
+     * @param <T>     The type of the change's result.
+     * @return The change, unaltered; callers need not wait for the refresh.
+     */
+    private <T> CompletableFuture<T> refreshingCounts(String eventId, CompletableFuture<T> change) {
+        change.thenRun(() -> refreshSummaryCounts(eventId));
+        return change;
+    }
+
+    /**
+     * Copies an event's counters into its summary in the background. Requests for an event
+     * whose refresh is already running make it run once more when it finishes, so bursts
+     * of changes cost one refresh at a time per event. Across devices the summary store
+     * rewrites the counts at most once per EventSummaryStore.COUNTS_REFRESH_MILLIS; a
+     * refresh turned away for that reason runs again once the counts may be rewritten.
+     *
+     * @param eventId The ID of the event.
+     */
+    private void refreshSummaryCounts(String eventId) {
+        synchronized (summaryRefreshes) {
+            if (summaryRefreshes.put(eventId, true) != null) {
+                return;
+            }
+        }
+        runSummaryCountsRefresh(eventId);
+    }
+
+    private void runSummaryCountsRefresh(String eventId) {
+        synchronized (summaryRefreshes) {
+            summaryRefreshes.put(eventId, false);
+        }
+        retried(() -> eventSummaryStore.refreshCounts(eventId, System.currentTimeMillis())).whenComplete((wait, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Failed to refresh summary counts of event " + eventId, error);
+            } else if (wait > 0) {
+                // The counts were written moments ago; the run after the wait sees every change until then
+                mainHandler.postDelayed(() -> runSummaryCountsRefresh(eventId), wait);
+                return;
+            }
+            synchronized (summaryRefreshes) {
+                if (!summaryRefreshes.get(eventId)) {
+                    summaryRefreshes.remove(eventId);
+                    return;
+                }
+            }
+            runSummaryCountsRefresh(eventId);
+        });
+    }
+
+    /**
+     * Builds summaries for events created before summaries existed, the first time any
+     * device needs them; afterwards this only checks a flag. Failures are logged, and the
+     * backfill is tried again on the next call.
+     *
+     * @return A future completing once summaries exist for every event, or the attempt failed.
+     */
+    public CompletableFuture<Void> ensureEventSummaries() {
+        if (summariesBackfilled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return retried(eventSummaryStore::backfill).handle((built, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Failed to build event summaries", error);
+                return null;
+            }
+            if (built > 0) {
+                Log.d(TAG, "Built summaries for " + built + " events");
+            }
+            summariesBackfilled = true;
+            return null;
+        });
+    }
+
+    /**
+     * Runs a summary read once summaries are known to exist for every event.
+     *
+     * @param read The read to run.
+     */
+    private void afterSummaryBackfill(Runnable read) {
+        if (summariesBackfilled) {
+            read.run();
+            return;
+        }
+        ensureEventSummaries().whenComplete((done, error) -> read.run());
+    }
+
+    /**
+     * Maps the result of a gateway read on the mapping executor and hands only the mapped
+     * result to the callback, on the main thread, so mapping large documents never
+     * blocks the UI. Time spent mapping is added to the mapping metrics.
+     *
+     * @param read     The read.
+     * @param mapper   Turns the read result into the value the callback receives.
+     * @param callback Callback for success or failure.
+     * @param <S>      The type of the read result.
+     * @param <T>      The type of the mapped value.
+     */
+    private static <S, T> void readMapped(CompletableFuture<S> read, Mapper<S, T> mapper, FirebaseCallback<T> callback) {
+        read.thenApplyAsync(snapshot -> {
+            long start = System.nanoTime();
+            try {
+                return mapper.map(snapshot);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error mapping read result", e);
+                throw e;
+            } finally {
+                recordMapping(System.nanoTime() - start);
+            }
+        }, mappingExecutor).whenComplete((result, error) -> mainHandler.post(() -> {
+            if (error == null) {
+                callback.onSuccess(result);
+            } else {
+                callback.onFailure(toException(error));
+            }
+        }));
+    }
+
+    /**
+     * Runs mapping or filtering work on the mapping executor, counting its time in the
+     * mapping metrics. For work on read results that screens do themselves.
+     *
+     * @param work The work.
+     * @param <T>  The type of its result.
+     * @return A future with the result; attach UI work with FirebaseFutures.MAIN_THREAD.
+     */
+    public static <T> CompletableFuture<T> mapInBackground(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return work.get();
+            } finally {
+                recordMapping(System.nanoTime() - start);
+            }
+        }, mappingExecutor);
+    }
+
+    private static void recordMapping(long nanos) {
+        mappingNanos.addAndGet(nanos);
+        mappingCount.incrementAndGet();
+        if (nanos > SLOW_MAPPING_NANOS) {
+            Log.w(TAG, "Mapping a read result took " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+        }
+    }
+
+    /**
+     * Gets the total time spent mapping read results to model objects since the app started.
+     *
+     * @return The time in milliseconds.
+     */
+    public static long getMappingTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mappingNanos.get());
+    }
+
+    /**
+     * Gets the number of read results mapped to model objects since the app started.
+     *
+     * @return The count.
+     */
+    public static long getMappingCount() {
+        return mappingCount.get();
+    }
+
+    private static <T> List<T> toObjects(List<DocumentData> documents, Mapper<DocumentData, T> mapper) {
+        List<T> objects = new ArrayList<>();
+        for (DocumentData document : documents) {
+            T object = mapper.map(document);
+            if (object != null) {
+                objects.add(object);
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Turns a read result into a model value.
+     *
+     * @param <S> The type of the read result.
+     * @param <T> The type of the value.
+     */
+    private interface Mapper<S, T> {
+        T map(S snapshot);
+    }
+
+    /**
+     * Hands the outcome of a gateway operation to a callback on the main thread, logging it
+     * the way the Firestore listeners in this class do.
+     *
+     * @param future   The operation.
+     * @param action   Description of the operation, used for logging.
+     * @param callback Callback for success or failure.
+     * @param <T>      The type of the result.
+     */
+    private <T> void deliver(CompletableFuture<T> future, String action, FirebaseCallback<T> callback) {
+        future.whenComplete((result, error) -> mainHandler.post(() -> {
+            if (error == null) {
+                Log.d(TAG, "Finished " + action);
+                callback.onSuccess(result);
+                return;
+            }
+            Exception e = toException(error);
+            Log.e(TAG, "Error " + action, e);
             callback.onFailure(e);
+        }));
+    }
+
+    /**
+     * Unwraps the failure of a future into the exception handed to callbacks.
+     *
+     * @param error The failure, possibly wrapped in a CompletionException.
+     * @return The exception.
+     */
+    private static Exception toException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception ? (Exception) cause : new Exception(cause);
+    }
+
+    /**
+     * Adds a user to the waitlist of an event and updates the user's waitlisted events.
+     * Transient failures are retried under one request ID, so a join whose reply was lost
+     * is not reported as the user already being on the waitlist.
+     *
+     * @param eventId  The ID of the event to join.
+     * @param userId   The ID of the user joining the event.
+     * @param callback A callback to handle success or failure.
+     */
+    public void joinEventWaitlist(String eventId, String userId, FirebaseCallback<Void> callback) {
+        String requestId = UUID.randomUUID().toString();
+        deliver(refreshingCounts(eventId, retried(() -> entrantStore.joinWaitlist(eventId, userId, requestId))),
+                "adding user to waitlist", callback);
+    }
+
+    /**
+     * Queues a user to join an event's waitlist, for events using queued admission.
+     * The request is logged with a single write and the ticket returned at once; the
+     * user is added to the waitlist when the event's join queue is next compacted,
+     * which this call starts unless another device is already compacting. The user is
+     * not on the waitlist yet; watchJoinTicket reports whether they were admitted.
+     *
+     * @param eventId  The ID of the event to join.
+     * @param userId   The ID of the user joining the event.
+     * @param callback Callback receiving the queued ticket.
+     */
+    public void queueEventWaitlistJoin(String eventId, String userId, FirebaseCallback<JoinTicket> callback) {
+        CompletableFuture<JoinTicket> ticket = intakeCompactor.submit(eventId, userId);
+        deliver(ticket, "queueing user for waitlist", callback);
+        ticket.thenCompose(queued -> intakeCompactor.compact(eventId)).whenComplete((processed, error) -> {
+            if (error != null) {
+                // The ticket stays queued for the next compaction
+                Log.e(TAG, "Failed to compact join queue for event " + eventId, error);
+            } else if (processed > 0) {
+                Log.d(TAG, "Compacted " + processed + " queued joins for event " + eventId);
+                refreshSummaryCounts(eventId);
+            }
         });
     }
 
+    /**
+     * Listens to a user's ticket in an event's join queue until it is admitted or rejected,
+     * then stops.
+     *
+     * @param eventId  The ID of the event.
+     * @param userId   The ID of the user.
+     * @param callback Callback receiving the admitted or rejected ticket on the main thread.
+     * @return A registration used to stop listening sooner, for example when the screen closes.
+     */
+    public DataGateway.Registration watchJoinTicket(String eventId, String userId, FirebaseCallback<JoinTicket> callback) {
+        AtomicBoolean finished = new AtomicBoolean();
+        AtomicReference<DataGateway.Registration> registration = new AtomicReference<>();
+        registration.set(intakeCompactor.watchTicket(eventId, userId, (ticket, error) -> {
+            if (error == null && (ticket == null || ticket.isQueued())) {
+                return;
+            }
+            // Runs after this method returns, so the registration is set
+            mainHandler.post(() -> {
+                if (!finished.compareAndSet(false, true)) {
+                    return;
+                }
+                registration.get().remove();
+                if (error != null) {
+                    Log.e(TAG, "Error watching join ticket", error);
+                    callback.onFailure(error);
+                } else {
+                    callback.onSuccess(ticket);
+                }
+            });
+        }));
+        return () -> {
+            finished.set(true);
+            registration.get().remove();
+        };
+    }
+
     /**
      * Creates a new facility in Firestore.
      *
@@ -698,17 +1656,9 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void createFacility(Facility facility, FirebaseCallback<String> callback) {
-        DocumentReference newFacilityRef = db.collection("facilities").document();
-        facility.setId(newFacilityRef.getId());
-        newFacilityRef.set(facility)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Facility created successfully in Firestore");
-                    callback.onSuccess(facility.getId());
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to create facility in Firestore", e);
-                    callback.onFailure(e);
-                });
+        facility.setId(gateway.newId());
+        deliver(gateway.set("facilities/" + facility.getId(), ModelMappers.toData(facility), false)
+                .thenApply(done -> facility.getId()), "creating facility", callback);
     }
 
     /**
@@ -719,9 +1669,8 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void updateFacility(Facility facility, FirebaseCallback<Void> callback) {
-        db.collection("facilities").document(facility.getId()).set(facility)
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        deliver(gateway.set("facilities/" + facility.getId(), ModelMappers.toData(facility), false),
+                "updating facility", callback);
     }
 
     /**
@@ -732,16 +1681,7 @@ public class FirebaseService {
      * @param callback   A callback to handle the result of the operation.
      */
     public void getFacilityById(String facilityId, FirebaseCallback<Facility> callback) {
-        db.collection("facilities").document(facilityId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Facility facility = documentSnapshot.toObject(Facility.class);
-                        callback.onSuccess(facility);
-                    } else {
-                        callback.onSuccess(null);
-                    }
-                })
-                .addOnFailureListener(callback::onFailure);
+        readMapped(gateway.get("facilities/" + facilityId), ModelMappers::toFacility, callback);
     }
 
     /**
@@ -749,19 +1689,8 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void getAllFacilities(FirebaseCallback<List<Facility>> callback) {
-        db.collection("facilities")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Facility> facilities = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                        Facility facility = document.toObject(Facility.class);
-                        if (facility != null) {
-                            facilities.add(facility);
-                        }
-                    }
-                    callback.onSuccess(facilities);
-                })
-                .addOnFailureListener(callback::onFailure);
+        readMapped(gateway.query(GatewayQuery.collection("facilities")),
+                documents -> toObjects(documents, ModelMappers::toFacility), callback);
     }
 
     /**
@@ -772,48 +1701,48 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void deleteFacility(String facilityId, FirebaseCallback<Void> callback) {
-        db.collection("facilities").document(facilityId).delete()
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(e -> callback.onFailure(e));
+        deliver(gateway.delete("facilities/" + facilityId), "deleting facility", callback);
     }
 
     // Inside FirebaseService
     public void deleteFacilityAndRelatedEvents(String facilityId, FirebaseCallback<Void> callback) {
         // First, delete related events
-        db.collection("events")
-                .whereEqualTo("facilityId", facilityId)
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                        Event event = document.toObject(Event.class);
-                        String eventId = document.getId();
-                        String imageId = event != null ? event.getEventImageId() : null;
-
-                        // Delete the event document
-                        document.getReference().delete();
-
-                        // Delete the associated image if it exists
-                        if (imageId != null) {
-                            deleteImage(imageId, new FirebaseCallback<Void>() {
-                                @Override
-                                public void onSuccess(Void result) {
-                                    // Image deleted
-                                }
+        GatewayQuery facilityEvents = GatewayQuery.collection(EntrantStore.EVENTS).whereEqualTo("facilityId", facilityId);
+        deliver(gateway.query(facilityEvents), "reading facility events", new FirebaseCallback<List<DocumentData>>() {
+            @Override
+            public void onSuccess(List<DocumentData> documents) {
+                for (DocumentData document : documents) {
+                    String eventId = document.getId();
+                    String imageId = document.getString("eventImageId");
 
-                                @Override
-                                public void onFailure(Exception e) {
-                                    // Handle failure
-                                }
-                            });
-                        }
+                    // Delete the event document and then its summary
+                    gateway.delete(document.getPath()).thenRun(() -> refreshSummary(eventId));
+
+                    // Delete the associated image if it exists
+                    if (imageId != null) {
+                        deleteImage(imageId, new FirebaseCallback<Void>() {
+                            @Override
+                            public void onSuccess(Void result) {
+                                // Image deleted
+                            }
+
+                            @Override
+                            public void onFailure(Exception e) {
+                                // Handle failure
+                            }
+                        });
                     }
+                }
 
-                    // Then, delete the facility itself
-                    db.collection("facilities").document(facilityId).delete()
-                            .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                            .addOnFailureListener(callback::onFailure);
-                })
-                .addOnFailureListener(callback::onFailure);
+                // Then, delete the facility itself
+                deleteFacility(facilityId, callback);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
     }
 
     /**
@@ -822,19 +1751,8 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void getAllUsers(FirebaseCallback<List<User>> callback) {
-        db.collection("users")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<User> users = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                        User user = document.toObject(User.class);
-                        if (user != null) {
-                            users.add(user);
-                        }
-                    }
-                    callback.onSuccess(users);
-                })
-                .addOnFailureListener(callback::onFailure);
+        readMapped(gateway.query(GatewayQuery.collection("users")),
+                documents -> toObjects(documents, ModelMappers::toUser), callback);
     }
 
     /**
@@ -847,35 +1765,41 @@ public class FirebaseService {
      */
     public void deleteUserAndRelatedFacilities(String userId, FirebaseCallback<Void> callback) {
         // Retrieve the user document
-        db.collection("users").document(userId).get()
-                .addOnSuccessListener(userSnapshot -> {
-                    if (userSnapshot.exists()) {
-                        String facilityId = userSnapshot.getString("facilityId");
-                        String profileImageId = userSnapshot.getString("profileImageId");
-
-                        // If the user has a facility ID, delete related facilities and events
-                        if (facilityId != null) {
-                            deleteFacilityAndRelatedEvents(facilityId, new FirebaseCallback<Void>() {
-                                @Override
-                                public void onSuccess(Void result) {
-                                    // After deleting facilities and events, delete the user and profile image
-                                    deleteUserAndProfileImage(userId, profileImageId, callback);
-                                }
+        deliver(gateway.get(userPath(userId)), "reading user", new FirebaseCallback<DocumentData>() {
+            @Override
+            public void onSuccess(DocumentData userDocument) {
+                if (userDocument.exists()) {
+                    String facilityId = userDocument.getString("facilityId");
+                    String profileImageId = userDocument.getString("profileImageId");
+
+                    // If the user has a facility ID, delete related facilities and events
+                    if (facilityId != null) {
+                        deleteFacilityAndRelatedEvents(facilityId, new FirebaseCallback<Void>() {
+                            @Override
+                            public void onSuccess(Void result) {
+                                // After deleting facilities and events, delete the user and profile image
+                                deleteUserAndProfileImage(userId, profileImageId, callback);
+                            }
 
-                                @Override
-                                public void onFailure(Exception e) {
-                                    callback.onFailure(e);
-                                }
-                            });
-                        } else {
-                            // If no facility, delete the user and profile image directly
-                            deleteUserAndProfileImage(userId, profileImageId, callback);
-                        }
+                            @Override
+                            public void onFailure(Exception e) {
+                                callback.onFailure(e);
+                            }
+                        });
                     } else {
-                        callback.onFailure(new Exception("User document does not exist"));
+                        // If no facility, delete the user and profile image directly
+                        deleteUserAndProfileImage(userId, profileImageId, callback);
                     }
-                })
-                .addOnFailureListener(callback::onFailure);
+                } else {
+                    callback.onFailure(new Exception("User document does not exist"));
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
     }
 
     /**
@@ -887,8 +1811,9 @@ public class FirebaseService {
      */
     private void deleteUserAndProfileImage(String userId, String profileImageId, FirebaseCallback<Void> callback) {
         // Delete the user document
-        db.collection("users").document(userId).delete()
-                .addOnSuccessListener(aVoid -> {
+        deliver(gateway.delete(userPath(userId)), "deleting user", new FirebaseCallback<Void>() {
+            @Override
+            public void onSuccess(Void deleted) {
                     if (profileImageId != null) {
                         // If the user has a profile image, delete it from the images collection
                         deleteImage(profileImageId, new FirebaseCallback<Void>() {
@@ -905,8 +1830,13 @@ public class FirebaseService {
                     } else {
                         callback.onSuccess(null); // User deleted, no profile image to delete
                     }
-                })
-                .addOnFailureListener(callback::onFailure);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
     }
 
 
@@ -917,11 +1847,9 @@ public class FirebaseService {
      * @param callback  A callback to handle the result of the operation.
      */
     public void createImage(Blob imageData, FirebaseCallback<String> callback) {
-        DocumentReference newImageRef = db.collection("images").document();
-        ImageData image = new ImageData(newImageRef.getId(), imageData);
-        newImageRef.set(image)
-                .addOnSuccessListener(aVoid -> callback.onSuccess(image.getId()))
-                .addOnFailureListener(callback::onFailure);
+        ImageData image = new ImageData(gateway.newId(), imageData);
+        deliver(gateway.set("images/" + image.getId(), ModelMappers.toData(image), false)
+                .thenApply(done -> image.getId()), "creating image", callback);
     }
 
     /**
@@ -931,16 +1859,7 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void getImageById(String imageId, FirebaseCallback<ImageData> callback) {
-        db.collection("images").document(imageId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        ImageData image = documentSnapshot.toObject(ImageData.class);
-                        callback.onSuccess(image);
-                    } else {
-                        callback.onSuccess(null);
-                    }
-                })
-                .addOnFailureListener(callback::onFailure);
+        readMapped(gateway.get("images/" + imageId), ModelMappers::toImageData, callback);
     }
 
     /**
@@ -950,9 +1869,7 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void deleteImage(String imageId, FirebaseCallback<Void> callback) {
-        db.collection("images").document(imageId).delete()
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        deliver(gateway.delete("images/" + imageId), "deleting image", callback);
     }
 
     /**
@@ -970,45 +1887,53 @@ public class FirebaseService {
         }
 
         // Getting the user's document from firestore
-        db.collection("users").document(userId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()){
-                        //Retrieve the profile image ID from the user's document
-                        String profileImageId = documentSnapshot.getString("profileImageId");
-
-                        if (profileImageId != null && !profileImageId.isEmpty()){
-                            // If the user has a profile image ID, delete it
-                            deleteImage(profileImageId, new FirebaseCallback<Void>() {
-                                @Override
-                                public void onSuccess(Void result) {
-                                    db.collection("users").document(userId)
-                                            .update("profileImageId", null)
-                                            .addOnSuccessListener(aVoid -> {
-                                                // Successfully updated the user's profileImageId field
-                                                callback.onSuccess(null);
-                                            })
-                                            .addOnFailureListener(e -> {
-                                                // Handle the failure to update the user's document
-                                                callback.onFailure(new Exception("Failed to update user profileImageId", e));
-                                            });
-                                }
-                                @Override
-                                public void onFailure(Exception e) {
-                                    // Handle failure to delete the image
-                                    callback.onFailure(new Exception("Failed to delete profile image", e));
-                                }
-                            });
-                        } else {
-                            // if no profile image exists, return success
-                            callback.onSuccess(null);
-                        }
+        deliver(gateway.get(userPath(userId)), "reading user", new FirebaseCallback<DocumentData>() {
+            @Override
+            public void onSuccess(DocumentData document) {
+                if (document.exists()){
+                    //Retrieve the profile image ID from the user's document
+                    String profileImageId = document.getString("profileImageId");
+
+                    if (profileImageId != null && !profileImageId.isEmpty()){
+                        // If the user has a profile image ID, delete it
+                        deleteImage(profileImageId, new FirebaseCallback<Void>() {
+                            @Override
+                            public void onSuccess(Void result) {
+                                deliver(clearField(userPath(userId), "profileImageId"), "clearing profile image", new FirebaseCallback<Void>() {
+                                    @Override
+                                    public void onSuccess(Void cleared) {
+                                        // Successfully updated the user's profileImageId field
+                                        callback.onSuccess(null);
+                                    }
+
+                                    @Override
+                                    public void onFailure(Exception e) {
+                                        // Handle the failure to update the user's document
+                                        callback.onFailure(new Exception("Failed to update user profileImageId", e));
+                                    }
+                                });
+                            }
+                            @Override
+                            public void onFailure(Exception e) {
+                                // Handle failure to delete the image
+                                callback.onFailure(new Exception("Failed to delete profile image", e));
+                            }
+                        });
                     } else {
-                        // Handle case where the user document doesn't exist
-                        callback.onFailure(new Exception("User not found"));
+                        // if no profile image exists, return success
+                        callback.onSuccess(null);
                     }
-                })
-                .addOnFailureListener( e -> callback.onFailure(new Exception("Failed to retrieve user document.", e)));
+                } else {
+                    // Handle case where the user document doesn't exist
+                    callback.onFailure(new Exception("User not found"));
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(new Exception("Failed to retrieve user document.", e));
+            }
+        });
     }
 
     /**
@@ -1027,45 +1952,53 @@ public class FirebaseService {
         }
 
         // Getting the event's document from firestore
-        db.collection("events").document(eventId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()){
-                        //Retrieve the event image ID from the event's document
-                        String eventImageId = documentSnapshot.getString("eventImageId");
-
-                        if (eventImageId != null && !eventImageId.isEmpty()){
-                            // If the event has a event image ID, delete it
-                            deleteImage(eventImageId, new FirebaseCallback<Void>() {
-                                @Override
-                                public void onSuccess(Void result) {
-                                    db.collection("events").document(eventId)
-                                            .update("eventImageId", null)
-                                            .addOnSuccessListener(aVoid -> {
-                                                // Successfully updated the events eventImageId field
-                                                callback.onSuccess(null);
-                                            })
-                                            .addOnFailureListener(e -> {
-                                                // Handle the failure to update the event's document
-                                                callback.onFailure(new Exception("Failed to update event eventImageId", e));
-                                            });
-                                }
-                                @Override
-                                public void onFailure(Exception e) {
-                                    // Handle failure to delete the image
-                                    callback.onFailure(new Exception("Failed to delete event image", e));
-                                }
-                            });
-                        } else {
-                            // if no event image exists, return success
-                            callback.onSuccess(null);
-                        }
+        deliver(gateway.get(EntrantStore.eventPath(eventId)), "reading event", new FirebaseCallback<DocumentData>() {
+            @Override
+            public void onSuccess(DocumentData document) {
+                if (document.exists()){
+                    //Retrieve the event image ID from the event's document
+                    String eventImageId = document.getString("eventImageId");
+
+                    if (eventImageId != null && !eventImageId.isEmpty()){
+                        // If the event has a event image ID, delete it
+                        deleteImage(eventImageId, new FirebaseCallback<Void>() {
+                            @Override
+                            public void onSuccess(Void result) {
+                                deliver(clearField(EntrantStore.eventPath(eventId), "eventImageId"), "clearing event image", new FirebaseCallback<Void>() {
+                                    @Override
+                                    public void onSuccess(Void cleared) {
+                                        // Successfully updated the events eventImageId field
+                                        deliver(refreshSummary(eventId), "updating event summary", callback);
+                                    }
+
+                                    @Override
+                                    public void onFailure(Exception e) {
+                                        // Handle the failure to update the event's document
+                                        callback.onFailure(new Exception("Failed to update event eventImageId", e));
+                                    }
+                                });
+                            }
+                            @Override
+                            public void onFailure(Exception e) {
+                                // Handle failure to delete the image
+                                callback.onFailure(new Exception("Failed to delete event image", e));
+                            }
+                        });
                     } else {
-                        // Handle case where the event document doesn't exist
-                        callback.onFailure(new Exception("Event not found"));
+                        // if no event image exists, return success
+                        callback.onSuccess(null);
                     }
-                })
-                .addOnFailureListener( e -> callback.onFailure(new Exception("Failed to retrieve event document.", e)));
+                } else {
+                    // Handle case where the event document doesn't exist
+                    callback.onFailure(new Exception("Event not found"));
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(new Exception("Failed to retrieve event document.", e));
+            }
+        });
     }
 
     /**
@@ -1084,51 +2017,70 @@ public class FirebaseService {
         }
 
         // Getting the event's document from firestore
-        db.collection("events").document(eventId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()){
-                        // Retrieve the event hashed data from the event's document if the field exists
-                        if (documentSnapshot.contains("qr_hash")) {
-
-                            String eventQR = documentSnapshot.getString("qr_hash");
-
-                            if (eventQR != null && !eventQR.isEmpty()){
-                                // If the event has hashed qr code data, delete it
-                                deleteImage(eventQR, new FirebaseCallback<Void>() {
-                                    @Override
-                                    public void onSuccess(Void result) {
-                                        db.collection("events").document(eventId)
-                                                .update("qr_hash", null)
-                                                .addOnSuccessListener(aVoid -> {
-                                                    // Successfully updated the events qr_hash field
-                                                    callback.onSuccess(null);
-                                                })
-                                                .addOnFailureListener(e -> {
-                                                    // Handle the failure to update the event's document
-                                                    callback.onFailure(new Exception("Failed to update event qr_hash", e));
-                                                });
-                                    }
-                                    @Override
-                                    public void onFailure(Exception e) {
-                                        // Handle failure to delete hashed QR code data
-                                        callback.onFailure(new Exception("Failed to delete event hashed QR code data", e));
-                                    }
-                                });
-                            } else {
-                                // if no hashed QR code data exists, return success
-                                callback.onSuccess(null);
-                            }
+        deliver(gateway.get(EntrantStore.eventPath(eventId)), "reading event", new FirebaseCallback<DocumentData>() {
+            @Override
+            public void onSuccess(DocumentData document) {
+                if (document.exists()){
+                    // Retrieve the event hashed data from the event's document if the field exists
+                    if (document.contains("qr_hash")) {
+
+                        String eventQR = document.getString("qr_hash");
+
+                        if (eventQR != null && !eventQR.isEmpty()){
+                            // If the event has hashed qr code data, delete it
+                            deleteImage(eventQR, new FirebaseCallback<Void>() {
+                                @Override
+                                public void onSuccess(Void result) {
+                                    deliver(clearField(EntrantStore.eventPath(eventId), "qr_hash"), "clearing event QR code", new FirebaseCallback<Void>() {
+                                        @Override
+                                        public void onSuccess(Void cleared) {
+                                            // Successfully updated the events qr_hash field
+                                            callback.onSuccess(null);
+                                        }
+
+                                        @Override
+                                        public void onFailure(Exception e) {
+                                            // Handle the failure to update the event's document
+                                            callback.onFailure(new Exception("Failed to update event qr_hash", e));
+                                        }
+                                    });
+                                }
+                                @Override
+                                public void onFailure(Exception e) {
+                                    // Handle failure to delete hashed QR code data
+                                    callback.onFailure(new Exception("Failed to delete event hashed QR code data", e));
+                                }
+                            });
                         } else {
-                            // Handle case where the event document has not created a qr code yet (no field qr_hash)
+                            // if no hashed QR code data exists, return success
                             callback.onSuccess(null);
                         }
                     } else {
-                        // Handle case where the event document doesn't exist
-                        callback.onFailure(new Exception("Event not found"));
+                        // Handle case where the event document has not created a qr code yet (no field qr_hash)
+                        callback.onSuccess(null);
                     }
-                })
-                .addOnFailureListener( e -> callback.onFailure(new Exception("Failed to retrieve event document.", e)));
+                } else {
+                    // Handle case where the event document doesn't exist
+                    callback.onFailure(new Exception("Event not found"));
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(new Exception("Failed to retrieve event document.", e));
+            }
+        });
+    }
+
+    /**
+     * Sets a field of a document to null.
+     *
+     * @param path  The document path.
+     * @param field The field to clear.
+     * @return A future completing once the field is cleared.
+     */
+    private CompletableFuture<Void> clearField(String path, String field) {
+        return gateway.update(path, Collections.<String, Object>singletonMap(field, null));
     }
 
     /**
@@ -1140,31 +2092,8 @@ public class FirebaseService {
      * @param callback Callback for success or failure.
      */
     public void addUserToWaitlist(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        DocumentReference userRef = db.collection("users").document(userId);
-
-        db.runTransaction(transaction -> {
-            // Retrieve the event and user documents
-            DocumentSnapshot eventSnapshot = transaction.get(eventRef);
-            DocumentSnapshot userSnapshot = transaction.get(userRef);
-
-            // Proceed only if both documents exist
-            if (eventSnapshot.exists() && userSnapshot.exists()) {
-                // Add user to event's waiting list
-                transaction.update(eventRef, "waitingList", FieldValue.arrayUnion(userId));
-
-                // Add event to user's eventsWaitlisted
-                transaction.update(userRef, "eventsWaitlisted", FieldValue.arrayUnion(eventId));
-            }
-            // If either document doesn't exist, do nothing
-            return null;
-        }).addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "User successfully added to waitlist");
-            callback.onSuccess(null);
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error adding user to waitlist", e);
-            callback.onFailure(e);
-        });
+        moveEntrant(eventId, userId, Arrays.asList(null, EventRole.CANCELLED), EventRole.WAITLISTED,
+                "adding user to waitlist", callback);
     }
 
     /**
@@ -1176,31 +2105,8 @@ public class FirebaseService {
      * @param callback Callback for success or failure.
      */
     public void removeUserFromWaitlist(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        DocumentReference userRef = db.collection("users").document(userId);
-
-        db.runTransaction(transaction -> {
-            // Retrieve the event and user documents
-            DocumentSnapshot eventSnapshot = transaction.get(eventRef);
-            DocumentSnapshot userSnapshot = transaction.get(userRef);
-
-            // Proceed only if both documents exist
-            if (eventSnapshot.exists() && userSnapshot.exists()) {
-                // Remove user from event's waiting list
-                transaction.update(eventRef, "waitingList", FieldValue.arrayRemove(userId));
-
-                // Remove event from user's eventsWaitlisted
-                transaction.update(userRef, "eventsWaitlisted", FieldValue.arrayRemove(eventId));
-            }
-            // If either document doesn't exist, do nothing
-            return null;
-        }).addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "User successfully removed from waitlist");
-            callback.onSuccess(null);
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error removing user from waitlist", e);
-            callback.onFailure(e);
-        });
+        moveEntrant(eventId, userId, Collections.singletonList(EventRole.WAITLISTED), null,
+                "removing user from waitlist", callback);
     }
 
     /**
@@ -1212,33 +2118,8 @@ public class FirebaseService {
      * @param callback Callback for success or failure.
      */
     public void moveUserFromWaitlistToParticipants(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        DocumentReference userRef = db.collection("users").document(userId);
-
-        db.runTransaction(transaction -> {
-            // Retrieve the event and user documents
-            DocumentSnapshot eventSnapshot = transaction.get(eventRef);
-            DocumentSnapshot userSnapshot = transaction.get(userRef);
-
-            // Proceed only if both documents exist
-            if (eventSnapshot.exists() && userSnapshot.exists()) {
-                // Move user from waitingList to participants
-                transaction.update(eventRef, "waitingList", FieldValue.arrayRemove(userId));
-                transaction.update(eventRef, "participants", FieldValue.arrayUnion(userId));
-
-                // Update user's lists
-                transaction.update(userRef, "eventsWaitlisted", FieldValue.arrayRemove(eventId));
-                transaction.update(userRef, "eventsParticipating", FieldValue.arrayUnion(eventId));
-            }
-            // If either document doesn't exist, do nothing
-            return null;
-        }).addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "User successfully moved from waitlist to participants");
-            callback.onSuccess(null);
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error moving user from waitlist to participants", e);
-            callback.onFailure(e);
-        });
+        moveEntrant(eventId, userId, Collections.singletonList(EventRole.WAITLISTED), EventRole.PARTICIPANT,
+                "moving user from waitlist to participants", callback);
     }
 
     /**
@@ -1250,40 +2131,8 @@ public class FirebaseService {
      * @param callback Callback for success or failure.
      */
     public void cancelUserParticipation(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        DocumentReference userRef = db.collection("users").document(userId);
-
-        db.runTransaction(transaction -> {
-            // Retrieve the event and user documents
-            DocumentSnapshot eventSnapshot = transaction.get(eventRef);
-            DocumentSnapshot userSnapshot = transaction.get(userRef);
-
-            // Proceed only if both documents exist
-            if (eventSnapshot.exists() && userSnapshot.exists()) {
-                // Remove user from all possible lists
-                transaction.update(eventRef, "participants", FieldValue.arrayRemove(userId));
-                transaction.update(eventRef, "selectedParticipants", FieldValue.arrayRemove(userId));
-                transaction.update(eventRef, "waitingList", FieldValue.arrayRemove(userId));
-
-                // Add user to cancelledList in Event
-                transaction.update(eventRef, "cancelledList", FieldValue.arrayUnion(userId));
-
-                // Add event to user's eventsCancelled
-                transaction.update(userRef, "eventsCancelled", FieldValue.arrayUnion(eventId));
-
-                // Remove event from user's other lists
-                transaction.update(userRef, "eventsParticipating", FieldValue.arrayRemove(eventId));
-                transaction.update(userRef, "eventsWaitlisted", FieldValue.arrayRemove(eventId));
-            }
-            // If either document doesn't exist, do nothing
-            return null;
-        }).addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "User successfully cancelled participation");
-            callback.onSuccess(null);
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error cancelling user participation", e);
-            callback.onFailure(e);
-        });
+        moveEntrant(eventId, userId, Arrays.asList(EventRole.WAITLISTED, EventRole.SELECTED, EventRole.PARTICIPANT), EventRole.CANCELLED,
+                "cancelling user participation", callback);
     }
 
     /**
@@ -1295,30 +2144,8 @@ public class FirebaseService {
      * @param callback Callback for success or failure.
      */
     public void acceptEventInvitation(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        DocumentReference userRef = db.collection("users").document(userId);
-
-        db.runTransaction(transaction -> {
-            DocumentSnapshot eventSnapshot = transaction.get(eventRef);
-            DocumentSnapshot userSnapshot = transaction.get(userRef);
-
-            if (eventSnapshot.exists() && userSnapshot.exists()) {
-                // Move user from selectedParticipants to participants
-                transaction.update(eventRef, "selectedParticipants", FieldValue.arrayRemove(userId));
-                transaction.update(eventRef, "participants", FieldValue.arrayUnion(userId));
-
-                // Update user's lists
-                transaction.update(userRef, "eventsWaitlisted", FieldValue.arrayRemove(eventId));
-                transaction.update(userRef, "eventsParticipating", FieldValue.arrayUnion(eventId));
-            }
-            return null;
-        }).addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "User successfully accepted event invitation");
-            callback.onSuccess(null);
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error accepting event invitation", e);
-            callback.onFailure(e);
-        });
+        moveEntrant(eventId, userId, Collections.singletonList(EventRole.SELECTED), EventRole.PARTICIPANT,
+                "accepting event invitation", callback);
     }
 
 
@@ -1331,75 +2158,160 @@ public class FirebaseService {
      * @param callback Callback for success or failure.
      */
     public void declineEventInvitation(String eventId, String userId, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-        DocumentReference userRef = db.collection("users").document(userId);
-
-        db.runTransaction(transaction -> {
-            // Retrieve the event and user documents
-            DocumentSnapshot eventSnapshot = transaction.get(eventRef);
-            DocumentSnapshot userSnapshot = transaction.get(userRef);
-
-            // Proceed only if both documents exist
-            if (eventSnapshot.exists() && userSnapshot.exists()) {
-                // Remove user from selectedParticipants and add to cancelledList
-                transaction.update(eventRef, "selectedParticipants", FieldValue.arrayRemove(userId));
-                transaction.update(eventRef, "cancelledList", FieldValue.arrayUnion(userId));
-
-                // Update user's lists
-                transaction.update(userRef, "eventsWaitlisted", FieldValue.arrayRemove(eventId));
-                transaction.update(userRef, "eventsCancelled", FieldValue.arrayUnion(eventId));
-            }
-            // If either document doesn't exist, do nothing
-            return null;
-        }).addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "User successfully declined event invitation");
-            callback.onSuccess(null);
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error declining event invitation", e);
-            callback.onFailure(e);
-        });
+        moveEntrant(eventId, userId, Collections.singletonList(EventRole.SELECTED), EventRole.CANCELLED,
+                "declining event invitation", callback);
     }
-    public void moveUsersToSelectedParticipants(String eventId, List<String> selectedUsers, FirebaseCallback<Void> callback) {
-        DocumentReference eventRef = db.collection("events").document(eventId);
-
-        db.runTransaction(transaction -> {
-            DocumentSnapshot snapshot = transaction.get(eventRef);
 
-            if (!snapshot.exists()) {
-                throw new FirebaseServiceException("Event not found.");
-            }
+    /**
+     * Answers a user's invitation to an event in one transaction: the user moves to
+     * participants or cancelled, their invitation notifications are marked accepted or
+     * declined, and a notification for the organizer is created. The organizer is read
+     * from a short-lived cache while the transaction runs, so an answer costs about one
+     * round-trip instead of a chain of reads and writes.
+     *
+     * @param event    The event, as already loaded by the caller.
+     * @param userId   The ID of the invited user.
+     * @param accept   Whether the user accepts the invitation.
+     * @param callback Callback receiving the organizer, to notify on their device; null if
+     *                 the organizer no longer exists.
+     */
+    public void respondToInvitation(Event event, String userId, boolean accept, FirebaseCallback<User> callback) {
+        respondToInvitation(event.getId(), event.getOrganizerId(), userId, accept, callback);
+    }
 
-            Event event = snapshot.toObject(Event.class);
+    /**
+     * Answers a user's invitation to an event listed by its summary. See
+     * respondToInvitation(Event, String, boolean, FirebaseCallback).
+     *
+     * @param event    The summary of the event.
+     * @param userId   The ID of the invited user.
+     * @param accept   Whether the user accepts the invitation.
+     * @param callback Callback receiving the organizer, to notify on their device; null if
+     *                 the organizer no longer exists.
+     */
+    public void respondToInvitation(EventSummary event, String userId, boolean accept, FirebaseCallback<User> callback) {
+        respondToInvitation(event.getId(), event.getOrganizerId(), userId, accept, callback);
+    }
 
-            if (event == null) {
-                throw new FirebaseServiceException("Failed to parse event data.");
-            }
+    private void respondToInvitation(String eventId, String organizerId, String userId, boolean accept,
+                                     FirebaseCallback<User> callback) {
+        Map<String, Object> invitationUpdate = new HashMap<>();
+        invitationUpdate.put("status", (accept ? NotificationStatus.ACCEPTED : NotificationStatus.DECLINED).name());
+        invitationUpdate.put("updatedAt", FieldOp.serverTimestamp());
+        InvitationResponse response = new InvitationResponse(eventId, userId, accept)
+                .resolving(notificationPath(notificationId(eventId, userId, NotificationType.SELECTED_TO_PARTICIPATE)),
+                        invitationUpdate);
+        if (organizerId != null) {
+            Map<String, Object> notice = new HashMap<>();
+            notice.put("eventId", eventId);
+            notice.put("userId", organizerId);
+            notice.put("type", NotificationType.ORGANIZER.name());
+            notice.put("status", NotificationStatus.PENDING.name());
+            notice.put("createdAt", FieldOp.serverTimestamp());
+            notice.put("updatedAt", FieldOp.serverTimestamp());
+            // The ID is chosen once, so a retried answer rewrites the same notification
+            response.notifying(notificationPath(gateway.newId()), notice);
+        }
 
-            List<String> selectedParticipants = event.getSelectedParticipants() != null ? new ArrayList<>(event.getSelectedParticipants()) : new ArrayList<>();
-            List<String> waitlist = event.getWaitingList() != null ? new ArrayList<>(event.getWaitingList()) : new ArrayList<>();
+        // Invitations sent before they had fixed IDs are found by query and resolved in
+        // the same transaction, which reads each of them again
+        GatewayQuery legacyInvitations = GatewayQuery.collection(NOTIFICATIONS)
+                .whereEqualTo("eventId", eventId)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("type", NotificationType.SELECTED_TO_PARTICIPATE.name());
+        String requestId = UUID.randomUUID().toString();
+        CompletableFuture<Boolean> answered = retried(() -> gateway.query(legacyInvitations))
+                .thenCompose(invitations -> {
+                    for (DocumentData invitation : invitations) {
+                        response.resolving(invitation.getPath(), invitationUpdate);
+                    }
+                    return retried(() -> entrantStore.respond(response, requestId));
+                })
+                .thenApply(applied -> {
+                    if (!applied) {
+                        throw new FirebaseServiceException("This invitation is no longer open.");
+                    }
+                    return true;
+                });
+        CompletableFuture<User> organizer = organizerId != null
+                ? getCachedOrganizer(organizerId)
+                : CompletableFuture.completedFuture(null);
+        // The organizer read only serves the push, so its failure does not fail the answer
+        CompletableFuture<User> outcome = refreshingCounts(eventId, answered).thenCombine(
+                organizer.exceptionally(error -> null), (applied, user) -> user);
+        deliver(outcome, accept ? "accepting event invitation" : "declining event invitation", callback);
+    }
 
-            // Add selected users to selectedParticipants and remove from waitlist
-            for (String userId : selectedUsers) {
-                if (waitlist.contains(userId)) {
-                    selectedParticipants.add(userId);
-                    waitlist.remove(userId);
+    /**
+     * Reads an organizer, reusing a copy read in the last few minutes.
+     *
+     * @param organizerId The ID of the organizer.
+     * @return A future with the organizer, or null if they do not exist.
+     */
+    private CompletableFuture<User> getCachedOrganizer(String organizerId) {
+        synchronized (cachedOrganizers) {
+            UserSnapshot snapshot = cachedOrganizers.get(organizerId);
+            if (snapshot != null && System.currentTimeMillis() - snapshot.readAt < ORGANIZER_TTL_MILLIS) {
+                return CompletableFuture.completedFuture(snapshot.user);
+            }
+        }
+        CompletableFuture<User> future = new CompletableFuture<>();
+        getUserById(organizerId, new FirebaseCallback<User>() {
+            @Override
+            public void onSuccess(User user) {
+                if (user != null) {
+                    synchronized (cachedOrganizers) {
+                        cachedOrganizers.put(organizerId, new UserSnapshot(user, System.currentTimeMillis()));
+                    }
                 }
+                future.complete(user);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(e);
             }
+        });
+        return future;
+    }
 
-            // Update Firestore document
-            transaction.update(eventRef, "selectedParticipants", selectedParticipants);
-            transaction.update(eventRef, "waitingList", waitlist);
+    /**
+     * Moves the given waitlisted users to selected participants. Users are processed in
+     * chunks, each in its own transaction, so draws larger than the transaction write
+     * limit still go through. Users no longer on the waitlist are skipped.
+     *
+     * @param eventId       The ID of the event.
+     * @param selectedUsers The IDs of the users drawn.
+     * @param callback      Callback for success or failure.
+     */
+    public void moveUsersToSelectedParticipants(String eventId, List<String> selectedUsers, FirebaseCallback<Void> callback) {
+        selectWaitlistedUsers(eventId, selectedUsers, new FirebaseCallback<List<String>>() {
+            @Override
+            public void onSuccess(List<String> moved) {
+                callback.onSuccess(null);
+            }
 
-            return null;
-        }).addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "Successfully moved users to selectedParticipants.");
-            callback.onSuccess(null);
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error moving users to selectedParticipants.", e);
-            callback.onFailure(e);
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
         });
     }
 
+    /**
+     * Moves the given waitlisted users to selected participants and reports which users
+     * were actually moved. Users are processed in chunks, each in its own transaction;
+     * users no longer on the waitlist when their chunk commits are left out of the result.
+     *
+     * @param eventId       The ID of the event.
+     * @param selectedUsers The IDs of the users drawn.
+     * @param callback      Callback receiving the IDs of the users moved, in draw order.
+     */
+    public void selectWaitlistedUsers(String eventId, List<String> selectedUsers, FirebaseCallback<List<String>> callback) {
+        deliver(refreshingCounts(eventId, entrantStore.selectWaitlisted(eventId, selectedUsers)),
+                "moving users to selectedParticipants", callback);
+    }
+
 
     /* --------------- Notifications ---------------- */
 
@@ -1412,18 +2324,9 @@ public class FirebaseService {
      * @param callback     A callback to handle the result of the operation.
      */
     public void createNotification(Notification notification, FirebaseCallback<String> callback) {
-        DocumentReference newNotificationRef = db.collection("notifications").document();
-        notification.setId(newNotificationRef.getId());
-        db.collection("notifications").document(notification.getId())
-                .set(notification)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Notification created successfully");
-                    callback.onSuccess(notification.getId());
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to create notification", e);
-                    callback.onFailure(e);
-                });
+        notification.setId(gateway.newId());
+        deliver(gateway.set(notificationPath(notification.getId()), ModelMappers.toData(notification), false)
+                .thenApply(done -> notification.getId()), "creating notification", callback);
     }
 
     /**
@@ -1433,19 +2336,7 @@ public class FirebaseService {
      * @param callback       A callback to handle the result of the operation.
      */
     public void getNotificationById(String notificationId, FirebaseCallback<Notification> callback) {
-        db.collection("notifications").document(notificationId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Notification notification = documentSnapshot.toObject(Notification.class);
-                        callback.onSuccess(notification);
-                    } else {
-                        callback.onSuccess(null);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to retrieve notification", e);
-                    callback.onFailure(e);
-                });
+        readMapped(gateway.get(notificationPath(notificationId)), ModelMappers::toNotification, callback);
     }
 
     /**
@@ -1455,23 +2346,8 @@ public class FirebaseService {
      * @param callback A callback to handle the result of the operation.
      */
     public void getNotificationsForUser(String userId, FirebaseCallback<List<Notification>> callback) {
-        db.collection("notifications")
-                .whereEqualTo("userId", userId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Notification> notifications = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                        Notification notification = document.toObject(Notification.class);
-                        if (notification != null) {
-                            notifications.add(notification);
-                        }
-                    }
-                    callback.onSuccess(notifications);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to retrieve notifications for user", e);
-                    callback.onFailure(e);
-                });
+        readMapped(gateway.query(GatewayQuery.collection(NOTIFICATIONS).whereEqualTo("userId", userId)),
+                documents -> toObjects(documents, ModelMappers::toNotification), callback);
     }
 
     /**
@@ -1481,16 +2357,8 @@ public class FirebaseService {
      * @param callback     A callback to handle the result of the operation.
      */
     public void updateNotification(Notification notification, FirebaseCallback<Void> callback) {
-        db.collection("notifications").document(notification.getId())
-                .set(notification)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Notification updated successfully");
-                    callback.onSuccess(null);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to update notification", e);
-                    callback.onFailure(e);
-                });
+        deliver(gateway.set(notificationPath(notification.getId()), ModelMappers.toData(notification), false),
+                "updating notification", callback);
     }
 
     /**
@@ -1500,16 +2368,7 @@ public class FirebaseService {
      * @param callback       A callback to handle the result of the operation.
      */
     public void deleteNotification(String notificationId, FirebaseCallback<Void> callback) {
-        db.collection("notifications").document(notificationId)
-                .delete()
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Notification deleted successfully");
-                    callback.onSuccess(null);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to delete notification", e);
-                    callback.onFailure(e);
-                });
+        deliver(gateway.delete(notificationPath(notificationId)), "deleting notification", callback);
     }
 
     /**
@@ -1521,56 +2380,113 @@ public class FirebaseService {
      * @param callback         A callback to handle the result of the operation.
      */
     public void createDrawNotifications(String eventId, List<String> selectedUserIds, List<String> unselectedUserIds, FirebaseCallback<Void> callback) {
-        // Create a list to hold all notification creation tasks
-        List<Notification> notifications = new ArrayList<>();
+        createDrawNotifications(eventId, selectedUserIds, unselectedUserIds, null, callback);
+    }
+
+    /**
+     * Creates notifications for selected and unselected users after drawing participants.
+     * Notifications are written in batches of up to 500, a few batches at a time, so draws
+     * of any size can be recorded. Each notification has a fixed ID built from the event,
+     * user and type, so retrying a failed draw never notifies a user twice.
+     *
+     * @param eventId           The ID of the event.
+     * @param selectedUserIds   List of user IDs who were selected.
+     * @param unselectedUserIds List of user IDs who were not selected.
+     * @param progressListener  Receives progress as batches commit, may be null.
+     * @param callback          A callback to handle the result of the operation.
+     */
+    public void createDrawNotifications(String eventId, List<String> selectedUserIds, List<String> unselectedUserIds,
+                                        BatchWriter.ProgressListener progressListener, FirebaseCallback<Void> callback) {
+        BatchWriter writer = new BatchWriter(gateway);
 
         // Create notifications for selected users
         for (String userId : selectedUserIds) {
             Notification notification = new Notification(eventId, userId, NotificationType.SELECTED_TO_PARTICIPATE);
-            notifications.add(notification);
+            notification.setId(notificationId(eventId, userId, NotificationType.SELECTED_TO_PARTICIPATE));
+            writer.set(notificationPath(notification.getId()), ModelMappers.toData(notification));
         }
 
         // Create notifications for unselected users
         for (String userId : unselectedUserIds) {
             Notification notification = new Notification(eventId, userId, NotificationType.NOT_SELECTED);
-            notifications.add(notification);
+            notification.setId(notificationId(eventId, userId, NotificationType.NOT_SELECTED));
+            writer.set(notificationPath(notification.getId()), ModelMappers.toData(notification));
         }
 
-        // Batch write to Firestore
-        WriteBatch batch = db.batch();
-        CollectionReference notificationsRef = db.collection("notifications");
+        writer.commit(progressListener, new FirebaseCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                Log.d(TAG, "All notifications created successfully.");
+                callback.onSuccess(null);
+            }
 
-        for (Notification notification : notifications) {
-            DocumentReference docRef = notificationsRef.document();
-            notification.setId(docRef.getId());
-            batch.set(docRef, notification);
-        }
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Failed to create notifications.", e);
+                callback.onFailure(e);
+            }
+        });
+    }
 
-        // Commit the batch
-        batch.commit()
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "All notifications created successfully.");
-                    callback.onSuccess(null);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to create notifications.", e);
-                    callback.onFailure(e);
-                });
+    /**
+     * Returns the fixed document ID of the notification a user receives about an event.
+     * A user has at most one notification of each type per event.
+     *
+     * @param eventId The ID of the event.
+     * @param userId  The ID of the user.
+     * @param type    The type of notification.
+     * @return The notification document ID.
+     */
+    public static String notificationId(String eventId, String userId, NotificationType type) {
+        return eventId + "_" + userId + "_" + type.name();
+    }
+
+    /**
+     * Returns the path of a notification document.
+     *
+     * @param notificationId The ID of the notification.
+     * @return The document path.
+     */
+    private static String notificationPath(String notificationId) {
+        return NOTIFICATIONS + "/" + notificationId;
     }
 
     /**
-     * Removes the user's location entry entirely from the event's location field in Firestore.
+     * Removes the user's recorded location from their entry in the event, if they have one.
      *
      * @param eventId Unique ID of the event.
      * @param userId  Unique ID of the user.
      * @param callback Callback to handle success or failure.
      */
     public void removeUserFromEventLocation(String eventId, String userId, FirebaseCallback<Void> callback) {
-        db.collection("events")
-                .document(eventId)
-                .update("location." + userId, FieldValue.delete()) // Delete the user's location entry
-                .addOnSuccessListener(unused -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        String entryPath = EntrantStore.entryPath(eventId, userId);
+        deliver(gateway.<Void>runTransaction(transaction -> {
+            // The entry may already be gone if the user has left the event
+            if (transaction.get(entryPath).exists()) {
+                Map<String, Object> removals = new HashMap<>();
+                removals.put("latitude", FieldOp.delete());
+                removals.put("longitude", FieldOp.delete());
+                transaction.update(entryPath, removals);
+            }
+            return null;
+        }), "removing entrant location", callback);
+    }
+
+    /**
+     * Records where a user joined an event from on their entry.
+     *
+     * @param eventId   Unique ID of the event.
+     * @param userId    Unique ID of the user.
+     * @param latitude  The user's latitude.
+     * @param longitude The user's longitude.
+     * @param callback  Callback to handle success or failure.
+     */
+    public void updateEntrantLocation(String eventId, String userId, double latitude, double longitude, FirebaseCallback<Void> callback) {
+        Map<String, Object> location = new HashMap<>();
+        location.put("eventId", eventId);
+        location.put("latitude", latitude);
+        location.put("longitude", longitude);
+        deliver(gateway.set(EntrantStore.entryPath(eventId, userId), location, true), "updating entrant location", callback);
     }
 
 
@@ -1582,16 +2498,8 @@ public class FirebaseService {
      * @param callback              A callback to handle the result of the operation.
      */
     public void updateUserReceiveNotifications(String userId, boolean receiveNotifications, FirebaseCallback<Void> callback) {
-        db.collection("users").document(userId)
-                .update("receiveNotifications", receiveNotifications)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "User receiveNotifications updated successfully");
-                    callback.onSuccess(null);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to update user receiveNotifications", e);
-                    callback.onFailure(e);
-                });
+        deliver(gateway.update(userPath(userId), Collections.<String, Object>singletonMap("receiveNotifications", receiveNotifications)),
+                "updating user receiveNotifications", callback);
     }
 
     /**
@@ -1602,16 +2510,8 @@ public class FirebaseService {
      * @param callback A callback to handle success or failure.
      */
     public void setUserFCMToken(String userId, String token, FirebaseCallback<Void> callback) {
-        db.collection("users").document(userId)
-                .update("fcmToken", token)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "User FCM token updated successfully");
-                    callback.onSuccess(null);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to update user FCM token", e);
-                    callback.onFailure(e);
-                });
+        deliver(gateway.update(userPath(userId), Collections.<String, Object>singletonMap("fcmToken", token)),
+                "updating user FCM token", callback);
     }
 
     /**
@@ -1621,16 +2521,33 @@ public class FirebaseService {
      * @param callback A callback to handle success or failure.
      */
     public void removeUserFCMToken(String userId, FirebaseCallback<Void> callback) {
-        db.collection("users").document(userId)
-                .update("fcmToken", FieldValue.delete())
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "User FCM token removed successfully");
-                    callback.onSuccess(null);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to remove user FCM token", e);
-                    callback.onFailure(e);
-                });
+        deliver(gateway.update(userPath(userId), Collections.<String, Object>singletonMap("fcmToken", FieldOp.delete())),
+                "removing user FCM token", callback);
+    }
+
+    /**
+     * A user as read at a point in time.
+     */
+    private static final class UserSnapshot {
+        final User user;
+        final long readAt;
+
+        UserSnapshot(User user, long readAt) {
+            this.user = user;
+            this.readAt = readAt;
+        }
     }
 
-}
\ No newline at end of file
+    /**
+     * Event counters as read at a point in time.
+     */
+    private static final class CounterSnapshot {
+        final EventCounters counters;
+        final long readAt;
+
+        CounterSnapshot(EventCounters counters, long readAt) {
+            this.counters = counters;
+            this.readAt = readAt;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.orange.data.firebase;
+
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.FieldOp;
+import com.example.orange.data.gateway.GatewayBatch;
+import com.example.orange.data.gateway.GatewayException;
+import com.example.orange.data.gateway.GatewayQuery;
+import com.example.orange.data.gateway.GatewayTransaction;
+import com.example.orange.data.gateway.RetryPolicy;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * FirestoreGateway is the DataGateway used in the app. It translates gateway
+ * paths, queries and FieldOp values to their Firestore equivalents.
+ */
+public class FirestoreGateway implements DataGateway {
+    private final FirebaseFirestore db;
+
+    /**
+     * Constructor
+     *
+     * @param db The Firestore instance to use.
+     */
+    public FirestoreGateway(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    @Override
+    public CompletableFuture<DocumentData> get(String path) {
+        CompletableFuture<DocumentData> future = new CompletableFuture<>();
+        db.document(path).get()
+                .addOnSuccessListener(snapshot -> future.complete(toDocument(snapshot)))
+                .addOnFailureListener(future::completeExceptionally);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<List<DocumentData>> query(GatewayQuery query) {
+        CompletableFuture<List<DocumentData>> future = new CompletableFuture<>();
+        toQuery(query).get()
+                .addOnSuccessListener(snapshots -> future.complete(toDocuments(snapshots.getDocuments())))
+                .addOnFailureListener(future::completeExceptionally);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> set(String path, Map<String, Object> data, boolean merge) {
+        if (merge) {
+            return toFuture(db.document(path).set(toFirestore(data), SetOptions.merge()));
+        }
+        return toFuture(db.document(path).set(toFirestore(data)));
+    }
+
+    @Override
+    public CompletableFuture<Void> update(String path, Map<String, Object> data) {
+        return toFuture(db.document(path).update(toFirestore(data)));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String path) {
+        return toFuture(db.document(path).delete());
+    }
+
+    @Override
+    public <T> CompletableFuture<T> runTransaction(TransactionFunction<T> function) {
+        return toFuture(db.runTransaction(transaction -> function.apply(new FirestoreTransaction(transaction))));
+    }
+
+    @Override
+    public GatewayBatch batch() {
+        return new FirestoreBatch(db.batch());
+    }
+
+    @Override
+    public Registration listen(GatewayQuery query, QueryListener listener) {
+        ListenerRegistration registration = toQuery(query).addSnapshotListener((snapshots, error) -> {
+            if (error != null) {
+                listener.onEvent(null, error);
+            } else if (snapshots != null) {
+                listener.onEvent(toDocuments(snapshots.getDocuments()), null);
+            }
+        });
+        return registration::remove;
+    }
+
+    @Override
+    public String newId() {
+        return db.collection("ids").document().getId();
+    }
+
+    /**
+     * Whether a failure from this gateway is worth retrying: a retryable GatewayException,
+     * or a Firestore failure caused by the network, a timeout, contention or throttling.
+     *
+     * @param error The failure, possibly wrapped.
+     * @return true if running the operation again may succeed.
+     */
+    public static boolean isTransient(Throwable error) {
+        if (RetryPolicy.isRetryableGatewayFailure(error)) {
+            return true;
+        }
+        Throwable cause = RetryPolicy.unwrap(error);
+        if (cause instanceof GatewayException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (!(cause instanceof FirebaseFirestoreException)) {
+            return false;
+        }
+        switch (((FirebaseFirestoreException) cause).getCode()) {
+            case UNAVAILABLE:
+            case DEADLINE_EXCEEDED:
+            case ABORTED:
+            case RESOURCE_EXHAUSTED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Builds the Firestore query for a gateway query.
+     *
+     * @param query The gateway query.
+     * @return The Firestore query.
+     */
+    private Query toQuery(GatewayQuery query) {
+        Query firestoreQuery = query.isCollectionGroup()
+                ? db.collectionGroup(query.getCollection())
+                : db.collection(query.getCollection());
+        for (GatewayQuery.Filter filter : query.getFilters()) {
+            boolean documentId = GatewayQuery.DOCUMENT_ID.equals(filter.getField());
+            switch (filter.getOperator()) {
+                case EQUAL:
+                    firestoreQuery = documentId
+                            ? firestoreQuery.whereEqualTo(FieldPath.documentId(), filter.getValue())
+                            : firestoreQuery.whereEqualTo(filter.getField(), filter.getValue());
+                    break;
+                case IN:
+                    List<Object> values = new ArrayList<>((List<?>) filter.getValue());
+                    firestoreQuery = documentId
+                            ? firestoreQuery.whereIn(FieldPath.documentId(), values)
+                            : firestoreQuery.whereIn(filter.getField(), values);
+                    break;
+                case ARRAY_CONTAINS:
+                    firestoreQuery = firestoreQuery.whereArrayContains(filter.getField(), filter.getValue());
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    firestoreQuery = firestoreQuery.whereLessThanOrEqualTo(filter.getField(), filter.getValue());
+                    break;
+            }
+        }
+        if (query.getOrderBy() != null) {
+            Query.Direction direction = query.isDescending() ? Query.Direction.DESCENDING : Query.Direction.ASCENDING;
+            firestoreQuery = GatewayQuery.DOCUMENT_ID.equals(query.getOrderBy())
+                    ? firestoreQuery.orderBy(FieldPath.documentId(), direction)
+                    : firestoreQuery.orderBy(query.getOrderBy(), direction);
+            if (query.getStartAfter() != null) {
+                firestoreQuery = firestoreQuery.startAfter(query.getStartAfter());
+            }
+        }
+        if (query.getLimit() > 0) {
+            firestoreQuery = firestoreQuery.limit(query.getLimit());
+        }
+        return firestoreQuery;
+    }
+
+    /**
+     * Converts gateway data to Firestore data, replacing FieldOp values with FieldValue.
+     *
+     * @param data The gateway data.
+     * @return The Firestore data.
+     */
+    static Map<String, Object> toFirestore(Map<String, Object> data) {
+        Map<String, Object> converted = new HashMap<>();
+        for (Map.Entry<String, Object> field : data.entrySet()) {
+            converted.put(field.getKey(), toFirestoreValue(field.getValue()));
+        }
+        return converted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object toFirestoreValue(Object value) {
+        if (value instanceof Map) {
+            return toFirestore((Map<String, Object>) value);
+        }
+        if (!(value instanceof FieldOp)) {
+            return value;
+        }
+        FieldOp op = (FieldOp) value;
+        switch (op.getKind()) {
+            case DELETE:
+                return FieldValue.delete();
+            case SERVER_TIMESTAMP:
+                return FieldValue.serverTimestamp();
+            case INCREMENT:
+                return FieldValue.increment(op.getDelta());
+            case ARRAY_UNION:
+                return FieldValue.arrayUnion(op.getElements().toArray());
+            default:
+                return FieldValue.arrayRemove(op.getElements().toArray());
+        }
+    }
+
+    private static DocumentData toDocument(DocumentSnapshot snapshot) {
+        return new DocumentData(snapshot.getReference().getPath(), snapshot.exists() ? fromFirestore(snapshot.getData()) : null);
+    }
+
+    /**
+     * Converts Firestore data to gateway data, replacing Timestamp values with Date
+     * so core code can read times without depending on Firebase.
+     *
+     * @param data The Firestore data.
+     * @return The gateway data.
+     */
+    static Map<String, Object> fromFirestore(Map<String, Object> data) {
+        Map<String, Object> converted = new HashMap<>();
+        for (Map.Entry<String, Object> field : data.entrySet()) {
+            converted.put(field.getKey(), fromFirestoreValue(field.getValue()));
+        }
+        return converted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object fromFirestoreValue(Object value) {
+        if (value instanceof Map) {
+            return fromFirestore((Map<String, Object>) value);
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toDate();
+        }
+        return value;
+    }
+
+    private static List<DocumentData> toDocuments(List<? extends DocumentSnapshot> snapshots) {
+        List<DocumentData> documents = new ArrayList<>();
+        for (DocumentSnapshot snapshot : snapshots) {
+            documents.add(toDocument(snapshot));
+        }
+        return documents;
+    }
+
+    private static <T> CompletableFuture<T> toFuture(Task<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        task.addOnSuccessListener(future::complete).addOnFailureListener(future::completeExceptionally);
+        return future;
+    }
+
+    /**
+     * Adapts a Firestore transaction to GatewayTransaction.
+     */
+    private final class FirestoreTransaction implements GatewayTransaction {
+        private final Transaction transaction;
+
+        FirestoreTransaction(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public DocumentData get(String path) {
+            try {
+                return toDocument(transaction.get(db.document(path)));
+            } catch (FirebaseFirestoreException e) {
+                throw new GatewayException("Failed to read " + path, e);
+            }
+        }
+
+        @Override
+        public void set(String path, Map<String, Object> data, boolean merge) {
+            if (merge) {
+                transaction.set(db.document(path), toFirestore(data), SetOptions.merge());
+            } else {
+                transaction.set(db.document(path), toFirestore(data));
+            }
+        }
+
+        @Override
+        public void update(String path, Map<String, Object> data) {
+            transaction.update(db.document(path), toFirestore(data));
+        }
+
+        @Override
+        public void delete(String path) {
+            transaction.delete(db.document(path));
+        }
+    }
+
+    /**
+     * Adapts a Firestore write batch to GatewayBatch.
+     */
+    private final class FirestoreBatch implements GatewayBatch {
+        private final WriteBatch batch;
+
+        FirestoreBatch(WriteBatch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public GatewayBatch set(String path, Map<String, Object> data, boolean merge) {
+            if (merge) {
+                batch.set(db.document(path), toFirestore(data), SetOptions.merge());
+            } else {
+                batch.set(db.document(path), toFirestore(data));
+            }
+            return this;
+        }
+
+        @Override
+        public GatewayBatch update(String path, Map<String, Object> data) {
+            batch.update(db.document(path), toFirestore(data));
+            return this;
+        }
+
+        @Override
+        public GatewayBatch delete(String path) {
+            batch.delete(db.document(path));
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<Void> commit() {
+            return toFuture(batch.commit());
+        }
+    }
+}
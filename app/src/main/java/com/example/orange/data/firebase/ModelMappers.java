@@ -0,0 +1,486 @@
+package com.example.orange.data.firebase;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.lottery.LotteryMode;
+import com.example.orange.data.model.Event;
+import com.example.orange.data.model.EventCounters;
+import com.example.orange.data.model.EventEntry;
+import com.example.orange.data.model.EventSummary;
+import com.example.orange.data.model.Facility;
+import com.example.orange.data.model.ImageData;
+import com.example.orange.data.model.Notification;
+import com.example.orange.data.model.NotificationStatus;
+import com.example.orange.data.model.NotificationType;
+import com.example.orange.data.model.User;
+import com.example.orange.data.model.UserType;
+import com.example.orange.data.summaries.EventSummaryStore;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ModelMappers builds Event, EventSummary, User and Notification objects straight from
+ * a document's fields, replacing DocumentSnapshot.toObject, which discovers the class's
+ * properties by reflection and converts every field of the document on each read.
+ *
+ * Only the fields the models persist are read. Fields the models exclude, such as the
+ * entrant lists and locations older events still hold inline, are never looked at,
+ * so their size does not affect the cost of a read. The results match toObject: absent
+ * fields keep the model's defaults, and numbers are narrowed to the model's types.
+ *
+ * It also maps the other way, turning models into the field maps DataGateway writes.
+ * Times are written as Date, which Firestore stores as a timestamp and core code reads
+ * back as a Date from any gateway.
+ */
+public final class ModelMappers {
+    private ModelMappers() {
+    }
+
+    /**
+     * Builds an Event from its document.
+     *
+     * @param document The event document.
+     * @return The event, or null if the document does not exist.
+     */
+    public static Event toEvent(DocumentSnapshot document) {
+        Map<String, Object> data = document.getData();
+        return data != null ? toEvent(document.getId(), data) : null;
+    }
+
+    /**
+     * Builds an Event from a document read through a DataGateway.
+     *
+     * @param document The document.
+     * @return The event, or null if the document does not exist.
+     */
+    public static Event toEvent(DocumentData document) {
+        return document.exists() ? toEvent(document.getId(), document.getData()) : null;
+    }
+
+    /**
+     * Builds an Event from its document fields.
+     *
+     * @param id   The event's document ID.
+     * @param data The document fields.
+     * @return The event.
+     */
+    public static Event toEvent(String id, Map<String, Object> data) {
+        Event event = new Event();
+        event.setId(id);
+        event.setTitle(string(data, "title"));
+        event.setDescription(string(data, "description"));
+        event.setDate(timestamp(data, "date"));
+        event.setStartDate(timestamp(data, "startDate"));
+        event.setEndDate(timestamp(data, "endDate"));
+        event.setRegistrationOpens(timestamp(data, "registrationOpens"));
+        event.setRegistrationDeadline(timestamp(data, "registrationDeadline"));
+        event.setLotteryDrawDate(timestamp(data, "lotteryDrawDate"));
+        event.setEventDate(timestamp(data, "eventDate"));
+        Object price = data.get("price");
+        event.setPrice(price instanceof Number ? ((Number) price).doubleValue() : null);
+        event.setCapacity(integer(data, "capacity"));
+        event.setWaitlistLimit(integer(data, "waitlistLimit"));
+        event.setAcceptWindowHours(integer(data, "acceptWindowHours"));
+        event.setOrganizerId(string(data, "organizerId"));
+        event.setQr_hash(string(data, "qr_hash"));
+        event.setGeolocationEvent(bool(data, "geolocationEvent"));
+        event.setQueuedAdmission(bool(data, "queuedAdmission"));
+        event.setEventImageId(string(data, "eventImageId"));
+        event.setFacilityId(string(data, "facilityId"));
+        String lotteryMode = string(data, "lotteryMode");
+        if (lotteryMode != null) {
+            event.setLotteryMode(LotteryMode.valueOf(lotteryMode));
+        }
+        // The setters record changes to save; a freshly read event has none
+        event.clearChanges();
+        return event;
+    }
+
+    /**
+     * Builds an EventSummary from its document in eventSummaries.
+     *
+     * @param document The summary document.
+     * @return The summary, or null if the document does not exist.
+     */
+    public static EventSummary toEventSummary(DocumentSnapshot document) {
+        Map<String, Object> data = document.getData();
+        return data != null ? toEventSummary(document.getId(), data) : null;
+    }
+
+    /**
+     * Builds an EventSummary from a document read through a DataGateway.
+     *
+     * @param document The document.
+     * @return The summary, or null if the document does not exist.
+     */
+    public static EventSummary toEventSummary(DocumentData document) {
+        return document.exists() ? toEventSummary(document.getId(), document.getData()) : null;
+    }
+
+    /**
+     * Builds an EventSummary from its document fields.
+     *
+     * @param id   The event's document ID.
+     * @param data The summary document fields.
+     * @return The summary.
+     */
+    public static EventSummary toEventSummary(String id, Map<String, Object> data) {
+        EventSummary summary = new EventSummary();
+        summary.setId(id);
+        summary.setTitle(string(data, "title"));
+        summary.setStartDate(timestamp(data, "startDate"));
+        summary.setEndDate(timestamp(data, "endDate"));
+        summary.setRegistrationOpens(timestamp(data, "registrationOpens"));
+        summary.setRegistrationDeadline(timestamp(data, "registrationDeadline"));
+        summary.setLotteryDrawDate(timestamp(data, "lotteryDrawDate"));
+        summary.setEventDate(timestamp(data, "eventDate"));
+        summary.setEventImageId(string(data, "eventImageId"));
+        summary.setOrganizerId(string(data, "organizerId"));
+        summary.setFacilityId(string(data, "facilityId"));
+        summary.setCapacity(integer(data, "capacity"));
+        summary.setWaitlistLimit(integer(data, "waitlistLimit"));
+        summary.setGeolocationEvent(bool(data, "geolocationEvent"));
+        summary.setQueuedAdmission(bool(data, "queuedAdmission"));
+        summary.setLegacyEntrants(Boolean.TRUE.equals(data.get(EventSummaryStore.LEGACY_ENTRANTS)));
+        Object counts = data.get(EventSummaryStore.COUNTS);
+        if (counts instanceof Map) {
+            EventCounters counters = new EventCounters();
+            for (Map.Entry<?, ?> count : ((Map<?, ?>) counts).entrySet()) {
+                if (count.getValue() instanceof Number) {
+                    counters.add(count.getKey().toString(), ((Number) count.getValue()).longValue());
+                }
+            }
+            summary.setCounters(counters);
+        }
+        return summary;
+    }
+
+    /**
+     * Builds a User from their document.
+     *
+     * @param document The user document.
+     * @return The user, or null if the document does not exist.
+     */
+    public static User toUser(DocumentSnapshot document) {
+        Map<String, Object> data = document.getData();
+        return data != null ? toUser(document.getId(), data) : null;
+    }
+
+    /**
+     * Builds an User from a document read through a DataGateway.
+     *
+     * @param document The document.
+     * @return The user, or null if the document does not exist.
+     */
+    public static User toUser(DocumentData document) {
+        return document.exists() ? toUser(document.getId(), document.getData()) : null;
+    }
+
+    /**
+     * Builds a User from their document fields.
+     *
+     * @param id   The user's document ID.
+     * @param data The document fields.
+     * @return The user.
+     */
+    public static User toUser(String id, Map<String, Object> data) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(string(data, "username"));
+        String userType = string(data, "userType");
+        if (userType != null) {
+            user.setUserType(UserType.valueOf(userType));
+        }
+        user.setEmail(string(data, "email"));
+        user.setPhone(string(data, "phone"));
+        user.setDeviceId(string(data, "deviceId"));
+        user.setFcmToken(string(data, "fcmToken"));
+        user.setProfileImageId(string(data, "profileImageId"));
+        user.setFacilityId(string(data, "facilityId"));
+        user.setReceiveNotifications(Boolean.TRUE.equals(data.get("receiveNotifications")));
+        user.setReceiveOrganizerNotifications(Boolean.TRUE.equals(data.get("receiveOrganizerNotifications")));
+        user.setReceiveAdminNotifications(Boolean.TRUE.equals(data.get("receiveAdminNotifications")));
+        if (data.containsKey("eventsParticipating")) {
+            user.setEventsParticipating(strings(data, "eventsParticipating"));
+        }
+        if (data.containsKey("eventsOrganizing")) {
+            user.setEventsOrganizing(strings(data, "eventsOrganizing"));
+        }
+        if (data.containsKey("eventsWaitlisted")) {
+            user.setEventsWaitlisted(strings(data, "eventsWaitlisted"));
+        }
+        if (data.containsKey("eventsCancelled")) {
+            user.setEventsCancelled(strings(data, "eventsCancelled"));
+        }
+        // The setters record changes to save; a freshly read user has none
+        user.clearChanges();
+        return user;
+    }
+
+    /**
+     * Builds a Notification from its document.
+     *
+     * @param document The notification document.
+     * @return The notification, or null if the document does not exist.
+     */
+    public static Notification toNotification(DocumentSnapshot document) {
+        Map<String, Object> data = document.getData();
+        return data != null ? toNotification(document.getId(), data) : null;
+    }
+
+    /**
+     * Builds a Notification from a document read through a DataGateway.
+     *
+     * @param document The document.
+     * @return The notification, or null if the document does not exist.
+     */
+    public static Notification toNotification(DocumentData document) {
+        return document.exists() ? toNotification(document.getId(), document.getData()) : null;
+    }
+
+    /**
+     * Builds a Notification from its document fields.
+     *
+     * @param id   The notification's document ID.
+     * @param data The document fields.
+     * @return The notification.
+     */
+    public static Notification toNotification(String id, Map<String, Object> data) {
+        Notification notification = new Notification();
+        notification.setId(id);
+        notification.setEventId(string(data, "eventId"));
+        notification.setUserId(string(data, "userId"));
+        String type = string(data, "type");
+        if (type != null) {
+            notification.setType(NotificationType.valueOf(type));
+        }
+        String status = string(data, "status");
+        if (status != null) {
+            notification.setStatus(NotificationStatus.valueOf(status));
+        }
+        // Set after the status, which stamps updatedAt with the current time
+        if (data.containsKey("createdAt")) {
+            notification.setCreatedAt(timestamp(data, "createdAt"));
+        }
+        if (data.containsKey("updatedAt")) {
+            notification.setUpdatedAt(timestamp(data, "updatedAt"));
+        }
+        return notification;
+    }
+
+    /**
+     * Builds a Facility from a document read through a DataGateway.
+     *
+     * @param document The facility document.
+     * @return The facility, or null if the document does not exist.
+     */
+    public static Facility toFacility(DocumentData document) {
+        if (!document.exists()) {
+            return null;
+        }
+        Facility facility = new Facility(document.getString("name"), document.getString("address"));
+        facility.setId(document.getId());
+        return facility;
+    }
+
+    /**
+     * Builds an ImageData from a document read through a DataGateway.
+     *
+     * @param document The image document.
+     * @return The image, or null if the document does not exist.
+     */
+    public static ImageData toImageData(DocumentData document) {
+        if (!document.exists()) {
+            return null;
+        }
+        Object imageData = document.get("imageData");
+        return new ImageData(document.getId(), imageData instanceof Blob ? (Blob) imageData : null);
+    }
+
+    /**
+     * Builds an EventEntry from an entry document read through a DataGateway.
+     *
+     * @param document The entry document, keyed by user ID.
+     * @return The entry, or null if the document does not exist.
+     */
+    public static EventEntry toEventEntry(DocumentData document) {
+        if (!document.exists()) {
+            return null;
+        }
+        Map<String, Object> data = document.getData();
+        EventEntry entry = new EventEntry(string(data, "eventId"), document.getId(),
+                EntrantStore.parseRole(string(data, "status")));
+        entry.setJoinedAt(timestamp(data, "joinedAt"));
+        Object latitude = data.get("latitude");
+        entry.setLatitude(latitude instanceof Number ? ((Number) latitude).doubleValue() : null);
+        Object longitude = data.get("longitude");
+        entry.setLongitude(longitude instanceof Number ? ((Number) longitude).doubleValue() : null);
+        return entry;
+    }
+
+    /**
+     * Builds the fields of an event document, the ones toEvent reads back.
+     *
+     * @param event The event.
+     * @return The fields to write.
+     */
+    public static Map<String, Object> toData(Event event) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", event.getId());
+        data.put("title", event.getTitle());
+        data.put("description", event.getDescription());
+        data.put("date", date(event.getDate()));
+        data.put("startDate", date(event.getStartDate()));
+        data.put("endDate", date(event.getEndDate()));
+        data.put("registrationOpens", date(event.getRegistrationOpens()));
+        data.put("registrationDeadline", date(event.getRegistrationDeadline()));
+        data.put("lotteryDrawDate", date(event.getLotteryDrawDate()));
+        data.put("eventDate", date(event.getEventDate()));
+        data.put("price", event.getPrice());
+        data.put("capacity", event.getCapacity());
+        data.put("waitlistLimit", event.getWaitlistLimit());
+        data.put("acceptWindowHours", event.getAcceptWindowHours());
+        data.put("organizerId", event.getOrganizerId());
+        data.put("qr_hash", event.getQr_hash());
+        data.put("geolocationEvent", event.getGeolocationEvent());
+        data.put("queuedAdmission", event.getQueuedAdmission());
+        data.put("eventImageId", event.getEventImageId());
+        data.put("facilityId", event.getFacilityId());
+        data.put("lotteryMode", event.getLotteryMode().name());
+        return data;
+    }
+
+    /**
+     * Builds the fields of a user document, the ones toUser reads back.
+     *
+     * @param user The user.
+     * @return The fields to write.
+     */
+    public static Map<String, Object> toData(User user) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", user.getId());
+        data.put("username", user.getUsername());
+        data.put("userType", user.getUserType() != null ? user.getUserType().name() : null);
+        // Stored alongside the type, as the setters record them
+        data.put("organizer", user.isOrganizer());
+        data.put("admin", user.isAdmin());
+        data.put("email", user.getEmail());
+        data.put("phone", user.getPhone());
+        data.put("deviceId", user.getDeviceId());
+        data.put("fcmToken", user.getFcmToken());
+        data.put("profileImageId", user.getProfileImageId());
+        data.put("facilityId", user.getFacilityId());
+        data.put("receiveNotifications", user.isReceiveNotifications());
+        data.put("receiveOrganizerNotifications", user.isReceiveOrganizerNotifications());
+        data.put("receiveAdminNotifications", user.isReceiveAdminNotifications());
+        data.put("eventsParticipating", user.getEventsParticipating());
+        data.put("eventsOrganizing", user.getEventsOrganizing());
+        data.put("eventsWaitlisted", user.getEventsWaitlisted());
+        data.put("eventsCancelled", user.getEventsCancelled());
+        return data;
+    }
+
+    /**
+     * Builds the fields of a notification document, the ones toNotification reads back.
+     *
+     * @param notification The notification.
+     * @return The fields to write.
+     */
+    public static Map<String, Object> toData(Notification notification) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", notification.getId());
+        data.put("eventId", notification.getEventId());
+        data.put("userId", notification.getUserId());
+        data.put("type", notification.getType() != null ? notification.getType().name() : null);
+        data.put("status", notification.getStatus() != null ? notification.getStatus().name() : null);
+        data.put("createdAt", date(notification.getCreatedAt()));
+        data.put("updatedAt", date(notification.getUpdatedAt()));
+        return data;
+    }
+
+    /**
+     * Builds the fields of a facility document. The ID is the document's, not a field.
+     *
+     * @param facility The facility.
+     * @return The fields to write.
+     */
+    public static Map<String, Object> toData(Facility facility) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", facility.getName());
+        data.put("address", facility.getAddress());
+        return data;
+    }
+
+    /**
+     * Builds the fields of an image document. The ID is the document's, not a field.
+     *
+     * @param image The image.
+     * @return The fields to write.
+     */
+    public static Map<String, Object> toData(ImageData image) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("imageData", image.getImageData());
+        return data;
+    }
+
+    /**
+     * Converts a model's recorded changes to gateway values, turning timestamps into Date.
+     *
+     * @param changes The changes, as returned by the model's getChanges.
+     * @return The fields to write.
+     */
+    public static Map<String, Object> toData(Map<String, Object> changes) {
+        Map<String, Object> data = new HashMap<>();
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            Object value = change.getValue();
+            data.put(change.getKey(), value instanceof Timestamp ? ((Timestamp) value).toDate() : value);
+        }
+        return data;
+    }
+
+    private static Date date(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toDate() : null;
+    }
+
+    private static String string(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static Timestamp timestamp(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        // Reads through a DataGateway hold Date rather than Timestamp
+        if (value instanceof Date) {
+            return new Timestamp((Date) value);
+        }
+        return value instanceof Timestamp ? (Timestamp) value : null;
+    }
+
+    private static Integer integer(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof Number ? ((Number) value).intValue() : null;
+    }
+
+    private static Boolean bool(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof Boolean ? (Boolean) value : null;
+    }
+
+    private static List<String> strings(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        List<String> strings = new ArrayList<>();
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                strings.add(element != null ? element.toString() : null);
+            }
+        }
+        return strings;
+    }
+}
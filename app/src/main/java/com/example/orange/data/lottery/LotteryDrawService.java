@@ -0,0 +1,471 @@
+package com.example.orange.data.lottery;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.orange.data.firebase.FirebaseCallback;
+import com.example.orange.data.firebase.FirebaseService;
+import com.example.orange.data.model.Event;
+import com.example.orange.data.model.EventCounters;
+import com.example.orange.data.model.User;
+import com.example.orange.ui.notifications.EntrantNotifications;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * LotteryDrawService runs a lottery draw for an event from start to finish:
+ * it sizes the draw from the event's counters, ranks the whole waitlist with
+ * LotteryEngine, moves the winners to selected in chunked transactions, stores
+ * the ranking and its seed, records notifications in chunked batches, and pushes
+ * one message per recipient using tokens fetched in a single batched read.
+ *
+ * The counters read here only size the draw. The transactions that move winners
+ * check capacity against the counter shards again, so draws and replacement draws
+ * running at the same time never select more users than the event has places.
+ *
+ * Replacement draws after a user declines or cancels continue down the stored
+ * ranking, reading only the next few entrants instead of the whole waitlist.
+ * The waitlist is only reranked once the stored ranking runs out, never because a
+ * replacement draw found the event already full.
+ *
+ * Main draws claim the event in DrawSchedule first, whether an organizer starts
+ * them or LotteryDrawWorker runs them at the event's lottery draw date, so an
+ * event is never drawn twice at once.
+ *
+ * Every draw, including redraws after a user declines, should go through here.
+ */
+public class LotteryDrawService {
+    private static final String TAG = "LotteryDrawService";
+
+    private final FirebaseService firebaseService;
+    private final EntrantNotifications entrantNotifications;
+    private final Context context;
+
+    /**
+     * Constructor
+     *
+     * @param context Any context; only the application context is kept.
+     */
+    public LotteryDrawService(Context context) {
+        this(context, new FirebaseService(), new EntrantNotifications());
+    }
+
+    /**
+     * Constructor with dependencies.
+     *
+     * @param context              Any context; only the application context is kept.
+     * @param firebaseService      The service used to read and write the draw.
+     * @param entrantNotifications The sender used for push notifications.
+     */
+    public LotteryDrawService(Context context, FirebaseService firebaseService, EntrantNotifications entrantNotifications) {
+        this.context = context.getApplicationContext();
+        this.firebaseService = firebaseService;
+        this.entrantNotifications = entrantNotifications;
+    }
+
+    /**
+     * Thrown when a draw finds no open places or nobody on the waitlist. A scheduled
+     * draw that ends this way has still run.
+     */
+    private static class NothingToDrawException extends Exception {
+        NothingToDrawException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Draws users to fill the event's open places.
+     *
+     * @param event            The event to draw for.
+     * @param notifyUnselected Whether this is the event's main draw, ranking the whole waitlist
+     *                         and telling users left on it they were not selected. Redraws after
+     *                         a decline pass false and take the next users in the stored ranking.
+     * @param callback         Callback receiving the IDs of the users selected. Fails if
+     *                         there are no open places, nobody is on the waitlist, or the
+     *                         event's main draw is already running.
+     */
+    public void draw(Event event, boolean notifyUnselected, FirebaseCallback<List<String>> callback) {
+        if (!notifyUnselected) {
+            fill(event, false, callback);
+            return;
+        }
+        String eventId = event.getId();
+        firebaseService.claimDraw(eventId, true, new FirebaseCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean claimed) {
+                if (!claimed) {
+                    callback.onFailure(new Exception("A draw for this event is already running."));
+                    return;
+                }
+                fill(event, true, new FirebaseCallback<List<String>>() {
+                    @Override
+                    public void onSuccess(List<String> selected) {
+                        complete(eventId, true);
+                        callback.onSuccess(selected);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        complete(eventId, e instanceof NothingToDrawException);
+                        callback.onFailure(e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Runs an event's main draw for DrawScheduler, which already holds the draw's claim
+     * and records its outcome. An event with nothing to draw counts as drawn.
+     *
+     * @param eventId The ID of the event.
+     * @return A future with the IDs of the users selected.
+     */
+    public CompletableFuture<List<String>> drawScheduled(String eventId) {
+        return fill(eventId, true);
+    }
+
+    /**
+     * Refills an event's places after InvitationSweeper released expired invitations,
+     * continuing down the stored ranking. An event with nothing left to draw counts as done.
+     *
+     * @param eventId The ID of the event.
+     * @return A future with the IDs of the users selected.
+     */
+    public CompletableFuture<List<String>> backfillReleased(String eventId) {
+        return fill(eventId, false);
+    }
+
+    /**
+     * Loads an event and runs a draw for it, for background callers that work with
+     * event IDs and futures.
+     *
+     * @param eventId          The ID of the event.
+     * @param notifyUnselected Whether this is the event's main draw.
+     * @return A future with the IDs of the users selected; empty if the event is gone
+     * or there was nothing to draw.
+     */
+    private CompletableFuture<List<String>> fill(String eventId, boolean notifyUnselected) {
+        CompletableFuture<List<String>> future = new CompletableFuture<>();
+        firebaseService.getEventById(eventId, new FirebaseCallback<Event>() {
+            @Override
+            public void onSuccess(Event event) {
+                if (event == null) {
+                    // The event was deleted; there is nothing left to draw
+                    future.complete(Collections.<String>emptyList());
+                    return;
+                }
+                fill(event, notifyUnselected, new FirebaseCallback<List<String>>() {
+                    @Override
+                    public void onSuccess(List<String> selected) {
+                        future.complete(selected);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        if (e instanceof NothingToDrawException) {
+                            Log.d(TAG, "Nothing to draw for event " + eventId + ": " + e.getMessage());
+                            future.complete(Collections.<String>emptyList());
+                        } else {
+                            future.completeExceptionally(e);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sizes a draw from the event's counters and runs it. The size is an upper bound;
+     * the selecting transactions take only the places still open when they commit.
+     *
+     * @param event            The event to draw for.
+     * @param notifyUnselected Whether this is the event's main draw.
+     * @param callback         Callback receiving the IDs of the users selected.
+     */
+    private void fill(Event event, boolean notifyUnselected, FirebaseCallback<List<String>> callback) {
+        String eventId = event.getId();
+        firebaseService.getEventCounters(eventId, new FirebaseCallback<EventCounters>() {
+            @Override
+            public void onSuccess(EventCounters counters) {
+                int slots = event.getAvailableSlots(counters);
+                if (slots <= 0) {
+                    callback.onFailure(new NothingToDrawException("No available slots to draw participants."));
+                    return;
+                }
+                if (counters.getWaitlist() == 0) {
+                    callback.onFailure(new NothingToDrawException("No users on the waitlist to draw."));
+                    return;
+                }
+                if (notifyUnselected) {
+                    rankAndSelect(event, slots, true, callback);
+                } else {
+                    backfill(event, slots, callback);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Records how an organizer's main draw ended, so the scheduler does not run it again.
+     *
+     * @param eventId The ID of the event.
+     * @param success Whether the draw ran.
+     */
+    private void complete(String eventId, boolean success) {
+        firebaseService.completeDraw(eventId, success, new FirebaseCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // The claim lapses after DrawSchedule.CLAIM_TIMEOUT_MILLIS
+                Log.e(TAG, "Failed to record draw outcome for event " + eventId, e);
+            }
+        });
+    }
+
+    /**
+     * Fills places from the stored ranking, reranking the current waitlist only for
+     * places the ranking could not fill because it is missing or used up. A ranking cut
+     * short by the event filling up, such as by a backfill running at the same time, is
+     * kept as it is.
+     *
+     * @param event    The event to draw for.
+     * @param slots    The number of open places.
+     * @param callback Callback receiving the IDs of the users selected.
+     */
+    private void backfill(Event event, int slots, FirebaseCallback<List<String>> callback) {
+        firebaseService.selectFromDrawOrder(event.getId(), slots, new FirebaseCallback<DrawOrderStore.Selection>() {
+            @Override
+            public void onSuccess(DrawOrderStore.Selection selection) {
+                List<String> moved = selection.getSelected();
+                boolean rerank = selection.getStopReason().needsRerank();
+                if (moved.isEmpty()) {
+                    if (rerank) {
+                        rankAndSelect(event, slots, false, callback);
+                    } else {
+                        callback.onSuccess(moved);
+                    }
+                    return;
+                }
+                notifyDraw(event, moved, Collections.<String>emptyList(), new FirebaseCallback<List<String>>() {
+                    @Override
+                    public void onSuccess(List<String> selected) {
+                        if (!rerank) {
+                            callback.onSuccess(selected);
+                            return;
+                        }
+                        // The ranking ran out; rank whoever joined after the main draw
+                        rankAndSelect(event, slots - selected.size(), false, new FirebaseCallback<List<String>>() {
+                            @Override
+                            public void onSuccess(List<String> more) {
+                                List<String> all = new ArrayList<>(selected);
+                                all.addAll(more);
+                                callback.onSuccess(all);
+                            }
+
+                            @Override
+                            public void onFailure(Exception e) {
+                                callback.onSuccess(selected);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        callback.onFailure(e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.w(TAG, "Stored draw order unavailable, reranking the waitlist", e);
+                rankAndSelect(event, slots, false, callback);
+            }
+        });
+    }
+
+    /**
+     * Ranks the whole waitlist, uniformly or by weight depending on the event's lottery
+     * mode, stores the ranking, and selects its first users.
+     *
+     * @param event            The event to draw for.
+     * @param slots            The number of open places.
+     * @param notifyUnselected Whether users not drawn are notified.
+     * @param callback         Callback receiving the IDs of the users selected.
+     */
+    private void rankAndSelect(Event event, int slots, boolean notifyUnselected, FirebaseCallback<List<String>> callback) {
+        String eventId = event.getId();
+        firebaseService.getEventWaitlistWeights(eventId, new FirebaseCallback<Map<String, Double>>() {
+            @Override
+            public void onSuccess(Map<String, Double> weights) {
+                if (weights.isEmpty()) {
+                    callback.onFailure(new NothingToDrawException("No users on the waitlist to draw."));
+                    return;
+                }
+                // Sorted so the draw can be replayed from its seed
+                List<String> waitlist = new ArrayList<>(weights.keySet());
+                Collections.sort(waitlist);
+                DrawResult ranking;
+                if (event.getLotteryMode() == LotteryMode.WEIGHTED) {
+                    double[] ordered = new double[waitlist.size()];
+                    for (int i = 0; i < ordered.length; i++) {
+                        ordered[i] = weights.get(waitlist.get(i));
+                    }
+                    ranking = LotteryEngine.drawWeighted(waitlist, ordered, waitlist.size(), LotteryEngine.newSeed());
+                } else {
+                    ranking = LotteryEngine.draw(waitlist, waitlist.size(), LotteryEngine.newSeed());
+                }
+                int drawn = Math.min(slots, ranking.getWinners().size());
+                Log.d(TAG, "Ranked " + ranking + " for event " + eventId);
+                selectAndNotify(event, ranking, drawn, notifyUnselected, callback);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Moves the first users of a ranking to selected, stores the ranking for later
+     * replacement draws, then records and pushes the notifications. Users who left the
+     * waitlist before the move committed, or who no longer fit because the event filled
+     * up meanwhile, are treated as unselected and are not notified.
+     *
+     * @param event            The event being drawn.
+     * @param ranking          Everyone who was on the waitlist when the draw started, in draw order.
+     * @param drawn            How many users at the front of the ranking were drawn.
+     * @param notifyUnselected Whether users not drawn are notified.
+     * @param callback         Callback receiving the IDs of the users selected.
+     */
+    private void selectAndNotify(Event event, DrawResult ranking, int drawn,
+                                 boolean notifyUnselected, FirebaseCallback<List<String>> callback) {
+        String eventId = event.getId();
+        List<String> order = ranking.getWinners();
+        firebaseService.selectWaitlistedUsers(eventId, order.subList(0, drawn), new FirebaseCallback<List<String>>() {
+            @Override
+            public void onSuccess(List<String> selected) {
+                // Replacement draws continue after the last user actually moved
+                int cursor = selected.isEmpty() ? 0 : order.indexOf(selected.get(selected.size() - 1)) + 1;
+                firebaseService.saveDrawOrder(eventId, ranking, cursor, new FirebaseCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void result) {
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        // Later redraws fall back to reranking the waitlist
+                        Log.e(TAG, "Failed to store draw order", e);
+                    }
+                });
+                List<String> unselected = notifyUnselected
+                        ? order.subList(cursor, order.size())
+                        : Collections.<String>emptyList();
+                notifyDraw(event, selected, unselected, callback);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Records the draw notifications, then pushes them.
+     *
+     * @param event      The event drawn.
+     * @param selected   The users selected.
+     * @param unselected The users to tell they were not selected.
+     * @param callback   Callback receiving the IDs of the users selected.
+     */
+    private void notifyDraw(Event event, List<String> selected, List<String> unselected,
+                            FirebaseCallback<List<String>> callback) {
+        firebaseService.createDrawNotifications(event.getId(), selected, unselected, new FirebaseCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                push(event, selected, unselected);
+                callback.onSuccess(selected);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // The selection stands; notifications can be retried without duplicates
+                Log.e(TAG, "Draw committed but notifications failed", e);
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Sends push notifications to the selected and unselected users, reading all their
+     * tokens in one batched user fetch.
+     *
+     * @param event      The event drawn.
+     * @param selected   The users selected.
+     * @param unselected The users to tell they were not selected.
+     */
+    private void push(Event event, List<String> selected, List<String> unselected) {
+        List<String> recipients = new ArrayList<>(selected);
+        recipients.addAll(unselected);
+        if (recipients.isEmpty()) {
+            return;
+        }
+        Set<String> selectedSet = new HashSet<>(selected);
+        firebaseService.getUsersByIds(recipients, new FirebaseCallback<Map<String, User>>() {
+            @Override
+            public void onSuccess(Map<String, User> users) {
+                List<String> selectedTokens = new ArrayList<>();
+                List<String> unselectedTokens = new ArrayList<>();
+                for (Map.Entry<String, User> entry : users.entrySet()) {
+                    String token = entry.getValue().getFcmToken();
+                    if (token == null || token.isEmpty()) {
+                        continue;
+                    }
+                    if (selectedSet.contains(entry.getKey())) {
+                        selectedTokens.add(token);
+                    } else {
+                        unselectedTokens.add(token);
+                    }
+                }
+                entrantNotifications.sendToTokens(context, "You Have Won The Lottery!",
+                        "You have just been selected to join " + event.getTitle() + ". Choose whether to accept to decline the offer.",
+                        selectedTokens);
+                entrantNotifications.sendToTokens(context, "Not your lucky day today :(",
+                        "You have not been selected to join " + event.getTitle(), unselectedTokens);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Failed to load recipients for push notifications", e);
+            }
+        });
+    }
+}
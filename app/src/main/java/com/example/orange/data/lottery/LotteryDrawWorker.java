@@ -0,0 +1,145 @@
+package com.example.orange.data.lottery;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.entrants.IntakeCompactor;
+import com.example.orange.data.entrants.InvitationSweeper;
+import com.example.orange.data.firebase.DataGateways;
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.summaries.EventSummaryStore;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LotteryDrawWorker runs every lottery draw whose draw date has passed, releases
+ * invitations nobody answered in time and refills those places, and merges join
+ * queues left behind by a compactor that stopped. WorkManager starts it about every
+ * 15 minutes while the device is online, so draws, expiries and queued joins are
+ * handled within roughly a quarter hour even if nobody opens the app.
+ *
+ * Every installed app runs the worker; claims in DrawSchedule, the sweep lease in
+ * InvitationSweeper and the intake leases in IntakeCompactor make sure each draw,
+ * expiry and queued join is still handled once. The worker then brings the summary
+ * counts of the events it changed up to date, as no screen is there to do it.
+ */
+public class LotteryDrawWorker extends Worker {
+    private static final String TAG = "LotteryDrawWorker";
+    private static final String WORK_NAME = "lotteryDraws";
+    // WorkManager stops workers after 10 minutes; leave time to report the result
+    private static final long RUN_TIMEOUT_MINUTES = 9;
+    // Summary refreshes still turned away after this many waits are left to the next run
+    private static final int SUMMARY_REFRESH_ROUNDS = 3;
+
+    /**
+     * Constructor
+     *
+     * @param context The application context.
+     * @param params  The parameters WorkManager runs the worker with.
+     */
+    public LotteryDrawWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the worker to run periodically. Calling this again keeps the existing schedule.
+     *
+     * @param context Any context.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(LotteryDrawWorker.class, 15, TimeUnit.MINUTES)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        DataGateway gateway = DataGateways.get();
+        LotteryDrawService drawService = new LotteryDrawService(getApplicationContext());
+        DrawScheduler scheduler = new DrawScheduler(new DrawSchedule(gateway),
+                drawService::drawScheduled, DrawScheduler.DEFAULT_CONCURRENCY);
+        EntrantStore entrantStore = new EntrantStore(gateway);
+        Set<String> changed = ConcurrentHashMap.newKeySet();
+        InvitationSweeper sweeper = new InvitationSweeper(gateway, entrantStore, (eventId, released) -> {
+            changed.add(eventId);
+            return drawService.backfillReleased(eventId);
+        });
+        IntakeCompactor compactor = new IntakeCompactor(gateway, entrantStore);
+        try {
+            scheduler.runDue(new Date())
+                    .thenCompose(draws -> {
+                        Log.d(TAG, "Scheduled draws finished: " + draws);
+                        return sweeper.sweep(new Date());
+                    })
+                    .thenCompose(sweep -> {
+                        Log.d(TAG, "Invitation sweep finished: " + sweep);
+                        return compactor.compactPending();
+                    })
+                    .thenAccept(compacted -> {
+                        Log.d(TAG, "Join queues compacted: " + compacted);
+                        changed.addAll(compacted.keySet());
+                    })
+                    .get(RUN_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            refreshSummaries(new EventSummaryStore(gateway), changed);
+            return Result.success();
+        } catch (Exception e) {
+            // Draws, sweeps and queues left unfinished are picked up again once their claims lapse
+            Log.e(TAG, "Scheduled draws, invitation sweep or join queues did not finish", e);
+            return Result.retry();
+        }
+    }
+
+    /**
+     * Brings the summary counts of the given events up to date, waiting out the summary
+     * store's refresh interval for counts written moments ago.
+     *
+     * @param summaries The summary store.
+     * @param eventIds  The IDs of the events whose entrants changed.
+     */
+    private static void refreshSummaries(EventSummaryStore summaries, Set<String> eventIds) throws Exception {
+        Set<String> pending = new HashSet<>(eventIds);
+        for (int round = 0; round < SUMMARY_REFRESH_ROUNDS && !pending.isEmpty(); round++) {
+            Map<String, CompletableFuture<Long>> refreshes = new HashMap<>();
+            for (String eventId : pending) {
+                refreshes.put(eventId, summaries.refreshCounts(eventId, System.currentTimeMillis()));
+            }
+            long longestWait = 0;
+            for (Map.Entry<String, CompletableFuture<Long>> refresh : refreshes.entrySet()) {
+                long wait = refresh.getValue().get(RUN_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+                if (wait == 0) {
+                    pending.remove(refresh.getKey());
+                }
+                longestWait = Math.max(longestWait, wait);
+            }
+            if (!pending.isEmpty()) {
+                Thread.sleep(longestWait);
+            }
+        }
+        if (!pending.isEmpty()) {
+            Log.w(TAG, "Summary counts still behind for events " + pending);
+        }
+    }
+}
@@ -8,23 +8,22 @@ import androidx.annotation.NonNull;
 
 
 import android.content.Context;
-import android.util.Log;
 
 import com.example.orange.MainActivity;
-import com.example.orange.data.firebase.FirebaseCallback;
-import com.example.orange.data.firebase.FirebaseService;
-import com.example.orange.ui.notifications.EntrantNotifications;
+import com.example.orange.data.lottery.LotteryMode;
+import com.example.orange.data.lottery.WaitlistLottery;
 import com.example.orange.ui.notifications.FirebaseNotifications;
 import com.example.orange.utils.SessionManager;
 import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.Blob;
 import com.google.firebase.firestore.DocumentId;
+import com.google.firebase.firestore.Exclude;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 
 /**
@@ -55,7 +54,11 @@ public class Event implements Parcelable {
     private List<String> cancelledList;
     private String eventImageId; // Changed from Blob to String ID
     private String facilityId;
+    private LotteryMode lotteryMode;
+    private Integer acceptWindowHours;
+    private Boolean queuedAdmission;
     private Map<String, Map<String, Object>> location;
+    private final FieldChanges changes = new FieldChanges();
     Context context;
 
     /**
@@ -133,6 +136,9 @@ public class Event implements Parcelable {
         dest.writeStringList(cancelledList);
         dest.writeString(eventImageId);
         dest.writeString(facilityId);
+        dest.writeString(lotteryMode != null ? lotteryMode.name() : null);
+        dest.writeValue(acceptWindowHours);
+        dest.writeValue(queuedAdmission);
 
         // Handle location map by writing it as a Bundle (or HashMap)
         if (location != null) {
@@ -211,6 +217,10 @@ public class Event implements Parcelable {
         cancelledList = in.createStringArrayList();
         eventImageId = in.readString();
         facilityId = in.readString();
+        String mode = in.readString();
+        lotteryMode = mode != null ? LotteryMode.valueOf(mode) : null;
+        acceptWindowHours = (Integer) in.readValue(Integer.class.getClassLoader());
+        queuedAdmission = (Boolean) in.readValue(Boolean.class.getClassLoader());
 
         // Read the location bundle and convert it back to a Map
         Bundle locationBundle = in.readBundle(getClass().getClassLoader());
@@ -292,6 +302,7 @@ public class Event implements Parcelable {
      * @param title
      */
     public void setTitle(String title) {
+        changes.record("title", this.title, title);
         this.title = title;
     }
 
@@ -310,6 +321,7 @@ public class Event implements Parcelable {
      * @param description
      */
     public void setDescription(String description) {
+        changes.record("description", this.description, description);
         this.description = description;
     }
 
@@ -328,6 +340,7 @@ public class Event implements Parcelable {
      * @param date
      */
     public void setDate(Timestamp date) {
+        changes.record("date", this.date, date);
         this.date = date;
     }
 
@@ -346,6 +359,7 @@ public class Event implements Parcelable {
      * @param capacity
      */
     public void setCapacity(Integer capacity) {
+        changes.record("capacity", this.capacity, capacity);
         this.capacity = capacity;
     }
 
@@ -364,6 +378,7 @@ public class Event implements Parcelable {
      * @param organizerId
      */
     public void setOrganizerId(String organizerId) {
+        changes.record("organizerId", this.organizerId, organizerId);
         this.organizerId = organizerId;
     }
 
@@ -382,14 +397,17 @@ public class Event implements Parcelable {
      * @param qr_hash
      */
     public void setQr_hash(String qr_hash) {
+        changes.record("qr_hash", this.qr_hash, qr_hash);
         this.qr_hash = qr_hash;
     }
 
     /**
-     * WaitingList getter
+     * WaitingList getter. Entrants are stored in the entries subcollection, so this
+     * list is only held in memory and is not written to the event document.
      *
      * @return List<String>: waiting list
      */
+    @Exclude
     public List<String> getWaitingList() {
         return waitingList;
     }
@@ -404,10 +422,11 @@ public class Event implements Parcelable {
     }
 
     /**
-     * Participants List getter
+     * Participants List getter. Held in memory only, like the waiting list.
      *
      * @return List<String>: participant list
      */
+    @Exclude
     public List<String> getParticipants() {
         return participants;
     }
@@ -468,6 +487,35 @@ public class Event implements Parcelable {
         return participants.size() >= capacity;
     }
 
+    /**
+     * This function checks if the event is at capacity using its counters instead of
+     * the entrant lists.
+     *
+     * @param counters The event's entrant counts.
+     * @return Boolean
+     */
+    public boolean isFull(EventCounters counters) {
+        if (capacity == null) {
+            return false;
+        }
+        return counters.getParticipants() >= capacity;
+    }
+
+    /**
+     * Returns the number of places not yet taken by selected users or participants,
+     * using the event's counters.
+     *
+     * @param counters The event's entrant counts.
+     * @return The number of places left, never negative. Integer.MAX_VALUE if the
+     *         event has no capacity.
+     */
+    public int getAvailableSlots(EventCounters counters) {
+        if (capacity == null) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.max(0, capacity - counters.getTaken());
+    }
+
     /**
      * Retrieves the lottery draw date for this event.
      *
@@ -480,7 +528,10 @@ public class Event implements Parcelable {
      *
      * @param lotteryDrawDate Timestamp representing the lottery draw date.
      */
-    public void setLotteryDrawDate(Timestamp lotteryDrawDate) { this.lotteryDrawDate = lotteryDrawDate; }
+    public void setLotteryDrawDate(Timestamp lotteryDrawDate) {
+        changes.record("lotteryDrawDate", this.lotteryDrawDate, lotteryDrawDate);
+        this.lotteryDrawDate = lotteryDrawDate;
+    }
 
     /**
      * Retrieves the final event date.
@@ -494,13 +545,18 @@ public class Event implements Parcelable {
      *
      * @param eventDate Timestamp representing the event's final date.
      */
-    public void setEventDate(Timestamp eventDate) { this.eventDate = eventDate; }
+    public void setEventDate(Timestamp eventDate) {
+        changes.record("eventDate", this.eventDate, eventDate);
+        this.eventDate = eventDate;
+    }
 
     /**
      * Retrieves a list of user IDs for participants selected for this event.
+     * Held in memory only, like the waiting list.
      *
      * @return List<String> containing the IDs of selected participants.
      */
+    @Exclude
     public List<String> getSelectedParticipants() { return selectedParticipants; }
 
     /**
@@ -542,7 +598,10 @@ public class Event implements Parcelable {
      *
      * @param startDate Timestamp representing the event's start date.
      */
-    public void setStartDate(Timestamp startDate) { this.startDate = startDate; }
+    public void setStartDate(Timestamp startDate) {
+        changes.record("startDate", this.startDate, startDate);
+        this.startDate = startDate;
+    }
 
     /**
      * Retrieves the end date of this event.
@@ -556,7 +615,10 @@ public class Event implements Parcelable {
      *
      * @param endDate Timestamp representing the event's end date.
      */
-    public void setEndDate(Timestamp endDate) { this.endDate = endDate; }
+    public void setEndDate(Timestamp endDate) {
+        changes.record("endDate", this.endDate, endDate);
+        this.endDate = endDate;
+    }
 
     /**
      * Retrieves the date when registration for this event opens.
@@ -570,7 +632,10 @@ public class Event implements Parcelable {
      *
      * @param registrationOpens Timestamp representing the registration open date.
      */
-    public void setRegistrationOpens(Timestamp registrationOpens) { this.registrationOpens = registrationOpens; }
+    public void setRegistrationOpens(Timestamp registrationOpens) {
+        changes.record("registrationOpens", this.registrationOpens, registrationOpens);
+        this.registrationOpens = registrationOpens;
+    }
 
     /**
      * Retrieves the registration deadline for this event.
@@ -584,7 +649,10 @@ public class Event implements Parcelable {
      *
      * @param registrationDeadline Timestamp representing the registration deadline.
      */
-    public void setRegistrationDeadline(Timestamp registrationDeadline) { this.registrationDeadline = registrationDeadline; }
+    public void setRegistrationDeadline(Timestamp registrationDeadline) {
+        changes.record("registrationDeadline", this.registrationDeadline, registrationDeadline);
+        this.registrationDeadline = registrationDeadline;
+    }
 
     /**
      * Retrieves the price of this event.
@@ -598,7 +666,10 @@ public class Event implements Parcelable {
      *
      * @param price Double representing the event price.
      */
-    public void setPrice(Double price) { this.price = price; }
+    public void setPrice(Double price) {
+        changes.record("price", this.price, price);
+        this.price = price;
+    }
 
     /**
      * Retrieves the waitlist limit for this event.
@@ -612,9 +683,19 @@ public class Event implements Parcelable {
      *
      * @param waitlistLimit Integer representing the maximum waitlist size.
      */
-    public void setWaitlistLimit(Integer waitlistLimit) { this.waitlistLimit = waitlistLimit; }
+    public void setWaitlistLimit(Integer waitlistLimit) {
+        changes.record("waitlistLimit", this.waitlistLimit, waitlistLimit);
+        this.waitlistLimit = waitlistLimit;
+    }
 
 
+    /**
+     * Entrant locations, keyed by user ID. Locations are stored on each user's entry,
+     * so this map is held in memory only.
+     *
+     * @return Map of user ID to latitude and longitude.
+     */
+    @Exclude
     public Map<String, Map<String, Object>> getLocation() {
         return location;
     }
@@ -638,6 +719,7 @@ public class Event implements Parcelable {
      * @param eventImageId The new image ID to set for the event.
      */
     public void setEventImageId(String eventImageId) {
+        changes.record("eventImageId", this.eventImageId, eventImageId);
         this.eventImageId = eventImageId;
     }
 
@@ -656,9 +738,69 @@ public class Event implements Parcelable {
      * @param facilityId The facility ID to set.
      */
     public void setFacilityId(String facilityId) {
+        changes.record("facilityId", this.facilityId, facilityId);
         this.facilityId = facilityId;
     }
 
+    /**
+     * Gets how the event's lottery picks winners.
+     *
+     * @return The lottery mode; UNIFORM if none is set.
+     */
+    public LotteryMode getLotteryMode() {
+        return lotteryMode != null ? lotteryMode : LotteryMode.UNIFORM;
+    }
+
+    /**
+     * Sets how the event's lottery picks winners.
+     *
+     * @param lotteryMode The lottery mode.
+     */
+    public void setLotteryMode(LotteryMode lotteryMode) {
+        changes.record("lotteryMode", this.lotteryMode != null ? this.lotteryMode.name() : null, lotteryMode != null ? lotteryMode.name() : null);
+        this.lotteryMode = lotteryMode;
+    }
+
+    /**
+     * Gets how many hours selected users have to accept or decline before their
+     * place is released.
+     *
+     * @return The window in hours, or null for EntrantStore.DEFAULT_ACCEPT_WINDOW_HOURS.
+     */
+    public Integer getAcceptWindowHours() {
+        return acceptWindowHours;
+    }
+
+    /**
+     * Sets how many hours selected users have to answer their invitation.
+     *
+     * @param acceptWindowHours The window in hours, or null for the default.
+     */
+    public void setAcceptWindowHours(Integer acceptWindowHours) {
+        changes.record("acceptWindowHours", this.acceptWindowHours, acceptWindowHours);
+        this.acceptWindowHours = acceptWindowHours;
+    }
+
+    /**
+     * Gets whether joins go through the event's join queue instead of joining the
+     * waitlist directly. Meant for popular events expecting a surge when registration opens.
+     *
+     * @return true if joins are queued; null or false if users join directly.
+     */
+    public Boolean getQueuedAdmission() {
+        return queuedAdmission;
+    }
+
+    /**
+     * Sets whether joins go through the event's join queue.
+     *
+     * @param queuedAdmission true to queue joins.
+     */
+    public void setQueuedAdmission(Boolean queuedAdmission) {
+        changes.record("queuedAdmission", this.queuedAdmission, queuedAdmission);
+        this.queuedAdmission = queuedAdmission;
+    }
+
     /**
      *
      * @author Graham Flokstra
@@ -675,10 +817,12 @@ public class Event implements Parcelable {
      * @param geolocationEvent
      */
     public void setGeolocationEvent(Boolean geolocationEvent) {
+        changes.record("geolocationEvent", this.geolocationEvent, geolocationEvent);
         this.geolocationEvent = geolocationEvent;
     }
 
-    // Getter and Setter for cancelledList
+    // Getter and Setter for cancelledList; held in memory only, like the waiting list
+    @Exclude
     public List<String> getCancelledList() {
         return cancelledList;
     }
@@ -687,62 +831,6 @@ public class Event implements Parcelable {
         this.cancelledList = cancelledList;
     }
 
-    /**
-     * Selects users randomly from the waiting list to be invited as participants.
-     *
-     * @author Graham Flokstra
-     * @param number The number of users to select.
-     */
-    public void selectParticipantsFromWaitingList(int number, Context context, Notification notification) {
-        FirebaseService firebaseService = new FirebaseService();
-        // Create a copy of the waiting list to avoid modifying the original list during iteration
-        List<String> waitingListCopy = new ArrayList<>(waitingList);
-
-        // Remove users who are already selected or have cancelled
-        waitingListCopy.removeAll(selectedParticipants);
-        waitingListCopy.removeAll(cancelledList);
-
-        // Shuffle the list to randomize the selection
-        Collections.shuffle(waitingListCopy);
-
-        int slotsAvailable = number;
-        for (String userId : waitingListCopy) {
-            if (slotsAvailable == 0) {
-                break;
-            }
-            selectedParticipants.add(userId);
-            Log.d("ORANGE", userId);
-            firebaseService.getUserById(userId, new FirebaseCallback<User>() {
-                @Override
-                public void onSuccess(User user) {
-                    Log.d("EntrantNotifications", user.getFcmToken());
-                    EntrantNotifications entrantNotifications = new EntrantNotifications();
-                    notification.setUserId(userId);
-                    notification.setType(NotificationType.SELECTED_TO_PARTICIPATE);
-                    firebaseService.createNotification(notification, new FirebaseCallback<String>() {
-                        @Override
-                        public void onSuccess(String result) {
-                            entrantNotifications.sendToPhone(context, "You Have Won The Lottery!", "You have just been selected to join "+title +". Choose whether to accept to decline the offer.", user, notification);
-                        }
-
-                        @Override
-                        public void onFailure(Exception e) {
-                            Log.d("EntrantNotifications", "Failed to create notification");
-                        }
-                    });
-                }
-
-                @Override
-                public void onFailure(Exception e) {
-                    Log.d("EntrantNotifications", "Failed to get user");
-                }
-            });
-            // TODO: Trigger notification to userId to accept or decline.
-
-            slotsAvailable--;
-        }
-    }
-
     /**
      * Selects users randomly from the waiting list to be invited as participants.
      * This method excludes notification logic for testing purposes.
@@ -762,23 +850,8 @@ public class Event implements Parcelable {
      * @return List of newly selected user IDs.
      */
     private List<String> selectParticipantsFromWaitingListInternal(int number) {
-        List<String> selectedUsers = new ArrayList<>();
-        List<String> waitingListCopy = new ArrayList<>(waitingList);
-
-        waitingListCopy.removeAll(selectedParticipants);
-        waitingListCopy.removeAll(cancelledList);
-
-        Collections.shuffle(waitingListCopy);
-
-        int slotsAvailable = number;
-        for (String userId : waitingListCopy) {
-            if (slotsAvailable == 0) {
-                break;
-            }
-            selectedParticipants.add(userId);
-            selectedUsers.add(userId);
-            slotsAvailable--;
-        }
+        List<String> selectedUsers = WaitlistLottery.select(waitingList, selectedParticipants, cancelledList, number, new Random());
+        selectedParticipants.addAll(selectedUsers);
         return selectedUsers;
     }
 
@@ -789,12 +862,8 @@ public class Event implements Parcelable {
      * @param userId The ID of the user who accepted.
      */
     public void acceptInvitation(String userId) {
-        if (selectedParticipants.contains(userId)) {
-            selectedParticipants.remove(userId);
-            participants.add(userId);
-            // Optionally, update the User object.
-            // TODO: Update user's eventsParticipating list.
-        }
+        EntrantLists.accept(selectedParticipants, participants, userId);
+        // TODO: Update user's eventsParticipating list.
     }
 
     /**
@@ -802,13 +871,8 @@ public class Event implements Parcelable {
      * @param userId The ID of the user who declined.
      */
     public void declineInvitation(String userId) {
-        if (selectedParticipants.contains(userId)) {
-            selectedParticipants.remove(userId);
-            waitingList.remove(userId);
-            cancelledList.add(userId);
-            // Optionally, update the User object.
-            // TODO: Update user's eventsParticipating list.
-        }
+        EntrantLists.decline(selectedParticipants, waitingList, cancelledList, userId);
+        // TODO: Update user's eventsParticipating list.
     }
 
 
@@ -820,8 +884,7 @@ public class Event implements Parcelable {
      * @param notification
      */
     public void fillSpotsFromWaitingList(Context context, Notification notification) {
-        int totalConfirmed = participants.size() + selectedParticipants.size();
-        int spotsNeeded = capacity - totalConfirmed;
+        int spotsNeeded = WaitlistLottery.spotsNeeded(capacity, participants.size(), selectedParticipants.size());
         if (spotsNeeded > 0) {
             selectParticipantsFromWaitingList(spotsNeeded, context, notification);
         }
@@ -845,13 +908,40 @@ public class Event implements Parcelable {
      * @author Graham Flokstra
      */
     private void fillSpotsFromWaitingListInternal() {
-        int totalConfirmed = participants.size() + selectedParticipants.size();
-        int spotsNeeded = capacity - totalConfirmed;
+        int spotsNeeded = WaitlistLottery.spotsNeeded(capacity, participants.size(), selectedParticipants.size());
         if (spotsNeeded > 0) {
             selectParticipantsFromWaitingList(spotsNeeded);
         }
     }
 
+    /**
+     * Gets the fields changed since the event was read or last saved, with their new
+     * values as stored in the document. The entrant lists are not stored on the event,
+     * so they are never included.
+     *
+     * @return The changed fields, keyed by document field name.
+     */
+    @Exclude
+    public Map<String, Object> getChanges() {
+        return changes.get();
+    }
+
+    /**
+     * Marks changes as saved, keeping any field changed again since they were taken.
+     *
+     * @param saved The changes that were written, as returned by getChanges.
+     */
+    public void markSaved(Map<String, Object> saved) {
+        changes.saved(saved);
+    }
+
+    /**
+     * Forgets every change, once the event has been read or written whole.
+     */
+    public void clearChanges() {
+        changes.clear();
+    }
+
     /**
      * Function to return specific string for an object of type Event
      * Mostly useful for debugging
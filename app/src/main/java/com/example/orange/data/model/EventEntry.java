@@ -0,0 +1,159 @@
+package com.example.orange.data.model;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentId;
+
+/**
+ * This class defines an EventEntry.
+ *
+ * One entry is stored per user in the events/{eventId}/entries subcollection,
+ * keyed by user ID. It records the user's role in the event and, for
+ * geolocation events, where they joined from. Keeping entrants out of the
+ * event document lets events grow past the document size limit and keeps
+ * joins from contending on a single document.
+ */
+public class EventEntry {
+    @DocumentId
+    private String userId;
+    private String eventId;
+    private EventRole status;
+    private Timestamp joinedAt;
+    private Double latitude;
+    private Double longitude;
+
+    /**
+     * Default constructor required for Firestore.
+     */
+    public EventEntry() {
+    }
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param eventId The ID of the event.
+     * @param userId  The ID of the user.
+     * @param status  The user's role in the event.
+     */
+    public EventEntry(String eventId, String userId, EventRole status) {
+        this.eventId = eventId;
+        this.userId = userId;
+        this.status = status;
+    }
+
+    /**
+     * Gets the ID of the user this entry belongs to.
+     *
+     * @return The user ID.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Sets the ID of the user this entry belongs to.
+     *
+     * @param userId The user ID.
+     */
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Gets the ID of the event.
+     *
+     * @return The event ID.
+     */
+    public String getEventId() {
+        return eventId;
+    }
+
+    /**
+     * Sets the ID of the event.
+     *
+     * @param eventId The event ID.
+     */
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+
+    /**
+     * Gets the user's role in the event.
+     *
+     * @return The role, or null if the entry only holds a location so far.
+     */
+    public EventRole getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets the user's role in the event.
+     *
+     * @param status The role.
+     */
+    public void setStatus(EventRole status) {
+        this.status = status;
+    }
+
+    /**
+     * Gets the time the user first joined the event.
+     *
+     * @return The join time.
+     */
+    public Timestamp getJoinedAt() {
+        return joinedAt;
+    }
+
+    /**
+     * Sets the time the user first joined the event.
+     *
+     * @param joinedAt The join time.
+     */
+    public void setJoinedAt(Timestamp joinedAt) {
+        this.joinedAt = joinedAt;
+    }
+
+    /**
+     * Gets the latitude the user joined from.
+     *
+     * @return The latitude, or null if no location was recorded.
+     */
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Sets the latitude the user joined from.
+     *
+     * @param latitude The latitude.
+     */
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * Gets the longitude the user joined from.
+     *
+     * @return The longitude, or null if no location was recorded.
+     */
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Sets the longitude the user joined from.
+     *
+     * @param longitude The longitude.
+     */
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * Whether a location was recorded for this entry.
+     *
+     * @return true if both coordinates are present.
+     */
+    public boolean hasLocation() {
+        return latitude != null && longitude != null;
+    }
+}
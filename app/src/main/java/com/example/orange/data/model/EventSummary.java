@@ -0,0 +1,349 @@
+package com.example.orange.data.model;
+
+import com.google.firebase.Timestamp;
+
+/**
+ * This class defines an EventSummary.
+ *
+ * A summary is the part of an event that list screens show, read from
+ * eventSummaries/{eventId} instead of the event document: the title, dates,
+ * poster and join limits, with the entrant counts in place of entrant lists.
+ * Screens that change an event load the full Event when the user acts on it.
+ */
+public class EventSummary {
+    private String id;
+    private String title;
+    private Timestamp startDate;
+    private Timestamp endDate;
+    private Timestamp registrationOpens;
+    private Timestamp registrationDeadline;
+    private Timestamp lotteryDrawDate;
+    private Timestamp eventDate;
+    private String eventImageId;
+    private String organizerId;
+    private String facilityId;
+    private Integer capacity;
+    private Integer waitlistLimit;
+    private Boolean geolocationEvent;
+    private Boolean queuedAdmission;
+    private boolean legacyEntrants;
+    private EventCounters counters = new EventCounters();
+
+    /**
+     * Gets the event ID.
+     *
+     * @return The event ID.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the event ID.
+     *
+     * @param id The event ID.
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the event title.
+     *
+     * @return The title.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Sets the event title.
+     *
+     * @param title The title.
+     */
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Gets the start date of the event.
+     *
+     * @return The start date, or null if not set.
+     */
+    public Timestamp getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Sets the start date of the event.
+     *
+     * @param startDate The start date.
+     */
+    public void setStartDate(Timestamp startDate) {
+        this.startDate = startDate;
+    }
+
+    /**
+     * Gets the end date of the event.
+     *
+     * @return The end date, or null if not set.
+     */
+    public Timestamp getEndDate() {
+        return endDate;
+    }
+
+    /**
+     * Sets the end date of the event.
+     *
+     * @param endDate The end date.
+     */
+    public void setEndDate(Timestamp endDate) {
+        this.endDate = endDate;
+    }
+
+    /**
+     * Gets when registration opens.
+     *
+     * @return The registration open date, or null if not set.
+     */
+    public Timestamp getRegistrationOpens() {
+        return registrationOpens;
+    }
+
+    /**
+     * Sets when registration opens.
+     *
+     * @param registrationOpens The registration open date.
+     */
+    public void setRegistrationOpens(Timestamp registrationOpens) {
+        this.registrationOpens = registrationOpens;
+    }
+
+    /**
+     * Gets the registration deadline.
+     *
+     * @return The registration deadline, or null if not set.
+     */
+    public Timestamp getRegistrationDeadline() {
+        return registrationDeadline;
+    }
+
+    /**
+     * Sets the registration deadline.
+     *
+     * @param registrationDeadline The registration deadline.
+     */
+    public void setRegistrationDeadline(Timestamp registrationDeadline) {
+        this.registrationDeadline = registrationDeadline;
+    }
+
+    /**
+     * Gets the date of the lottery draw.
+     *
+     * @return The lottery draw date, or null if not set.
+     */
+    public Timestamp getLotteryDrawDate() {
+        return lotteryDrawDate;
+    }
+
+    /**
+     * Sets the date of the lottery draw.
+     *
+     * @param lotteryDrawDate The lottery draw date.
+     */
+    public void setLotteryDrawDate(Timestamp lotteryDrawDate) {
+        this.lotteryDrawDate = lotteryDrawDate;
+    }
+
+    /**
+     * Gets the date the event takes place.
+     *
+     * @return The event date, or null if not set.
+     */
+    public Timestamp getEventDate() {
+        return eventDate;
+    }
+
+    /**
+     * Sets the date the event takes place.
+     *
+     * @param eventDate The event date.
+     */
+    public void setEventDate(Timestamp eventDate) {
+        this.eventDate = eventDate;
+    }
+
+    /**
+     * Gets the ID of the event's poster image.
+     *
+     * @return The image ID, or null if the event has no poster.
+     */
+    public String getEventImageId() {
+        return eventImageId;
+    }
+
+    /**
+     * Sets the ID of the event's poster image.
+     *
+     * @param eventImageId The image ID.
+     */
+    public void setEventImageId(String eventImageId) {
+        this.eventImageId = eventImageId;
+    }
+
+    /**
+     * Gets the ID of the event's organizer.
+     *
+     * @return The organizer ID.
+     */
+    public String getOrganizerId() {
+        return organizerId;
+    }
+
+    /**
+     * Sets the ID of the event's organizer.
+     *
+     * @param organizerId The organizer ID.
+     */
+    public void setOrganizerId(String organizerId) {
+        this.organizerId = organizerId;
+    }
+
+    /**
+     * Gets the ID of the facility hosting the event.
+     *
+     * @return The facility ID.
+     */
+    public String getFacilityId() {
+        return facilityId;
+    }
+
+    /**
+     * Sets the ID of the facility hosting the event.
+     *
+     * @param facilityId The facility ID.
+     */
+    public void setFacilityId(String facilityId) {
+        this.facilityId = facilityId;
+    }
+
+    /**
+     * Gets the number of places at the event.
+     *
+     * @return The capacity, or null if unlimited.
+     */
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the number of places at the event.
+     *
+     * @param capacity The capacity.
+     */
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the maximum size of the waitlist.
+     *
+     * @return The waitlist limit, or null if unlimited.
+     */
+    public Integer getWaitlistLimit() {
+        return waitlistLimit;
+    }
+
+    /**
+     * Sets the maximum size of the waitlist.
+     *
+     * @param waitlistLimit The waitlist limit.
+     */
+    public void setWaitlistLimit(Integer waitlistLimit) {
+        this.waitlistLimit = waitlistLimit;
+    }
+
+    /**
+     * Gets whether joining requires the entrant's location.
+     *
+     * @return true if the event uses geolocation, or null if not set.
+     */
+    public Boolean getGeolocationEvent() {
+        return geolocationEvent;
+    }
+
+    /**
+     * Sets whether joining requires the entrant's location.
+     *
+     * @param geolocationEvent Whether the event uses geolocation.
+     */
+    public void setGeolocationEvent(Boolean geolocationEvent) {
+        this.geolocationEvent = geolocationEvent;
+    }
+
+    /**
+     * Gets whether joins go through the event's join queue.
+     *
+     * @return true if the event uses queued admission, or null if not set.
+     */
+    public Boolean getQueuedAdmission() {
+        return queuedAdmission;
+    }
+
+    /**
+     * Sets whether joins go through the event's join queue.
+     *
+     * @param queuedAdmission Whether the event uses queued admission.
+     */
+    public void setQueuedAdmission(Boolean queuedAdmission) {
+        this.queuedAdmission = queuedAdmission;
+    }
+
+    /**
+     * Gets whether the event document still holds its entrants inline and needs migrating.
+     *
+     * @return true if the event has legacy entrant lists.
+     */
+    public boolean hasLegacyEntrants() {
+        return legacyEntrants;
+    }
+
+    /**
+     * Sets whether the event document still holds its entrants inline.
+     *
+     * @param legacyEntrants Whether the event has legacy entrant lists.
+     */
+    public void setLegacyEntrants(boolean legacyEntrants) {
+        this.legacyEntrants = legacyEntrants;
+    }
+
+    /**
+     * Gets the entrant counts as of the summary's last refresh.
+     *
+     * @return The counts.
+     */
+    public EventCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Sets the entrant counts.
+     *
+     * @param counters The counts.
+     */
+    public void setCounters(EventCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Checks whether the event's places are all taken by participants.
+     *
+     * @return true if the event has a capacity and it has been reached.
+     */
+    public boolean isFull() {
+        if (capacity == null) {
+            return false;
+        }
+        return counters.getParticipants() >= capacity;
+    }
+}
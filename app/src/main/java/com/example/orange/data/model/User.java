@@ -6,6 +6,7 @@ import com.google.firebase.firestore.Exclude;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a user in the application.
@@ -32,6 +33,7 @@ public class User {
     private boolean receiveAdminNotifications;
     private String facilityId;
     private String profileImageId;
+    private final FieldChanges changes = new FieldChanges();
 
     /**
      * Default constructor required for Firestore.
@@ -97,6 +99,7 @@ public class User {
      * @param username The username to set.
      */
     public void setUsername(String username) {
+        changes.record("username", this.username, username);
         this.username = username;
     }
 
@@ -115,6 +118,10 @@ public class User {
      * @param userType The user type to set.
      */
     public void setUserType(UserType userType) {
+        changes.record("userType", this.userType != null ? this.userType.name() : null, userType != null ? userType.name() : null);
+        // Stored alongside the type through isOrganizer and isAdmin
+        changes.record("organizer", this.userType == UserType.ORGANIZER, userType == UserType.ORGANIZER);
+        changes.record("admin", this.userType == UserType.ADMIN, userType == UserType.ADMIN);
         this.userType = userType;
     }
 
@@ -133,6 +140,7 @@ public class User {
      * @param eventsParticipating List of event IDs to set.
      */
     public void setEventsParticipating(List<String> eventsParticipating) {
+        changes.record("eventsParticipating", this.eventsParticipating, eventsParticipating);
         this.eventsParticipating = eventsParticipating;
     }
 
@@ -151,6 +159,7 @@ public class User {
      * @param eventsOrganizing List of event IDs to set.
      */
     public void setEventsOrganizing(List<String> eventsOrganizing) {
+        changes.record("eventsOrganizing", this.eventsOrganizing, eventsOrganizing);
         this.eventsOrganizing = eventsOrganizing;
     }
 
@@ -169,6 +178,7 @@ public class User {
      * @param receiveOrganizerNotifications true to receive notifications, false otherwise.
      */
     public void setReceiveOrganizerNotifications(boolean receiveOrganizerNotifications) {
+        changes.record("receiveOrganizerNotifications", this.receiveOrganizerNotifications, receiveOrganizerNotifications);
         this.receiveOrganizerNotifications = receiveOrganizerNotifications;
     }
 
@@ -187,6 +197,7 @@ public class User {
      * @param receiveAdminNotifications true to receive notifications, false otherwise.
      */
     public void setReceiveAdminNotifications(boolean receiveAdminNotifications) {
+        changes.record("receiveAdminNotifications", this.receiveAdminNotifications, receiveAdminNotifications);
         this.receiveAdminNotifications = receiveAdminNotifications;
     }
 
@@ -197,9 +208,11 @@ public class User {
      * @param eventId The ID of the event to add.
      */
     public void addEventParticipating(String eventId) {
+        List<String> before = new ArrayList<>(this.eventsParticipating);
         if (!this.eventsParticipating.contains(eventId)) {
             this.eventsParticipating.add(eventId);
         }
+        changes.record("eventsParticipating", before, this.eventsParticipating);
     }
 
     /**
@@ -208,7 +221,9 @@ public class User {
      * @param eventId The ID of the event to remove.
      */
     public void removeEventParticipating(String eventId) {
+        List<String> before = new ArrayList<>(this.eventsParticipating);
         this.eventsParticipating.remove(eventId);
+        changes.record("eventsParticipating", before, this.eventsParticipating);
     }
 
     /**
@@ -217,9 +232,11 @@ public class User {
      * @param eventId The ID of the event to add.
      */
     public void addEventOrganizing(String eventId) {
+        List<String> before = new ArrayList<>(this.eventsOrganizing);
         if (!this.eventsOrganizing.contains(eventId)) {
             this.eventsOrganizing.add(eventId);
         }
+        changes.record("eventsOrganizing", before, this.eventsOrganizing);
     }
 
     /**
@@ -228,7 +245,9 @@ public class User {
      * @param eventId The ID of the event to remove.
      */
     public void removeEventOrganizing(String eventId) {
+        List<String> before = new ArrayList<>(this.eventsOrganizing);
         this.eventsOrganizing.remove(eventId);
+        changes.record("eventsOrganizing", before, this.eventsOrganizing);
     }
 
     /**
@@ -264,6 +283,7 @@ public class User {
      * @param email The new email address to set for the user.
      */
     public void setEmail(String email) {
+        changes.record("email", this.email, email);
         this.email = email;
     }
 
@@ -282,6 +302,7 @@ public class User {
      * @param phone The new phone number to set for the user.
      */
     public void setPhone(String phone) {
+        changes.record("phone", this.phone, phone);
         this.phone = phone;
     }
 
@@ -300,6 +321,7 @@ public class User {
      * @param deviceId The new device ID to set for the user.
      */
     public void setDeviceId(String deviceId) {
+        changes.record("deviceId", this.deviceId, deviceId);
         this.deviceId = deviceId;
     }
 
@@ -316,7 +338,10 @@ public class User {
      *
      * @param fcmToken the user's firebase FCM token
      */
-    public void setFcmToken(String fcmToken){this.fcmToken = fcmToken;}
+    public void setFcmToken(String fcmToken){
+        changes.record("fcmToken", this.fcmToken, fcmToken);
+        this.fcmToken = fcmToken;
+    }
     /**
      * Retrieves the user's profile image ID.
      *
@@ -332,6 +357,7 @@ public class User {
      * @param profileImageId The new profile image ID to set for the user.
      */
     public void setProfileImageId(String profileImageId) {
+        changes.record("profileImageId", this.profileImageId, profileImageId);
         this.profileImageId = profileImageId;
     }
 
@@ -350,6 +376,7 @@ public class User {
      * @param receiveNotifications The notification preferences.
      */
     public void setReceiveNotifications(boolean receiveNotifications) {
+        changes.record("receiveNotifications", this.receiveNotifications, receiveNotifications);
         this.receiveNotifications = receiveNotifications;
     }
 
@@ -369,6 +396,7 @@ public class User {
      * @param facilityId The facility ID to set.
      */
     public void setFacilityId(String facilityId) {
+        changes.record("facilityId", this.facilityId, facilityId);
         this.facilityId = facilityId;
     }
 
@@ -387,6 +415,7 @@ public class User {
      * @param eventsWaitlisted List of event IDs to set.
      */
     public void setEventsWaitlisted(List<String> eventsWaitlisted) {
+        changes.record("eventsWaitlisted", this.eventsWaitlisted, eventsWaitlisted);
         this.eventsWaitlisted = eventsWaitlisted;
     }
 
@@ -396,9 +425,11 @@ public class User {
      * @param eventId The ID of the event to add.
      */
     public void addEventWaitlisted(String eventId) {
+        List<String> before = new ArrayList<>(this.eventsWaitlisted);
         if (!this.eventsWaitlisted.contains(eventId)) {
             this.eventsWaitlisted.add(eventId);
         }
+        changes.record("eventsWaitlisted", before, this.eventsWaitlisted);
     }
 
     /**
@@ -407,7 +438,9 @@ public class User {
      * @param eventId The ID of the event to remove.
      */
     public void removeEventWaitlisted(String eventId) {
+        List<String> before = new ArrayList<>(this.eventsWaitlisted);
         this.eventsWaitlisted.remove(eventId);
+        changes.record("eventsWaitlisted", before, this.eventsWaitlisted);
     }
 
     /**
@@ -425,6 +458,7 @@ public class User {
      * @param eventsCancelled List of event IDs to set.
      */
     public void setEventsCancelled(List<String> eventsCancelled) {
+        changes.record("eventsCancelled", this.eventsCancelled, eventsCancelled);
         this.eventsCancelled = eventsCancelled;
     }
 
@@ -434,9 +468,11 @@ public class User {
      * @param eventId The ID of the event to add.
      */
     public void addEventCancelled(String eventId) {
+        List<String> before = new ArrayList<>(this.eventsCancelled);
         if (!this.eventsCancelled.contains(eventId)) {
             this.eventsCancelled.add(eventId);
         }
+        changes.record("eventsCancelled", before, this.eventsCancelled);
     }
 
     /**
@@ -445,9 +481,39 @@ public class User {
      * @param eventId The ID of the event to remove.
      */
     public void removeEventCancelled(String eventId) {
+        List<String> before = new ArrayList<>(this.eventsCancelled);
         this.eventsCancelled.remove(eventId);
+        changes.record("eventsCancelled", before, this.eventsCancelled);
+    }
+
+
+    /**
+     * Gets the fields changed since the user was read or last saved, with their new
+     * values as stored in the document. Changes made directly to a list returned by a
+     * getter are not seen; use the setters or the add and remove methods.
+     *
+     * @return The changed fields, keyed by document field name.
+     */
+    @Exclude
+    public Map<String, Object> getChanges() {
+        return changes.get();
     }
 
+    /**
+     * Marks changes as saved, keeping any field changed again since they were taken.
+     *
+     * @param saved The changes that were written, as returned by getChanges.
+     */
+    public void markSaved(Map<String, Object> saved) {
+        changes.saved(saved);
+    }
+
+    /**
+     * Forgets every change, once the user has been read or written whole.
+     */
+    public void clearChanges() {
+        changes.clear();
+    }
 
     /**
      * Returns a string representation of the User object.
@@ -1,7 +1,5 @@
 package com.example.orange.ui.admin;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -15,10 +13,11 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 import com.example.orange.R;
+import com.example.orange.data.firebase.EventRepository;
 import com.example.orange.data.firebase.FirebaseCallback;
 import com.example.orange.data.firebase.FirebaseService;
-import com.example.orange.data.model.Event;
-import com.example.orange.data.model.ImageData;
+import com.example.orange.data.model.EventSummary;
+import com.example.orange.utils.ImageLoader;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -35,6 +34,7 @@ import java.util.Locale;
  */
 public class AdminEventListFragment extends Fragment {
     private FirebaseService firebaseService;
+    private EventRepository eventRepository;
     private LinearLayout eventsContainer;
     private SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
 
@@ -53,6 +53,7 @@ public class AdminEventListFragment extends Fragment {
 
         // Initialize Firebase service and session manager
         firebaseService = new FirebaseService();
+        eventRepository = EventRepository.getInstance();
 
         // Set up the container for displaying events
         eventsContainer = view.findViewById(R.id.admin_events_container);
@@ -64,16 +65,21 @@ public class AdminEventListFragment extends Fragment {
     }
 
     /**
-     * Loads all events from Firebase and calls displayEvents to render them.
+     * Loads all events from the shared EventRepository and calls displayEvents to render them.
+     * The list is re-rendered from memory whenever the repository reports a change.
      *
      * @author Radhe Patel
      */
     private void loadAdminEvents() {
 
-        firebaseService.getAllEvents(new FirebaseCallback<List<Event>>() {
+        eventRepository.getAllEvents(new FirebaseCallback<List<EventSummary>>() {
             @Override
-            public void onSuccess(List<Event> events) {
+            public void onSuccess(List<EventSummary> events) {
+                if (eventsContainer == null) {
+                    return;
+                }
                 displayEvents(events);
+                eventRepository.addListener(eventChangeListener);
             }
 
             @Override
@@ -83,6 +89,36 @@ public class AdminEventListFragment extends Fragment {
         });
     }
 
+    /**
+     * Re-renders the event list from the repository's in-memory copy on every change.
+     */
+    private final EventRepository.EventChangeListener eventChangeListener = new EventRepository.EventChangeListener() {
+        @Override
+        public void onEventAdded(EventSummary event) {
+            displayEvents(eventRepository.getCachedEvents());
+        }
+
+        @Override
+        public void onEventModified(EventSummary event) {
+            displayEvents(eventRepository.getCachedEvents());
+        }
+
+        @Override
+        public void onEventRemoved(EventSummary event) {
+            displayEvents(eventRepository.getCachedEvents());
+        }
+    };
+
+    /**
+     * Stops listening for event changes when the view is destroyed.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        eventRepository.removeListener(eventChangeListener);
+        eventsContainer = null;
+    }
+
     /**
      * Displays a list of all events , rendering relevant
      * information about each event's status and allowing the
@@ -91,10 +127,10 @@ public class AdminEventListFragment extends Fragment {
      * @author Radhe Patel
      * @param events List of Event objects representing all events in the database
      */
-    private void displayEvents(List<Event> events) {
+    private void displayEvents(List<EventSummary> events) {
         eventsContainer.removeAllViews();
 
-        for (Event event : events) {
+        for (EventSummary event : events) {
             View eventView = getLayoutInflater().inflate(R.layout.item_admin_event_list, eventsContainer, false);
 
             ImageView eventPoster = eventView.findViewById(R.id.event_image);
@@ -106,30 +142,7 @@ public class AdminEventListFragment extends Fragment {
             ImageButton deleteQRButton = eventView.findViewById(R.id.qr_delete_button);
 
             String posterImageId = event.getEventImageId();
-            if (posterImageId != null) {
-                firebaseService.getImageById(posterImageId, new FirebaseCallback<ImageData>() {
-                    @Override
-                    public void onSuccess(ImageData imageData) {
-                        if (imageData != null && imageData.getImageData() != null) {
-                            byte[] imageBytes = imageData.getImageData().toBytes();
-                            Bitmap profileBitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-                            eventPoster.setImageBitmap(profileBitmap);
-                        } else {
-                            // Handle case where image data is null
-                            eventPoster.setImageResource(R.drawable.ic_image);
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Exception e) {
-                        // Handle failure
-                        eventPoster.setImageResource(R.drawable.ic_image);
-                    }
-                });
-            } else {
-                // No poster image, set placeholder
-                eventPoster.setImageResource(R.drawable.ic_image);
-            }
+            ImageLoader.getInstance(requireContext()).loadInto(eventPoster, posterImageId, R.drawable.ic_image);
 
             eventTitle.setText(event.getTitle());
 
@@ -171,8 +184,8 @@ public class AdminEventListFragment extends Fragment {
         firebaseService.deleteEvent(eventId, new FirebaseCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
+                // The repository listener removes the deleted event from the list
                 Toast.makeText(requireContext(), "Event successfully deleted.", Toast.LENGTH_SHORT).show();
-                loadAdminEvents();  // Refresh the events list to reflect deletion
             }
 
             @Override
@@ -1,7 +1,5 @@
 package com.example.orange.ui.admin;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import androidx.fragment.app.Fragment;
 import androidx.test.espresso.remote.EspressoRemoteMessage;
@@ -19,8 +17,8 @@ import android.widget.Toast;
 import com.example.orange.R;
 import com.example.orange.data.firebase.FirebaseCallback;
 import com.example.orange.data.firebase.FirebaseService;
-import com.example.orange.data.model.ImageData;
 import com.example.orange.data.model.User;
+import com.example.orange.utils.ImageLoader;
 
 import java.util.List;
 
@@ -96,30 +94,7 @@ public class AdminProfilesFragment extends Fragment {
             ImageButton deletePicButton = userView.findViewById(R.id.profile_pic_delete_button);
 
             String profileImageId = user.getProfileImageId();
-            if (profileImageId != null) {
-                firebaseService.getImageById(profileImageId, new FirebaseCallback<ImageData>() {
-                    @Override
-                    public void onSuccess(ImageData imageData) {
-                        if (imageData != null && imageData.getImageData() != null) {
-                            byte[] imageBytes = imageData.getImageData().toBytes();
-                            Bitmap profileBitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-                            userProfilePicture.setImageBitmap(profileBitmap);
-                        } else {
-                            // Handle case where image data is null
-                            userProfilePicture.setImageResource(R.drawable.ic_profile);
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Exception e) {
-                        // Handle failure
-                        userProfilePicture.setImageResource(R.drawable.ic_profile);
-                    }
-                });
-            } else {
-                // No profile image, set placeholder or generate initials
-                userProfilePicture.setImageResource(R.drawable.ic_profile);
-            }
+            ImageLoader.getInstance(requireContext()).loadInto(userProfilePicture, profileImageId, R.drawable.ic_profile);
 
             userName.setText(user.getUsername());
             userEmail.setText(user.getEmail());
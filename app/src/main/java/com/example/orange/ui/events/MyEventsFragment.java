@@ -1,7 +1,6 @@
 package com.example.orange.ui.events;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.content.Context;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -20,12 +19,13 @@ import androidx.fragment.app.Fragment;
 import com.example.orange.R;
 import com.example.orange.data.firebase.FirebaseCallback;
 import com.example.orange.data.firebase.FirebaseService;
+import com.example.orange.data.lottery.LotteryDrawService;
 import com.example.orange.data.model.Event;
-import com.example.orange.data.model.ImageData;
-import com.example.orange.data.model.Notification;
-import com.example.orange.data.model.NotificationType;
+import com.example.orange.data.model.EventRole;
+import com.example.orange.data.model.EventSummary;
 import com.example.orange.data.model.User;
 import com.example.orange.ui.notifications.EntrantNotifications;
+import com.example.orange.utils.ImageLoader;
 import com.example.orange.utils.SessionManager;
 
 import java.text.SimpleDateFormat;
@@ -33,7 +33,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
+import java.util.Map;
 
 /**
  * MyEventsFragment is responsible for displaying a list of events
@@ -85,10 +85,30 @@ public class MyEventsFragment extends Fragment {
         String userId = userID + "_" + userType;
 
         Log.d("View FRAG", userId);
-        firebaseService.getUserEvents(userId, new FirebaseCallback<List<Event>>() {
+        firebaseService.getUserMemberships(userId, new FirebaseCallback<Map<String, EventRole>>() {
             @Override
-            public void onSuccess(List<Event> events) {
-                displayEvents(events, userId);
+            public void onSuccess(Map<String, EventRole> memberships) {
+                List<String> eventIds = new ArrayList<>();
+                for (Map.Entry<String, EventRole> membership : memberships.entrySet()) {
+                    if (membership.getValue() != EventRole.CANCELLED) {
+                        eventIds.add(membership.getKey());
+                    }
+                }
+                firebaseService.getEventSummariesByIds(eventIds, new FirebaseCallback<List<EventSummary>>() {
+                    @Override
+                    public void onSuccess(List<EventSummary> events) {
+                        if (eventsContainer == null || !isAdded()) {
+                            return;
+                        }
+                        displayEvents(events, memberships, userId);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        Toast.makeText(requireContext(), "Failed to load your events", Toast.LENGTH_SHORT).show();
+                        Log.e("MyEventsFragment", "Error loading user events", e);
+                    }
+                });
             }
 
             @Override
@@ -104,13 +124,14 @@ public class MyEventsFragment extends Fragment {
      * information about each event's status and allowing the user to leave
      * the event or queue if applicable.
      *
-     * @param events List of Event objects representing the user's events.
-     * @param userId The unique ID of the current user.
+     * @param events      Summaries of the user's events.
+     * @param memberships The user's role in each event, keyed by event ID.
+     * @param userId      The unique ID of the current user.
      */
-    private void displayEvents(List<Event> events, String userId) {
+    private void displayEvents(List<EventSummary> events, Map<String, EventRole> memberships, String userId) {
         eventsContainer.removeAllViews();
 
-        for (Event event : events) {
+        for (EventSummary event : events) {
             View eventView = getLayoutInflater().inflate(R.layout.item_view_my_events, eventsContainer, false);
 
             ImageView eventImage = eventView.findViewById(R.id.event_image);
@@ -128,33 +149,13 @@ public class MyEventsFragment extends Fragment {
 
             // Load and display the event image if available
             String eventImageId = event.getEventImageId();
-            if (eventImageId != null) {
-                firebaseService.getImageById(eventImageId, new FirebaseCallback<ImageData>() {
-                    @Override
-                    public void onSuccess(ImageData imageData) {
-                        if (imageData != null && imageData.getImageData() != null) {
-                            byte[] imageBytes = imageData.getImageData().toBytes();
-                            Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-                            eventImage.setImageBitmap(bitmap);
-                        } else {
-                            eventImage.setImageResource(R.drawable.ic_image); // Placeholder if image data is null
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Exception e) {
-                        eventImage.setImageResource(R.drawable.ic_image); // Placeholder if failed to load image
-                        Log.e("MyEventsFragment", "Error loading event image", e);
-                    }
-                });
-            } else {
-                eventImage.setImageResource(R.drawable.ic_image); // Placeholder if no image is available
-            }
+            ImageLoader.getInstance(requireContext()).loadInto(eventImage, eventImageId, R.drawable.ic_image);
 
             // Determine user's status in the event
-            boolean isSelectedParticipant = event.getSelectedParticipants() != null && event.getSelectedParticipants().contains(userId);
-            boolean isParticipant = event.getParticipants() != null && event.getParticipants().contains(userId);
-            boolean isWaitlisted = event.getWaitingList() != null && event.getWaitingList().contains(userId);
+            EventRole role = memberships.get(event.getId());
+            boolean isSelectedParticipant = role == EventRole.SELECTED;
+            boolean isParticipant = role == EventRole.PARTICIPANT;
+            boolean isWaitlisted = role == EventRole.WAITLISTED;
 
             // Set event date
             String eventDateText = event.getStartDate() != null ? dateFormat.format(event.getStartDate().toDate()) : "No date available";
@@ -168,12 +169,12 @@ public class MyEventsFragment extends Fragment {
 
                 // Handle Accept Button Click
                 acceptButton.setOnClickListener(v -> {
-                    acceptEventInvitation(event.getId(), userId);
+                    acceptEventInvitation(event, userId);
                 });
 
                 // Handle Decline Button Click
                 declineButton.setOnClickListener(v -> {
-                    declineEventInvitation(event.getId(), userId);
+                    declineEventInvitation(event, userId);
                 });
             } else if (isParticipant) {
                 lotteryStatus.setText("Participant");
@@ -259,70 +260,16 @@ public class MyEventsFragment extends Fragment {
     /**
      * Handles the acceptance of an invitation by a user.
      *
-     * @param eventId The ID of the event.
-     * @param userId  The ID of the user.
+     * @param event  The event.
+     * @param userId The ID of the user.
      */
-    private void acceptEventInvitation(String eventId, String userId) {
-        firebaseService.acceptEventInvitation(eventId, userId, new FirebaseCallback<Void>() {
+    private void acceptEventInvitation(EventSummary event, String userId) {
+        firebaseService.respondToInvitation(event, userId, true, new FirebaseCallback<User>() {
             @Override
-            public void onSuccess(Void result) {
-                firebaseService.getNotificationsForUser(userId, new FirebaseCallback<List<Notification>>() {
-                    @Override
-                    public void onSuccess(List<Notification> notis) {
-                        for(Notification notifications : notis){
-                            if((Objects.equals(notifications.getEventId(), eventId ) && notifications.getType() == NotificationType.SELECTED_TO_PARTICIPATE)){
-                                notifications.accept();
-                                firebaseService.updateNotification(notifications, new FirebaseCallback<Void>() {
-                                    @Override
-                                    public void onSuccess(Void result) {
-                                        firebaseService.getEventById(eventId, new FirebaseCallback<Event>() {
-                                            @Override
-                                            public void onSuccess(Event event) {
-                                                firebaseService.getUserById(event.getOrganizerId(), new FirebaseCallback<User>() {
-                                                    @Override
-                                                    public void onSuccess(User organizer) {
-                                                        entrantNotifications.sendToPhone(requireContext(), "A user has accepted the offer to join your event", userId + " has accepted the offer!", organizer,notifications);
-                                                        Notification notification = new Notification(eventId, organizer.getId(), NotificationType.ORGANIZER);
-                                                        firebaseService.createNotification(notification, new FirebaseCallback<String>() {
-                                                            @Override
-                                                            public void onSuccess(String result) {
-                                                                Log.d("ORANGE", "Notification created");
-                                                            }
-
-                                                            @Override
-                                                            public void onFailure(Exception e) {
-                                                                Log.d("ORANGE", "Failed to create notification");
-                                                            }
-                                                        });
-                                                    }
-                                                    @Override
-                                                    public void onFailure(Exception e) {
-                                                        Log.d("ORANGE", "Failed to get user");
-                                                    }
-                                                });
-                                            }
-
-                                            @Override
-                                            public void onFailure(Exception e) {
-                                                Log.d("ORANGE", "Failed to get event");
-                                            }
-                                        });
-                                    }
-
-                                    @Override
-                                    public void onFailure(Exception e) {
-                                        Log.d("ORANGE", "Failed to update notification");
-                                    }
-                                });
-
-                            }
-                        }
-                    }
-                    @Override
-                    public void onFailure(Exception e) {
-                        Log.d("Notifications", "Failed to grab notifications");
-                    }
-                });
+            public void onSuccess(User organizer) {
+                if (organizer != null) {
+                    entrantNotifications.sendToPhone(requireContext(), "A user has accepted the offer to join your event", userId + " has accepted the offer!", organizer, null);
+                }
                 Toast.makeText(requireContext(), "You have accepted the invitation.", Toast.LENGTH_SHORT).show();
                 loadUserEvents(); // Refresh the events list
             }
@@ -338,80 +285,59 @@ public class MyEventsFragment extends Fragment {
     /**
      * Handles the decline of an invitation by a user.
      *
-     * @param eventId The ID of the event.
-     * @param userId  The ID of the user.
+     * @param event  The event.
+     * @param userId The ID of the user.
      */
-    private void declineEventInvitation(String eventId, String userId) {
-        firebaseService.declineEventInvitation(eventId, userId, new FirebaseCallback<Void>() {
+    private void declineEventInvitation(EventSummary event, String userId) {
+        firebaseService.respondToInvitation(event, userId, false, new FirebaseCallback<User>() {
             @Override
-            public void onSuccess(Void result) {
-                firebaseService.getNotificationsForUser(userId, new FirebaseCallback<List<Notification>>() {
+            public void onSuccess(User organizer) {
+                if (organizer != null) {
+                    entrantNotifications.sendToPhone(requireContext(), "A user has declined the offer to join your event", userId + " has declined the offer.", organizer, null);
+                }
+                refillFromWaitlist(requireContext(), event.getId());
+                Toast.makeText(requireContext(), "You have declined the invitation.", Toast.LENGTH_SHORT).show();
+                loadUserEvents(); // Refresh the events list
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Toast.makeText(requireContext(), "Failed to decline the invitation.", Toast.LENGTH_SHORT).show();
+                Log.e("MyEventsFragment", "Decline Invitation Error", e);
+            }
+        });
+    }
+
+    /**
+     * Offers the places left open by a declined invitation to users on the waitlist.
+     *
+     * @param context The context used to send push notifications.
+     * @param eventId The ID of the event with an open place.
+     */
+    private void refillFromWaitlist(Context context, String eventId) {
+        // The draw needs the whole event, which the summary does not carry
+        firebaseService.getEventById(eventId, new FirebaseCallback<Event>() {
+            @Override
+            public void onSuccess(Event event) {
+                if (event == null) {
+                    return;
+                }
+                new LotteryDrawService(context).draw(event, false, new FirebaseCallback<List<String>>() {
                     @Override
-                    public void onSuccess(List<Notification> notis) {
-                        for(Notification notifications : notis){
-                            if(Objects.equals(notifications.getEventId(), eventId)){
-                                notifications.decline();
-                                firebaseService.updateNotification(notifications, new FirebaseCallback<Void>() {
-                                    @Override
-                                    public void onSuccess(Void result) {
-                                        firebaseService.getEventById(eventId, new FirebaseCallback<Event>() {
-                                            @Override
-                                            public void onSuccess(Event event) {
-                                                firebaseService.getUserById(event.getOrganizerId(), new FirebaseCallback<User>() {
-                                                    @Override
-                                                    public void onSuccess(User organizer) {
-                                                        entrantNotifications.sendToPhone(requireContext(), "A user has declined the offer to join your event", userId + " has declined the offer.", organizer,notifications);
-                                                        Notification notification1 = new Notification();
-                                                        notification1.setEventId(eventId);
-                                                        event.fillSpotsFromWaitingList(requireContext(), notification1);
-                                                        Notification notification = new Notification(eventId, organizer.getId(), NotificationType.ORGANIZER);
-                                                        firebaseService.createNotification(notification, new FirebaseCallback<String>() {
-                                                            @Override
-                                                            public void onSuccess(String result) {
-                                                                Log.d("ORANGE", "Notification created");
-                                                            }
-
-                                                            @Override
-                                                            public void onFailure(Exception e) {
-                                                                Log.d("ORANGE", "Failed to create notification");
-                                                            }
-                                                        });
-                                                    }
-                                                    @Override
-                                                    public void onFailure(Exception e) {
-                                                        Log.d("ORANGE", "Failed to get user");
-                                                    }
-                                                });
-                                            }
-
-                                            @Override
-                                            public void onFailure(Exception e) {
-                                                Log.d("ORANGE", "Failed to get event");
-                                            }
-                                        });
-                                    }
-
-                                    @Override
-                                    public void onFailure(Exception e) {
-                                        Log.d("ORANGE", "Failed to update notification");
-                                    }
-                                });
-                            }
-                        }
+                    public void onSuccess(List<String> selected) {
+                        Log.d("MyEventsFragment", "Offered " + selected.size() + " places from the waitlist");
                     }
+
                     @Override
                     public void onFailure(Exception e) {
-                        Log.d("Notifications", "Failed to grab notifications");
+                        Log.d("MyEventsFragment", "No places offered from the waitlist: " + e.getMessage());
                     }
                 });
-                Toast.makeText(requireContext(), "You have declined the invitation.", Toast.LENGTH_SHORT).show();
-                loadUserEvents(); // Refresh the events list
             }
 
             @Override
             public void onFailure(Exception e) {
-                Toast.makeText(requireContext(), "Failed to decline the invitation.", Toast.LENGTH_SHORT).show();
-                Log.e("MyEventsFragment", "Decline Invitation Error", e);
+                Log.e("MyEventsFragment", "Error loading event " + eventId + " to refill", e);
             }
         });
     }
@@ -3,9 +3,8 @@ package com.example.orange.ui.events;
 import static androidx.test.platform.app.InstrumentationRegistry.getArguments;
 
 import android.annotation.SuppressLint;
+import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Button;
@@ -21,16 +20,14 @@ import com.example.orange.MainActivity;
 import com.example.orange.R;
 import com.example.orange.data.firebase.FirebaseCallback;
 import com.example.orange.data.firebase.FirebaseService;
+import com.example.orange.data.lottery.LotteryDrawService;
 import com.example.orange.data.model.Event;
-import com.example.orange.data.model.ImageData;
-import com.example.orange.data.model.Notification;
-import com.example.orange.data.model.NotificationType;
 import com.example.orange.data.model.User;
 import com.example.orange.ui.notifications.EntrantNotifications;
+import com.example.orange.utils.ImageLoader;
 import com.example.orange.utils.SessionManager;
 
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Activity to display details of an event and allow users to join or leave the event's waitlist.
@@ -43,6 +40,7 @@ public class entrantEventDetailsActivity extends AppCompatActivity {
     private Button leaveEventButton;
     private EntrantNotifications entrantNotifications;
     private String eventId;
+    private Event event; // The event once loaded, used to answer the invitation
     private FirebaseService firebaseService; // Service to interact with Firebase
     private SessionManager sessionManager; // Manages user session
 
@@ -76,8 +74,8 @@ public class entrantEventDetailsActivity extends AppCompatActivity {
 
         joinEventButton = findViewById(R.id.AcceptEventButton);
         leaveEventButton = findViewById(R.id.DeclineEventButton);
-        joinEventButton.setOnClickListener(v -> acceptEvent(eventId));
-        leaveEventButton.setOnClickListener(v -> declineEvent(eventId));
+        joinEventButton.setOnClickListener(v -> acceptEvent());
+        leaveEventButton.setOnClickListener(v -> declineEvent());
     }
 
     /**
@@ -90,30 +88,11 @@ public class entrantEventDetailsActivity extends AppCompatActivity {
             @Override
             public void onSuccess(Event result) {
                 if (result != null) {
+                    event = result;
                     // Display event image
                     ImageView eventImage = findViewById(R.id.eventImage);
                     String eventImageId = result.getEventImageId();
-                    if (eventImageId != null) {
-                        firebaseService.getImageById(eventImageId, new FirebaseCallback<ImageData>() {
-                            @Override
-                            public void onSuccess(ImageData imageData) {
-                                if (imageData != null && imageData.getImageData() != null) {
-                                    byte[] imageBytes = imageData.getImageData().toBytes();
-                                    Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-                                    eventImage.setImageBitmap(bitmap);
-                                } else {
-                                    eventImage.setImageResource(R.drawable.ic_image); // Placeholder if image data is null
-                                }
-                            }
-
-                            @Override
-                            public void onFailure(Exception e) {
-                                eventImage.setImageResource(R.drawable.ic_image); // Placeholder if failed to load image
-                            }
-                        });
-                    } else {
-                        eventImage.setImageResource(R.drawable.ic_image); // Placeholder if no image is available
-                    }
+                    ImageLoader.getInstance(entrantEventDetailsActivity.this).loadInto(eventImage, eventImageId, R.drawable.ic_image);
 
                     ((TextView) findViewById(R.id.eventName)).setText("Congratulations! You have been selected to join the " + result.getTitle() + " event");
                     ((TextView) findViewById(R.id.eventDescriptionText)).setText(result.getDescription());
@@ -134,72 +113,20 @@ public class entrantEventDetailsActivity extends AppCompatActivity {
     }
 
     /**
-     * Adds the user to the event waitlist.
-     *
-     * @param eventId The ID of the event to join
+     * Accepts the invitation to the loaded event.
      */
-    private void acceptEvent(String eventId) {
+    private void acceptEvent() {
+        if (event == null) {
+            Toast.makeText(this, "Event details are still loading", Toast.LENGTH_SHORT).show();
+            return;
+        }
         String userId = sessionManager.getUserSession().getUserId();
-        //TODO: intsead of adding to the waitlist add list of accepted users
-        firebaseService.acceptEventInvitation(eventId, userId, new FirebaseCallback<Void>() {
+        firebaseService.respondToInvitation(event, userId, true, new FirebaseCallback<User>() {
             @Override
-            public void onSuccess(Void result) {
-                firebaseService.getNotificationsForUser(userId, new FirebaseCallback<List<Notification>>() {
-                    @Override
-                    public void onSuccess(List<Notification> notis) {
-                        for(Notification notifications : notis){
-                            if(Objects.equals(notifications.getEventId(), eventId)){
-                                notifications.accept();
-                                firebaseService.updateNotification(notifications, new FirebaseCallback<Void>() {
-                                    @Override
-                                    public void onSuccess(Void result) {
-                                        firebaseService.getEventById(eventId, new FirebaseCallback<Event>() {
-                                            @Override
-                                            public void onSuccess(Event event) {
-                                                firebaseService.getUserById(event.getOrganizerId(), new FirebaseCallback<User>() {
-                                                    @Override
-                                                    public void onSuccess(User organizer) {
-                                                        entrantNotifications.sendToPhone(getApplicationContext(), "A user has accepted the offer to join your event", userId + " has accepted the offer.", organizer,notifications);
-                                                        Notification notification = new Notification(eventId, organizer.getId(), NotificationType.ORGANIZER);
-                                                        firebaseService.createNotification(notification, new FirebaseCallback<String>() {
-                                                            @Override
-                                                            public void onSuccess(String result) {
-                                                                Log.d("ORANGE", "Notification created");
-                                                            }
-
-                                                            @Override
-                                                            public void onFailure(Exception e) {
-                                                                Log.d("ORANGE", "Failed to create notification");
-                                                            }
-                                                        });
-                                                    }
-                                                    @Override
-                                                    public void onFailure(Exception e) {
-                                                        Log.d("ORANGE", "Failed to get user");
-                                                    }
-                                                });
-                                            }
-
-                                            @Override
-                                            public void onFailure(Exception e) {
-                                                Log.d("ORANGE", "Failed to get event");
-                                            }
-                                        });
-                                    }
-
-                                    @Override
-                                    public void onFailure(Exception e) {
-                                        Log.d("ORANGE", "Failed to update notification");
-                                    }
-                                });
-                            }
-                        }
-                    }
-                    @Override
-                    public void onFailure(Exception e) {
-                        Log.d("Notifications", "Failed to grab notifications");
-                    }
-                });
+            public void onSuccess(User organizer) {
+                if (organizer != null) {
+                    entrantNotifications.sendToPhone(getApplicationContext(), "A user has accepted the offer to join your event", userId + " has accepted the offer.", organizer, null);
+                }
                 Toast.makeText(entrantEventDetailsActivity.this, "Accepted the offer", Toast.LENGTH_SHORT).show();
             }
 
@@ -208,78 +135,25 @@ public class entrantEventDetailsActivity extends AppCompatActivity {
                 Toast.makeText(entrantEventDetailsActivity.this, "Failed to accept offer", Toast.LENGTH_SHORT).show();
             }
         });
-
     }
 
     /**
-     * Removes the user from the event waitlist.
-     *
-     * @param eventId The ID of the event to leave
+     * Declines the invitation to the loaded event and offers the place to the waitlist.
      */
-    private void declineEvent(String eventId) {
+    private void declineEvent() {
+        if (event == null) {
+            Toast.makeText(this, "Event details are still loading", Toast.LENGTH_SHORT).show();
+            return;
+        }
         String userId = sessionManager.getUserSession().getUserId();
-        firebaseService.declineEventInvitation(eventId, userId, new FirebaseCallback<Void>() {
+        Event declined = event;
+        firebaseService.respondToInvitation(declined, userId, false, new FirebaseCallback<User>() {
             @Override
-            public void onSuccess(Void result) {
-                firebaseService.getNotificationsForUser(userId, new FirebaseCallback<List<Notification>>() {
-                    @Override
-                    public void onSuccess(List<Notification> notis) {
-                        for(Notification notifications : notis){
-                            if(Objects.equals(notifications.getEventId(), eventId)){
-                                notifications.decline();
-                                firebaseService.updateNotification(notifications, new FirebaseCallback<Void>() {
-                                    @Override
-                                    public void onSuccess(Void result) {
-                                        firebaseService.getEventById(eventId, new FirebaseCallback<Event>() {
-                                            @Override
-                                            public void onSuccess(Event event) {
-                                                firebaseService.getUserById(event.getOrganizerId(), new FirebaseCallback<User>() {
-                                                    @Override
-                                                    public void onSuccess(User organizer) {
-                                                        entrantNotifications.sendToPhone(getApplicationContext(), "A user has declined the offer to join your event", userId + " has declined the offer.", organizer,notifications);
-                                                        Notification notification = new Notification(eventId, organizer.getId(), NotificationType.ORGANIZER);
-                                                        firebaseService.createNotification(notification, new FirebaseCallback<String>() {
-                                                            @Override
-                                                            public void onSuccess(String result) {
-                                                                Log.d("ORANGE", "Notification created");
-                                                            }
-
-                                                            @Override
-                                                            public void onFailure(Exception e) {
-                                                                Log.d("ORANGE", "Failed to create notification");
-                                                            }
-                                                        });
-                                                        Notification notification1 = new Notification();
-                                                        notification1.setEventId(eventId);
-                                                        event.fillSpotsFromWaitingList(getApplicationContext(), notification1);
-                                                    }
-                                                    @Override
-                                                    public void onFailure(Exception e) {
-                                                        Log.d("ORANGE", "Failed to get user");
-                                                    }
-                                                });
-                                            }
-
-                                            @Override
-                                            public void onFailure(Exception e) {
-                                                Log.d("ORANGE", "Failed to get event");
-                                            }
-                                        });
-                                    }
-
-                                    @Override
-                                    public void onFailure(Exception e) {
-                                        Log.d("ORANGE", "Failed to update notification");
-                                    }
-                                });
-                            }
-                        }
-                    }
-                    @Override
-                    public void onFailure(Exception e) {
-                        Log.d("Notifications", "Failed to grab notifications");
-                    }
-                });
+            public void onSuccess(User organizer) {
+                if (organizer != null) {
+                    entrantNotifications.sendToPhone(getApplicationContext(), "A user has declined the offer to join your event", userId + " has declined the offer.", organizer, null);
+                }
+                refillFromWaitlist(getApplicationContext(), declined);
                 Toast.makeText(entrantEventDetailsActivity.this, "Declined the offer", Toast.LENGTH_SHORT).show();
                 Intent intent = new Intent(getApplicationContext(), MainActivity.class);
                 intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
@@ -292,6 +166,25 @@ public class entrantEventDetailsActivity extends AppCompatActivity {
                 Toast.makeText(entrantEventDetailsActivity.this, "Failed to decline offer", Toast.LENGTH_SHORT).show();
             }
         });
+    }
+
+    /**
+     * Offers the places left open by a declined invitation to users on the waitlist.
+     *
+     * @param context The context used to send push notifications.
+     * @param event   The event with an open place.
+     */
+    private void refillFromWaitlist(Context context, Event event) {
+        new LotteryDrawService(context).draw(event, false, new FirebaseCallback<List<String>>() {
+            @Override
+            public void onSuccess(List<String> selected) {
+                Log.d("ORANGE", "Offered " + selected.size() + " places from the waitlist");
+            }
 
+            @Override
+            public void onFailure(Exception e) {
+                Log.d("ORANGE", "No places offered from the waitlist: " + e.getMessage());
+            }
+        });
     }
 }
@@ -1,7 +1,5 @@
 package com.example.orange.ui.events;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -20,7 +18,7 @@ import com.example.orange.R;
 import com.example.orange.data.firebase.FirebaseCallback;
 import com.example.orange.data.firebase.FirebaseService;
 import com.example.orange.data.model.Event;
-import com.example.orange.data.model.ImageData;
+import com.example.orange.utils.ImageLoader;
 import com.example.orange.utils.SessionManager;
 
 
@@ -77,27 +75,7 @@ public class entrantEventDetailsFragment extends Fragment {
                     // Display event image
                     ImageView eventImage = view.findViewById(R.id.eventImage);
                     String eventImageId = result.getEventImageId();
-                    if (eventImageId != null) {
-                        firebaseService.getImageById(eventImageId, new FirebaseCallback<ImageData>() {
-                            @Override
-                            public void onSuccess(ImageData imageData) {
-                                if (imageData != null && imageData.getImageData() != null) {
-                                    byte[] imageBytes = imageData.getImageData().toBytes();
-                                    Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-                                    eventImage.setImageBitmap(bitmap);
-                                } else {
-                                    eventImage.setImageResource(R.drawable.ic_image); // Placeholder if image data is null
-                                }
-                            }
-
-                            @Override
-                            public void onFailure(Exception e) {
-                                eventImage.setImageResource(R.drawable.ic_image); // Placeholder if failed to load image
-                            }
-                        });
-                    } else {
-                        eventImage.setImageResource(R.drawable.ic_image); // Placeholder if no image is available
-                    }
+                    ImageLoader.getInstance(requireContext()).loadInto(eventImage, eventImageId, R.drawable.ic_image);
 
                     ((TextView) view.findViewById(R.id.eventName)).setText(result.getTitle());
                     ((TextView) view.findViewById(R.id.eventDescriptionText)).setText(result.getDescription());
@@ -1,8 +1,6 @@
 package com.example.orange.ui.join;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,9 +15,8 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.orange.R;
-import com.example.orange.data.firebase.FirebaseCallback;
-import com.example.orange.data.firebase.FirebaseService;
-import com.example.orange.data.model.Event;
+import com.example.orange.data.model.EventSummary;
+import com.example.orange.utils.ImageLoader;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -27,18 +24,20 @@ import java.util.List;
 import java.util.Locale;
 
 public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHolder> {
+    // Ask for the next page once the user scrolls within this many items of the end
+    private static final int PREFETCH_DISTANCE = 5;
 
-    private final List<Event> events;
+    private final List<EventSummary> events;
     private final Context context;
     private final JoinEventFragment joinEventFragment;
-    private final FirebaseService firebaseService;
+    private final ImageLoader imageLoader;
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
 
-    public EventAdapter(List<Event> events, Context context, JoinEventFragment fragment) {
+    public EventAdapter(List<EventSummary> events, Context context, JoinEventFragment fragment) {
         this.events = events;
         this.context = context;
         this.joinEventFragment = fragment;
-        this.firebaseService = new FirebaseService();
+        this.imageLoader = ImageLoader.getInstance(context);
     }
 
     @NonNull
@@ -50,8 +49,13 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
 
     @Override
     public void onBindViewHolder(@NonNull EventViewHolder holder, int position) {
-        Event event = events.get(position);
+        EventSummary event = events.get(position);
         holder.bind(event);
+
+        // Posted so the list is not modified while RecyclerView is laying out
+        if (position >= events.size() - PREFETCH_DISTANCE) {
+            holder.itemView.post(joinEventFragment::loadMoreEvents);
+        }
     }
 
     @Override
@@ -76,7 +80,7 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
             joinWaitlistButton = itemView.findViewById(R.id.join_waitlist_button);
         }
 
-        void bind(Event event) {
+        void bind(EventSummary event) {
             eventTitle.setText(event.getTitle());
 
             // Set the event date
@@ -87,31 +91,16 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
                 eventDate.setText("No registration deadline");
             }
 
-            lotteryStatus.setText("Available to Join");
+            long waitlisted = event.getCounters().getWaitlist();
+            if (event.isFull()) {
+                lotteryStatus.setText("Event Full - " + waitlisted + " on Waitlist");
+            } else {
+                lotteryStatus.setText("Available to Join - " + waitlisted + " on Waitlist");
+            }
 
             // Load the event image
             String eventImageId = event.getEventImageId();
-            if (eventImageId != null && !eventImageId.isEmpty()) {
-                firebaseService.getImageById(eventImageId, new FirebaseCallback<com.example.orange.data.model.ImageData>() {
-                    @Override
-                    public void onSuccess(com.example.orange.data.model.ImageData imageData) {
-                        if (imageData != null && imageData.getImageData() != null) {
-                            byte[] imageBytes = imageData.getImageData().toBytes();
-                            Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-                            eventImage.setImageBitmap(bitmap);
-                        } else {
-                            eventImage.setImageResource(R.drawable.ic_image); // Placeholder image
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Exception e) {
-                        eventImage.setImageResource(R.drawable.ic_image); // Placeholder on failure
-                    }
-                });
-            } else {
-                eventImage.setImageResource(R.drawable.ic_image); // Placeholder if no image ID
-            }
+            imageLoader.loadInto(eventImage, eventImageId, R.drawable.ic_image);
 
             // Set up the "Join Waitlist" button
             joinWaitlistButton.setOnClickListener(v -> {
@@ -22,9 +22,14 @@ import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
+import com.example.orange.data.entrants.JoinTicket;
 import com.example.orange.data.firebase.FirebaseCallback;
+import com.example.orange.data.firebase.FirebaseFutures;
 import com.example.orange.data.firebase.FirebaseService;
-import com.example.orange.data.model.Event;
+import com.example.orange.data.firebase.EventPager;
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.model.EventSummary;
+import com.example.orange.data.model.EventRole;
 import com.example.orange.data.model.Notification;
 import com.example.orange.data.model.NotificationType;
 import com.example.orange.data.model.User;
@@ -34,12 +39,14 @@ import com.example.orange.ui.notifications.EntrantNotifications;
 import com.example.orange.utils.SessionManager;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JoinEventFragment displays a list of events that the user is eligible to join.
@@ -48,12 +55,19 @@ import java.util.Map;
 public class JoinEventFragment extends Fragment {
     private FragmentJoinEventBinding binding;
     private FirebaseService firebaseService;
+    private EventPager eventPager;
+    private String userId;
+    private Map<String, EventRole> memberships;
+    private boolean filtering; // A page is being filtered; the next one waits so pages stay in order
     private SessionManager sessionManager;
     private EventAdapter eventAdapter;
     private EntrantNotifications entrantNotifications;
-    private List<Event> eventList;
+    private List<EventSummary> eventList;
+    private final List<DataGateway.Registration> ticketWatches = new ArrayList<>(); // Queued joins not yet decided
     private static final String TAG = "JoinEventFragment";
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1001;
+    private static final int PAGE_SIZE = 20;
+    private static final long LOAD_TIMEOUT_SECONDS = 20;
 
     /**
      * Creates and returns the view hierarchy associated with the fragment.
@@ -71,6 +85,7 @@ public class JoinEventFragment extends Fragment {
 
         // Initialize FirebaseService and SessionManager
         firebaseService = new FirebaseService();
+        eventPager = new EventPager(firebaseService, PAGE_SIZE);
         sessionManager = new SessionManager(requireContext());
 
         // Initialize the notifications
@@ -95,14 +110,19 @@ public class JoinEventFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        eventPager.reset();
+        for (DataGateway.Registration watch : ticketWatches) {
+            watch.remove();
+        }
+        ticketWatches.clear();
         binding = null;
     }
 
     /**
-     * Loads all events from Firebase that the user is eligible to join.
+     * Loads the first page of events from Firebase that the user is eligible to join.
      * Filters out events where the user is already a participant, on the waiting list,
-     * or has declined the invitation.
-     * Updates the RecyclerView with the filtered list of events.
+     * or has declined the invitation. Further pages are loaded by loadMoreEvents as
+     * the user scrolls.
      */
     private void loadEvents() {
         UserSession userSession = sessionManager.getUserSession();
@@ -113,55 +133,126 @@ public class JoinEventFragment extends Fragment {
 
         String userID = userSession.getUserId();
         String userType = userSession.getUserType().toString();
-        String userId = userID + "_" + userType;
+        userId = userID + "_" + userType;
         Log.d(TAG, "Loading events for user: " + userId);
 
-        firebaseService.getUserEvents(userId, new FirebaseCallback<List<Event>>() {
+        // The membership index and the first page do not depend on each other; read both at once
+        memberships = null;
+        eventList.clear();
+        eventAdapter.notifyDataSetChanged();
+        eventPager.reset();
+        CompletableFuture<Map<String, EventRole>> userMemberships = firebaseService.getUserMemberships(userId);
+        CompletableFuture<List<EventSummary>> firstPage = FirebaseFutures.of(eventPager::loadNextPage);
+        CompletableFuture<Map<String, EventRole>> loaded = userMemberships.thenCombine(firstPage, (roles, page) -> roles);
+        FirebaseFutures.bindTo(getViewLifecycleOwner(), FirebaseFutures.withTimeout(loaded, LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                .whenCompleteAsync((roles, error) -> {
+                    if (binding == null || error instanceof CancellationException) {
+                        return;
+                    }
+                    if (error != null) {
+                        Toast.makeText(requireContext(), "Failed to load events", Toast.LENGTH_SHORT).show();
+                        Log.e(TAG, "Error loading events", error);
+                        return;
+                    }
+                    memberships = roles;
+                    showPage(firstPage.join());
+                }, FirebaseFutures.MAIN_THREAD);
+    }
+
+    /**
+     * Appends the next page of events the user is eligible to join. Does nothing while a
+     * page is already loading or once every event has been read. Pages whose events are
+     * all filtered out are skipped automatically.
+     */
+    public void loadMoreEvents() {
+        if (binding == null || memberships == null || filtering || eventPager.isLoading() || !eventPager.hasMore()) {
+            return;
+        }
+        eventPager.loadNextPage(new FirebaseCallback<List<EventSummary>>() {
             @Override
-            public void onSuccess(List<Event> userEvents) {
-                firebaseService.getAllEvents(new FirebaseCallback<List<Event>>() {
-                    @Override
-                    public void onSuccess(List<Event> allEvents) {
-                        eventList.clear();
-
-                        // Iterate through all events and add those where the user is not involved
-                        for (Event event : allEvents) {
-                            List<String> participants = event.getParticipants() != null ? event.getParticipants() : new ArrayList<>();
-                            List<String> selectedParticipants = event.getSelectedParticipants() != null ? event.getSelectedParticipants() : new ArrayList<>();
-                            List<String> waitingList = event.getWaitingList() != null ? event.getWaitingList() : new ArrayList<>();
-                            List<String> cancelledList = event.getCancelledList() != null ? event.getCancelledList() : new ArrayList<>();
-
-                            // User should not be in any of these lists to join
-                            if (!participants.contains(userId) &&
-                                    !selectedParticipants.contains(userId) &&
-                                    !waitingList.contains(userId) &&
-                                    !cancelledList.contains(userId)) {
-                                eventList.add(event);
-                            }
-                        }
+            public void onSuccess(List<EventSummary> page) {
+                if (binding == null) {
+                    return;
+                }
+                showPage(page);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (binding == null) {
+                    return;
+                }
+                Toast.makeText(requireContext(), "Failed to load all events: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Error loading all events", e);
+            }
+        });
+    }
 
-                        // Notify adapter to update the RecyclerView with the new list
-                        eventAdapter.notifyDataSetChanged();
-                        Log.d(TAG, "Available Events to Join: " + eventList.size());
-                        for (Event event : eventList) {
-                            Log.d(TAG, "Event ID: " + event.getId() + ", Title: " + event.getTitle());
+    /**
+     * Appends the events of a page the user is eligible to join, loading the next page
+     * if none of them are. The page is filtered on a background thread.
+     *
+     * @param page The events of the page.
+     */
+    private void showPage(List<EventSummary> page) {
+        // Filter against a copy, as joining updates the memberships on the main thread
+        Map<String, EventRole> joined = new HashMap<>(memberships);
+        filtering = true;
+        FirebaseFutures.bindTo(getViewLifecycleOwner(), FirebaseService.mapInBackground(() -> eligibleEvents(page, joined)))
+                .whenCompleteAsync((eligible, error) -> {
+                    filtering = false;
+                    if (binding == null || error != null) {
+                        return;
+                    }
+                    int start = eventList.size();
+                    for (EventSummary event : eligible) {
+                        if (indexOfEvent(event.getId()) < 0) {
+                            eventList.add(event);
                         }
                     }
+                    int added = eventList.size() - start;
+                    if (added > 0) {
+                        eventAdapter.notifyItemRangeInserted(start, added);
+                    }
+                    Log.d(TAG, "Available Events to Join: " + eventList.size());
 
-                    @Override
-                    public void onFailure(Exception e) {
-                        Toast.makeText(requireContext(), "Failed to load all events: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        Log.e(TAG, "Error loading all events", e);
+                    // Nothing new to show, so the adapter will not ask again; keep going
+                    if (added == 0 && eventPager.hasMore()) {
+                        loadMoreEvents();
                     }
-                });
+                }, FirebaseFutures.MAIN_THREAD);
+    }
+
+    /**
+     * Picks the events of a page the user can still join.
+     *
+     * @param page        The events of the page.
+     * @param memberships The user's roles by event ID.
+     * @return The eligible events, in page order.
+     */
+    private static List<EventSummary> eligibleEvents(List<EventSummary> page, Map<String, EventRole> memberships) {
+        List<EventSummary> eligible = new ArrayList<>();
+        for (EventSummary event : page) {
+            if (!memberships.containsKey(event.getId())) {
+                eligible.add(event);
             }
+        }
+        return eligible;
+    }
 
-            @Override
-            public void onFailure(Exception e) {
-                Toast.makeText(requireContext(), "Failed to load your events", Toast.LENGTH_SHORT).show();
-                Log.e(TAG, "Error loading user events", e);
+    /**
+     * Finds the position of an event in the displayed list.
+     *
+     * @param eventId The ID of the event.
+     * @return The index of the event, or -1 if it is not displayed.
+     */
+    private int indexOfEvent(String eventId) {
+        for (int i = 0; i < eventList.size(); i++) {
+            if (eventList.get(i).getId() != null && eventList.get(i).getId().equals(eventId)) {
+                return i;
             }
-        });
+        }
+        return -1;
     }
 
     /**
@@ -170,7 +261,7 @@ public class JoinEventFragment extends Fragment {
      *
      * @param event Event object the user wants to join the waitlist for.
      */
-    public void joinEvent(Event event) {
+    public void joinEvent(EventSummary event) {
         if (event.getGeolocationEvent() != null && event.getGeolocationEvent()) {
             // Show dialog to inform user that geolocation is required
             new AlertDialog.Builder(requireContext())
@@ -204,7 +295,7 @@ public class JoinEventFragment extends Fragment {
      *
      * @param event Event object the user wants to join the waitlist for.
      */
-    private void addUserToWaitlist(Event event) {
+    private void addUserToWaitlist(EventSummary event) {
         UserSession userSession = sessionManager.getUserSession();
         if (userSession == null) {
             Toast.makeText(requireContext(), "No active session. Please log in.", Toast.LENGTH_SHORT).show();
@@ -216,44 +307,118 @@ public class JoinEventFragment extends Fragment {
         String userId = userID + "_" + userType;
         Log.d(TAG, "Attempting to add user with ID: " + userId + " to event: " + event.getId());
 
+        String refusal = firebaseService.precheckJoin(event);
+        if (refusal != null) {
+            Toast.makeText(requireContext(), "Failed to join waitlist: " + refusal, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        if (Boolean.TRUE.equals(event.getQueuedAdmission())) {
+            firebaseService.queueEventWaitlistJoin(event.getId(), userId, new FirebaseCallback<JoinTicket>() {
+                @Override
+                public void onSuccess(JoinTicket ticket) {
+                    Toast.makeText(requireContext(), "You're in line; you'll be added to the waitlist shortly", Toast.LENGTH_SHORT).show();
+                    removeEvent(event.getId());
+                    watchTicket(event, userId);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    Toast.makeText(requireContext(), "Failed to join waitlist: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    Log.e(TAG, "Failed to queue join for event ID: " + event.getId(), e);
+                }
+            });
+            return;
+        }
+
         firebaseService.joinEventWaitlist(event.getId(), userId, new FirebaseCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
                 Toast.makeText(requireContext(), "Successfully added to waitlist", Toast.LENGTH_SHORT).show();
-                // Optionally, remove the event from the local list to reflect the change
-                firebaseService.getUserById(userId, new FirebaseCallback<User>() {
-                    @Override
-                    public void onSuccess(User user) {
-                        Notification notification = new Notification(event.getId(), userId, NotificationType.WAITLIST);
-                        firebaseService.createNotification(notification, new FirebaseCallback<String>() {
-                            @Override
-                            public void onSuccess(String result) {
-                                entrantNotifications.sendToPhone(requireContext(), "Added to the waitlist", "You have just been added to the " +event.getTitle() + " event waitlist", user, notification);
-                                Log.d(TAG, "Notification created");
-                            }
+                onJoined(event, userId);
+            }
 
-                            @Override
-                            public void onFailure(Exception e) {
-                                Log.d(TAG, "Failed to create notification");
-                            }
-                        });
+            @Override
+            public void onFailure(Exception e) {
+                Toast.makeText(requireContext(), "Failed to join waitlist: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Failed to join waitlist for event ID: " + event.getId(), e);
+            }
+        });
+    }
+
+    /**
+     * Waits for a queued join to be decided, then treats an admitted user as joined and
+     * tells a rejected user why.
+     *
+     * @param event  The event queued for.
+     * @param userId The ID of the user who queued.
+     */
+    private void watchTicket(EventSummary event, String userId) {
+        ticketWatches.add(firebaseService.watchJoinTicket(event.getId(), userId, new FirebaseCallback<JoinTicket>() {
+            @Override
+            public void onSuccess(JoinTicket ticket) {
+                if (ticket.isAdmitted()) {
+                    onJoined(event, userId);
+                } else {
+                    Toast.makeText(requireContext(), "Failed to join waitlist: " + ticket.getReason(), Toast.LENGTH_SHORT).show();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Failed to watch queued join for event ID: " + event.getId(), e);
+            }
+        }));
+    }
+
+    /**
+     * Updates the screen and notifies the user once they are on an event's waitlist.
+     *
+     * @param event  The event joined.
+     * @param userId The ID of the user who joined.
+     */
+    private void onJoined(EventSummary event, String userId) {
+        if (memberships != null) {
+            memberships.put(event.getId(), EventRole.WAITLISTED);
+        }
+        // Optionally, remove the event from the local list to reflect the change
+        firebaseService.getUserById(userId, new FirebaseCallback<User>() {
+            @Override
+            public void onSuccess(User user) {
+                Notification notification = new Notification(event.getId(), userId, NotificationType.WAITLIST);
+                firebaseService.createNotification(notification, new FirebaseCallback<String>() {
+                    @Override
+                    public void onSuccess(String result) {
+                        entrantNotifications.sendToPhone(requireContext(), "Added to the waitlist", "You have just been added to the " +event.getTitle() + " event waitlist", user, notification);
+                        Log.d(TAG, "Notification created");
                     }
 
                     @Override
                     public void onFailure(Exception e) {
-                        Log.d(TAG, "failed to get user" + userId);
+                        Log.d(TAG, "Failed to create notification");
                     }
                 });
-                eventList.remove(event);
-                eventAdapter.notifyDataSetChanged();
             }
 
             @Override
             public void onFailure(Exception e) {
-                Toast.makeText(requireContext(), "Failed to join waitlist: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                Log.e(TAG, "Failed to join waitlist for event ID: " + event.getId(), e);
+                Log.d(TAG, "failed to get user" + userId);
             }
         });
+        removeEvent(event.getId());
+    }
+
+    /**
+     * Removes an event from the list shown, if it is there.
+     *
+     * @param eventId The ID of the event.
+     */
+    private void removeEvent(String eventId) {
+        int position = indexOfEvent(eventId);
+        if (position >= 0) {
+            eventList.remove(position);
+            eventAdapter.notifyItemRemoved(position);
+        }
     }
 
     // Method to get the user's location and update Firebase
@@ -308,16 +473,17 @@ public class JoinEventFragment extends Fragment {
     }
 
     private void updateLocationInFirebase(String eventId, String userId, double latitude, double longitude) {
-        Map<String, Object> userLocation = new HashMap<>();
-        userLocation.put("ID", userId);
-        userLocation.put("latitude", latitude);
-        userLocation.put("longitude", longitude);
-
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-        db.collection("events").document(eventId)
-                .update("location." + userId, userLocation)
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "Location updated successfully"))
-                .addOnFailureListener(e -> Log.e(TAG, "Failed to update location", e));
+        firebaseService.updateEntrantLocation(eventId, userId, latitude, longitude, new FirebaseCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                Log.d(TAG, "Location updated successfully");
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Failed to update location", e);
+            }
+        });
     }
 
     // Handle the result of permission requests
@@ -45,6 +45,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -130,6 +131,65 @@ public class EntrantNotifications {
 //        createLocalNotification(context, title, message, notification);
     }
 
+    /**
+     * Sends the same push notification to many devices. The request queue and the access
+     * token are shared by all the messages, so a draw with many recipients costs one
+     * token fetch rather than one per recipient.
+     *
+     * @param context   the application context.
+     * @param title     the title of the notification.
+     * @param message   the message of the notification.
+     * @param fcmTokens the FCM tokens of the recipients.
+     */
+    public void sendToTokens(Context context, String title, String message, Collection<String> fcmTokens) {
+        if (fcmTokens.isEmpty()) {
+            return;
+        }
+        RequestQueue requestQueue = Volley.newRequestQueue(context.getApplicationContext());
+        // Headers are built on Volley's network threads, so the token is fetched there, once
+        String[] accessKey = new String[1];
+        for (String token : fcmTokens) {
+            JSONObject mainObj = new JSONObject();
+            try {
+                JSONObject messageObject = new JSONObject();
+                JSONObject notificationsObject = new JSONObject();
+                notificationsObject.put("title", title);
+                notificationsObject.put("body", message);
+
+                messageObject.put("token", token);
+                messageObject.put("notification", notificationsObject);
+
+                mainObj.put("message", messageObject);
+            } catch (JSONException e) {
+                Log.e(TAG, "Failed to build FCM message", e);
+                continue;
+            }
+
+            JsonObjectRequest request = new JsonObjectRequest(
+                    Request.Method.POST,
+                    postURL,
+                    mainObj,
+                    response -> Log.d(TAG, "FCM Notification sent successfully: " + response.toString()),
+                    volleyError -> Log.e(TAG, "FCM Notification sending failed: " + volleyError.toString())
+            ) {
+                @NonNull
+                @Override
+                public Map<String, String> getHeaders() {
+                    synchronized (accessKey) {
+                        if (accessKey[0] == null) {
+                            accessKey[0] = new AccessToken().getAccessToken();
+                        }
+                    }
+                    Map<String, String> header = new HashMap<>();
+                    header.put("Content-Type", "application/json");
+                    header.put("Authorization", "Bearer " + accessKey[0]);
+                    return header;
+                }
+            };
+            requestQueue.add(request);
+        }
+    }
+
     /**
      * Sends a Firebase Cloud Messaging (FCM) notification.
      *
@@ -1,6 +1,7 @@
 package com.example.orange.ui.organizer;
 
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,7 +11,10 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.orange.R;
+import com.example.orange.data.firebase.FirebaseCallback;
+import com.example.orange.data.firebase.FirebaseService;
 import com.example.orange.data.model.Event;
+import com.example.orange.data.model.EventEntry;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
@@ -19,6 +23,8 @@ import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MarkerOptions;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class MapsFragment extends Fragment implements OnMapReadyCallback {
@@ -53,9 +59,28 @@ public class MapsFragment extends Fragment implements OnMapReadyCallback {
     public void onMapReady(@NonNull GoogleMap map) {
         googleMap = map;
 
-        // Add markers for all users in the event's location map
-        if (event != null && event.getLocation() != null) {
-            addMarkersForUsers(event.getLocation());
+        // Add markers for all entrants that recorded a location when joining
+        if (event != null && event.getId() != null) {
+            new FirebaseService().getEventEntries(event.getId(), null, new FirebaseCallback<List<EventEntry>>() {
+                @Override
+                public void onSuccess(List<EventEntry> entries) {
+                    Map<String, Map<String, Object>> locationMap = new HashMap<>();
+                    for (EventEntry entry : entries) {
+                        if (entry.hasLocation()) {
+                            Map<String, Object> userLocation = new HashMap<>();
+                            userLocation.put("latitude", entry.getLatitude());
+                            userLocation.put("longitude", entry.getLongitude());
+                            locationMap.put(entry.getUserId(), userLocation);
+                        }
+                    }
+                    addMarkersForUsers(locationMap);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    Log.e("maps", "Failed to load entrant locations", e);
+                }
+            });
         }
     }
 
@@ -17,6 +17,7 @@ import com.example.orange.data.firebase.FirebaseService;
 import com.example.orange.data.model.User;
 
 import java.util.List;
+import java.util.Map;
 
 public class ParticipantsAdapter extends RecyclerView.Adapter<ParticipantsAdapter.ViewHolder> {
 
@@ -28,6 +29,8 @@ public class ParticipantsAdapter extends RecyclerView.Adapter<ParticipantsAdapte
     private OnParticipantActionListener actionListener;
     private Context context;
     private FirebaseService firebaseService;
+    private Map<String, User> users; // null until the batched fetch completes
+    private boolean loadFailed;
     private boolean isRemovable; // Flag to show/hide remove button
 
     /**
@@ -44,6 +47,34 @@ public class ParticipantsAdapter extends RecyclerView.Adapter<ParticipantsAdapte
         this.actionListener = actionListener;
         this.isRemovable = isRemovable;
         this.firebaseService = new FirebaseService();
+        loadUsers();
+    }
+
+    /**
+     * Fetches every listed user in one batched request and rebinds the rows once they arrive.
+     */
+    private void loadUsers() {
+        List<String> requestedIds = participantIds;
+        firebaseService.getUsersByIds(requestedIds, new FirebaseCallback<Map<String, User>>() {
+            @Override
+            public void onSuccess(Map<String, User> result) {
+                if (requestedIds != participantIds) {
+                    return;
+                }
+                users = result;
+                loadFailed = false;
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (requestedIds != participantIds) {
+                    return;
+                }
+                loadFailed = true;
+                notifyDataSetChanged();
+            }
+        });
     }
 
     @NonNull
@@ -56,22 +87,16 @@ public class ParticipantsAdapter extends RecyclerView.Adapter<ParticipantsAdapte
     @Override
     public void onBindViewHolder(@NonNull ParticipantsAdapter.ViewHolder holder, int position) {
         String userId = participantIds.get(position);
-        // Fetch user details to display name instead of ID
-        firebaseService.getUserById(userId, new FirebaseCallback<User>() {
-            @Override
-            public void onSuccess(User user) {
-                if (user != null) {
-                    holder.participantNameTextView.setText(user.getId()); // Use getName() if available
-                } else {
-                    holder.participantNameTextView.setText("Unknown User");
-                }
-            }
-
-            @Override
-            public void onFailure(Exception e) {
-                holder.participantNameTextView.setText("Error Loading User");
-            }
-        });
+        // Display user details from the batched fetch instead of fetching per row
+        if (loadFailed) {
+            holder.participantNameTextView.setText("Error Loading User");
+        } else if (users == null) {
+            holder.participantNameTextView.setText("Loading...");
+        } else if (users.containsKey(userId)) {
+            holder.participantNameTextView.setText(users.get(userId).getId());
+        } else {
+            holder.participantNameTextView.setText("Unknown User");
+        }
 
         // Control the visibility of the remove button based on the isRemovable flag
         if (isRemovable) {
@@ -100,6 +125,7 @@ public class ParticipantsAdapter extends RecyclerView.Adapter<ParticipantsAdapte
     public void updateList(List<String> newParticipantIds) {
         this.participantIds = newParticipantIds;
         notifyDataSetChanged();
+        loadUsers();
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -16,6 +16,7 @@ import com.example.orange.data.firebase.FirebaseService;
 import com.example.orange.data.model.User;
 
 import java.util.List;
+import java.util.Map;
 
 public class SelectedParticipantsAdapter extends RecyclerView.Adapter<SelectedParticipantsAdapter.ViewHolder> {
 
@@ -27,12 +28,42 @@ public class SelectedParticipantsAdapter extends RecyclerView.Adapter<SelectedPa
     private OnParticipantRemoveListener removeListener;
     private Context context;
     private FirebaseService firebaseService;
+    private Map<String, User> users; // null until the batched fetch completes
+    private boolean loadFailed;
 
     public SelectedParticipantsAdapter(Context context, List<String> participantIds, OnParticipantRemoveListener removeListener) {
         this.context = context;
         this.participantIds = participantIds;
         this.removeListener = removeListener;
         this.firebaseService = new FirebaseService();
+        loadUsers();
+    }
+
+    /**
+     * Fetches every listed user in one batched request and rebinds the rows once they arrive.
+     */
+    private void loadUsers() {
+        List<String> requestedIds = participantIds;
+        firebaseService.getUsersByIds(requestedIds, new FirebaseCallback<Map<String, User>>() {
+            @Override
+            public void onSuccess(Map<String, User> result) {
+                if (requestedIds != participantIds) {
+                    return;
+                }
+                users = result;
+                loadFailed = false;
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (requestedIds != participantIds) {
+                    return;
+                }
+                loadFailed = true;
+                notifyDataSetChanged();
+            }
+        });
     }
 
     @NonNull
@@ -45,22 +76,16 @@ public class SelectedParticipantsAdapter extends RecyclerView.Adapter<SelectedPa
     @Override
     public void onBindViewHolder(@NonNull SelectedParticipantsAdapter.ViewHolder holder, int position) {
         String userId = participantIds.get(position);
-        // Fetch user details to display name instead of ID
-        firebaseService.getUserById(userId, new FirebaseCallback<User>() {
-            @Override
-            public void onSuccess(User user) {
-                if (user != null) {
-                    holder.participantNameTextView.setText(user.getId()); // Ensure User class has getName()
-                } else {
-                    holder.participantNameTextView.setText("Unknown User");
-                }
-            }
-
-            @Override
-            public void onFailure(Exception e) {
-                holder.participantNameTextView.setText("Error Loading User");
-            }
-        });
+        // Display user details from the batched fetch instead of fetching per row
+        if (loadFailed) {
+            holder.participantNameTextView.setText("Error Loading User");
+        } else if (users == null) {
+            holder.participantNameTextView.setText("Loading...");
+        } else if (users.containsKey(userId)) {
+            holder.participantNameTextView.setText(users.get(userId).getId());
+        } else {
+            holder.participantNameTextView.setText("Unknown User");
+        }
 
         holder.removeButton.setOnClickListener(v -> {
             if (removeListener != null) {
@@ -77,6 +102,7 @@ public class SelectedParticipantsAdapter extends RecyclerView.Adapter<SelectedPa
     public void updateList(List<String> newParticipantIds) {
         this.participantIds = newParticipantIds;
         notifyDataSetChanged();
+        loadUsers();
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
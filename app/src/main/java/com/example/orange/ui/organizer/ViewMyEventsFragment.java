@@ -39,8 +39,12 @@ import com.example.orange.MainActivity;
 import com.example.orange.R;
 import com.example.orange.data.firebase.FirebaseCallback;
 import com.example.orange.data.firebase.FirebaseService;
+import com.example.orange.data.lottery.LotteryDrawService;
 import com.example.orange.data.model.Event;
-import com.example.orange.data.model.ImageData;
+import com.example.orange.data.model.EventCounters;
+import com.example.orange.data.model.EventEntry;
+import com.example.orange.data.model.EventSummary;
+import com.example.orange.data.model.EventRole;
 import com.example.orange.data.model.Notification;
 import com.example.orange.data.model.NotificationType;
 import com.example.orange.data.model.User;
@@ -49,6 +53,8 @@ import com.example.orange.data.model.UserType;
 import com.example.orange.ui.notifications.EntrantNotifications;
 import com.example.orange.ui.notifications.FirebaseNotifications;
 import com.example.orange.databinding.FragmentViewMyOrganizerEventsBinding;
+import com.example.orange.utils.Hashes;
+import com.example.orange.utils.ImageLoader;
 import com.example.orange.utils.SessionManager;
 import com.google.firebase.firestore.Blob;
 import com.google.zxing.BarcodeFormat;
@@ -59,17 +65,15 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 
 /**
@@ -82,6 +86,7 @@ import java.util.Set;
 public class ViewMyEventsFragment extends Fragment {
     private static final String TAG = "ViewMyEventsFragment";
     private FirebaseService firebaseService;
+    private LotteryDrawService lotteryDrawService;
     private SessionManager sessionManager;
     private FragmentViewMyOrganizerEventsBinding binding;
 
@@ -123,6 +128,7 @@ public class ViewMyEventsFragment extends Fragment {
         View view = binding.getRoot();
 
         firebaseService = new FirebaseService();
+        lotteryDrawService = new LotteryDrawService(requireContext());
         sessionManager = new SessionManager(requireContext());
 
         loadOrganizerEvents();
@@ -180,9 +186,9 @@ public class ViewMyEventsFragment extends Fragment {
      * @param organizerId The unique identifier of the organizer whose events should be loaded
      */
     private void loadEventsForOrganizer(String organizerId) {
-        firebaseService.getOrganizerEvents(organizerId, new FirebaseCallback<List<Event>>() {
+        firebaseService.getOrganizerEventSummaries(organizerId, new FirebaseCallback<List<EventSummary>>() {
             @Override
-            public void onSuccess(List<Event> events) {
+            public void onSuccess(List<EventSummary> events) {
                 displayEvents(events);
             }
 
@@ -203,9 +209,9 @@ public class ViewMyEventsFragment extends Fragment {
      * - Action buttons for viewing waitlist and managing event image
      *
      * @author Graham Flokstra, George
-     * @param events List of Event objects created by the organizer.
+     * @param events Summaries of the events created by the organizer.
      */
-    private void displayEvents(List<Event> events) {
+    private void displayEvents(List<EventSummary> events) {
         binding.organizerEventsContainer.removeAllViews();
 
         LayoutInflater inflater = LayoutInflater.from(requireContext());
@@ -213,7 +219,7 @@ public class ViewMyEventsFragment extends Fragment {
         Date currentDate = new Date();
         SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
 
-        for (Event event : events) {
+        for (EventSummary event : events) {
             View eventView = inflater.inflate(R.layout.item_view_organizer_event, binding.organizerEventsContainer, false);
 
             // Initialize views using findViewById for the inflated eventView
@@ -238,29 +244,9 @@ public class ViewMyEventsFragment extends Fragment {
 
             // Load event image if available
             String eventImageId = event.getEventImageId();
-            if (eventImageId != null) {
-                firebaseService.getImageById(eventImageId, new FirebaseCallback<ImageData>() {
-                    @Override
-                    public void onSuccess(ImageData imageData) {
-                        if (imageData != null && imageData.getImageData() != null) {
-                            byte[] imageBytes = imageData.getImageData().toBytes();
-                            Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-                            eventImage.setImageBitmap(bitmap);
-                        } else {
-                            eventImage.setImageResource(R.drawable.ic_image); // Placeholder if image data is null
-                        }
-                    }
+            ImageLoader.getInstance(requireContext()).loadInto(eventImage, eventImageId, R.drawable.ic_image);
 
-                    @Override
-                    public void onFailure(Exception e) {
-                        eventImage.setImageResource(R.drawable.ic_image); // Placeholder if failed to load image
-                    }
-                });
-            } else {
-                eventImage.setImageResource(R.drawable.ic_image); // Placeholder if no image is available
-            }
-
-            generateButton.setOnClickListener(v -> generateQR(event));
+            generateButton.setOnClickListener(v -> withFullEvent(event.getId(), this::generateQR));
 
             // Display the relevant date based on event's current status
             if (event.getRegistrationDeadline() != null && currentDate.before(event.getRegistrationDeadline().toDate())) {
@@ -274,9 +260,9 @@ public class ViewMyEventsFragment extends Fragment {
                 eventDate.setText("No date available");
             }
 
-            // Show waitlist count
-            int waitlistCount = event.getWaitingList() != null ? event.getWaitingList().size() : 0;
-            lotteryStatus.setText("Waitlist Count: " + waitlistCount);
+            // Show entrant counts from the summary instead of downloading the entrants
+            EventCounters counters = event.getCounters();
+            lotteryStatus.setText("Waitlist Count: " + counters.getWaitlist());
 
             // Set the actionButton text to "View Waitlist"
 
@@ -284,215 +270,105 @@ public class ViewMyEventsFragment extends Fragment {
             actionButton.setOnClickListener(v -> showWaitlist(event));
 
             // Set click listener for changeImageButton
-            changeImageButton.setOnClickListener(v -> {
-                selectedEvent = event; // Keep track of which event we're updating
+            changeImageButton.setOnClickListener(v -> withFullEvent(event.getId(), fullEvent -> {
+                selectedEvent = fullEvent; // Keep track of which event we're updating
                 showImageOptions();
-            });
+            }));
 
             // Set click listener for drawParticipantsButton
-            drawParticipantsButton.setOnClickListener(v -> {
-                drawFromWaitlist(event);
-            });
-
-            // Determine visibility of second button row based on list sizes
-            boolean hasSelectedParticipants = event.getSelectedParticipants() != null && !event.getSelectedParticipants().isEmpty();
-            boolean hasCancelledParticipants = event.getCancelledList() != null && !event.getCancelledList().isEmpty();
-            boolean hasParticipating = event.getParticipants() != null && !event.getParticipants().isEmpty();
-
-            if (hasSelectedParticipants || hasCancelledParticipants || hasParticipating) {
-                secondButtonRow.setVisibility(View.VISIBLE);
-                // Set click listeners for new buttons
-                if (hasSelectedParticipants) {
-                    viewSelectedParticipantsButton.setVisibility(View.VISIBLE);
-                    viewSelectedParticipantsButton.setOnClickListener(v -> showSelectedParticipants(event));
-                } else {
-                    viewSelectedParticipantsButton.setVisibility(View.GONE);
-                }
-
-                if (hasCancelledParticipants) {
-                    viewCancelledParticipantsButton.setVisibility(View.VISIBLE);
-                    viewCancelledParticipantsButton.setOnClickListener(v -> showCancelledParticipants(event));
-                } else {
-                    viewCancelledParticipantsButton.setVisibility(View.GONE);
-                }
-
-                if (hasParticipating) {
-                    viewParticipatingButton.setVisibility(View.VISIBLE);
-                    viewParticipatingButton.setOnClickListener(v -> showParticipating(event));
-                } else {
-                    viewParticipatingButton.setVisibility(View.GONE);
-                }
-            } else {
-                secondButtonRow.setVisibility(View.GONE);
-            }
+            drawParticipantsButton.setOnClickListener(v -> withFullEvent(event.getId(), this::drawFromWaitlist));
+
+            // Entrant lists are loaded on demand; only offer the ones that have entrants
+            viewSelectedParticipantsButton.setVisibility(counters.getSelected() > 0 ? View.VISIBLE : View.GONE);
+            viewSelectedParticipantsButton.setOnClickListener(v -> showSelectedParticipants(event));
+            viewCancelledParticipantsButton.setVisibility(counters.getCancelled() > 0 ? View.VISIBLE : View.GONE);
+            viewCancelledParticipantsButton.setOnClickListener(v -> showCancelledParticipants(event));
+            viewParticipatingButton.setVisibility(counters.getParticipants() > 0 ? View.VISIBLE : View.GONE);
+            viewParticipatingButton.setOnClickListener(v -> showParticipating(event));
+            secondButtonRow.setVisibility(counters.getSelected() > 0 || counters.getCancelled() > 0 || counters.getParticipants() > 0
+                    ? View.VISIBLE : View.GONE);
 
             binding.organizerEventsContainer.addView(eventView);
 
             // Setting Up Geolocation button for the events that have it enabled
-            boolean hasGeolocation = event.getGeolocationEvent();
+            boolean hasGeolocation = Boolean.TRUE.equals(event.getGeolocationEvent());
             if (hasGeolocation) {
                 mapButton.setVisibility(View.VISIBLE);
                 // Set click listener for mapButton
-                mapButton.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View v) {
-                        Bundle args = new Bundle();
-                        args.putParcelable("event", event);
-                        try {
-                            NavHostFragment.findNavController(ViewMyEventsFragment.this)
-                                    .navigate(R.id.action_view_my_events_to_map_fragment, args);
-                        } catch(Exception e) {
-                            Log.e("maps", Log.getStackTraceString(e));
-                        }
+                mapButton.setOnClickListener(v -> withFullEvent(event.getId(), fullEvent -> {
+                    Bundle args = new Bundle();
+                    args.putParcelable("event", fullEvent);
+                    try {
+                        NavHostFragment.findNavController(ViewMyEventsFragment.this)
+                                .navigate(R.id.action_view_my_events_to_map_fragment, args);
+                    } catch(Exception e) {
+                        Log.e("maps", Log.getStackTraceString(e));
                     }
-                });
+                }));
             }
         }
     }
 
+    /**
+     * Loads the whole event behind a summary and runs an action that needs it, such as
+     * drawing entrants or editing the poster.
+     *
+     * @param eventId The ID of the event.
+     * @param action  The action to run with the event.
+     */
+    private void withFullEvent(String eventId, Consumer<Event> action) {
+        firebaseService.getEventById(eventId, new FirebaseCallback<Event>() {
+            @Override
+            public void onSuccess(Event event) {
+                if (binding == null) {
+                    return;
+                }
+                if (event == null) {
+                    Toast.makeText(requireContext(), "Event not found", Toast.LENGTH_SHORT).show();
+                    loadOrganizerEvents();
+                    return;
+                }
+                action.accept(event);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (binding == null) {
+                    return;
+                }
+                Toast.makeText(requireContext(), "Failed to load event", Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Failed to load event " + eventId, e);
+            }
+        });
+    }
+
 
     /**
      * Implements the participant drawing functionality.
      * Selects users from the waitlist randomly and moves them to the participants list.
      * Additionally, creates notifications for both selected and unselected users.
+     * The whole draw runs in LotteryDrawService.
      *
      * @author Graham Flokstra
      * @param event The event from which to draw participants.
      */
     private void drawFromWaitlist(Event event) {
-        if (event.isFull()) {
-            Toast.makeText(requireContext(), "Event is already full.", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        int currentParticipants = event.getParticipants() != null ? event.getParticipants().size() : 0;
-        int selectedParticipants = event.getSelectedParticipants() != null ? event.getSelectedParticipants().size() : 0;
-        int capacity = event.getCapacity() != null ? event.getCapacity() : Integer.MAX_VALUE;
-        int slotsAvailable = capacity - currentParticipants - selectedParticipants;
-
-        if (slotsAvailable <= 0) {
-            Toast.makeText(requireContext(), "No available slots to draw participants.", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        firebaseService.getEventWaitlist(event.getId(), new FirebaseCallback<List<String>>() {
+        lotteryDrawService.draw(event, true, new FirebaseCallback<List<String>>() {
             @Override
-            public void onSuccess(List<String> waitlist) {
-                if (waitlist == null || waitlist.isEmpty()) {
-                    Toast.makeText(requireContext(), "No users on the waitlist to draw.", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-
-                // Shuffle the waitlist to ensure random selection
-                Collections.shuffle(waitlist);
-
-                // Determine the number of users to draw
-                int usersToDraw = Math.min(slotsAvailable, waitlist.size());
-                List<String> selectedUsers = waitlist.subList(0, usersToDraw);
-                List<String> unselectedUsers = waitlist.subList(usersToDraw, waitlist.size());
-
-                // Perform Firestore transaction for atomic update
-                firebaseService.moveUsersToSelectedParticipants(event.getId(), selectedUsers, new FirebaseCallback<Void>() {
-                    @Override
-                    public void onSuccess(Void result) {
-                        Log.d(TAG, "Participants drawn successfully.");
-                        Toast.makeText(requireContext(), "Participants drawn successfully.", Toast.LENGTH_SHORT).show();
-
-                        // Create notifications for both selected and unselected users
-                        firebaseService.createDrawNotifications(event.getId(), selectedUsers, unselectedUsers, new FirebaseCallback<Void>() {
-                            @Override
-                            public void onSuccess(Void result) {
-                                Log.d(TAG, "Notifications created successfully for drawn participants.");
-                                Toast.makeText(requireContext(), "Notifications sent to users.", Toast.LENGTH_SHORT).show();
-                                loadOrganizerEvents(); // Refresh event data to reflect changes
-                            }
-
-                            @Override
-                            public void onFailure(Exception e) {
-                                Log.e(TAG, "Failed to create notifications.", e);
-                                Toast.makeText(requireContext(), "Failed to send notifications: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                            }
-                        });
-                        EntrantNotifications entrantNotifications = new EntrantNotifications();
-                        if(!selectedUsers.isEmpty()){
-                            for (String userId : selectedUsers) {
-                                firebaseService.getUserById(userId, new FirebaseCallback<User>() {
-                                    @Override
-                                    public void onSuccess(User user) {
-                                        firebaseService.getNotificationsForUser(userId, new FirebaseCallback<List<Notification>>() {
-                                            @Override
-                                            public void onSuccess(List<Notification> notifications) {
-                                                for(Notification notis : notifications) {
-                                                    if ((Objects.equals(notis.getEventId(), event.getId()) && notis.getType() == NotificationType.SELECTED_TO_PARTICIPATE)) {
-                                                        entrantNotifications.sendToPhone(getContext(),"You Have Won The Lottery!", "You have just been selected to join "+event.getTitle() +". Choose whether to accept to decline the offer.", user, notis);
-                                                    }
-                                                }
-                                            }
-
-                                            @Override
-                                            public void onFailure(Exception e) {
-
-                                            }
-                                        });
-                                    }
-
-                                    @Override
-                                    public void onFailure(Exception e) {
-                                        Log.d("Error", "Failed to get user");
-                                    }
-                                });
-                            }
-                        }
-                        if(!unselectedUsers.isEmpty()){
-                            for (String userId : unselectedUsers) {
-                                firebaseService.getUserById(userId, new FirebaseCallback<User>() {
-                                    @Override
-                                    public void onSuccess(User user) {
-                                        firebaseService.getNotificationsForUser(userId, new FirebaseCallback<List<Notification>>() {
-                                            @Override
-                                            public void onSuccess(List<Notification> notifications) {
-                                                for(Notification notis : notifications) {
-                                                    if ((Objects.equals(notis.getEventId(), event.getId()) && notis.getType() == NotificationType.NOT_SELECTED)) {
-                                                        entrantNotifications.sendToPhone(getContext(),"Not your lucky day today :(", "You have not been selected to join "+event.getTitle(), user, notis);
-                                                    }
-                                                }
-                                            }
-
-                                            @Override
-                                            public void onFailure(Exception e) {
-
-                                            }
-                                        });
-                                    }
-
-                                    @Override
-                                    public void onFailure(Exception e) {
-                                        Log.d("Error", "Failed to get user");
-                                    }
-                                });
-                            }
-                        }
-
-                    }
-
-                    @Override
-                    public void onFailure(Exception e) {
-                        Toast.makeText(requireContext(), "Failed to draw participants: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                        Log.e(TAG, "Error drawing participants from waitlist", e);
-                    }
-                });
+            public void onSuccess(List<String> selected) {
+                Log.d(TAG, "Drew " + selected.size() + " participants.");
+                Toast.makeText(requireContext(), "Participants drawn successfully.", Toast.LENGTH_SHORT).show();
+                loadOrganizerEvents(); // Refresh event data to reflect changes
             }
 
             @Override
             public void onFailure(Exception e) {
-                Toast.makeText(requireContext(), "Failed to retrieve waitlist: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                Log.e(TAG, "Error retrieving waitlist", e);
+                Toast.makeText(requireContext(), "Failed to draw participants: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Error drawing participants from waitlist", e);
             }
         });
     }
 
-
-
     /**
      * Displays a dialog with options to change or remove the event image.
      * Options include:
@@ -653,8 +529,32 @@ public class ViewMyEventsFragment extends Fragment {
      * @author George
      * @param event Event object whose waitlist should be displayed.
      */
-    private void showWaitlist(Event event) {
-        List<String> waitlist = event.getWaitingList();
+    private void showWaitlist(EventSummary event) {
+        firebaseService.getEventEntries(event.getId(), EventRole.WAITLISTED, new FirebaseCallback<List<EventEntry>>() {
+            @Override
+            public void onSuccess(List<EventEntry> entries) {
+                List<String> userIds = new ArrayList<>();
+                for (EventEntry entry : entries) {
+                    userIds.add(entry.getUserId());
+                }
+                showWaitlist(event, userIds);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Toast.makeText(requireContext(), "Failed to load entrants: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Error loading entrants", e);
+            }
+        });
+    }
+
+    /**
+     * Shows the dialog for the given entrants.
+     *
+     * @param event   The event the entrants belong to.
+     * @param waitlist The IDs of the entrants to list.
+     */
+    private void showWaitlist(EventSummary event, List<String> waitlist) {
         if (waitlist == null || waitlist.isEmpty()) {
             Toast.makeText(requireContext(), "No users on the waitlist", Toast.LENGTH_SHORT).show();
             return;
@@ -687,8 +587,33 @@ public class ViewMyEventsFragment extends Fragment {
     /**
      * Displays the selected participants and allows sending notifications.
      */
-    private void showSelectedParticipants(Event event) {
-        currentSelectedParticipants = event.getSelectedParticipants();
+    private void showSelectedParticipants(EventSummary event) {
+        firebaseService.getEventEntries(event.getId(), EventRole.SELECTED, new FirebaseCallback<List<EventEntry>>() {
+            @Override
+            public void onSuccess(List<EventEntry> entries) {
+                List<String> userIds = new ArrayList<>();
+                for (EventEntry entry : entries) {
+                    userIds.add(entry.getUserId());
+                }
+                showSelectedParticipants(event, userIds);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Toast.makeText(requireContext(), "Failed to load entrants: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Error loading entrants", e);
+            }
+        });
+    }
+
+    /**
+     * Shows the dialog for the given selected participants.
+     *
+     * @param event          The event the entrants belong to.
+     * @param selectedUserIds The IDs of the selected participants.
+     */
+    private void showSelectedParticipants(EventSummary event, List<String> selectedUserIds) {
+        currentSelectedParticipants = selectedUserIds;
         if (currentSelectedParticipants == null || currentSelectedParticipants.isEmpty()) {
             Toast.makeText(requireContext(), "No selected participants.", Toast.LENGTH_SHORT).show();
             return;
@@ -732,7 +657,7 @@ public class ViewMyEventsFragment extends Fragment {
      * @param userIds    List of user IDs to send the notification to.
      * @param listName   The name of the participant list (for context in the dialog).
      */
-    private void showSendNotificationDialog(Event event, List<String> userIds, String listName) {
+    private void showSendNotificationDialog(EventSummary event, List<String> userIds, String listName) {
         // Inflate the notification input layout
         LayoutInflater inflater = LayoutInflater.from(requireContext());
         View dialogView = inflater.inflate(R.layout.dialog_send_notification, null);
@@ -770,7 +695,7 @@ public class ViewMyEventsFragment extends Fragment {
      * @param message   Notification message.
      * @param event     The event associated with the notification.
      */
-    private void sendNotificationToUsers(List<String> userIds, String title, String message, Event event) {
+    private void sendNotificationToUsers(List<String> userIds, String title, String message, EventSummary event) {
         if (userIds == null || userIds.isEmpty()) {
             Toast.makeText(requireContext(), "No users to send notifications.", Toast.LENGTH_SHORT).show();
             return;
@@ -780,10 +705,12 @@ public class ViewMyEventsFragment extends Fragment {
         Set<String> uniqueUserIds = new HashSet<>(userIds);
         Log.d(TAG, "Sending notifications to user IDs: " + uniqueUserIds.toString());
 
-        for (String userId : uniqueUserIds) {
-            firebaseService.getUserById(userId, new FirebaseCallback<User>() {
-                @Override
-                public void onSuccess(User user) {
+        firebaseService.getUsersByIds(uniqueUserIds, new FirebaseCallback<Map<String, User>>() {
+            @Override
+            public void onSuccess(Map<String, User> users) {
+                EntrantNotifications entrantNotifications = new EntrantNotifications();
+                for (String userId : uniqueUserIds) {
+                    User user = users.get(userId);
                     if (user != null && user.getFcmToken() != null) {
                         // Create a Notification object
                         Notification notification = new Notification();
@@ -791,19 +718,18 @@ public class ViewMyEventsFragment extends Fragment {
                         notification.setType(NotificationType.ORGANIZER); // Adjust based on notification type
 
                         // Send notification using EntrantNotifications
-                        EntrantNotifications entrantNotifications = new EntrantNotifications();
                         entrantNotifications.sendToPhone(getContext(), title, message, user, notification);
                     } else {
                         Log.e(TAG, "User or FCM token is null for userId: " + userId);
                     }
                 }
+            }
 
-                @Override
-                public void onFailure(Exception e) {
-                    Log.e(TAG, "Failed to retrieve user with userId: " + userId, e);
-                }
-            });
-        }
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Failed to retrieve users: " + uniqueUserIds, e);
+            }
+        });
 
         Toast.makeText(requireContext(), "Notifications are being sent.", Toast.LENGTH_SHORT).show();
     }
@@ -819,7 +745,7 @@ public class ViewMyEventsFragment extends Fragment {
      * @param event  The event from which to remove the participant.
      * @param userId The ID of the user to remove.
      */
-    private void removeSelectedParticipant(Event event, String userId) {
+    private void removeSelectedParticipant(EventSummary event, String userId) {
         new AlertDialog.Builder(requireContext())
                 .setTitle("Remove Participant")
                 .setMessage("Are you sure you want to remove this participant?")
@@ -850,8 +776,32 @@ public class ViewMyEventsFragment extends Fragment {
      * @author Graham Flokstra
      * @param event Event object whose cancelled participants should be displayed.
      */
-    private void showCancelledParticipants(Event event) {
-        List<String> cancelledParticipants = event.getCancelledList();
+    private void showCancelledParticipants(EventSummary event) {
+        firebaseService.getEventEntries(event.getId(), EventRole.CANCELLED, new FirebaseCallback<List<EventEntry>>() {
+            @Override
+            public void onSuccess(List<EventEntry> entries) {
+                List<String> userIds = new ArrayList<>();
+                for (EventEntry entry : entries) {
+                    userIds.add(entry.getUserId());
+                }
+                showCancelledParticipants(event, userIds);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Toast.makeText(requireContext(), "Failed to load entrants: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Error loading entrants", e);
+            }
+        });
+    }
+
+    /**
+     * Shows the dialog for the given entrants.
+     *
+     * @param event   The event the entrants belong to.
+     * @param cancelledParticipants The IDs of the entrants to list.
+     */
+    private void showCancelledParticipants(EventSummary event, List<String> cancelledParticipants) {
         if (cancelledParticipants == null || cancelledParticipants.isEmpty()) {
             Toast.makeText(requireContext(), "No cancelled participants.", Toast.LENGTH_SHORT).show();
             return;
@@ -888,8 +838,32 @@ public class ViewMyEventsFragment extends Fragment {
      * @author Graham Flokstra
      * @param event Event object whose participating users should be displayed.
      */
-    private void showParticipating(Event event) {
-        List<String> participating = event.getParticipants();
+    private void showParticipating(EventSummary event) {
+        firebaseService.getEventEntries(event.getId(), EventRole.PARTICIPANT, new FirebaseCallback<List<EventEntry>>() {
+            @Override
+            public void onSuccess(List<EventEntry> entries) {
+                List<String> userIds = new ArrayList<>();
+                for (EventEntry entry : entries) {
+                    userIds.add(entry.getUserId());
+                }
+                showParticipating(event, userIds);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Toast.makeText(requireContext(), "Failed to load entrants: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "Error loading entrants", e);
+            }
+        });
+    }
+
+    /**
+     * Shows the dialog for the given entrants.
+     *
+     * @param event   The event the entrants belong to.
+     * @param participating The IDs of the entrants to list.
+     */
+    private void showParticipating(EventSummary event, List<String> participating) {
         if (participating == null || participating.isEmpty()) {
             Toast.makeText(requireContext(), "No participants.", Toast.LENGTH_SHORT).show();
             return;
@@ -938,7 +912,7 @@ public class ViewMyEventsFragment extends Fragment {
             BarcodeEncoder barcodeEncoder = new BarcodeEncoder();
             Bitmap bitmap = barcodeEncoder.encodeBitmap(qrContent, BarcodeFormat.QR_CODE, 400, 400);
 
-            String hash = generateHash(qrContent);
+            String hash = Hashes.sha256Hex(qrContent);
 
             if (hash != null) {
                 firebaseService.storeEventHash(event.getId(), hash);
@@ -959,29 +933,6 @@ public class ViewMyEventsFragment extends Fragment {
         }
     }
 
-    /**
-     * Generates the hash data for each QR code then places into Firebase
-     *
-     * @author Brandon
-     * @param data qr info
-     */
-    private String generateHash(String data) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data.getBytes());
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-
     /**
      * Turns the QR code generated into a PNG file to save space and not have to transfer a large file
      *
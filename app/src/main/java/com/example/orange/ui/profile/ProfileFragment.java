@@ -32,10 +32,10 @@ import androidx.navigation.Navigation;
 import com.example.orange.R;
 import com.example.orange.data.firebase.FirebaseCallback;
 import com.example.orange.data.firebase.FirebaseService;
-import com.example.orange.data.model.ImageData;
 import com.example.orange.data.model.User;
 import com.example.orange.data.model.UserType;
 import com.example.orange.data.model.UserSession;
+import com.example.orange.utils.ImageLoader;
 import com.example.orange.utils.SessionManager;
 import com.google.firebase.firestore.Blob;
 import com.google.firebase.messaging.FirebaseMessaging;
@@ -320,13 +320,11 @@ public class ProfileFragment extends Fragment {
         editTextPhone.setText(user.getPhone());
 
         if (user.getProfileImageId() != null) {
-            // Fetch the image data using the image ID
-            firebaseService.getImageById(user.getProfileImageId(), new FirebaseCallback<ImageData>() {
+            // Fetch the image using its ID, from the cache if it was seen before
+            ImageLoader.getInstance(requireContext()).load(user.getProfileImageId(), new FirebaseCallback<Bitmap>() {
                 @Override
-                public void onSuccess(ImageData imageData) {
-                    if (imageData != null && imageData.getImageData() != null) {
-                        byte[] imageBytes = imageData.getImageData().toBytes();
-                        Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+                public void onSuccess(Bitmap bitmap) {
+                    if (bitmap != null) {
                         profileImage.setImageBitmap(bitmap);
                     } else {
                         // Handle case where image data is null
@@ -1,61 +1,240 @@
-//package com.example.orange.utils;
-//
-//import android.content.Context;
-//import android.widget.ImageView;
-//
-//import com.bumptech.glide.Glide;
-//import com.google.firebase.firestore.Blob;
-//
-///**
-// * ImageLoader handles loading images into ImageViews using Glide.
-// *
-// * @deprecated
-// *  Currently still referenced in code just in case we come back to using but if statements block it from being used functionally
-// */
-//public class ImageLoader {
-//    /**
-//     * Loads an image into an ImageView using Glide.
-//     *
-//     * @param context   The context of the calling component.
-//     * @param imageUrl  The URL of the image to load.
-//     * @param imageView The ImageView where the image will be displayed.
-//     */
-//    public static void loadImage(Context context, String imageUrl, ImageView imageView) {
-//        Glide.with(context)
-//                .load(imageUrl)
-////                .placeholder(R.drawable.default_profile)
-//                .into(imageView);
-//    }
-//
-//    /**
-//     * Loads an image from byte[] data into an ImageView using Glide.
-//     *
-//     * @param context   The context of the calling component.
-//     * @param imageData The byte[] data of the image to load.
-//     * @param imageView The ImageView where the image will be displayed.
-//     */
-//    public static void loadImage(Context context, byte[] imageData, ImageView imageView) {
-//        Glide.with(context)
-//                .load(imageData)
-////                .placeholder(R.drawable.default_profile)
-//                .into(imageView);
-//    }
-//
-//    /**
-//     * Loads an image from Blob data into an ImageView using Glide.
-//     *
-//     * @param context   The context of the calling component.
-//     * @param imageBlob The Blob data of the image to load.
-//     * @param imageView The ImageView where the image will be displayed.
-//     */
-//    public static void loadImage(Context context, Blob imageBlob, ImageView imageView) {
-//        if (imageBlob != null) {
-//            Glide.with(context)
-//                    .load(imageBlob.toBytes())
-////                    .placeholder(R.drawable.default_profile)
-//                    .into(imageView);
-//        } else {
-////            imageView.setImageResource(R.drawable.default_profile);
-//        }
-//    }
-//}
+package com.example.orange.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.orange.data.firebase.FirebaseCallback;
+import com.example.orange.data.firebase.FirebaseFutures;
+import com.example.orange.data.firebase.FirebaseService;
+import com.example.orange.data.model.ImageData;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ImageLoader loads images from the images collection by ID and caches them in two
+ * tiers: decoded bitmaps in a memory LRU bounded by their size, and the encoded bytes
+ * in the app's cache directory. Images seen before are shown straight from memory, or
+ * read back from disk without a network request, and loads of the same image that
+ * overlap share a single read.
+ *
+ * Image documents are never changed once created; a new image gets a new ID. Cached
+ * copies therefore never go stale, and deleted images simply stop being requested and
+ * are trimmed from disk as it fills.
+ *
+ * All methods must be called from the main thread; callbacks run there as well.
+ */
+public class ImageLoader {
+    private static final String TAG = "ImageLoader";
+    private static final String CACHE_DIRECTORY = "imageCache";
+    // Uploads are at most 1MB and posters are usually a few tens of kilobytes
+    private static final long DISK_CACHE_BYTES = 32L * 1024 * 1024;
+    private static ImageLoader instance;
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final File diskCache;
+    private final FirebaseService firebaseService;
+    // Loads that have not finished yet, so requests for the same image share them
+    private final Map<String, CompletableFuture<Bitmap>> inFlight = new HashMap<>();
+    // Reads, decodes and writes cached files off the main thread
+    private final ExecutorService ioExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "image-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Returns the shared loader, whose caches are kept for the life of the process.
+     *
+     * @param context Any context; only the application context is kept.
+     * @return The ImageLoader singleton.
+     */
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ImageLoader(Context context) {
+        // An eighth of the heap, measured in kilobytes
+        int maxKilobytes = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        memoryCache = new LruCache<String, Bitmap>(maxKilobytes) {
+            @Override
+            protected int sizeOf(String imageId, Bitmap bitmap) {
+                return Math.max(1, bitmap.getByteCount() / 1024);
+            }
+        };
+        diskCache = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        firebaseService = new FirebaseService();
+    }
+
+    /**
+     * Shows an image in an ImageView, showing the placeholder until it has loaded, or if
+     * there is no image or it cannot be loaded. Views that are reused for another image
+     * before the load finishes are left alone.
+     *
+     * @param view          The view to show the image in.
+     * @param imageId       The ID of the image, or null if there is none.
+     * @param placeholderId The drawable resource to show otherwise.
+     */
+    public void loadInto(ImageView view, String imageId, int placeholderId) {
+        view.setTag(imageId);
+        if (imageId == null || imageId.isEmpty()) {
+            view.setImageResource(placeholderId);
+            return;
+        }
+        Bitmap cached = memoryCache.get(imageId);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageResource(placeholderId);
+        load(imageId, new FirebaseCallback<Bitmap>() {
+            @Override
+            public void onSuccess(Bitmap bitmap) {
+                if (bitmap != null && imageId.equals(view.getTag())) {
+                    view.setImageBitmap(bitmap);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Error loading image " + imageId, e);
+            }
+        });
+    }
+
+    /**
+     * Loads an image as a bitmap. An image held in memory is delivered before this
+     * method returns.
+     *
+     * @param imageId  The ID of the image.
+     * @param callback Receives the bitmap, or null if the image does not exist.
+     */
+    public void load(String imageId, FirebaseCallback<Bitmap> callback) {
+        Bitmap cached = memoryCache.get(imageId);
+        if (cached != null) {
+            callback.onSuccess(cached);
+            return;
+        }
+        FirebaseFutures.toCallback(loadAsync(imageId), callback);
+    }
+
+    /**
+     * Starts loading an image that is not in memory, or joins the load already running.
+     */
+    private CompletableFuture<Bitmap> loadAsync(String imageId) {
+        CompletableFuture<Bitmap> running = inFlight.get(imageId);
+        if (running != null) {
+            return running;
+        }
+        CompletableFuture<Bitmap> loading = CompletableFuture.supplyAsync(() -> readFromDisk(imageId), ioExecutor)
+                .thenCompose(bitmap -> bitmap != null ? CompletableFuture.completedFuture(bitmap) : fetch(imageId))
+                .whenCompleteAsync((bitmap, error) -> {
+                    inFlight.remove(imageId);
+                    if (bitmap != null) {
+                        memoryCache.put(imageId, bitmap);
+                    }
+                }, FirebaseFutures.MAIN_THREAD);
+        inFlight.put(imageId, loading);
+        return loading;
+    }
+
+    /**
+     * Reads an image from Firestore, decodes it and keeps its bytes on disk.
+     */
+    private CompletableFuture<Bitmap> fetch(String imageId) {
+        CompletableFuture<ImageData> read = FirebaseFutures.of(callback -> firebaseService.getImageById(imageId, callback));
+        return read.thenApplyAsync(image -> {
+            if (image == null || image.getImageData() == null) {
+                return null;
+            }
+            byte[] bytes = image.getImageData().toBytes();
+            Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+            if (bitmap != null) {
+                writeToDisk(imageId, bytes);
+            }
+            return bitmap;
+        }, ioExecutor);
+    }
+
+    private Bitmap readFromDisk(String imageId) {
+        File file = new File(diskCache, imageId);
+        if (!file.isFile()) {
+            return null;
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap == null) {
+            // Unreadable; fetch it again
+            file.delete();
+            return null;
+        }
+        // Recently used files are trimmed last
+        file.setLastModified(System.currentTimeMillis());
+        return bitmap;
+    }
+
+    private void writeToDisk(String imageId, byte[] bytes) {
+        if (!diskCache.isDirectory() && !diskCache.mkdirs()) {
+            return;
+        }
+        File temp = new File(diskCache, imageId + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            Log.e(TAG, "Error caching image " + imageId, e);
+            temp.delete();
+            return;
+        }
+        // Renamed into place so a reader never decodes a partly written file
+        if (!temp.renameTo(new File(diskCache, imageId))) {
+            temp.delete();
+            return;
+        }
+        trimDiskCache();
+    }
+
+    /**
+     * Deletes the least recently used files until the cache fits its size limit.
+     */
+    private void trimDiskCache() {
+        File[] files = diskCache.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        Map<File, Long> lastUsed = new HashMap<>();
+        for (File file : files) {
+            total += file.length();
+            lastUsed.put(file, file.lastModified());
+        }
+        if (total <= DISK_CACHE_BYTES) {
+            return;
+        }
+        List<File> oldestFirst = new ArrayList<>(lastUsed.keySet());
+        Collections.sort(oldestFirst, (a, b) -> Long.compare(lastUsed.get(a), lastUsed.get(b)));
+        for (File file : oldestFirst) {
+            if (total <= DISK_CACHE_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+}
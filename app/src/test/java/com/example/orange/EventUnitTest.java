@@ -1,6 +1,7 @@
 package com.example.orange;
 
 import com.example.orange.data.model.Event;
+import com.example.orange.data.model.EventCounters;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -260,4 +261,32 @@ public class EventUnitTest {
 
         assertTrue("Event should be full when participants reach capacity", event.isFull());
     }
+
+    /**
+     * Tests that fullness is read from the participant counter when counters are given.
+     */
+    @Test
+    public void testIsFullWithCounters() {
+        assertFalse("Event should not be full below capacity",
+                event.isFull(new EventCounters(20, 3, CAPACITY - 1, 2)));
+        assertTrue("Event should be full when the participant counter reaches capacity",
+                event.isFull(new EventCounters(0, 0, CAPACITY, 0)));
+
+        event.setCapacity(null);
+        assertFalse("Event without capacity should never be full",
+                event.isFull(new EventCounters(0, 0, 1000, 0)));
+    }
+
+    /**
+     * Tests that available slots subtract both selected users and participants, and never go negative.
+     */
+    @Test
+    public void testAvailableSlotsWithCounters() {
+        assertEquals(CAPACITY, event.getAvailableSlots(new EventCounters()));
+        assertEquals(CAPACITY - 3, event.getAvailableSlots(new EventCounters(10, 2, 1, 4)));
+        assertEquals(0, event.getAvailableSlots(new EventCounters(10, CAPACITY, 1, 0)));
+
+        event.setCapacity(null);
+        assertEquals(Integer.MAX_VALUE, event.getAvailableSlots(new EventCounters(10, 2, 1, 0)));
+    }
 }
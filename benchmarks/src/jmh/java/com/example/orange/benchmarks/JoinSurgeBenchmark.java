@@ -0,0 +1,117 @@
+package com.example.orange.benchmarks;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.entrants.IntakeCompactor;
+import com.example.orange.data.gateway.InMemoryGateway;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a registration-open surge: every entrant joining one event at once,
+ * against an InMemoryGateway with simulated round-trip latency. Compares direct
+ * joins, one transaction each, with queued admission, where each join is one
+ * intake log write and the ticket comes back straight away, and with queued
+ * admission including the compaction into the waitlist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JoinSurgeBenchmark {
+    private static final String EVENT_ID = "event";
+
+    @Param({"100", "1000", "5000"})
+    public int joiners;
+
+    private ExecutorService executor;
+    private InMemoryGateway gateway;
+    private EntrantStore store;
+    private IntakeCompactor compactor;
+    private List<String> userIds;
+
+    @Setup(Level.Trial)
+    public void startExecutor() {
+        executor = Executors.newFixedThreadPool(64);
+        userIds = Waitlists.userIds(joiners);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        // 200 microseconds stands in for a Firestore round trip
+        gateway = new InMemoryGateway(executor, 200);
+        store = new EntrantStore(gateway);
+        compactor = new IntakeCompactor(gateway, store);
+        Map<String, Object> event = new HashMap<>();
+        event.put("name", "Surge Event");
+        gateway.set(EntrantStore.eventPath(EVENT_ID), event, false).join();
+        for (String userId : userIds) {
+            Map<String, Object> user = new HashMap<>();
+            user.put("name", userId);
+            gateway.set("users/" + userId, user, false).join();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopExecutor() {
+        executor.shutdown();
+    }
+
+    /**
+     * Every entrant runs a join transaction at once.
+     */
+    @Benchmark
+    public long directJoins() {
+        List<CompletableFuture<Void>> joins = new ArrayList<>();
+        for (String userId : userIds) {
+            joins.add(store.joinWaitlist(EVENT_ID, userId).exceptionally(error -> null));
+        }
+        CompletableFuture.allOf(joins.toArray(new CompletableFuture<?>[0])).join();
+        return gateway.getTransactionRetryCount();
+    }
+
+    /**
+     * Every entrant logs a join request at once and gets a ticket back.
+     */
+    @Benchmark
+    public int queuedTickets() {
+        List<CompletableFuture<?>> tickets = new ArrayList<>();
+        for (String userId : userIds) {
+            tickets.add(compactor.submit(EVENT_ID, userId));
+        }
+        CompletableFuture.allOf(tickets.toArray(new CompletableFuture<?>[0])).join();
+        return tickets.size();
+    }
+
+    /**
+     * Every entrant logs a join request and starts compaction, until all are on the waitlist.
+     */
+    @Benchmark
+    public int queuedAdmitted() {
+        List<CompletableFuture<Integer>> joins = new ArrayList<>();
+        for (String userId : userIds) {
+            joins.add(compactor.submit(EVENT_ID, userId).thenCompose(ticket -> compactor.compact(EVENT_ID)));
+        }
+        int admitted = 0;
+        for (CompletableFuture<Integer> join : joins) {
+            admitted += join.join();
+        }
+        return admitted;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.orange.benchmarks;
+
+import com.example.orange.data.lottery.DrawResult;
+import com.example.orange.data.lottery.LotteryEngine;
+import com.example.orange.data.lottery.WaitlistLottery;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures drawing winners from a waitlist, as done by the lottery and by
+ * replacement draws after a decline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LotterySelectionBenchmark {
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int waitlistSize;
+
+    private List<String> waitingList;
+    private List<String> selected;
+    private List<String> cancelled;
+    private int capacity;
+    private double[] weights;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        waitingList = Waitlists.userIds(waitlistSize);
+        // A previous round already selected and lost some users
+        selected = Waitlists.every(waitingList, 10, 100);
+        cancelled = Waitlists.every(waitingList.subList(5, waitingList.size()), 10, 100);
+        capacity = Math.max(1, waitlistSize / 10);
+        // Loyalty weights from 1 to 5
+        weights = new double[waitlistSize];
+        for (int i = 0; i < waitlistSize; i++) {
+            weights[i] = 1 + i % 5;
+        }
+        random = new Random(42);
+    }
+
+    /**
+     * Draws a full event's worth of winners.
+     */
+    @Benchmark
+    public List<String> drawCapacity() {
+        return WaitlistLottery.select(waitingList, selected, cancelled, capacity, random);
+    }
+
+    /**
+     * Draws a single replacement, as after one decline.
+     */
+    @Benchmark
+    public List<String> drawReplacement() {
+        return WaitlistLottery.select(waitingList, selected, cancelled, 1, random);
+    }
+
+    /**
+     * Draws a full event's worth of winners from a fresh event, with nobody excluded.
+     */
+    @Benchmark
+    public DrawResult drawFirstRound() {
+        return LotteryEngine.draw(waitingList, capacity, random.nextLong());
+    }
+
+    /**
+     * Draws a full event's worth of winners by weight.
+     */
+    @Benchmark
+    public DrawResult drawWeighted() {
+        return LotteryEngine.drawWeighted(waitingList, weights, capacity, random.nextLong());
+    }
+}
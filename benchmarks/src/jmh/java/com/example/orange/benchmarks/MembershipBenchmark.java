@@ -0,0 +1,69 @@
+package com.example.orange.benchmarks;
+
+import com.example.orange.data.model.EntrantLists;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures accepting and declining invitations against entrant lists of
+ * growing size. Each operation is undone afterwards so the lists keep their
+ * size; the undo puts the user at the end of the lists, so every call after
+ * the first measures the worst-case scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MembershipBenchmark {
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int waitlistSize;
+
+    private List<String> waitingList;
+    private List<String> selected;
+    private List<String> participants;
+    private List<String> cancelled;
+    private String userId;
+
+    @Setup
+    public void setUp() {
+        waitingList = Waitlists.userIds(waitlistSize);
+        // Half the waitlist has been drawn, a tenth of it has accepted or declined
+        selected = new ArrayList<>(waitingList.subList(0, waitlistSize / 2));
+        participants = Waitlists.every(waitingList.subList(waitlistSize / 2, waitlistSize), 10, Integer.MAX_VALUE);
+        cancelled = Waitlists.every(waitingList.subList(waitlistSize / 2 + 1, waitlistSize), 10, Integer.MAX_VALUE);
+        userId = selected.get(selected.size() / 2);
+    }
+
+    /**
+     * Accepts an invitation, then restores the lists.
+     */
+    @Benchmark
+    public boolean acceptInvitation() {
+        boolean accepted = EntrantLists.accept(selected, participants, userId);
+        participants.remove(participants.size() - 1);
+        selected.add(userId);
+        return accepted;
+    }
+
+    /**
+     * Declines an invitation, then restores the lists.
+     */
+    @Benchmark
+    public boolean declineInvitation() {
+        boolean declined = EntrantLists.decline(selected, waitingList, cancelled, userId);
+        cancelled.remove(cancelled.size() - 1);
+        waitingList.add(userId);
+        selected.add(userId);
+        return declined;
+    }
+}
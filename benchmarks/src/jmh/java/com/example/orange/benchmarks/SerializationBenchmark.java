@@ -0,0 +1,75 @@
+package com.example.orange.benchmarks;
+
+import com.example.orange.data.model.EventRole;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding entrant data: a whole waitlist, as the legacy
+ * inline event fields and Parcelable event hand-offs carry it, and a user's
+ * membership index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+    private static final Type STRING_LIST = new TypeToken<List<String>>() {}.getType();
+    private static final Type MEMBERSHIPS = new TypeToken<Map<String, String>>() {}.getType();
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int waitlistSize;
+
+    private final Gson gson = new Gson();
+    private List<String> waitingList;
+    private String waitingListJson;
+    private Map<String, String> memberships;
+    private String membershipsJson;
+
+    @Setup
+    public void setUp() {
+        waitingList = Waitlists.userIds(waitlistSize);
+        waitingListJson = gson.toJson(waitingList);
+        // A user's membership index, one entry per event, sized like the waitlist
+        memberships = new HashMap<>();
+        EventRole[] roles = EventRole.values();
+        for (int i = 0; i < waitlistSize; i++) {
+            memberships.put("event" + i, roles[i % roles.length].name());
+        }
+        membershipsJson = gson.toJson(memberships);
+    }
+
+    @Benchmark
+    public String encodeWaitlist() {
+        return gson.toJson(waitingList);
+    }
+
+    @Benchmark
+    public List<String> decodeWaitlist() {
+        return gson.fromJson(waitingListJson, STRING_LIST);
+    }
+
+    @Benchmark
+    public String encodeMemberships() {
+        return gson.toJson(memberships);
+    }
+
+    @Benchmark
+    public Map<String, String> decodeMemberships() {
+        return gson.fromJson(membershipsJson, MEMBERSHIPS);
+    }
+}
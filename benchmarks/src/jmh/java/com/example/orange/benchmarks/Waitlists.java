@@ -0,0 +1,42 @@
+package com.example.orange.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the synthetic waitlists the benchmarks run against.
+ */
+final class Waitlists {
+    private Waitlists() {
+    }
+
+    /**
+     * Creates user IDs user0..user(size - 1), shaped like real device-derived IDs.
+     *
+     * @param size The number of IDs.
+     * @return The IDs, in order.
+     */
+    static List<String> userIds(int size) {
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add("user" + i + "_ENTRANT");
+        }
+        return ids;
+    }
+
+    /**
+     * Takes every stride-th ID, up to limit of them.
+     *
+     * @param ids    The IDs to sample.
+     * @param stride The distance between sampled IDs.
+     * @param limit  The most IDs to take.
+     * @return The sampled IDs.
+     */
+    static List<String> every(List<String> ids, int stride, int limit) {
+        List<String> sample = new ArrayList<>();
+        for (int i = 0; i < ids.size() && sample.size() < limit; i += stride) {
+            sample.add(ids.get(i));
+        }
+        return sample;
+    }
+}
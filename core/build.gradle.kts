@@ -0,0 +1,13 @@
+plugins {
+    `java-library`
+}
+
+// Android-free models and algorithms shared by the app and the JMH benchmarks
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
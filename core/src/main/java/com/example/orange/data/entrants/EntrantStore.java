@@ -0,0 +1,950 @@
+package com.example.orange.data.entrants;
+
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.FieldOp;
+import com.example.orange.data.gateway.GatewayQuery;
+import com.example.orange.data.gateway.GatewayTransaction;
+import com.example.orange.data.model.EventCounters;
+import com.example.orange.data.model.EventRole;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * EntrantStore owns every change to who is entered in an event. Each change
+ * writes, in one transaction, the user's entry (events/{eventId}/entries/{userId}),
+ * their membership index (memberships/{userId}), their event lists on the user
+ * document, and the event's sharded counters (events/{eventId}/counterShards).
+ *
+ * It is written against DataGateway only, so joins and draws behave the same
+ * against Firestore and against InMemoryGateway in load tests.
+ */
+public class EntrantStore {
+    public static final String EVENTS = "events";
+    // Fields older event documents used to hold their entrants inline, before entries existed
+    public static final String[] LEGACY_ENTRANT_FIELDS = {"waitingList", "participants", "selectedParticipants", "cancelledList", "location"};
+    // Number of counter shards per event; each shard document sustains about one write per second
+    public static final int COUNTER_SHARDS = 10;
+    // A transaction commits at most 500 writes; each role change writes the entry and the
+    // membership index, plus one counter write per transaction
+    public static final int MAX_TRANSITIONS_PER_TRANSACTION = 200;
+    // Expiring an invitation also writes the user's event lists, so fewer fit in a transaction
+    public static final int MAX_EXPIRIES_PER_TRANSACTION = 150;
+    // How long a selected user has to accept when the event does not set acceptWindowHours
+    public static final int DEFAULT_ACCEPT_WINDOW_HOURS = 48;
+    // How long request IDs are kept; retries of a request come within seconds
+    public static final long REQUEST_ID_TTL_MILLIS = 24 * 60 * 60 * 1000L;
+
+    public static final String WAITLIST_FULL = "The waitlist for this event is full.";
+    public static final String REGISTRATION_NOT_OPEN = "Registration for this event has not opened yet.";
+    public static final String REGISTRATION_CLOSED = "Registration for this event has closed.";
+
+    private static final String[] COUNTER_FIELDS = {
+            EventCounters.WAITLIST, EventCounters.SELECTED, EventCounters.PARTICIPANTS, EventCounters.CANCELLED};
+
+    /**
+     * Thrown when a change is refused because of the user's current role or a
+     * missing document. The message is meant to be shown to the user.
+     */
+    public static class EntrantException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public EntrantException(String message) {
+            super(message);
+        }
+    }
+
+    private final DataGateway gateway;
+
+    /**
+     * Constructor
+     *
+     * @param gateway The gateway to read and write through.
+     */
+    public EntrantStore(DataGateway gateway) {
+        this.gateway = gateway;
+    }
+
+    /**
+     * Returns the path of an event document.
+     *
+     * @param eventId The ID of the event.
+     * @return The document path.
+     */
+    public static String eventPath(String eventId) {
+        return EVENTS + "/" + eventId;
+    }
+
+    /**
+     * Returns the path of an event's entries collection.
+     *
+     * @param eventId The ID of the event.
+     * @return The collection path.
+     */
+    public static String entriesPath(String eventId) {
+        return eventPath(eventId) + "/entries";
+    }
+
+    /**
+     * Returns the path of a user's entry in an event.
+     *
+     * @param eventId The ID of the event.
+     * @param userId  The ID of the user.
+     * @return The document path.
+     */
+    public static String entryPath(String eventId, String userId) {
+        return entriesPath(eventId) + "/" + userId;
+    }
+
+    /**
+     * Returns the path of an event's counter shards collection.
+     *
+     * @param eventId The ID of the event.
+     * @return The collection path.
+     */
+    public static String counterShardsPath(String eventId) {
+        return eventPath(eventId) + "/counterShards";
+    }
+
+    /**
+     * Returns the path of a user's request log, which records the IDs of their recent
+     * requests so retried requests are applied once.
+     *
+     * @param userId The ID of the user.
+     * @return The document path.
+     */
+    public static String requestLogPath(String userId) {
+        return "requestLog/" + userId;
+    }
+
+    /**
+     * Parses a stored entry status.
+     *
+     * @param status The stored status.
+     * @return The role, or null if the status is missing or unknown.
+     */
+    public static EventRole parseRole(String status) {
+        if (status == null) {
+            return null;
+        }
+        try {
+            return EventRole.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the role stored on an entry document.
+     *
+     * @param entry The entry document, which may not exist.
+     * @return The role, or null if the user has no role in the event.
+     */
+    public static EventRole roleOf(DocumentData entry) {
+        return entry.exists() ? parseRole(entry.getString("status")) : null;
+    }
+
+    /**
+     * Works out when an invitation sent now must be answered by.
+     *
+     * @param event The event document; its acceptWindowHours field sets the window.
+     * @param now   The current time, in milliseconds.
+     * @return The deadline.
+     */
+    public static Date acceptDeadline(DocumentData event, long now) {
+        Long hours = event.getLong("acceptWindowHours");
+        long window = hours != null && hours > 0 ? hours : DEFAULT_ACCEPT_WINDOW_HOURS;
+        return new Date(now + window * 60 * 60 * 1000L);
+    }
+
+    /**
+     * Whether a selected user's invitation has passed its deadline. Expired invitations
+     * can no longer be answered; InvitationSweeper releases them.
+     *
+     * @param entry The entry document.
+     * @param now   The current time, in milliseconds.
+     * @return true if the entry is selected and its deadline has passed.
+     */
+    public static boolean isExpired(DocumentData entry, long now) {
+        Date expiresAt = entry.getDate("expiresAt");
+        return roleOf(entry) == EventRole.SELECTED && expiresAt != null && expiresAt.getTime() <= now;
+    }
+
+    /**
+     * Moves a user to a new role in one transaction. The entry is read first, and
+     * nothing is written unless the user's current role is one of the allowed starting roles.
+     *
+     * @param eventId     The ID of the event.
+     * @param userId      The ID of the user.
+     * @param allowedFrom The roles the user may currently hold; null stands for no role.
+     * @param to          The new role, or null to remove the user from the event.
+     * @return A future with whether the user was moved.
+     */
+    public CompletableFuture<Boolean> move(String eventId, String userId, List<EventRole> allowedFrom, EventRole to) {
+        return move(eventId, userId, allowedFrom, to, null);
+    }
+
+    /**
+     * Moves a user to a new role in one transaction. The entry is read first, and
+     * nothing is written unless the user's current role is one of the allowed starting roles.
+     *
+     * @param eventId     The ID of the event.
+     * @param userId      The ID of the user.
+     * @param allowedFrom The roles the user may currently hold; null stands for no role.
+     * @param to          The new role, or null to remove the user from the event.
+     * @param requestId   An ID for this request, kept when retrying it, so a retry of a move
+     *                    that already committed reports success without moving again; or null.
+     * @return A future with whether the user was moved.
+     */
+    public CompletableFuture<Boolean> move(String eventId, String userId, List<EventRole> allowedFrom, EventRole to,
+                                           String requestId) {
+        return gateway.runTransaction(transaction -> {
+            // Joining needs the event to exist; other moves only touch the user's own entry
+            DocumentData event = to == EventRole.WAITLISTED ? transaction.get(eventPath(eventId)) : null;
+            DocumentData entry = transaction.get(entryPath(eventId, userId));
+            DocumentData user = transaction.get("users/" + userId);
+            DocumentData requests = requestId != null ? transaction.get(requestLogPath(userId)) : null;
+
+            if (hasRequest(requests, requestId)) {
+                return true;
+            }
+            if (event != null && !event.exists()) {
+                return false;
+            }
+            EventRole from = roleOf(entry);
+            if (from == to || !allowedFrom.contains(from)) {
+                return false;
+            }
+            Map<Integer, Long> places = event != null ? reserveWaitlistPlaces(transaction, eventId, event, 1) : null;
+            if (places != null && places.isEmpty()) {
+                throw new EntrantException(WAITLIST_FULL);
+            }
+
+            Map<String, Long> counterDeltas = new HashMap<>();
+            writeTransition(transaction, eventId, userId, user, from, to, counterDeltas);
+            incrementCounters(transaction, eventId, counterDeltas, places);
+            recordRequest(transaction, userId, requests, requestId);
+            return true;
+        });
+    }
+
+    /**
+     * Applies a user's answer to their invitation in one transaction: the user moves from
+     * selected to participant or cancelled, the invitation notification is resolved if it
+     * exists, and the response's notices are written.
+     *
+     * @param response  The answer and the notification writes that go with it.
+     * @param requestId An ID for this request, kept when retrying it, so a retry of an answer
+     *                  that already committed reports success without applying it again; or null.
+     * @return A future with whether the answer was applied; false if the user is no longer selected.
+     */
+    public CompletableFuture<Boolean> respond(InvitationResponse response, String requestId) {
+        String eventId = response.getEventId();
+        String userId = response.getUserId();
+        EventRole to = response.isAccepted() ? EventRole.PARTICIPANT : EventRole.CANCELLED;
+        return gateway.runTransaction(transaction -> {
+            DocumentData entry = transaction.get(entryPath(eventId, userId));
+            DocumentData user = transaction.get("users/" + userId);
+            DocumentData requests = requestId != null ? transaction.get(requestLogPath(userId)) : null;
+            List<DocumentData> invitations = new ArrayList<>();
+            for (String path : response.getInvitationPaths()) {
+                invitations.add(transaction.get(path));
+            }
+
+            if (hasRequest(requests, requestId)) {
+                return true;
+            }
+            EventRole from = roleOf(entry);
+            if (from != EventRole.SELECTED) {
+                return false;
+            }
+            if (isExpired(entry, System.currentTimeMillis())) {
+                throw new EntrantException("This invitation has expired.");
+            }
+
+            Map<String, Long> counterDeltas = new HashMap<>();
+            writeTransition(transaction, eventId, userId, user, from, to, counterDeltas);
+            incrementCounters(transaction, eventId, counterDeltas);
+            for (DocumentData invitation : invitations) {
+                if (invitation.exists()) {
+                    transaction.update(invitation.getPath(), response.getInvitationUpdate());
+                }
+            }
+            for (Map.Entry<String, Map<String, Object>> notice : response.getNotices().entrySet()) {
+                transaction.set(notice.getKey(), notice.getValue(), false);
+            }
+            recordRequest(transaction, userId, requests, requestId);
+            return true;
+        });
+    }
+
+    /**
+     * Adds a user to an event's waitlist, refusing users already entered.
+     *
+     * @param eventId The ID of the event to join.
+     * @param userId  The ID of the user joining.
+     * @return A future failing with EntrantException if the user cannot join.
+     */
+    public CompletableFuture<Void> joinWaitlist(String eventId, String userId) {
+        return joinWaitlist(eventId, userId, null);
+    }
+
+    /**
+     * Adds a user to an event's waitlist, refusing users already entered.
+     *
+     * @param eventId   The ID of the event to join.
+     * @param userId    The ID of the user joining.
+     * @param requestId An ID for this request, kept when retrying it, so a retry of a join
+     *                  that already committed succeeds instead of reporting the user as
+     *                  already on the waitlist; or null.
+     * @return A future failing with EntrantException if the user cannot join.
+     */
+    public CompletableFuture<Void> joinWaitlist(String eventId, String userId, String requestId) {
+        return gateway.runTransaction(transaction -> {
+            // Retrieve the event, the user's entry and the user document
+            DocumentData event = transaction.get(eventPath(eventId));
+            DocumentData entry = transaction.get(entryPath(eventId, userId));
+            DocumentData user = transaction.get("users/" + userId);
+            DocumentData requests = requestId != null ? transaction.get(requestLogPath(userId)) : null;
+            if (hasRequest(requests, requestId)) {
+                return null;
+            }
+
+            String refusal = joinRefusal(event, entry, user, System.currentTimeMillis());
+            if (refusal != null) {
+                throw new EntrantException(refusal);
+            }
+            Map<Integer, Long> places = reserveWaitlistPlaces(transaction, eventId, event, 1);
+            if (places != null && places.isEmpty()) {
+                throw new EntrantException(WAITLIST_FULL);
+            }
+
+            // Add the user's entry, membership and eventsWaitlisted together
+            Map<String, Long> counterDeltas = new HashMap<>();
+            writeTransition(transaction, eventId, userId, user, roleOf(entry), EventRole.WAITLISTED, counterDeltas);
+            incrementCounters(transaction, eventId, counterDeltas, places);
+            recordRequest(transaction, userId, requests, requestId);
+            return null;
+        });
+    }
+
+    /**
+     * Checks whether a user may join an event's waitlist. The waitlist limit is checked
+     * separately, against the counter shards, by reserveWaitlistPlaces.
+     *
+     * @param event The event document.
+     * @param entry The user's entry in the event.
+     * @param user  The user document.
+     * @param now   The current time, in milliseconds.
+     * @return The message to show the user if they cannot join, or null if they can.
+     */
+    public static String joinRefusal(DocumentData event, DocumentData entry, DocumentData user, long now) {
+        if (!event.exists()) {
+            return "Event does not exist.";
+        }
+
+        String closed = registrationRefusal(event.getDate("registrationOpens"), event.getDate("registrationDeadline"),
+                null, null, now);
+        if (closed != null) {
+            return closed;
+        }
+
+        if (!user.exists()) {
+            return "User does not exist.";
+        }
+
+        // Check if the user is already a participant or on the waitlist
+        EventRole from = roleOf(entry);
+        if (from == EventRole.PARTICIPANT) {
+            return "You are already a participant of this event.";
+        }
+
+        if (from == EventRole.WAITLISTED || from == EventRole.SELECTED) {
+            return "You are already on the waitlist for this event.";
+        }
+        return null;
+    }
+
+    /**
+     * Checks an event's registration window and waitlist limit. Used inside join
+     * transactions, and on the client against a cached counter snapshot to turn away
+     * joins that would fail without a round trip.
+     *
+     * @param opens         When registration opens, or null if it is always open.
+     * @param deadline      When registration closes, or null if it never closes.
+     * @param waitlistLimit The most users the waitlist may hold, or null for no limit.
+     * @param waitlist      How many users are on the waitlist, or null if unknown.
+     * @param now           The current time, in milliseconds.
+     * @return The message to show the user if they cannot join, or null if they may.
+     */
+    public static String registrationRefusal(Date opens, Date deadline, Long waitlistLimit, Long waitlist, long now) {
+        if (opens != null && now < opens.getTime()) {
+            return REGISTRATION_NOT_OPEN;
+        }
+        if (deadline != null && now > deadline.getTime()) {
+            return REGISTRATION_CLOSED;
+        }
+        if (waitlistLimit != null && waitlistLimit > 0 && waitlist != null && waitlist >= waitlistLimit) {
+            return WAITLIST_FULL;
+        }
+        return null;
+    }
+
+    /**
+     * Reserves places on a waitlist with a limit. Each counter shard may hold at most its
+     * share of the limit (see waitlistQuota), so a join only reads shards until it finds
+     * one with room, usually the first, and joins landing on different shards do not
+     * contend. The waitlist is full exactly when every shard is at its share.
+     *
+     * @param transaction The transaction to read in, before any writes.
+     * @param eventId     The ID of the event.
+     * @param event       The event document.
+     * @param wanted      The number of places wanted.
+     * @return The places reserved, keyed by counter shard, which may total fewer than
+     * wanted; or null if the event has no waitlist limit. Pass them to incrementCounters.
+     */
+    public Map<Integer, Long> reserveWaitlistPlaces(GatewayTransaction transaction, String eventId,
+                                                    DocumentData event, int wanted) {
+        Long limit = event.getLong("waitlistLimit");
+        if (limit == null || limit <= 0) {
+            return null;
+        }
+        Map<Integer, Long> places = new LinkedHashMap<>();
+        long needed = wanted;
+        int start = ThreadLocalRandom.current().nextInt(COUNTER_SHARDS);
+        for (int i = 0; i < COUNTER_SHARDS && needed > 0; i++) {
+            int shard = (start + i) % COUNTER_SHARDS;
+            Long count = transaction.get(counterShardsPath(eventId) + "/" + shard).getLong(EventCounters.WAITLIST);
+            long room = waitlistQuota(limit, shard) - (count != null ? count : 0L);
+            if (room > 0) {
+                long taken = Math.min(room, needed);
+                places.put(shard, taken);
+                needed -= taken;
+            }
+        }
+        return places;
+    }
+
+    /**
+     * Returns the most waitlisted users a counter shard may count under a waitlist limit.
+     * The shares add up to the limit.
+     *
+     * @param limit The waitlist limit.
+     * @param shard The shard index.
+     * @return The shard's share.
+     */
+    public static long waitlistQuota(long limit, int shard) {
+        return limit / COUNTER_SHARDS + (shard < limit % COUNTER_SHARDS ? 1 : 0);
+    }
+
+    /**
+     * Spreads a waitlist count across the counter shards the way waitlistQuota shares out
+     * a limit, so a count within the limit leaves every shard within its share.
+     *
+     * @param waitlist The total waitlist count.
+     * @return The count for each shard.
+     */
+    public static long[] spreadWaitlist(long waitlist) {
+        long[] spread = new long[COUNTER_SHARDS];
+        for (int shard = 0; shard < COUNTER_SHARDS; shard++) {
+            spread[shard] = waitlistQuota(waitlist, shard);
+        }
+        return spread;
+    }
+
+    /**
+     * Respreads an event's waitlist count evenly across its counter shards. Run this when a
+     * waitlist limit is set on an event that already has entrants, whose shards may hold
+     * more than their share of the new limit.
+     *
+     * @param eventId The ID of the event.
+     * @return A future completing once the shards are rewritten.
+     */
+    public CompletableFuture<Void> rebalanceWaitlist(String eventId) {
+        return gateway.runTransaction(transaction -> {
+            long waitlist = 0;
+            for (int shard = 0; shard < COUNTER_SHARDS; shard++) {
+                Long count = transaction.get(counterShardsPath(eventId) + "/" + shard).getLong(EventCounters.WAITLIST);
+                waitlist += count != null ? count : 0L;
+            }
+            long[] spread = spreadWaitlist(waitlist);
+            for (int shard = 0; shard < COUNTER_SHARDS; shard++) {
+                Map<String, Object> data = new HashMap<>();
+                data.put(EventCounters.WAITLIST, spread[shard]);
+                transaction.set(counterShardsPath(eventId) + "/" + shard, data, true);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Moves the given waitlisted users to selected, in order, without going over the
+     * event's capacity. Users are processed in chunks, one transaction after another so
+     * draws larger than the transaction write limit still go through. Each chunk reads the
+     * counter shards and moves at most the places still open, so draws and backfills
+     * running at the same time cannot fill the same places twice. Users no longer on the
+     * waitlist when their chunk commits are skipped.
+     *
+     * A draw that fails partway keeps the chunks already committed; running it again
+     * selects only into the places still open.
+     *
+     * @param eventId The ID of the event.
+     * @param userIds The IDs of the users drawn.
+     * @return A future with the IDs of the users moved, in draw order.
+     */
+    public CompletableFuture<List<String>> selectWaitlisted(String eventId, List<String> userIds) {
+        return selectWaitlisted(eventId, new ArrayList<>(new LinkedHashSet<>(userIds)), 0, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<String>> selectWaitlisted(String eventId, List<String> users, int start,
+                                                             List<String> moved) {
+        if (start >= users.size()) {
+            return CompletableFuture.completedFuture(moved);
+        }
+        List<String> chunk = new ArrayList<>(users.subList(start, Math.min(start + MAX_TRANSITIONS_PER_TRANSACTION, users.size())));
+        return gateway.runTransaction(transaction -> {
+            DocumentData event = transaction.get(eventPath(eventId));
+            if (!event.exists()) {
+                throw new EntrantException("Event not found.");
+            }
+            long open = openPlaces(event, readCounters(transaction, eventId));
+            Date expiresAt = acceptDeadline(event, System.currentTimeMillis());
+
+            List<DocumentData> entries = new ArrayList<>();
+            for (String userId : chunk) {
+                entries.add(transaction.get(entryPath(eventId, userId)));
+            }
+
+            // Move only users still on the waitlist; the counters change once per chunk
+            List<String> chunkMoved = new ArrayList<>();
+            Map<String, Long> counterDeltas = new HashMap<>();
+            for (int j = 0; j < chunk.size() && chunkMoved.size() < open; j++) {
+                if (roleOf(entries.get(j)) == EventRole.WAITLISTED) {
+                    writeTransition(transaction, eventId, chunk.get(j), null,
+                            EventRole.WAITLISTED, EventRole.SELECTED, expiresAt, counterDeltas);
+                    chunkMoved.add(chunk.get(j));
+                }
+            }
+            incrementCounters(transaction, eventId, counterDeltas);
+            return chunkMoved;
+        }).thenCompose(chunkMoved -> {
+            moved.addAll(chunkMoved);
+            return selectWaitlisted(eventId, users, start + MAX_TRANSITIONS_PER_TRANSACTION, moved);
+        });
+    }
+
+    /**
+     * Moves selected users whose invitations expired to cancelled, taking the event off
+     * their waitlisted and participating lists and adding it to their cancelled list.
+     * Users are moved in chunks, each in a transaction that first reads their entries and
+     * skips anyone no longer selected or not yet due, so a sweep that runs twice or
+     * overlaps an answer moves each user, and changes the counters, once.
+     *
+     * @param eventId The ID of the event.
+     * @param userIds The IDs of the users whose invitations expired.
+     * @param cutoff  Invitations due at or before this time are expired.
+     * @return A future with the IDs of the users moved.
+     */
+    public CompletableFuture<List<String>> expireSelections(String eventId, List<String> userIds, Date cutoff) {
+        List<String> users = new ArrayList<>(new LinkedHashSet<>(userIds));
+        List<CompletableFuture<List<String>>> chunks = new ArrayList<>();
+
+        for (int i = 0; i < users.size(); i += MAX_EXPIRIES_PER_TRANSACTION) {
+            List<String> chunk = new ArrayList<>(users.subList(i, Math.min(i + MAX_EXPIRIES_PER_TRANSACTION, users.size())));
+            chunks.add(gateway.runTransaction(transaction -> {
+                List<DocumentData> entries = new ArrayList<>();
+                List<DocumentData> userDocuments = new ArrayList<>();
+                for (String userId : chunk) {
+                    entries.add(transaction.get(entryPath(eventId, userId)));
+                    userDocuments.add(transaction.get("users/" + userId));
+                }
+
+                List<String> expired = new ArrayList<>();
+                Map<String, Long> counterDeltas = new HashMap<>();
+                for (int j = 0; j < chunk.size(); j++) {
+                    if (!isExpired(entries.get(j), cutoff.getTime())) {
+                        continue;
+                    }
+                    String userId = chunk.get(j);
+                    Map<String, Object> entry = entryData(eventId, EventRole.SELECTED, EventRole.CANCELLED, null);
+                    entry.put("expired", true);
+                    transaction.set(entryPath(eventId, userId), entry, true);
+                    transaction.set("memberships/" + userId, membershipData(eventId, EventRole.CANCELLED), true);
+                    if (userDocuments.get(j).exists()) {
+                        transaction.update(userDocuments.get(j).getPath(), userListChanges(eventId, EventRole.CANCELLED));
+                    }
+                    addCounterDelta(counterDeltas, EventCounters.SELECTED, -1);
+                    addCounterDelta(counterDeltas, EventCounters.CANCELLED, 1);
+                    expired.add(userId);
+                }
+                incrementCounters(transaction, eventId, counterDeltas);
+                return expired;
+            }));
+        }
+
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    List<String> expired = new ArrayList<>();
+                    for (CompletableFuture<List<String>> chunk : chunks) {
+                        expired.addAll(chunk.join());
+                    }
+                    return expired;
+                });
+    }
+
+    /**
+     * Retrieves the IDs of the users on an event's waitlist.
+     *
+     * @param eventId The ID of the event.
+     * @return A future with the user IDs.
+     */
+    public CompletableFuture<List<String>> getWaitlist(String eventId) {
+        return getUserIds(eventId, EventRole.WAITLISTED);
+    }
+
+    /**
+     * Retrieves the lottery weight of every user on an event's waitlist. Entries
+     * without a weight count as 1.
+     *
+     * @param eventId The ID of the event.
+     * @return A future with each waitlisted user's weight, keyed by user ID.
+     */
+    public CompletableFuture<Map<String, Double>> getWaitlistWeights(String eventId) {
+        return gateway.query(GatewayQuery.collection(entriesPath(eventId)).whereEqualTo("status", EventRole.WAITLISTED.name()))
+                .thenApply(documents -> {
+                    Map<String, Double> weights = new LinkedHashMap<>();
+                    for (DocumentData document : documents) {
+                        Object weight = document.get("weight");
+                        weights.put(document.getId(), weight instanceof Number ? ((Number) weight).doubleValue() : 1.0);
+                    }
+                    return weights;
+                });
+    }
+
+    /**
+     * Sets the lottery weight on a user's entry, used when the event draws by weight.
+     *
+     * @param eventId The ID of the event.
+     * @param userId  The ID of the user.
+     * @param weight  The weight; higher weights are drawn more often.
+     * @return A future failing if the user has no entry in the event.
+     */
+    public CompletableFuture<Void> setWeight(String eventId, String userId, double weight) {
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weights must be finite and positive: " + weight);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("weight", weight);
+        return gateway.update(entryPath(eventId, userId), data);
+    }
+
+    /**
+     * Retrieves the IDs of the users holding a role in an event.
+     *
+     * @param eventId The ID of the event.
+     * @param role    The role.
+     * @return A future with the user IDs.
+     */
+    public CompletableFuture<List<String>> getUserIds(String eventId, EventRole role) {
+        return gateway.query(GatewayQuery.collection(entriesPath(eventId)).whereEqualTo("status", role.name()))
+                .thenApply(documents -> {
+                    List<String> userIds = new ArrayList<>();
+                    for (DocumentData document : documents) {
+                        userIds.add(document.getId());
+                    }
+                    return userIds;
+                });
+    }
+
+    /**
+     * Retrieves an event's entrant counts by summing its counter shards, without reading
+     * any entries.
+     *
+     * @param eventId The ID of the event.
+     * @return A future with the counts.
+     */
+    public CompletableFuture<EventCounters> getCounters(String eventId) {
+        return gateway.query(GatewayQuery.collection(counterShardsPath(eventId))).thenApply(EntrantStore::sumCounterShards);
+    }
+
+    /**
+     * Reads an event's entrant counts from every counter shard within a transaction, so
+     * the transaction is retried if any count changes before it commits.
+     *
+     * @param transaction The transaction to read in, before any writes.
+     * @param eventId     The ID of the event.
+     * @return The counts.
+     */
+    public static EventCounters readCounters(GatewayTransaction transaction, String eventId) {
+        List<DocumentData> shards = new ArrayList<>();
+        for (int shard = 0; shard < COUNTER_SHARDS; shard++) {
+            shards.add(transaction.get(counterShardsPath(eventId) + "/" + shard));
+        }
+        return sumCounterShards(shards);
+    }
+
+    /**
+     * Returns the number of places in an event not yet taken by selected users or participants.
+     *
+     * @param event    The event document; its capacity field sets the places.
+     * @param counters The event's entrant counts.
+     * @return The places left, never negative; Long.MAX_VALUE if the event has no capacity.
+     */
+    public static long openPlaces(DocumentData event, EventCounters counters) {
+        Long capacity = event.getLong("capacity");
+        if (capacity == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, capacity - counters.getTaken());
+    }
+
+    /**
+     * Sums counter shard documents into EventCounters.
+     *
+     * @param shards The shard documents.
+     * @return The summed counters.
+     */
+    public static EventCounters sumCounterShards(List<DocumentData> shards) {
+        EventCounters counters = new EventCounters();
+        for (DocumentData shard : shards) {
+            for (String field : COUNTER_FIELDS) {
+                Long value = shard.getLong(field);
+                if (value != null) {
+                    counters.add(field, value);
+                }
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Writes every document affected by a user's role change within a transaction: the entry,
+     * the user's membership index and, when the user document is given, the user's event lists.
+     * Counter changes are added to counterDeltas so callers moving several users can apply them
+     * with a single counter write.
+     *
+     * @param transaction   The transaction to write in. All reads must already be done.
+     * @param eventId       The ID of the event.
+     * @param userId        The ID of the user.
+     * @param user          The user document, or null to leave the user's lists untouched.
+     * @param from          The user's current role, or null if they have none.
+     * @param to            The new role, or null to remove the user from the event.
+     * @param counterDeltas Counter changes, keyed by counter field, to add to.
+     */
+    public void writeTransition(GatewayTransaction transaction, String eventId, String userId, DocumentData user,
+                                EventRole from, EventRole to, Map<String, Long> counterDeltas) {
+        writeTransition(transaction, eventId, userId, user, from, to, null, counterDeltas);
+    }
+
+    /**
+     * Writes every document affected by a user's role change within a transaction, like
+     * {@link #writeTransition(GatewayTransaction, String, String, DocumentData, EventRole, EventRole, Map)},
+     * with the deadline for answering if the user is being selected.
+     *
+     * @param transaction   The transaction to write in. All reads must already be done.
+     * @param eventId       The ID of the event.
+     * @param userId        The ID of the user.
+     * @param user          The user document, or null to leave the user's lists untouched.
+     * @param from          The user's current role, or null if they have none.
+     * @param to            The new role, or null to remove the user from the event.
+     * @param expiresAt     When a selected user's invitation expires, or null for the default window.
+     * @param counterDeltas Counter changes, keyed by counter field, to add to.
+     */
+    public void writeTransition(GatewayTransaction transaction, String eventId, String userId, DocumentData user,
+                                EventRole from, EventRole to, Date expiresAt, Map<String, Long> counterDeltas) {
+        String entryPath = entryPath(eventId, userId);
+        if (to == null) {
+            transaction.delete(entryPath);
+        } else {
+            transaction.set(entryPath, entryData(eventId, from, to, expiresAt), true);
+        }
+        transaction.set("memberships/" + userId, membershipData(eventId, to), true);
+
+        if (user != null && user.exists()) {
+            Map<String, Object> lists = userListChanges(eventId, to);
+            if (!lists.isEmpty()) {
+                transaction.update(user.getPath(), lists);
+            }
+        }
+
+        if (from != null) {
+            addCounterDelta(counterDeltas, EventCounters.fieldFor(from), -1);
+        }
+        if (to != null) {
+            addCounterDelta(counterDeltas, EventCounters.fieldFor(to), 1);
+        }
+    }
+
+    /**
+     * Builds the update that keeps a user's event lists in step with their new role.
+     *
+     * @param eventId The ID of the event.
+     * @param to      The user's new role, or null if they left the event.
+     * @return The changes to the user document; empty if their lists stay the same.
+     */
+    private static Map<String, Object> userListChanges(String eventId, EventRole to) {
+        Map<String, Object> lists = new HashMap<>();
+        if (to == EventRole.WAITLISTED) {
+            lists.put("eventsWaitlisted", FieldOp.arrayUnion(eventId));
+        } else if (to == EventRole.PARTICIPANT) {
+            lists.put("eventsWaitlisted", FieldOp.arrayRemove(eventId));
+            lists.put("eventsParticipating", FieldOp.arrayUnion(eventId));
+        } else if (to == EventRole.CANCELLED) {
+            lists.put("eventsWaitlisted", FieldOp.arrayRemove(eventId));
+            lists.put("eventsParticipating", FieldOp.arrayRemove(eventId));
+            lists.put("eventsCancelled", FieldOp.arrayUnion(eventId));
+        } else if (to == null) {
+            lists.put("eventsWaitlisted", FieldOp.arrayRemove(eventId));
+            lists.put("eventsParticipating", FieldOp.arrayRemove(eventId));
+        }
+        return lists;
+    }
+
+    private static boolean hasRequest(DocumentData requests, String requestId) {
+        return requests != null && requests.get("requests") instanceof Map
+                && ((Map<?, ?>) requests.get("requests")).containsKey(requestId);
+    }
+
+    /**
+     * Records a request ID in the user's request log within the transaction that applied
+     * the request, dropping IDs older than REQUEST_ID_TTL_MILLIS.
+     *
+     * @param transaction The transaction to write in.
+     * @param userId      The ID of the user.
+     * @param requests    The request log as read in the transaction, or null if there is no request ID.
+     * @param requestId   The request ID, or null.
+     */
+    private static void recordRequest(GatewayTransaction transaction, String userId, DocumentData requests, String requestId) {
+        if (requestId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Object> ids = new HashMap<>();
+        if (requests.get("requests") instanceof Map) {
+            for (Map.Entry<?, ?> recorded : ((Map<?, ?>) requests.get("requests")).entrySet()) {
+                Object at = recorded.getValue();
+                if (!(at instanceof Date) || ((Date) at).getTime() < now - REQUEST_ID_TTL_MILLIS) {
+                    ids.put(String.valueOf(recorded.getKey()), FieldOp.delete());
+                }
+            }
+        }
+        ids.put(requestId, new Date(now));
+        Map<String, Object> data = new HashMap<>();
+        data.put("requests", ids);
+        transaction.set(requestLogPath(userId), data, true);
+    }
+
+    /**
+     * Builds the merge payload for a user's entry after a role change.
+     *
+     * @param eventId   The ID of the event.
+     * @param from      The user's current role, or null if they have none.
+     * @param to        The new role.
+     * @param expiresAt When a selected user's invitation expires, or null for the default window.
+     * @return The data to merge into the entry.
+     */
+    private static Map<String, Object> entryData(String eventId, EventRole from, EventRole to, Date expiresAt) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("eventId", eventId);
+        entry.put("status", to.name());
+        if (from == null) {
+            entry.put("joinedAt", FieldOp.serverTimestamp());
+        }
+        if (to == EventRole.SELECTED) {
+            entry.put("expiresAt", expiresAt != null ? expiresAt
+                    : new Date(System.currentTimeMillis() + DEFAULT_ACCEPT_WINDOW_HOURS * 60 * 60 * 1000L));
+        } else if (from == EventRole.SELECTED) {
+            entry.put("expiresAt", FieldOp.delete());
+        }
+        return entry;
+    }
+
+    /**
+     * Builds the merge payload that sets or clears one entry of a membership document.
+     *
+     * @param eventId The ID of the event.
+     * @param role    The user's new role, or null to remove the event from the index.
+     * @return The data to merge into memberships/{userId}.
+     */
+    public static Map<String, Object> membershipData(String eventId, EventRole role) {
+        Map<String, Object> events = new HashMap<>();
+        events.put(eventId, role != null ? role.name() : FieldOp.delete());
+        Map<String, Object> data = new HashMap<>();
+        data.put("events", events);
+        return data;
+    }
+
+    /**
+     * Adds a change to an accumulated set of counter deltas.
+     *
+     * @param counterDeltas The accumulated deltas.
+     * @param field         The counter field.
+     * @param delta         The change to add.
+     */
+    public static void addCounterDelta(Map<String, Long> counterDeltas, String field, long delta) {
+        Long current = counterDeltas.get(field);
+        counterDeltas.put(field, (current != null ? current : 0L) + delta);
+    }
+
+    /**
+     * Applies accumulated counter deltas to one randomly chosen counter shard, spreading
+     * concurrent increments across documents so no single document takes every write.
+     *
+     * @param transaction   The transaction to write in.
+     * @param eventId       The ID of the event.
+     * @param counterDeltas The changes to apply, keyed by counter field.
+     */
+    public void incrementCounters(GatewayTransaction transaction, String eventId, Map<String, Long> counterDeltas) {
+        writeCounterShard(transaction, eventId, ThreadLocalRandom.current().nextInt(COUNTER_SHARDS), counterDeltas);
+    }
+
+    /**
+     * Applies accumulated counter deltas, counting reserved waitlist places against the
+     * shards they were reserved on. Other changes go to the first of those shards.
+     *
+     * @param transaction   The transaction to write in.
+     * @param eventId       The ID of the event.
+     * @param counterDeltas The changes to apply, keyed by counter field, including the
+     *                      waitlist increase for the reserved places.
+     * @param places        The places reserved by reserveWaitlistPlaces and used, or null
+     *                      if the event has no waitlist limit.
+     */
+    public void incrementCounters(GatewayTransaction transaction, String eventId, Map<String, Long> counterDeltas,
+                                  Map<Integer, Long> places) {
+        if (places == null || places.isEmpty()) {
+            incrementCounters(transaction, eventId, counterDeltas);
+            return;
+        }
+        Map<String, Long> rest = new HashMap<>(counterDeltas);
+        for (Long taken : places.values()) {
+            addCounterDelta(rest, EventCounters.WAITLIST, -taken);
+        }
+        boolean first = true;
+        for (Map.Entry<Integer, Long> place : places.entrySet()) {
+            Map<String, Long> deltas = first ? rest : new HashMap<String, Long>();
+            addCounterDelta(deltas, EventCounters.WAITLIST, place.getValue());
+            writeCounterShard(transaction, eventId, place.getKey(), deltas);
+            first = false;
+        }
+    }
+
+    private void writeCounterShard(GatewayTransaction transaction, String eventId, int shard, Map<String, Long> counterDeltas) {
+        Map<String, Object> increments = new HashMap<>();
+        for (Map.Entry<String, Long> delta : counterDeltas.entrySet()) {
+            if (delta.getValue() != 0) {
+                increments.put(delta.getKey(), FieldOp.increment(delta.getValue()));
+            }
+        }
+        if (!increments.isEmpty()) {
+            transaction.set(counterShardsPath(eventId) + "/" + shard, increments, true);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.orange.data.entrants;
+
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.FieldOp;
+import com.example.orange.data.gateway.GatewayQuery;
+import com.example.orange.data.model.EventRole;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IntakeCompactor runs an event's join queue. When registration opens on a popular
+ * event, thousands of users joining at once would each run a transaction against
+ * the same event, and contention retries would make many of them fail. In queued
+ * admission each join is instead one blind write of a ticket to the event's intake
+ * log (events/{eventId}/intake/{userId}), which never contends.
+ *
+ * The compactor merges the log into the waitlist in arrival order, BATCH_SIZE
+ * tickets per transaction, marking each ticket ADMITTED or REJECTED. Any device
+ * may start it after joining; a lease in intakeLeases/{eventId} keeps one
+ * compactor per event, and the holder keeps going until the log is empty. The
+ * periodic worker runs compactPending, so tickets left queued by a compactor
+ * that died are merged even if the event gets no more joins.
+ */
+public class IntakeCompactor {
+    // Each ticket costs three reads and four writes, plus up to one counter shard write per
+    // shard; a transaction commits at most 500 writes
+    public static final int BATCH_SIZE = 100;
+    // A compactor that has not written in this time is assumed to have died with its device
+    public static final long LEASE_MILLIS = 2 * 60 * 1000L;
+    // Queued tickets looked at when finding events whose queues were left behind
+    public static final int PENDING_SCAN_SIZE = 500;
+
+    /**
+     * Receives a user's ticket each time it changes.
+     */
+    public interface TicketListener {
+        /**
+         * Called with the current ticket, or with the error that stopped the listener.
+         *
+         * @param ticket The ticket, or null if the user never queued or on error.
+         * @param error  The error, or null on success.
+         */
+        void onTicket(JoinTicket ticket, Exception error);
+    }
+
+    private final DataGateway gateway;
+    private final EntrantStore entrantStore;
+
+    /**
+     * Constructor
+     *
+     * @param gateway      The gateway to read and write through.
+     * @param entrantStore The store whose transitions are reused to admit entrants.
+     */
+    public IntakeCompactor(DataGateway gateway, EntrantStore entrantStore) {
+        this.gateway = gateway;
+        this.entrantStore = entrantStore;
+    }
+
+    /**
+     * Returns the path of an event's intake log.
+     *
+     * @param eventId The ID of the event.
+     * @return The collection path.
+     */
+    public static String intakePath(String eventId) {
+        return EntrantStore.eventPath(eventId) + "/intake";
+    }
+
+    /**
+     * Returns the path of a user's ticket in an event's intake log.
+     *
+     * @param eventId The ID of the event.
+     * @param userId  The ID of the user.
+     * @return The document path.
+     */
+    public static String ticketPath(String eventId, String userId) {
+        return intakePath(eventId) + "/" + userId;
+    }
+
+    private static String leasePath(String eventId) {
+        return "intakeLeases/" + eventId;
+    }
+
+    /**
+     * Logs a join request without a transaction. Joining again before the request is
+     * merged keeps a single ticket.
+     *
+     * @param eventId The ID of the event to join.
+     * @param userId  The ID of the user joining.
+     * @return A future with the queued ticket, completing once the request is logged.
+     */
+    public CompletableFuture<JoinTicket> submit(String eventId, String userId) {
+        Map<String, Object> ticket = new HashMap<>();
+        ticket.put("userId", userId);
+        ticket.put("status", JoinTicket.QUEUED);
+        ticket.put("requestedAt", FieldOp.serverTimestamp());
+        ticket.put("reason", FieldOp.delete());
+        return gateway.set(ticketPath(eventId, userId), ticket, true)
+                .thenApply(done -> new JoinTicket(eventId, userId, JoinTicket.QUEUED, null));
+    }
+
+    /**
+     * Reads a user's ticket.
+     *
+     * @param eventId The ID of the event.
+     * @param userId  The ID of the user.
+     * @return A future with the ticket, or null if the user never queued.
+     */
+    public CompletableFuture<JoinTicket> getTicket(String eventId, String userId) {
+        return gateway.get(ticketPath(eventId, userId)).thenApply(document -> JoinTicket.from(eventId, document));
+    }
+
+    /**
+     * Listens to a user's ticket, so the user can be told once their request is admitted
+     * or rejected.
+     *
+     * @param eventId  The ID of the event.
+     * @param userId   The ID of the user.
+     * @param listener Receives the ticket each time it changes, or null if the user never queued.
+     * @return A registration used to stop listening.
+     */
+    public DataGateway.Registration watchTicket(String eventId, String userId, TicketListener listener) {
+        GatewayQuery query = GatewayQuery.collection(intakePath(eventId)).whereEqualTo("userId", userId);
+        return gateway.listen(query, (documents, error) -> {
+            if (error != null) {
+                listener.onTicket(null, error);
+            } else {
+                listener.onTicket(documents.isEmpty() ? null : JoinTicket.from(eventId, documents.get(0)), null);
+            }
+        });
+    }
+
+    /**
+     * Merges an event's queued tickets into its waitlist, unless another compactor
+     * already holds the event's lease and will merge them itself.
+     *
+     * @param eventId The ID of the event.
+     * @return A future with the number of tickets this call processed.
+     */
+    public CompletableFuture<Integer> compact(String eventId) {
+        return claimLease(eventId).thenCompose(claimed -> {
+            if (!claimed) {
+                return CompletableFuture.completedFuture(0);
+            }
+            return drain(eventId, 0);
+        });
+    }
+
+    /**
+     * Compacts every event that still has queued tickets, skipping events another
+     * compactor holds the lease for.
+     *
+     * @return A future with the number of tickets processed, keyed by the ID of each event
+     * that had some processed.
+     */
+    public CompletableFuture<Map<String, Integer>> compactPending() {
+        GatewayQuery query = GatewayQuery.collectionGroup("intake")
+                .whereEqualTo("status", JoinTicket.QUEUED)
+                .limit(PENDING_SCAN_SIZE);
+        return gateway.query(query).thenCompose(tickets -> {
+            // Tickets live at events/{eventId}/intake/{userId}
+            Set<String> eventIds = new LinkedHashSet<>();
+            for (DocumentData ticket : tickets) {
+                eventIds.add(ticket.getPath().split("/")[1]);
+            }
+            Map<String, Integer> processed = new ConcurrentHashMap<>();
+            List<CompletableFuture<Void>> compactions = new ArrayList<>();
+            for (String eventId : eventIds) {
+                compactions.add(compact(eventId).thenAccept(count -> {
+                    if (count > 0) {
+                        processed.put(eventId, count);
+                    }
+                }));
+            }
+            return CompletableFuture.allOf(compactions.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(done -> processed);
+        });
+    }
+
+    private CompletableFuture<Integer> drain(String eventId, int processed) {
+        return queued(eventId, BATCH_SIZE).thenCompose(tickets -> {
+            if (tickets.isEmpty()) {
+                // Release, then look once more: a ticket logged while the lease was still
+                // held was written before this query and is picked up by compacting again
+                return gateway.delete(leasePath(eventId))
+                        .thenCompose(done -> queued(eventId, 1))
+                        .thenCompose(late -> late.isEmpty()
+                                ? CompletableFuture.completedFuture(processed)
+                                : compact(eventId).thenApply(more -> processed + more));
+            }
+            return admit(eventId, tickets).thenCompose(count -> drain(eventId, processed + count));
+        });
+    }
+
+    private CompletableFuture<List<DocumentData>> queued(String eventId, int limit) {
+        return gateway.query(GatewayQuery.collection(intakePath(eventId))
+                .whereEqualTo("status", JoinTicket.QUEUED)
+                .orderBy("requestedAt", false)
+                .limit(limit));
+    }
+
+    /**
+     * Admits one batch of tickets in a single transaction, in arrival order.
+     */
+    private CompletableFuture<Integer> admit(String eventId, List<DocumentData> tickets) {
+        return gateway.runTransaction(transaction -> {
+            DocumentData event = transaction.get(EntrantStore.eventPath(eventId));
+            List<DocumentData> current = new ArrayList<>();
+            List<DocumentData> entries = new ArrayList<>();
+            List<DocumentData> users = new ArrayList<>();
+            for (DocumentData ticket : tickets) {
+                String userId = ticket.getId();
+                current.add(transaction.get(ticket.getPath()));
+                entries.add(transaction.get(EntrantStore.entryPath(eventId, userId)));
+                users.add(transaction.get("users/" + userId));
+            }
+
+            // Check every ticket first, so the waitlist limit is reserved for exactly those who may join
+            long now = System.currentTimeMillis();
+            List<String> refusals = new ArrayList<>();
+            int eligible = 0;
+            for (int i = 0; i < tickets.size(); i++) {
+                String refusal = EntrantStore.joinRefusal(event, entries.get(i), users.get(i), now);
+                refusals.add(refusal);
+                if (refusal == null && JoinTicket.QUEUED.equals(current.get(i).getString("status"))) {
+                    eligible++;
+                }
+            }
+            Map<Integer, Long> places = eligible > 0
+                    ? entrantStore.reserveWaitlistPlaces(transaction, eventId, event, eligible)
+                    : null;
+            long room = places != null ? total(places) : eligible;
+
+            int processed = 0;
+            Map<String, Long> counterDeltas = new HashMap<>();
+            for (int i = 0; i < tickets.size(); i++) {
+                // Another compactor whose lease lapsed may have processed it already
+                if (!JoinTicket.QUEUED.equals(current.get(i).getString("status"))) {
+                    continue;
+                }
+                String userId = tickets.get(i).getId();
+                String refusal = refusals.get(i);
+                if (refusal == null && room == 0) {
+                    refusal = EntrantStore.WAITLIST_FULL;
+                }
+                Map<String, Object> outcome = new HashMap<>();
+                if (refusal == null) {
+                    entrantStore.writeTransition(transaction, eventId, userId, users.get(i),
+                            EntrantStore.roleOf(entries.get(i)), EventRole.WAITLISTED, counterDeltas);
+                    room--;
+                    outcome.put("status", JoinTicket.ADMITTED);
+                } else {
+                    outcome.put("status", JoinTicket.REJECTED);
+                    outcome.put("reason", refusal);
+                }
+                outcome.put("processedAt", FieldOp.serverTimestamp());
+                transaction.update(tickets.get(i).getPath(), outcome);
+                processed++;
+            }
+            entrantStore.incrementCounters(transaction, eventId, counterDeltas, places);
+            transaction.set(leasePath(eventId), leaseData(new Date()), false);
+            return processed;
+        });
+    }
+
+    private static long total(Map<Integer, Long> places) {
+        long total = 0;
+        for (Long taken : places.values()) {
+            total += taken;
+        }
+        return total;
+    }
+
+    private CompletableFuture<Boolean> claimLease(String eventId) {
+        return gateway.runTransaction(transaction -> {
+            Date now = new Date();
+            Date claimedAt = transaction.get(leasePath(eventId)).getDate("claimedAt");
+            if (claimedAt != null && claimedAt.getTime() > now.getTime() - LEASE_MILLIS) {
+                return false;
+            }
+            transaction.set(leasePath(eventId), leaseData(now), false);
+            return true;
+        });
+    }
+
+    private static Map<String, Object> leaseData(Date now) {
+        Map<String, Object> lease = new HashMap<>();
+        lease.put("claimedAt", now);
+        return lease;
+    }
+}
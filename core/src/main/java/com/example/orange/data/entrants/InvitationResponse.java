@@ -0,0 +1,88 @@
+package com.example.orange.data.entrants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A user's answer to an invitation to participate, together with the notification
+ * writes that go with it: resolving the invitation notifications and telling the
+ * organizer. EntrantStore.respond applies the answer and the writes in one transaction.
+ */
+public class InvitationResponse {
+    private final String eventId;
+    private final String userId;
+    private final boolean accepted;
+    private final List<String> invitationPaths = new ArrayList<>();
+    private Map<String, Object> invitationUpdate;
+    private final Map<String, Map<String, Object>> notices = new LinkedHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param eventId  The ID of the event.
+     * @param userId   The ID of the invited user.
+     * @param accepted Whether the user accepts the invitation.
+     */
+    public InvitationResponse(String eventId, String userId, boolean accepted) {
+        this.eventId = eventId;
+        this.userId = userId;
+        this.accepted = accepted;
+    }
+
+    /**
+     * Updates an invitation notification along with the answer, if it exists. May be
+     * called more than once, for a user invited before invitations had fixed IDs; the
+     * last update given is applied to every path.
+     *
+     * @param path   The path of the invitation notification.
+     * @param update The fields to update, such as its status.
+     * @return This response.
+     */
+    public InvitationResponse resolving(String path, Map<String, Object> update) {
+        if (!invitationPaths.contains(path)) {
+            invitationPaths.add(path);
+        }
+        this.invitationUpdate = update;
+        return this;
+    }
+
+    /**
+     * Creates a notification along with the answer, such as one for the organizer.
+     * The document is replaced, so a retried response writes it only once.
+     *
+     * @param path The path of the new notification.
+     * @param data Its fields.
+     * @return This response.
+     */
+    public InvitationResponse notifying(String path, Map<String, Object> data) {
+        notices.put(path, data);
+        return this;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    public List<String> getInvitationPaths() {
+        return Collections.unmodifiableList(invitationPaths);
+    }
+
+    public Map<String, Object> getInvitationUpdate() {
+        return invitationUpdate;
+    }
+
+    public Map<String, Map<String, Object>> getNotices() {
+        return Collections.unmodifiableMap(notices);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.orange.data.entrants;
+
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.GatewayQuery;
+import com.example.orange.data.model.EventRole;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * InvitationSweeper releases the places of selected users who did not accept or
+ * decline before their invitation's deadline. It finds expired invitations with one
+ * indexed collection group query over entries (status, expiresAt), moves them to
+ * cancelled in transactions grouped by event, and then asks for each affected
+ * event's places to be refilled from its waitlist.
+ *
+ * The transactions recheck each entry before moving it, so a sweep that outlives
+ * its lease and overlaps the next one still releases each invitation once. The
+ * lease in sweeps/invitations only keeps devices from doing the same work twice.
+ */
+public class InvitationSweeper {
+    public static final String LEASE_PATH = "sweeps/invitations";
+    // Expired entries released per query page
+    public static final int PAGE_SIZE = 1000;
+    // A sweep that has not finished in this time is assumed to have died with its device
+    public static final long LEASE_MILLIS = 10 * 60 * 1000L;
+    // Leaves time for an answer sent just before the deadline to commit before it is swept
+    public static final long GRACE_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * Refills an event's places after the sweeper released some.
+     */
+    public interface Backfiller {
+        /**
+         * Draws replacements for released places.
+         *
+         * @param eventId  The ID of the event.
+         * @param released The number of places released.
+         * @return A future completing when the replacements are drawn.
+         */
+        CompletableFuture<?> backfill(String eventId, int released);
+    }
+
+    /**
+     * Counts of what one sweep did.
+     */
+    public static final class SweepSummary {
+        private final AtomicInteger expired = new AtomicInteger();
+        private final AtomicInteger events = new AtomicInteger();
+        private final AtomicInteger backfillFailures = new AtomicInteger();
+        private volatile boolean skipped;
+
+        public int getExpired() {
+            return expired.get();
+        }
+
+        public int getEvents() {
+            return events.get();
+        }
+
+        public int getBackfillFailures() {
+            return backfillFailures.get();
+        }
+
+        /**
+         * Whether the sweep did not run because another device holds the lease.
+         *
+         * @return true if the sweep was skipped.
+         */
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        @Override
+        public String toString() {
+            return "SweepSummary{" +
+                    "expired=" + expired +
+                    ", events=" + events +
+                    ", backfillFailures=" + backfillFailures +
+                    ", skipped=" + skipped +
+                    '}';
+        }
+    }
+
+    private final DataGateway gateway;
+    private final EntrantStore entrantStore;
+    private final Backfiller backfiller;
+
+    /**
+     * Constructor
+     *
+     * @param gateway      The gateway to read and write through.
+     * @param entrantStore The store that moves expired users to cancelled.
+     * @param backfiller   Refills released places.
+     */
+    public InvitationSweeper(DataGateway gateway, EntrantStore entrantStore, Backfiller backfiller) {
+        this.gateway = gateway;
+        this.entrantStore = entrantStore;
+        this.backfiller = backfiller;
+    }
+
+    /**
+     * Releases every invitation that expired before the given time and refills the
+     * places from the waitlists.
+     *
+     * @param now The current time.
+     * @return A future with what the sweep did.
+     */
+    public CompletableFuture<SweepSummary> sweep(Date now) {
+        SweepSummary summary = new SweepSummary();
+        return claimLease(now).thenCompose(claimed -> {
+            if (!claimed) {
+                summary.skipped = true;
+                return CompletableFuture.completedFuture(summary);
+            }
+            Map<String, Integer> released = new LinkedHashMap<>();
+            return expirePages(new Date(now.getTime() - GRACE_MILLIS), released, summary)
+                    .thenCompose(done -> backfill(new ArrayList<>(released.entrySet()), 0, summary))
+                    .handle((done, error) -> error)
+                    .thenCompose(error -> releaseLease().handle((done, releaseError) -> {
+                        if (error != null) {
+                            throw error instanceof RuntimeException ? (RuntimeException) error : new RuntimeException(error);
+                        }
+                        return summary;
+                    }));
+        });
+    }
+
+    private CompletableFuture<Void> expirePages(Date cutoff, Map<String, Integer> released, SweepSummary summary) {
+        GatewayQuery query = GatewayQuery.collectionGroup("entries")
+                .whereEqualTo("status", EventRole.SELECTED.name())
+                .whereLessThanOrEqualTo("expiresAt", cutoff)
+                .orderBy("expiresAt", false)
+                .limit(PAGE_SIZE);
+        return gateway.query(query).thenCompose(entries -> {
+            if (entries.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            Map<String, List<String>> byEvent = new HashMap<>();
+            for (DocumentData entry : entries) {
+                // Entries live at events/{eventId}/entries/{userId}
+                String eventId = entry.getPath().split("/")[1];
+                List<String> users = byEvent.get(eventId);
+                if (users == null) {
+                    users = new ArrayList<>();
+                    byEvent.put(eventId, users);
+                }
+                users.add(entry.getId());
+            }
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (Map.Entry<String, List<String>> event : byEvent.entrySet()) {
+                String eventId = event.getKey();
+                writes.add(entrantStore.expireSelections(eventId, event.getValue(), cutoff).thenAccept(expired -> {
+                    if (expired.isEmpty()) {
+                        return;
+                    }
+                    synchronized (released) {
+                        Integer count = released.get(eventId);
+                        released.put(eventId, (count != null ? count : 0) + expired.size());
+                    }
+                    summary.expired.addAndGet(expired.size());
+                }));
+            }
+            return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).thenCompose(done ->
+                    entries.size() < PAGE_SIZE
+                            ? CompletableFuture.<Void>completedFuture(null)
+                            : expirePages(cutoff, released, summary));
+        });
+    }
+
+    private CompletableFuture<Void> backfill(List<Map.Entry<String, Integer>> events, int index, SweepSummary summary) {
+        if (index >= events.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Map.Entry<String, Integer> event = events.get(index);
+        summary.events.incrementAndGet();
+        CompletableFuture<?> refill;
+        try {
+            refill = backfiller.backfill(event.getKey(), event.getValue());
+        } catch (RuntimeException e) {
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            refill = failed;
+        }
+        // Places left open stay open for the organizer or a later redraw to fill
+        return refill.handle((done, error) -> {
+            if (error != null) {
+                summary.backfillFailures.incrementAndGet();
+            }
+            return null;
+        }).thenCompose(done -> backfill(events, index + 1, summary));
+    }
+
+    private CompletableFuture<Boolean> claimLease(Date now) {
+        return gateway.runTransaction(transaction -> {
+            DocumentData lease = transaction.get(LEASE_PATH);
+            Date claimedAt = lease.getDate("claimedAt");
+            if (claimedAt != null && claimedAt.getTime() > now.getTime() - LEASE_MILLIS) {
+                return false;
+            }
+            Map<String, Object> data = new HashMap<>();
+            data.put("claimedAt", now);
+            transaction.set(LEASE_PATH, data, false);
+            return true;
+        });
+    }
+
+    private CompletableFuture<Void> releaseLease() {
+        return gateway.delete(LEASE_PATH);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.orange.data.entrants;
+
+import com.example.orange.data.gateway.DocumentData;
+
+/**
+ * A user's place in an event's join queue, handed back as soon as their join request
+ * is logged. The ticket is QUEUED until IntakeCompactor merges the request into the
+ * waitlist, then ADMITTED, or REJECTED with the reason to show the user.
+ */
+public class JoinTicket {
+    public static final String QUEUED = "QUEUED";
+    public static final String ADMITTED = "ADMITTED";
+    public static final String REJECTED = "REJECTED";
+
+    private final String eventId;
+    private final String userId;
+    private final String status;
+    private final String reason;
+
+    /**
+     * Constructor
+     *
+     * @param eventId The ID of the event joined.
+     * @param userId  The ID of the user joining.
+     * @param status  QUEUED, ADMITTED or REJECTED.
+     * @param reason  Why the join was rejected, or null.
+     */
+    public JoinTicket(String eventId, String userId, String status, String reason) {
+        this.eventId = eventId;
+        this.userId = userId;
+        this.status = status;
+        this.reason = reason;
+    }
+
+    /**
+     * Reads a ticket from its intake log document.
+     *
+     * @param eventId  The ID of the event.
+     * @param document The intake document, which may not exist.
+     * @return The ticket, or null if the user has no join request in the log.
+     */
+    public static JoinTicket from(String eventId, DocumentData document) {
+        if (!document.exists()) {
+            return null;
+        }
+        return new JoinTicket(eventId, document.getId(), document.getString("status"), document.getString("reason"));
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Whether the request is still waiting to be merged into the waitlist.
+     *
+     * @return true if the ticket is queued.
+     */
+    public boolean isQueued() {
+        return QUEUED.equals(status);
+    }
+
+    /**
+     * Whether the request was merged and the user is now on the waitlist.
+     *
+     * @return true if the ticket was admitted.
+     */
+    public boolean isAdmitted() {
+        return ADMITTED.equals(status);
+    }
+
+    /**
+     * Whether the request was turned down; getReason says why.
+     *
+     * @return true if the ticket was rejected.
+     */
+    public boolean isRejected() {
+        return REJECTED.equals(status);
+    }
+
+    @Override
+    public String toString() {
+        return "JoinTicket{" +
+                "eventId='" + eventId + '\'' +
+                ", userId='" + userId + '\'' +
+                ", status='" + status + '\'' +
+                ", reason='" + reason + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.orange.data.gateway;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * DataGateway is the storage interface the data layer is written against. It
+ * covers the document, query, transaction, batch and listener operations used
+ * with Firestore, expressed in plain Java so the same code can run against
+ * Firestore on a device or against InMemoryGateway on any JVM.
+ *
+ * Documents are addressed by slash-separated paths such as "events/abc" or
+ * "events/abc/entries/user1", and their data is a Map. Special writes such as
+ * increments and array unions are expressed with FieldOp values.
+ */
+public interface DataGateway {
+
+    /**
+     * Work run inside a transaction. It may be run more than once if the
+     * transaction is retried, so it must not have side effects outside the
+     * transaction.
+     *
+     * @param <T> The type of the transaction's result.
+     */
+    interface TransactionFunction<T> {
+        T apply(GatewayTransaction transaction);
+    }
+
+    /**
+     * Receives the results of a query each time they change.
+     */
+    interface QueryListener {
+        /**
+         * Called with the current results, or with the error that stopped the listener.
+         *
+         * @param documents The matching documents, or null on error.
+         * @param error     The error, or null on success.
+         */
+        void onEvent(List<DocumentData> documents, Exception error);
+    }
+
+    /**
+     * Handle used to stop a listener.
+     */
+    interface Registration {
+        void remove();
+    }
+
+    /**
+     * Reads a document.
+     *
+     * @param path The document path.
+     * @return The document; it may not exist.
+     */
+    CompletableFuture<DocumentData> get(String path);
+
+    /**
+     * Runs a query.
+     *
+     * @param query The query.
+     * @return The matching documents.
+     */
+    CompletableFuture<List<DocumentData>> query(GatewayQuery query);
+
+    /**
+     * Writes a document.
+     *
+     * @param path  The document path.
+     * @param data  The fields to write.
+     * @param merge Whether to merge into the existing document rather than replace it.
+     * @return A future completing once the write is committed.
+     */
+    CompletableFuture<Void> set(String path, Map<String, Object> data, boolean merge);
+
+    /**
+     * Updates fields of an existing document. Keys may be dotted paths into nested maps.
+     *
+     * @param path The document path.
+     * @param data The fields to update.
+     * @return A future failing if the document does not exist.
+     */
+    CompletableFuture<Void> update(String path, Map<String, Object> data);
+
+    /**
+     * Deletes a document.
+     *
+     * @param path The document path.
+     * @return A future completing once the delete is committed.
+     */
+    CompletableFuture<Void> delete(String path);
+
+    /**
+     * Runs a transaction. All reads must happen before any write.
+     *
+     * @param function The work to run.
+     * @param <T>      The type of the result.
+     * @return The result of the attempt that committed.
+     */
+    <T> CompletableFuture<T> runTransaction(TransactionFunction<T> function);
+
+    /**
+     * Starts a write batch.
+     *
+     * @return An empty batch.
+     */
+    GatewayBatch batch();
+
+    /**
+     * Listens to the results of a query. The listener receives the current results
+     * first and again after every change.
+     *
+     * @param query    The query.
+     * @param listener The listener.
+     * @return A registration used to stop listening.
+     */
+    Registration listen(GatewayQuery query, QueryListener listener);
+
+    /**
+     * Generates a new random document ID.
+     *
+     * @return The ID.
+     */
+    String newId();
+}
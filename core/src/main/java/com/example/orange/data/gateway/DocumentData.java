@@ -0,0 +1,113 @@
+package com.example.orange.data.gateway;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * A document read through a DataGateway: its path, whether it exists, and its fields.
+ */
+public class DocumentData {
+    private final String path;
+    private final Map<String, Object> data;
+
+    /**
+     * Constructor
+     *
+     * @param path The document path.
+     * @param data The document fields, or null if the document does not exist.
+     */
+    public DocumentData(String path, Map<String, Object> data) {
+        this.path = path;
+        this.data = data;
+    }
+
+    /**
+     * Gets the document path.
+     *
+     * @return The path.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the document ID, the last segment of its path.
+     *
+     * @return The ID.
+     */
+    public String getId() {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Whether the document exists.
+     *
+     * @return true if the document exists.
+     */
+    public boolean exists() {
+        return data != null;
+    }
+
+    /**
+     * Gets the document fields.
+     *
+     * @return The fields, empty if the document does not exist.
+     */
+    public Map<String, Object> getData() {
+        return data != null ? data : Collections.<String, Object>emptyMap();
+    }
+
+    /**
+     * Gets a field value.
+     *
+     * @param field The field name.
+     * @return The value, or null if absent.
+     */
+    public Object get(String field) {
+        return data != null ? data.get(field) : null;
+    }
+
+    /**
+     * Gets a string field.
+     *
+     * @param field The field name.
+     * @return The value, or null if absent or not a string.
+     */
+    public String getString(String field) {
+        Object value = get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * Gets a numeric field as a long.
+     *
+     * @param field The field name.
+     * @return The value, or null if absent or not a number.
+     */
+    public Long getLong(String field) {
+        Object value = get(field);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    /**
+     * Gets a time field.
+     *
+     * @param field The field name.
+     * @return The value, or null if absent or not a date.
+     */
+    public Date getDate(String field) {
+        Object value = get(field);
+        return value instanceof Date ? (Date) value : null;
+    }
+
+    /**
+     * Whether the document has a field.
+     *
+     * @param field The field name.
+     * @return true if the field is present.
+     */
+    public boolean contains(String field) {
+        return data != null && data.containsKey(field);
+    }
+}
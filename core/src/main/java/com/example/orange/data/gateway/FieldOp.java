@@ -0,0 +1,105 @@
+package com.example.orange.data.gateway;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A write that depends on the stored value rather than replacing it, used as a
+ * field value in DataGateway writes. Each gateway translates these to its own
+ * form, such as Firestore's FieldValue.
+ */
+public final class FieldOp {
+
+    /**
+     * The kinds of field operation.
+     */
+    public enum Kind {
+        DELETE, SERVER_TIMESTAMP, INCREMENT, ARRAY_UNION, ARRAY_REMOVE
+    }
+
+    private final Kind kind;
+    private final long delta;
+    private final List<Object> elements;
+
+    private FieldOp(Kind kind, long delta, List<Object> elements) {
+        this.kind = kind;
+        this.delta = delta;
+        this.elements = elements;
+    }
+
+    /**
+     * Removes the field.
+     *
+     * @return The operation.
+     */
+    public static FieldOp delete() {
+        return new FieldOp(Kind.DELETE, 0, Collections.emptyList());
+    }
+
+    /**
+     * Sets the field to the time the write is committed.
+     *
+     * @return The operation.
+     */
+    public static FieldOp serverTimestamp() {
+        return new FieldOp(Kind.SERVER_TIMESTAMP, 0, Collections.emptyList());
+    }
+
+    /**
+     * Adds to a numeric field, treating a missing field as zero.
+     *
+     * @param delta The amount to add.
+     * @return The operation.
+     */
+    public static FieldOp increment(long delta) {
+        return new FieldOp(Kind.INCREMENT, delta, Collections.emptyList());
+    }
+
+    /**
+     * Adds elements to an array field unless already present.
+     *
+     * @param elements The elements to add.
+     * @return The operation.
+     */
+    public static FieldOp arrayUnion(Object... elements) {
+        return new FieldOp(Kind.ARRAY_UNION, 0, Collections.unmodifiableList(Arrays.asList(elements)));
+    }
+
+    /**
+     * Removes every instance of the elements from an array field.
+     *
+     * @param elements The elements to remove.
+     * @return The operation.
+     */
+    public static FieldOp arrayRemove(Object... elements) {
+        return new FieldOp(Kind.ARRAY_REMOVE, 0, Collections.unmodifiableList(Arrays.asList(elements)));
+    }
+
+    /**
+     * Gets the kind of operation.
+     *
+     * @return The kind.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the amount added by an increment.
+     *
+     * @return The delta.
+     */
+    public long getDelta() {
+        return delta;
+    }
+
+    /**
+     * Gets the elements of an array union or remove.
+     *
+     * @return The elements.
+     */
+    public List<Object> getElements() {
+        return elements;
+    }
+}
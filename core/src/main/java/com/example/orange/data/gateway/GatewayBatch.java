@@ -0,0 +1,44 @@
+package com.example.orange.data.gateway;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A set of writes committed together. Either all of them are applied or none.
+ */
+public interface GatewayBatch {
+
+    /**
+     * Adds a document write.
+     *
+     * @param path  The document path.
+     * @param data  The fields to write.
+     * @param merge Whether to merge into the existing document.
+     * @return This batch.
+     */
+    GatewayBatch set(String path, Map<String, Object> data, boolean merge);
+
+    /**
+     * Adds an update of fields in an existing document.
+     *
+     * @param path The document path.
+     * @param data The fields to update; keys may be dotted paths.
+     * @return This batch.
+     */
+    GatewayBatch update(String path, Map<String, Object> data);
+
+    /**
+     * Adds a document delete.
+     *
+     * @param path The document path.
+     * @return This batch.
+     */
+    GatewayBatch delete(String path);
+
+    /**
+     * Commits the writes.
+     *
+     * @return A future completing once every write is applied.
+     */
+    CompletableFuture<Void> commit();
+}
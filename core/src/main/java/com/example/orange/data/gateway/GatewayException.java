@@ -0,0 +1,40 @@
+package com.example.orange.data.gateway;
+
+/**
+ * Thrown when a DataGateway operation fails, for example when a transaction
+ * gives up after repeated contention or an update targets a missing document.
+ */
+public class GatewayException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean retryable;
+
+    public GatewayException(String message) {
+        this(message, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param message   The failure.
+     * @param retryable Whether running the operation again may succeed, as after contention.
+     */
+    public GatewayException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+    }
+
+    public GatewayException(String message, Throwable cause) {
+        super(message, cause);
+        this.retryable = false;
+    }
+
+    /**
+     * Whether running the operation again may succeed.
+     *
+     * @return true if the failure was transient.
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
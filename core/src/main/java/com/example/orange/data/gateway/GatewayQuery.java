@@ -0,0 +1,206 @@
+package com.example.orange.data.gateway;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable description of a DataGateway query: a collection (or every
+ * collection with a given ID), equality, membership, array and range filters, an
+ * optional ordering with a start-after cursor, and a limit.
+ *
+ * Each method returns a new query, so a base query can be shared.
+ */
+public final class GatewayQuery {
+    // Field name that stands for the document ID in filters and ordering
+    public static final String DOCUMENT_ID = "__name__";
+
+    /**
+     * The kinds of filter.
+     */
+    public enum Operator {
+        EQUAL, IN, ARRAY_CONTAINS, LESS_THAN_OR_EQUAL
+    }
+
+    /**
+     * One filter of a query.
+     */
+    public static final class Filter {
+        private final String field;
+        private final Operator operator;
+        private final Object value;
+
+        Filter(String field, Operator operator, Object value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    private final String collection;
+    private final boolean collectionGroup;
+    private final List<Filter> filters;
+    private final String orderBy;
+    private final boolean descending;
+    private final Object startAfter;
+    private final int limit;
+
+    private GatewayQuery(String collection, boolean collectionGroup, List<Filter> filters,
+                         String orderBy, boolean descending, Object startAfter, int limit) {
+        this.collection = collection;
+        this.collectionGroup = collectionGroup;
+        this.filters = filters;
+        this.orderBy = orderBy;
+        this.descending = descending;
+        this.startAfter = startAfter;
+        this.limit = limit;
+    }
+
+    /**
+     * Queries the documents of one collection.
+     *
+     * @param path The collection path, such as "events" or "events/abc/entries".
+     * @return The query.
+     */
+    public static GatewayQuery collection(String path) {
+        return new GatewayQuery(path, false, Collections.<Filter>emptyList(), null, false, null, 0);
+    }
+
+    /**
+     * Queries the documents of every collection with the given ID, wherever it is nested.
+     *
+     * @param collectionId The collection ID, such as "entries".
+     * @return The query.
+     */
+    public static GatewayQuery collectionGroup(String collectionId) {
+        return new GatewayQuery(collectionId, true, Collections.<Filter>emptyList(), null, false, null, 0);
+    }
+
+    /**
+     * Keeps documents whose field equals the value.
+     *
+     * @param field The field, or DOCUMENT_ID.
+     * @param value The value.
+     * @return The narrowed query.
+     */
+    public GatewayQuery whereEqualTo(String field, Object value) {
+        return withFilter(new Filter(field, Operator.EQUAL, value));
+    }
+
+    /**
+     * Keeps documents whose field equals one of the values.
+     *
+     * @param field  The field, or DOCUMENT_ID.
+     * @param values The values.
+     * @return The narrowed query.
+     */
+    public GatewayQuery whereIn(String field, List<?> values) {
+        return withFilter(new Filter(field, Operator.IN, new ArrayList<>(values)));
+    }
+
+    /**
+     * Keeps documents whose array field contains the value.
+     *
+     * @param field The array field.
+     * @param value The value.
+     * @return The narrowed query.
+     */
+    public GatewayQuery whereArrayContains(String field, Object value) {
+        return withFilter(new Filter(field, Operator.ARRAY_CONTAINS, value));
+    }
+
+    /**
+     * Keeps documents whose field is at most the value. Documents without the field
+     * are left out.
+     *
+     * @param field The field.
+     * @param value The largest value to keep.
+     * @return The narrowed query.
+     */
+    public GatewayQuery whereLessThanOrEqualTo(String field, Object value) {
+        return withFilter(new Filter(field, Operator.LESS_THAN_OR_EQUAL, value));
+    }
+
+    /**
+     * Orders results by a field.
+     *
+     * @param field      The field, or DOCUMENT_ID.
+     * @param descending Whether to order from largest to smallest.
+     * @return The ordered query.
+     */
+    public GatewayQuery orderBy(String field, boolean descending) {
+        return new GatewayQuery(collection, collectionGroup, filters, field, descending, startAfter, limit);
+    }
+
+    /**
+     * Starts results after the given value of the ordering field.
+     *
+     * @param value The value of the ordering field to start after.
+     * @return The query.
+     */
+    public GatewayQuery startAfter(Object value) {
+        return new GatewayQuery(collection, collectionGroup, filters, orderBy, descending, value, limit);
+    }
+
+    /**
+     * Limits the number of results.
+     *
+     * @param limit The most results to return.
+     * @return The limited query.
+     */
+    public GatewayQuery limit(int limit) {
+        return new GatewayQuery(collection, collectionGroup, filters, orderBy, descending, startAfter, limit);
+    }
+
+    private GatewayQuery withFilter(Filter filter) {
+        List<Filter> narrowed = new ArrayList<>(filters);
+        narrowed.add(filter);
+        return new GatewayQuery(collection, collectionGroup, Collections.unmodifiableList(narrowed),
+                orderBy, descending, startAfter, limit);
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public boolean isCollectionGroup() {
+        return collectionGroup;
+    }
+
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public Object getStartAfter() {
+        return startAfter;
+    }
+
+    /**
+     * Gets the limit.
+     *
+     * @return The most results to return, or 0 for no limit.
+     */
+    public int getLimit() {
+        return limit;
+    }
+}
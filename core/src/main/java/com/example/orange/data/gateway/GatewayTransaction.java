@@ -0,0 +1,43 @@
+package com.example.orange.data.gateway;
+
+import java.util.Map;
+
+/**
+ * The operations available inside a DataGateway transaction. Reads return
+ * immediately with the transaction's view of the document, and writes are
+ * buffered until the transaction commits.
+ */
+public interface GatewayTransaction {
+
+    /**
+     * Reads a document as part of the transaction.
+     *
+     * @param path The document path.
+     * @return The document; it may not exist.
+     */
+    DocumentData get(String path);
+
+    /**
+     * Writes a document when the transaction commits.
+     *
+     * @param path  The document path.
+     * @param data  The fields to write.
+     * @param merge Whether to merge into the existing document.
+     */
+    void set(String path, Map<String, Object> data, boolean merge);
+
+    /**
+     * Updates fields of an existing document when the transaction commits.
+     *
+     * @param path The document path.
+     * @param data The fields to update; keys may be dotted paths.
+     */
+    void update(String path, Map<String, Object> data);
+
+    /**
+     * Deletes a document when the transaction commits.
+     *
+     * @param path The document path.
+     */
+    void delete(String path);
+}
@@ -0,0 +1,667 @@
+package com.example.orange.data.gateway;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * InMemoryGateway is a DataGateway that keeps every document in memory, so the
+ * data layer can be exercised and load-tested on a plain JVM.
+ *
+ * It is safe for concurrent use and behaves like Firestore where it matters for
+ * throughput: transactions are optimistic, recording the version of every
+ * document they read and committing only if none of them changed meanwhile.
+ * A transaction that loses a race is retried after a short random backoff, up
+ * to five attempts, and then fails. An optional latency is added to every read
+ * and commit to stand in for network round trips.
+ *
+ * Debug builds of the app can also run on it in place of Firestore; see
+ * DataGateways.
+ */
+public class InMemoryGateway implements DataGateway {
+    // Firestore gives up on a transaction after five attempts
+    private static final int MAX_TRANSACTION_ATTEMPTS = 5;
+
+    /**
+     * A stored document. Instances are never modified, so a reader always sees a
+     * version and data that belong together.
+     */
+    private static final class StoredDocument {
+        final long version;
+        final Map<String, Object> data;
+
+        StoredDocument(long version, Map<String, Object> data) {
+            this.version = version;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A buffered write.
+     */
+    private static final class Write {
+        enum Kind { SET, MERGE, UPDATE, DELETE }
+
+        final Kind kind;
+        final String path;
+        final Map<String, Object> data;
+
+        Write(Kind kind, String path, Map<String, Object> data) {
+            this.kind = kind;
+            this.path = path;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A registered query listener.
+     */
+    private static final class Listener {
+        final GatewayQuery query;
+        final QueryListener listener;
+        volatile boolean active = true;
+
+        Listener(GatewayQuery query, QueryListener listener) {
+            this.query = query;
+            this.listener = listener;
+        }
+    }
+
+    private final Map<String, StoredDocument> documents = new ConcurrentHashMap<>();
+    private final Object commitLock = new Object();
+    private final AtomicLong versions = new AtomicLong();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Executor executor;
+    private final long latencyNanos;
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong transactionRetries = new AtomicLong();
+    private final AtomicLong transactionFailures = new AtomicLong();
+
+    /**
+     * Creates a gateway with no added latency that runs operations on the common pool.
+     */
+    public InMemoryGateway() {
+        this(ForkJoinPool.commonPool(), 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param executor      The executor operations and listener callbacks run on.
+     * @param latencyMicros Delay added to every read and commit, in microseconds.
+     */
+    public InMemoryGateway(Executor executor, long latencyMicros) {
+        this.executor = executor;
+        this.latencyNanos = latencyMicros * 1000;
+    }
+
+    @Override
+    public CompletableFuture<DocumentData> get(String path) {
+        return CompletableFuture.supplyAsync(() -> {
+            pause();
+            return peek(path);
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<DocumentData>> query(GatewayQuery query) {
+        return CompletableFuture.supplyAsync(() -> {
+            pause();
+            return runQuery(query);
+        }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> set(String path, Map<String, Object> data, boolean merge) {
+        return batch().set(path, data, merge).commit();
+    }
+
+    @Override
+    public CompletableFuture<Void> update(String path, Map<String, Object> data) {
+        return batch().update(path, data).commit();
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String path) {
+        return batch().delete(path).commit();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> runTransaction(TransactionFunction<T> function) {
+        return CompletableFuture.supplyAsync(() -> {
+            for (int attempt = 1; ; attempt++) {
+                MemoryTransaction transaction = new MemoryTransaction();
+                T result = function.apply(transaction);
+                pause();
+                if (tryCommit(transaction.writes, transaction.readVersions)) {
+                    return result;
+                }
+                if (attempt >= MAX_TRANSACTION_ATTEMPTS) {
+                    transactionFailures.incrementAndGet();
+                    throw new GatewayException("Transaction aborted after " + attempt + " attempts due to contention", true);
+                }
+                transactionRetries.incrementAndGet();
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(1, (1L << attempt) * 100_000L));
+            }
+        }, executor);
+    }
+
+    @Override
+    public GatewayBatch batch() {
+        return new MemoryBatch();
+    }
+
+    @Override
+    public Registration listen(GatewayQuery query, QueryListener listener) {
+        Listener registered = new Listener(query, listener);
+        listeners.add(registered);
+        executor.execute(() -> deliver(registered));
+        return () -> {
+            registered.active = false;
+            listeners.remove(registered);
+        };
+    }
+
+    @Override
+    public String newId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+    }
+
+    /**
+     * Reads a document immediately, without latency.
+     *
+     * @param path The document path.
+     * @return A copy of the document.
+     */
+    public DocumentData peek(String path) {
+        StoredDocument stored = documents.get(path);
+        return new DocumentData(path, stored != null ? copyMap(stored.data) : null);
+    }
+
+    /**
+     * Gets the number of documents stored.
+     *
+     * @return The document count.
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Gets the number of batches and transactions committed.
+     *
+     * @return The commit count.
+     */
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    /**
+     * Gets the number of times a transaction was retried after a conflict.
+     *
+     * @return The retry count.
+     */
+    public long getTransactionRetryCount() {
+        return transactionRetries.get();
+    }
+
+    /**
+     * Gets the number of transactions that failed after their last attempt.
+     *
+     * @return The failure count.
+     */
+    public long getTransactionFailureCount() {
+        return transactionFailures.get();
+    }
+
+    /**
+     * Removes every document. Listeners stay registered.
+     */
+    public void clear() {
+        synchronized (commitLock) {
+            documents.clear();
+        }
+    }
+
+    /**
+     * Applies writes if none of the expected document versions changed.
+     *
+     * @param writes           The writes, in order.
+     * @param expectedVersions The version each read document had, 0 if it did not exist.
+     * @return false if a version changed and nothing was written.
+     */
+    private boolean tryCommit(List<Write> writes, Map<String, Long> expectedVersions) {
+        Set<String> changed = new HashSet<>();
+        synchronized (commitLock) {
+            for (Map.Entry<String, Long> expected : expectedVersions.entrySet()) {
+                StoredDocument current = documents.get(expected.getKey());
+                long version = current != null ? current.version : 0;
+                if (version != expected.getValue()) {
+                    return false;
+                }
+            }
+
+            // Apply to a scratch copy first so a failing update leaves nothing half-written
+            Map<String, Map<String, Object>> staged = new HashMap<>();
+            for (Write write : writes) {
+                Map<String, Object> base;
+                if (staged.containsKey(write.path)) {
+                    base = staged.get(write.path);
+                } else {
+                    StoredDocument stored = documents.get(write.path);
+                    base = stored != null ? stored.data : null;
+                }
+                staged.put(write.path, applyWrite(write, base));
+            }
+            for (Map.Entry<String, Map<String, Object>> result : staged.entrySet()) {
+                if (result.getValue() == null) {
+                    documents.remove(result.getKey());
+                } else {
+                    documents.put(result.getKey(), new StoredDocument(versions.incrementAndGet(), result.getValue()));
+                }
+                changed.add(result.getKey());
+            }
+            commits.incrementAndGet();
+        }
+        notifyListeners(changed);
+        return true;
+    }
+
+    /**
+     * Computes a document's data after one write.
+     *
+     * @param write The write.
+     * @param base  The current data, or null if the document does not exist.
+     * @return The new data, or null if the document is deleted.
+     */
+    private Map<String, Object> applyWrite(Write write, Map<String, Object> base) {
+        switch (write.kind) {
+            case DELETE:
+                return null;
+            case SET:
+                return merge(new HashMap<>(), write.data);
+            case MERGE:
+                return merge(base != null ? copyMap(base) : new HashMap<>(), write.data);
+            default:
+                if (base == null) {
+                    throw new GatewayException("No document to update: " + write.path);
+                }
+                Map<String, Object> updated = copyMap(base);
+                for (Map.Entry<String, Object> field : write.data.entrySet()) {
+                    setPath(updated, field.getKey().split("\\."), 0, field.getValue());
+                }
+                return updated;
+        }
+    }
+
+    /**
+     * Merges data into a map, descending into nested maps and resolving field operations.
+     *
+     * @param target The map to merge into; modified in place.
+     * @param data   The data to merge.
+     * @return The target.
+     */
+    private Map<String, Object> merge(Map<String, Object> target, Map<String, Object> data) {
+        for (Map.Entry<String, Object> field : data.entrySet()) {
+            Object value = field.getValue();
+            Object current = target.get(field.getKey());
+            if (value instanceof Map && current instanceof Map) {
+                target.put(field.getKey(), merge(copyMap(asMap(current)), asMap(value)));
+            } else if (value instanceof FieldOp && ((FieldOp) value).getKind() == FieldOp.Kind.DELETE) {
+                target.remove(field.getKey());
+            } else {
+                target.put(field.getKey(), resolve(value, current));
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Sets a value at a dotted path, creating nested maps as needed.
+     */
+    private void setPath(Map<String, Object> target, String[] path, int index, Object value) {
+        String key = path[index];
+        if (index == path.length - 1) {
+            if (value instanceof FieldOp && ((FieldOp) value).getKind() == FieldOp.Kind.DELETE) {
+                target.remove(key);
+            } else {
+                target.put(key, resolve(value, target.get(key)));
+            }
+            return;
+        }
+        Object child = target.get(key);
+        Map<String, Object> nested = child instanceof Map ? copyMap(asMap(child)) : new HashMap<>();
+        setPath(nested, path, index + 1, value);
+        target.put(key, nested);
+    }
+
+    /**
+     * Resolves a written value against the value it replaces.
+     *
+     * @param value   The written value, possibly a FieldOp.
+     * @param current The stored value, or null.
+     * @return The value to store.
+     */
+    private Object resolve(Object value, Object current) {
+        if (value instanceof FieldOp) {
+            FieldOp op = (FieldOp) value;
+            switch (op.getKind()) {
+                case INCREMENT:
+                    long base = current instanceof Number ? ((Number) current).longValue() : 0;
+                    return base + op.getDelta();
+                case ARRAY_UNION: {
+                    List<Object> list = current instanceof List ? copyList((List<?>) current) : new ArrayList<>();
+                    for (Object element : op.getElements()) {
+                        if (!containsValue(list, element)) {
+                            list.add(element);
+                        }
+                    }
+                    return list;
+                }
+                case ARRAY_REMOVE: {
+                    List<Object> list = current instanceof List ? copyList((List<?>) current) : new ArrayList<>();
+                    List<Object> kept = new ArrayList<>();
+                    for (Object element : list) {
+                        if (!containsValue(op.getElements(), element)) {
+                            kept.add(element);
+                        }
+                    }
+                    return kept;
+                }
+                case SERVER_TIMESTAMP:
+                    return new Date();
+                default:
+                    return null;
+            }
+        }
+        if (value instanceof Map) {
+            return merge(new HashMap<>(), asMap(value));
+        }
+        return copyValue(value);
+    }
+
+    /**
+     * Runs a query against the current documents.
+     */
+    private List<DocumentData> runQuery(GatewayQuery query) {
+        List<DocumentData> matches = new ArrayList<>();
+        for (Map.Entry<String, StoredDocument> stored : documents.entrySet()) {
+            if (inCollection(stored.getKey(), query) && matchesFilters(stored.getKey(), stored.getValue().data, query)) {
+                matches.add(new DocumentData(stored.getKey(), copyMap(stored.getValue().data)));
+            }
+        }
+
+        String orderBy = query.getOrderBy();
+        Comparator<DocumentData> order = (a, b) -> a.getPath().compareTo(b.getPath());
+        if (orderBy != null) {
+            Comparator<DocumentData> byField = (a, b) -> compareValues(fieldValue(a, orderBy), fieldValue(b, orderBy));
+            order = byField.thenComparing(order);
+        }
+        if (query.isDescending()) {
+            order = order.reversed();
+        }
+        matches.sort(order);
+
+        if (orderBy != null && query.getStartAfter() != null) {
+            List<DocumentData> after = new ArrayList<>();
+            for (DocumentData document : matches) {
+                int comparison = compareValues(fieldValue(document, orderBy), query.getStartAfter());
+                if (query.isDescending() ? comparison < 0 : comparison > 0) {
+                    after.add(document);
+                }
+            }
+            matches = after;
+        }
+        if (query.getLimit() > 0 && matches.size() > query.getLimit()) {
+            matches = new ArrayList<>(matches.subList(0, query.getLimit()));
+        }
+        return matches;
+    }
+
+    /**
+     * Whether a document path belongs to the collection a query reads.
+     */
+    private boolean inCollection(String path, GatewayQuery query) {
+        int slash = path.lastIndexOf('/');
+        if (slash < 0) {
+            return false;
+        }
+        String parent = path.substring(0, slash);
+        if (!query.isCollectionGroup()) {
+            return parent.equals(query.getCollection());
+        }
+        int parentSlash = parent.lastIndexOf('/');
+        return parent.substring(parentSlash + 1).equals(query.getCollection());
+    }
+
+    private boolean matchesFilters(String path, Map<String, Object> data, GatewayQuery query) {
+        DocumentData document = new DocumentData(path, data);
+        for (GatewayQuery.Filter filter : query.getFilters()) {
+            Object value = fieldValue(document, filter.getField());
+            switch (filter.getOperator()) {
+                case EQUAL:
+                    if (!valuesEqual(value, filter.getValue())) {
+                        return false;
+                    }
+                    break;
+                case IN:
+                    if (!containsValue((Collection<?>) filter.getValue(), value)) {
+                        return false;
+                    }
+                    break;
+                case ARRAY_CONTAINS:
+                    if (!(value instanceof List) || !containsValue((List<?>) value, filter.getValue())) {
+                        return false;
+                    }
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    // Like Firestore, range filters skip documents missing the field
+                    if (value == null || compareValues(value, filter.getValue()) > 0) {
+                        return false;
+                    }
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private Object fieldValue(DocumentData document, String field) {
+        if (GatewayQuery.DOCUMENT_ID.equals(field)) {
+            return document.getId();
+        }
+        Object value = document.getData();
+        for (String part : field.split("\\.")) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            value = ((Map<?, ?>) value).get(part);
+        }
+        return value;
+    }
+
+    private static boolean containsValue(Collection<?> values, Object value) {
+        for (Object candidate : values) {
+            if (valuesEqual(candidate, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean valuesEqual(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+        }
+        return Objects.equals(a, b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Comparable && a.getClass() == b.getClass()) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+        return a.getClass().getName().compareTo(b.getClass().getName());
+    }
+
+    /**
+     * Re-runs the queries of listeners whose collection a commit touched.
+     */
+    private void notifyListeners(Set<String> changedPaths) {
+        for (Listener listener : listeners) {
+            for (String path : changedPaths) {
+                if (inCollection(path, listener.query)) {
+                    executor.execute(() -> deliver(listener));
+                    break;
+                }
+            }
+        }
+    }
+
+    private void deliver(Listener listener) {
+        if (!listener.active) {
+            return;
+        }
+        List<DocumentData> results;
+        try {
+            results = runQuery(listener.query);
+        } catch (RuntimeException e) {
+            listener.listener.onEvent(null, e);
+            return;
+        }
+        listener.listener.onEvent(results, null);
+    }
+
+    private void pause() {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static Map<String, Object> copyMap(Map<String, Object> map) {
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private static List<Object> copyList(List<?> list) {
+        List<Object> copy = new ArrayList<>();
+        for (Object element : list) {
+            copy.add(copyValue(element));
+        }
+        return copy;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            return copyMap(asMap(value));
+        }
+        if (value instanceof List) {
+            return copyList((List<?>) value);
+        }
+        if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        }
+        return value;
+    }
+
+    /**
+     * A transaction attempt. Reads record the version they saw; writes are buffered.
+     */
+    private final class MemoryTransaction implements GatewayTransaction {
+        final Map<String, Long> readVersions = new HashMap<>();
+        final List<Write> writes = new ArrayList<>();
+
+        @Override
+        public DocumentData get(String path) {
+            if (!writes.isEmpty()) {
+                throw new IllegalStateException("Transaction reads must come before writes");
+            }
+            pause();
+            StoredDocument stored = documents.get(path);
+            if (!readVersions.containsKey(path)) {
+                readVersions.put(path, stored != null ? stored.version : 0L);
+            }
+            return new DocumentData(path, stored != null ? copyMap(stored.data) : null);
+        }
+
+        @Override
+        public void set(String path, Map<String, Object> data, boolean merge) {
+            writes.add(new Write(merge ? Write.Kind.MERGE : Write.Kind.SET, path, data));
+        }
+
+        @Override
+        public void update(String path, Map<String, Object> data) {
+            writes.add(new Write(Write.Kind.UPDATE, path, data));
+        }
+
+        @Override
+        public void delete(String path) {
+            writes.add(new Write(Write.Kind.DELETE, path, null));
+        }
+    }
+
+    /**
+     * A batch of writes applied together without version checks.
+     */
+    private final class MemoryBatch implements GatewayBatch {
+        final List<Write> writes = new ArrayList<>();
+
+        @Override
+        public GatewayBatch set(String path, Map<String, Object> data, boolean merge) {
+            writes.add(new Write(merge ? Write.Kind.MERGE : Write.Kind.SET, path, data));
+            return this;
+        }
+
+        @Override
+        public GatewayBatch update(String path, Map<String, Object> data) {
+            writes.add(new Write(Write.Kind.UPDATE, path, data));
+            return this;
+        }
+
+        @Override
+        public GatewayBatch delete(String path) {
+            writes.add(new Write(Write.Kind.DELETE, path, null));
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<Void> commit() {
+            List<Write> committed = new ArrayList<>(writes);
+            return CompletableFuture.supplyAsync(() -> {
+                pause();
+                tryCommit(committed, new HashMap<String, Long>());
+                return null;
+            }, executor);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.orange.data.gateway;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RetryPolicy runs an operation again after transient failures, waiting a random
+ * time up to an exponentially growing cap between attempts ("full jitter"), so
+ * clients that failed together do not retry together. Callers see one outcome:
+ * the first success, the first failure that is not transient, or the last failure.
+ *
+ * Only operations that are safe to repeat should be retried; writes made safe by a
+ * request ID, as in EntrantStore, qualify.
+ */
+public class RetryPolicy {
+    public static final RetryPolicy DEFAULT = new RetryPolicy(4, 250, 4000);
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RetryPolicy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * An asynchronous operation to retry.
+     *
+     * @param <T> The type of the result.
+     */
+    public interface Operation<T> {
+        CompletableFuture<T> start();
+    }
+
+    /**
+     * Decides whether a failure is worth retrying.
+     */
+    public interface Classifier {
+        boolean isTransient(Throwable error);
+    }
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * Constructor
+     *
+     * @param maxAttempts     The most times to run the operation, including the first.
+     * @param baseDelayMillis The cap on the wait before the first retry; it doubles each retry.
+     * @param maxDelayMillis  The largest the cap may grow to.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is needed");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Whether a failure is a retryable GatewayException, such as a transaction aborted by contention.
+     *
+     * @param error The failure, possibly wrapped in a CompletionException.
+     * @return true if the failure is transient.
+     */
+    public static boolean isRetryableGatewayFailure(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause instanceof GatewayException && ((GatewayException) cause).isRetryable();
+    }
+
+    /**
+     * Removes CompletionException wrappers from a failure.
+     *
+     * @param error The failure.
+     * @return The underlying failure.
+     */
+    public static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Runs an operation, retrying transient failures.
+     *
+     * @param operation  The operation; it is started again for each attempt.
+     * @param classifier Decides which failures are transient.
+     * @param <T>        The type of the result.
+     * @return A future with the operation's single outcome.
+     */
+    public <T> CompletableFuture<T> run(Operation<T> operation, Classifier classifier) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(operation, classifier, 1, result);
+        return result;
+    }
+
+    private <T> void attempt(Operation<T> operation, Classifier classifier, int attempt, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = operation.start();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (attempt >= maxAttempts || !classifier.isTransient(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            scheduler.schedule(() -> attempt(operation, classifier, attempt + 1, result),
+                    delayMillis(attempt), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Picks the wait before a retry: uniformly random up to base * 2^(attempt - 1), capped.
+     *
+     * @param attempt The number of attempts made so far.
+     * @return The wait in milliseconds.
+     */
+    long delayMillis(int attempt) {
+        long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.orange.data.lottery;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.FieldOp;
+import com.example.orange.data.gateway.GatewayBatch;
+import com.example.orange.data.model.EventRole;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * DrawOrderStore persists the full random ranking produced by an event's first
+ * lottery draw, so later replacement draws take the next entrants in line instead
+ * of rereading and reshuffling the waitlist.
+ *
+ * The ranking is stored in chunks under events/{eventId}/drawOrder/{index}, next
+ * to a state document (events/{eventId}/drawOrder/state) holding the draw's seed,
+ * the ranking size and a cursor to the first entrant not yet considered. A
+ * replacement draw reads the state and one or two chunks, checks the entries of
+ * the next few candidates, moves those still waitlisted to selected and advances
+ * the cursor, all in one transaction. The transaction also reads the counter shards
+ * and takes no more entrants than the event has open places, so replacement draws
+ * running at the same time do not fill the same place twice.
+ */
+public class DrawOrderStore {
+    // User IDs per chunk document; keeps chunks far below the 1 MiB document limit
+    public static final int CHUNK_SIZE = 1000;
+    // Ranked entrants looked at per transaction; each one moved costs two writes
+    public static final int MAX_SCAN_PER_TRANSACTION = 200;
+    // A batch commits at most 500 writes
+    private static final int CHUNKS_PER_BATCH = 400;
+    private static final String STATE_ID = "state";
+
+    /**
+     * Why a replacement draw stopped.
+     */
+    public enum StopReason {
+        /** As many entrants as wanted were selected. */
+        FILLED,
+        /** The event has no open places left, for example because another backfill took them. */
+        EVENT_FULL,
+        /** Every ranked entrant has been considered. */
+        ORDER_USED_UP,
+        /** The event has no stored ranking. */
+        NO_ORDER;
+
+        /**
+         * Whether the places still wanted can only be filled by reranking the waitlist.
+         *
+         * @return true if the stored ranking is missing or used up.
+         */
+        public boolean needsRerank() {
+            return this == ORDER_USED_UP || this == NO_ORDER;
+        }
+    }
+
+    /**
+     * The users a replacement draw selected and why it stopped.
+     */
+    public static final class Selection {
+        private final List<String> selected;
+        private final StopReason stopReason;
+
+        Selection(List<String> selected, StopReason stopReason) {
+            this.selected = selected;
+            this.stopReason = stopReason;
+        }
+
+        /**
+         * Returns the IDs of the users moved to selected, in rank order.
+         *
+         * @return The selected users.
+         */
+        public List<String> getSelected() {
+            return selected;
+        }
+
+        public StopReason getStopReason() {
+            return stopReason;
+        }
+
+        @Override
+        public String toString() {
+            return "Selection{" +
+                    "selected=" + selected.size() +
+                    ", stopReason=" + stopReason +
+                    '}';
+        }
+    }
+
+    /**
+     * The result of one replacement transaction; a null stop reason means the
+     * transaction ran out of candidates to scan and the next one continues.
+     */
+    private static final class Step {
+        final List<String> selected;
+        final StopReason stopReason;
+
+        Step(List<String> selected, StopReason stopReason) {
+            this.selected = selected;
+            this.stopReason = stopReason;
+        }
+    }
+
+    private final DataGateway gateway;
+    private final EntrantStore entrantStore;
+
+    /**
+     * Constructor
+     *
+     * @param gateway      The gateway to read and write through.
+     * @param entrantStore The store whose transitions are reused to select entrants.
+     */
+    public DrawOrderStore(DataGateway gateway, EntrantStore entrantStore) {
+        this.gateway = gateway;
+        this.entrantStore = entrantStore;
+    }
+
+    /**
+     * Returns the path of an event's draw order collection.
+     *
+     * @param eventId The ID of the event.
+     * @return The collection path.
+     */
+    public static String drawOrderPath(String eventId) {
+        return EntrantStore.eventPath(eventId) + "/drawOrder";
+    }
+
+    /**
+     * Returns the path of an event's draw state document.
+     *
+     * @param eventId The ID of the event.
+     * @return The document path.
+     */
+    public static String statePath(String eventId) {
+        return drawOrderPath(eventId) + "/" + STATE_ID;
+    }
+
+    private static String chunkPath(String eventId, int index) {
+        return drawOrderPath(eventId) + "/" + index;
+    }
+
+    /**
+     * Stores a draw's full ranking. The state document is written last, so a
+     * replacement draw never sees a cursor into chunks that are not there yet.
+     *
+     * @param eventId The ID of the event.
+     * @param ranking Every waitlisted entrant, in draw order.
+     * @param cursor  How many ranked entrants the draw already used.
+     * @return A future completing once the ranking and state are stored.
+     */
+    public CompletableFuture<Void> save(String eventId, DrawResult ranking, int cursor) {
+        List<String> order = ranking.getWinners();
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        GatewayBatch batch = gateway.batch();
+        int chunksInBatch = 0;
+        for (int start = 0, index = 0; start < order.size(); start += CHUNK_SIZE, index++) {
+            Map<String, Object> chunk = new HashMap<>();
+            chunk.put("ids", new ArrayList<>(order.subList(start, Math.min(start + CHUNK_SIZE, order.size()))));
+            batch.set(chunkPath(eventId, index), chunk, false);
+            if (++chunksInBatch == CHUNKS_PER_BATCH) {
+                batches.add(batch.commit());
+                batch = gateway.batch();
+                chunksInBatch = 0;
+            }
+        }
+        if (chunksInBatch > 0) {
+            batches.add(batch.commit());
+        }
+
+        Map<String, Object> state = new HashMap<>();
+        state.put("seed", ranking.getSeed());
+        state.put("entrantCount", (long) ranking.getEntrantCount());
+        state.put("size", (long) order.size());
+        state.put("cursor", (long) Math.min(cursor, order.size()));
+        state.put("drawnAt", FieldOp.serverTimestamp());
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(done -> gateway.set(statePath(eventId), state, false));
+    }
+
+    /**
+     * Moves the next entrants in the stored ranking who are still waitlisted to selected,
+     * skipping anyone who has left or already been selected.
+     *
+     * @param eventId The ID of the event.
+     * @param count   The number of entrants wanted.
+     * @return A future with the users moved, in rank order, and why the draw stopped.
+     * Fewer than count are selected if the ranking runs out, the event has no stored
+     * ranking, or the event has fewer open places.
+     */
+    public CompletableFuture<Selection> selectNext(String eventId, int count) {
+        return selectNext(eventId, count, new ArrayList<>());
+    }
+
+    private CompletableFuture<Selection> selectNext(String eventId, int count, List<String> selected) {
+        int wanted = count - selected.size();
+        if (wanted <= 0) {
+            return CompletableFuture.completedFuture(new Selection(selected, StopReason.FILLED));
+        }
+        return gateway.runTransaction(transaction -> {
+            DocumentData event = transaction.get(EntrantStore.eventPath(eventId));
+            DocumentData state = transaction.get(statePath(eventId));
+            if (!state.exists()) {
+                return new Step(new ArrayList<>(), StopReason.NO_ORDER);
+            }
+            long size = valueOf(state.getLong("size"));
+            long cursor = valueOf(state.getLong("cursor"));
+            if (cursor >= size) {
+                return new Step(new ArrayList<>(), StopReason.ORDER_USED_UP);
+            }
+            // Backfills running at the same time must not take the same open places
+            long open = Math.min(wanted, EntrantStore.openPlaces(event, EntrantStore.readCounters(transaction, eventId)));
+            if (open == 0) {
+                return new Step(new ArrayList<>(), StopReason.EVENT_FULL);
+            }
+            long end = Math.min(size, cursor + MAX_SCAN_PER_TRANSACTION);
+
+            // Read the chunks covering the candidates, then their entries, before writing
+            List<String> candidates = new ArrayList<>();
+            for (int index = (int) (cursor / CHUNK_SIZE); (long) index * CHUNK_SIZE < end; index++) {
+                List<?> ids = (List<?>) transaction.get(chunkPath(eventId, index)).get("ids");
+                long first = (long) index * CHUNK_SIZE;
+                for (long position = Math.max(first, cursor); ids != null && position < Math.min(end, first + ids.size()); position++) {
+                    candidates.add(String.valueOf(ids.get((int) (position - first))));
+                }
+            }
+            List<String> picked = new ArrayList<>();
+            long next = cursor;
+            for (String userId : candidates) {
+                if (picked.size() == open) {
+                    break;
+                }
+                next++;
+                if (EntrantStore.roleOf(transaction.get(EntrantStore.entryPath(eventId, userId))) == EventRole.WAITLISTED) {
+                    picked.add(userId);
+                }
+            }
+            if (candidates.isEmpty()) {
+                next = size;
+            }
+
+            Map<String, Long> counterDeltas = new HashMap<>();
+            Date expiresAt = EntrantStore.acceptDeadline(event, System.currentTimeMillis());
+            for (String userId : picked) {
+                entrantStore.writeTransition(transaction, eventId, userId, null,
+                        EventRole.WAITLISTED, EventRole.SELECTED, expiresAt, counterDeltas);
+            }
+            entrantStore.incrementCounters(transaction, eventId, counterDeltas);
+            Map<String, Object> advanced = new HashMap<>();
+            advanced.put("cursor", next);
+            transaction.update(state.getPath(), advanced);
+            StopReason stopReason = null;
+            if (picked.size() == wanted) {
+                stopReason = StopReason.FILLED;
+            } else if (picked.size() == open) {
+                stopReason = StopReason.EVENT_FULL;
+            } else if (next >= size) {
+                stopReason = StopReason.ORDER_USED_UP;
+            }
+            return new Step(picked, stopReason);
+        }).thenCompose(step -> {
+            selected.addAll(step.selected);
+            if (step.stopReason != null) {
+                return CompletableFuture.completedFuture(new Selection(selected, step.stopReason));
+            }
+            return selectNext(eventId, count, selected);
+        });
+    }
+
+    private static long valueOf(Long value) {
+        return value != null ? value : 0L;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.orange.data.lottery;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a LotteryEngine draw. Drawing again from the same entrants,
+ * exclusions and seed gives the same winners in the same order.
+ */
+public final class DrawResult {
+    private final long seed;
+    private final List<String> winners;
+    private final int entrantCount;
+
+    DrawResult(long seed, List<String> winners, int entrantCount) {
+        this.seed = seed;
+        this.winners = Collections.unmodifiableList(winners);
+        this.entrantCount = entrantCount;
+    }
+
+    /**
+     * Gets the seed the draw used.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the winners in the order they were drawn.
+     *
+     * @return The winners.
+     */
+    public List<String> getWinners() {
+        return winners;
+    }
+
+    /**
+     * Gets the number of entrants drawn from, including excluded ones.
+     *
+     * @return The entrant count.
+     */
+    public int getEntrantCount() {
+        return entrantCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DrawResult{" +
+                "seed=" + seed +
+                ", winners=" + winners.size() +
+                ", entrantCount=" + entrantCount +
+                '}';
+    }
+}
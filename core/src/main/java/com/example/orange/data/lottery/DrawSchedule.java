@@ -0,0 +1,181 @@
+package com.example.orange.data.lottery;
+
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.GatewayQuery;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * DrawSchedule records when each event's main lottery draw is due and whether it
+ * has run, in lotteryDraws/{eventId}. Every main draw, scheduled or started by an
+ * organizer, claims the event's record first, so a draw never runs twice at once
+ * and a scheduled draw never repeats one that already ran.
+ *
+ * A record moves PENDING -> RUNNING -> DONE. A failed scheduled draw goes back to
+ * PENDING until it has failed MAX_ATTEMPTS times, then stays FAILED. A RUNNING
+ * claim older than CLAIM_TIMEOUT_MILLIS is treated as abandoned and can be claimed again.
+ */
+public class DrawSchedule {
+    public static final String COLLECTION = "lotteryDraws";
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+    public static final int MAX_ATTEMPTS = 3;
+    // A draw that has not finished in this time is assumed to have died with its device
+    public static final long CLAIM_TIMEOUT_MILLIS = 15 * 60 * 1000L;
+
+    private final DataGateway gateway;
+
+    /**
+     * Constructor
+     *
+     * @param gateway The gateway to read and write through.
+     */
+    public DrawSchedule(DataGateway gateway) {
+        this.gateway = gateway;
+    }
+
+    /**
+     * Returns the path of an event's draw record.
+     *
+     * @param eventId The ID of the event.
+     * @return The document path.
+     */
+    public static String drawPath(String eventId) {
+        return COLLECTION + "/" + eventId;
+    }
+
+    /**
+     * Schedules or reschedules an event's main draw. Draws that already ran or are
+     * running are left alone.
+     *
+     * @param eventId The ID of the event.
+     * @param drawAt  When the draw is due, or null to unschedule a pending draw.
+     * @return A future with whether the schedule changed.
+     */
+    public CompletableFuture<Boolean> schedule(String eventId, Date drawAt) {
+        return gateway.runTransaction(transaction -> {
+            DocumentData record = transaction.get(drawPath(eventId));
+            String status = record.getString("status");
+            if (status != null && !PENDING.equals(status) && !FAILED.equals(status)) {
+                return false;
+            }
+            if (drawAt == null) {
+                if (!record.exists()) {
+                    return false;
+                }
+                transaction.delete(drawPath(eventId));
+                return true;
+            }
+            Map<String, Object> data = new HashMap<>();
+            data.put("eventId", eventId);
+            data.put("drawAt", drawAt);
+            data.put("status", PENDING);
+            data.put("attempts", 0L);
+            transaction.set(drawPath(eventId), data, false);
+            return true;
+        });
+    }
+
+    /**
+     * Claims an event's main draw for the caller.
+     *
+     * @param eventId The ID of the event.
+     * @param now     The current time.
+     * @param manual  Whether an organizer started the draw. Organizers may draw events
+     *                with no schedule or whose draw already ran; the scheduler may only
+     *                claim pending draws and abandoned claims.
+     * @return A future with whether the claim succeeded.
+     */
+    public CompletableFuture<Boolean> claim(String eventId, Date now, boolean manual) {
+        return gateway.runTransaction(transaction -> {
+            DocumentData record = transaction.get(drawPath(eventId));
+            String status = record.getString("status");
+            boolean abandoned = RUNNING.equals(status) && isStale(record.getDate("claimedAt"), now);
+            if (RUNNING.equals(status) && !abandoned) {
+                return false;
+            }
+            if (!manual && !PENDING.equals(status) && !abandoned) {
+                return false;
+            }
+            Map<String, Object> data = new HashMap<>();
+            data.put("eventId", eventId);
+            data.put("status", RUNNING);
+            data.put("claimedAt", now);
+            data.put("manual", manual);
+            transaction.set(drawPath(eventId), data, true);
+            return true;
+        });
+    }
+
+    /**
+     * Records how a claimed draw ended.
+     *
+     * @param eventId The ID of the event.
+     * @param success Whether the draw ran. A failed draw is retried later unless it has
+     *                failed MAX_ATTEMPTS times.
+     * @param now     The current time.
+     * @return A future completing once the outcome is stored.
+     */
+    public CompletableFuture<Void> complete(String eventId, boolean success, Date now) {
+        return gateway.runTransaction(transaction -> {
+            DocumentData record = transaction.get(drawPath(eventId));
+            Long attempts = record.getLong("attempts");
+            Map<String, Object> data = new HashMap<>();
+            if (success) {
+                data.put("status", DONE);
+                data.put("completedAt", now);
+            } else {
+                long failures = (attempts != null ? attempts : 0L) + 1;
+                data.put("attempts", failures);
+                // A draw with no date was started by an organizer; nothing retries it
+                boolean retry = failures < MAX_ATTEMPTS && record.getDate("drawAt") != null;
+                data.put("status", retry ? PENDING : FAILED);
+            }
+            transaction.set(drawPath(eventId), data, true);
+            return null;
+        });
+    }
+
+    /**
+     * Finds draws the scheduler should run: pending draws that are due, then abandoned claims.
+     *
+     * @param now   The current time.
+     * @param limit The most of each kind to return.
+     * @return A future with the event IDs, earliest due first.
+     */
+    public CompletableFuture<List<String>> findDue(Date now, int limit) {
+        CompletableFuture<List<DocumentData>> due = gateway.query(GatewayQuery.collection(COLLECTION)
+                .whereEqualTo("status", PENDING)
+                .whereLessThanOrEqualTo("drawAt", now)
+                .orderBy("drawAt", false)
+                .limit(limit));
+        CompletableFuture<List<DocumentData>> abandoned = gateway.query(GatewayQuery.collection(COLLECTION)
+                .whereEqualTo("status", RUNNING)
+                .whereLessThanOrEqualTo("claimedAt", new Date(now.getTime() - CLAIM_TIMEOUT_MILLIS))
+                .limit(limit));
+        return due.thenCombine(abandoned, (pending, stale) -> {
+            Set<String> eventIds = new LinkedHashSet<>();
+            for (DocumentData record : pending) {
+                eventIds.add(record.getId());
+            }
+            for (DocumentData record : stale) {
+                eventIds.add(record.getId());
+            }
+            return new ArrayList<>(eventIds);
+        });
+    }
+
+    private static boolean isStale(Date claimedAt, Date now) {
+        return claimedAt == null || claimedAt.getTime() <= now.getTime() - CLAIM_TIMEOUT_MILLIS;
+    }
+}
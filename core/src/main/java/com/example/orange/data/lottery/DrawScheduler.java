@@ -0,0 +1,162 @@
+package com.example.orange.data.lottery;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DrawScheduler runs every main lottery draw that has come due. It pages through
+ * the due draws in DrawSchedule, claims each one, and runs at most `concurrency`
+ * draws at a time, so hundreds of events closing in the same minute are worked
+ * through in steady batches rather than all at once.
+ *
+ * Claims make it safe for several devices to run the scheduler at the same time.
+ */
+public class DrawScheduler {
+    public static final int DEFAULT_CONCURRENCY = 8;
+    public static final int PAGE_SIZE = 100;
+
+    /**
+     * Runs one event's main draw, whose claim the scheduler already holds.
+     */
+    public interface Drawer {
+        /**
+         * Draws an event.
+         *
+         * @param eventId The ID of the event.
+         * @return A future completing when the draw has finished, or failing if it did not run.
+         */
+        CompletableFuture<?> draw(String eventId);
+    }
+
+    /**
+     * Counts of what one scheduler run did.
+     */
+    public static final class RunSummary {
+        private final AtomicInteger drawn = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+
+        public int getDrawn() {
+            return drawn.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Gets the number of due draws another device claimed first.
+         *
+         * @return The skipped count.
+         */
+        public int getSkipped() {
+            return skipped.get();
+        }
+
+        @Override
+        public String toString() {
+            return "RunSummary{" +
+                    "drawn=" + drawn +
+                    ", failed=" + failed +
+                    ", skipped=" + skipped +
+                    '}';
+        }
+    }
+
+    private final DrawSchedule schedule;
+    private final Drawer drawer;
+    private final int concurrency;
+
+    /**
+     * Constructor
+     *
+     * @param schedule    The schedule to read due draws from and record claims in.
+     * @param drawer      Runs each draw.
+     * @param concurrency The most draws to run at once.
+     */
+    public DrawScheduler(DrawSchedule schedule, Drawer drawer, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        this.schedule = schedule;
+        this.drawer = drawer;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Runs every draw due at the given time. Draws that fail are left for the next run.
+     *
+     * @param now The current time.
+     * @return A future with what the run did.
+     */
+    public CompletableFuture<RunSummary> runDue(Date now) {
+        RunSummary summary = new RunSummary();
+        return runPages(now, new HashSet<>(), summary).thenApply(done -> summary);
+    }
+
+    private CompletableFuture<Void> runPages(Date now, Set<String> tried, RunSummary summary) {
+        return schedule.findDue(now, PAGE_SIZE).thenCompose(eventIds -> {
+            boolean fullPage = eventIds.size() >= PAGE_SIZE;
+            eventIds.removeAll(tried);
+            if (eventIds.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            tried.addAll(eventIds);
+            int drawnBefore = summary.getDrawn();
+            return runBatch(eventIds, now, summary).thenCompose(done -> {
+                // Draws that failed stay pending and come back in the next page; stop once a page makes no progress
+                if (fullPage && summary.getDrawn() > drawnBefore) {
+                    return runPages(now, tried, summary);
+                }
+                return CompletableFuture.completedFuture(null);
+            });
+        });
+    }
+
+    private CompletableFuture<Void> runBatch(List<String> eventIds, Date now, RunSummary summary) {
+        AtomicInteger next = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(concurrency, eventIds.size())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = runNext(eventIds, next, now, summary);
+        }
+        return CompletableFuture.allOf(workers);
+    }
+
+    private CompletableFuture<Void> runNext(List<String> eventIds, AtomicInteger next, Date now, RunSummary summary) {
+        int index = next.getAndIncrement();
+        if (index >= eventIds.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return runOne(eventIds.get(index), now, summary)
+                .thenCompose(done -> runNext(eventIds, next, now, summary));
+    }
+
+    private CompletableFuture<Void> runOne(String eventId, Date now, RunSummary summary) {
+        return schedule.claim(eventId, now, false).thenCompose(claimed -> {
+            if (!claimed) {
+                summary.skipped.incrementAndGet();
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            CompletableFuture<?> draw;
+            try {
+                draw = drawer.draw(eventId);
+            } catch (RuntimeException e) {
+                CompletableFuture<Object> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                draw = failed;
+            }
+            return draw.handle((result, error) -> error == null).thenCompose(success -> {
+                (success ? summary.drawn : summary.failed).incrementAndGet();
+                return schedule.complete(eventId, success, now);
+            });
+        }).exceptionally(error -> {
+            // The claim or the outcome could not be stored; a later run will retry
+            summary.failed.incrementAndGet();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.orange.data.lottery;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * LotteryEngine draws winners uniformly at random from a list of entrants.
+ *
+ * A draw is a partial Fisher-Yates shuffle over the entrant indices: each step
+ * picks one of the positions not yet visited and swaps it forward. Only the
+ * swapped positions are remembered, so neither the list nor a copy of it is
+ * shuffled, and a draw of k winners costs O(k) when few entrants are excluded.
+ * Excluded entrants are skipped as they come up, using a hash set.
+ *
+ * Weighted draws build a WeightTree over the eligible entrants, then repeatedly
+ * sample it and take the winner out. Each sample and removal costs O(log n) however
+ * skewed the weights are, so a draw of k winners costs O(n + k log n). A weighted
+ * draw's first value decides its first winner outright, and java.util.Random's first
+ * values are correlated for nearby seeds, so weighted draws scramble their seed first.
+ *
+ * Draws use java.util.Random, whose sequence is fixed by its specification, so
+ * a draw can be replayed from its seed on any JVM or Android device given the
+ * entrants in the same order.
+ */
+public final class LotteryEngine {
+    private static final SecureRandom seeds = new SecureRandom();
+
+    private LotteryEngine() {
+    }
+
+    /**
+     * Creates a fresh seed for a draw.
+     *
+     * @return The seed.
+     */
+    public static long newSeed() {
+        return seeds.nextLong();
+    }
+
+    /**
+     * Gathers entrants who may not be drawn into one set for fast lookups.
+     *
+     * @param first  IDs to exclude, such as already selected users.
+     * @param second More IDs to exclude, such as users who cancelled.
+     * @return The combined set.
+     */
+    public static Set<String> exclusions(Collection<String> first, Collection<String> second) {
+        Set<String> excluded = new HashSet<>(first);
+        excluded.addAll(second);
+        return excluded;
+    }
+
+    /**
+     * Draws up to count winners. Each entrant is drawn at most once, even if listed twice.
+     *
+     * @param entrants The entrants, in a stable order if the draw is to be replayed.
+     * @param excluded Entrants who may not be drawn.
+     * @param count    The number of winners wanted.
+     * @param seed     The seed to draw with.
+     * @return The draw, with fewer than count winners if too few entrants are eligible.
+     */
+    public static DrawResult draw(List<String> entrants, Set<String> excluded, int count, long seed) {
+        int n = entrants.size();
+        List<String> winners = new ArrayList<>(Math.max(0, Math.min(count, n)));
+        if (count <= 0 || n == 0) {
+            return new DrawResult(seed, winners, n);
+        }
+
+        Random random = new Random(seed);
+        // Positions whose entrant has been swapped away; every other position holds itself
+        Map<Integer, Integer> swapped = new HashMap<>();
+        Set<String> drawn = new HashSet<>();
+        for (int i = 0; i < n && winners.size() < count; i++) {
+            int j = i + random.nextInt(n - i);
+            Integer atJ = swapped.get(j);
+            Integer atI = swapped.remove(i);
+            int picked = atJ != null ? atJ : j;
+            if (j != i) {
+                swapped.put(j, atI != null ? atI : i);
+            }
+
+            String entrant = entrants.get(picked);
+            if (entrant != null && !excluded.contains(entrant) && drawn.add(entrant)) {
+                winners.add(entrant);
+            }
+        }
+        return new DrawResult(seed, winners, n);
+    }
+
+    /**
+     * Draws up to count winners with no exclusions.
+     *
+     * @param entrants The entrants, in a stable order if the draw is to be replayed.
+     * @param count    The number of winners wanted.
+     * @param seed     The seed to draw with.
+     * @return The draw.
+     */
+    public static DrawResult draw(List<String> entrants, int count, long seed) {
+        return draw(entrants, Collections.<String>emptySet(), count, seed);
+    }
+
+    /**
+     * Draws up to count winners, each with probability proportional to its weight among
+     * the entrants not yet drawn. Entrants with a weight that is not positive and finite
+     * are never drawn, and each entrant is drawn at most once.
+     *
+     * @param entrants The entrants, in a stable order if the draw is to be replayed.
+     * @param weights  The weight of each entrant, in the same order.
+     * @param excluded Entrants who may not be drawn.
+     * @param count    The number of winners wanted.
+     * @param seed     The seed to draw with.
+     * @return The draw, with fewer than count winners if too few entrants are eligible.
+     */
+    public static DrawResult drawWeighted(List<String> entrants, double[] weights, Set<String> excluded,
+                                          int count, long seed) {
+        int n = entrants.size();
+        if (weights.length != n) {
+            throw new IllegalArgumentException("Expected " + n + " weights, got " + weights.length);
+        }
+
+        // Keep the eligible entrants, in order
+        List<String> pool = new ArrayList<>();
+        double[] poolWeights = new double[n];
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            String entrant = entrants.get(i);
+            double weight = weights[i];
+            if (entrant != null && weight > 0 && !Double.isInfinite(weight)
+                    && !excluded.contains(entrant) && seen.add(entrant)) {
+                poolWeights[pool.size()] = weight;
+                pool.add(entrant);
+            }
+        }
+
+        int drawn = Math.max(0, Math.min(count, pool.size()));
+        List<String> winners = new ArrayList<>(drawn);
+        if (drawn == 0) {
+            return new DrawResult(seed, winners, n);
+        }
+        Random random = new Random(scramble(seed));
+        WeightTree tree = new WeightTree(Arrays.copyOf(poolWeights, pool.size()));
+        while (winners.size() < drawn) {
+            int index = tree.sample(random);
+            tree.remove(index);
+            winners.add(pool.get(index));
+        }
+        return new DrawResult(seed, winners, n);
+    }
+
+    /**
+     * Draws up to count winners by weight with no exclusions.
+     *
+     * @param entrants The entrants, in a stable order if the draw is to be replayed.
+     * @param weights  The weight of each entrant, in the same order.
+     * @param count    The number of winners wanted.
+     * @param seed     The seed to draw with.
+     * @return The draw.
+     */
+    public static DrawResult drawWeighted(List<String> entrants, double[] weights, int count, long seed) {
+        return drawWeighted(entrants, weights, Collections.<String>emptySet(), count, seed);
+    }
+
+    /**
+     * Spreads a seed over all 64 bits with the SplitMix64 finalizer.
+     */
+    private static long scramble(long seed) {
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.orange.data.lottery;
+
+/**
+ * How an event's lottery picks winners.
+ */
+public enum LotteryMode {
+    // Every waitlisted entrant is equally likely to be drawn
+    UNIFORM,
+    // Entrants are drawn in proportion to the weight on their entry
+    WEIGHTED
+}
@@ -0,0 +1,46 @@
+package com.example.orange.data.lottery;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * WaitlistLottery holds the selection logic behind an event's lottery, free of
+ * Android and Firestore so it can be unit tested and benchmarked on a plain JVM.
+ */
+public final class WaitlistLottery {
+    private WaitlistLottery() {
+    }
+
+    /**
+     * Randomly picks users from a waiting list, skipping users who are already
+     * selected or have cancelled.
+     *
+     * @param waitingList The users on the waiting list.
+     * @param selected    The users already selected.
+     * @param cancelled   The users who have cancelled.
+     * @param number      The number of users to pick.
+     * @param random      The source of randomness.
+     * @return The users picked, at most number of them.
+     */
+    public static List<String> select(List<String> waitingList, Collection<String> selected,
+                                      Collection<String> cancelled, int number, Random random) {
+        return LotteryEngine.draw(waitingList, LotteryEngine.exclusions(selected, cancelled), number, random.nextLong())
+                .getWinners();
+    }
+
+    /**
+     * Calculates how many spots remain once participants and selected users are counted.
+     *
+     * @param capacity     The event capacity, or null if unlimited.
+     * @param participants The number of participants.
+     * @param selected     The number of selected users yet to respond.
+     * @return The spots left, never negative; Integer.MAX_VALUE if capacity is null.
+     */
+    public static int spotsNeeded(Integer capacity, int participants, int selected) {
+        if (capacity == null) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(0, capacity - participants - selected);
+    }
+}
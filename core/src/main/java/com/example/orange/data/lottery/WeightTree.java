@@ -0,0 +1,105 @@
+package com.example.orange.data.lottery;
+
+import java.util.Random;
+
+/**
+ * A sum tree over weights for sampling without replacement: after O(n) setup, draws
+ * index i with probability weights[i] / sum(remaining weights) in O(log n), and takes
+ * a drawn index out in O(log n).
+ *
+ * Every inner node holds the sum of its two children, recomputed from them whenever
+ * a weight is taken out rather than adjusted by subtraction, so removing a heavy weight
+ * leaves no rounding residue behind however skewed the weights are.
+ */
+public final class WeightTree {
+    private final int size;
+    private final int leaves;
+    // Heap layout: node 1 is the root, node k has children 2k and 2k + 1, leaves start at leaves
+    private final double[] sums;
+
+    /**
+     * Builds the tree.
+     *
+     * @param weights The weights, all finite and positive.
+     * @throws IllegalArgumentException if there are no weights or one is not positive.
+     */
+    public WeightTree(double[] weights) {
+        size = weights.length;
+        if (size == 0) {
+            throw new IllegalArgumentException("A weight tree needs at least one weight");
+        }
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        leaves = capacity;
+        sums = new double[2 * capacity];
+        for (int i = 0; i < size; i++) {
+            double weight = weights[i];
+            if (!(weight > 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weights must be finite and positive: " + weight);
+            }
+            sums[leaves + i] = weight;
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            sums[node] = sums[2 * node] + sums[2 * node + 1];
+        }
+    }
+
+    /**
+     * Draws an index among those not taken out.
+     *
+     * @param random The source of randomness.
+     * @return An index, chosen in proportion to its weight.
+     * @throws IllegalStateException if every index has been taken out.
+     */
+    public int sample(Random random) {
+        if (!(sums[1] > 0)) {
+            throw new IllegalStateException("Every weight has been taken out");
+        }
+        double target = random.nextDouble() * sums[1];
+        int node = 1;
+        while (node < leaves) {
+            double left = sums[2 * node];
+            // Rounding can push the target past the last positive weight; never step into an empty subtree
+            if (target < left || sums[2 * node + 1] == 0) {
+                node = 2 * node;
+            } else {
+                target -= left;
+                node = 2 * node + 1;
+            }
+        }
+        return node - leaves;
+    }
+
+    /**
+     * Takes an index out, so it is never drawn again.
+     *
+     * @param index The index.
+     */
+    public void remove(int index) {
+        int node = leaves + index;
+        sums[node] = 0;
+        for (node >>= 1; node > 0; node >>= 1) {
+            sums[node] = sums[2 * node] + sums[2 * node + 1];
+        }
+    }
+
+    /**
+     * Gets the number of weights, including those taken out.
+     *
+     * @return The tree size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the sum of the weights not taken out.
+     *
+     * @return The remaining weight.
+     */
+    public double getTotalWeight() {
+        return sums[1];
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.orange.data.model;
+
+import java.util.List;
+
+/**
+ * EntrantLists applies invitation responses to an event's in-memory entrant
+ * lists. It has no Android dependencies so it can be benchmarked on a plain JVM.
+ */
+public final class EntrantLists {
+    private EntrantLists() {
+    }
+
+    /**
+     * Moves a selected user to the participants.
+     *
+     * @param selected     The selected users.
+     * @param participants The participants.
+     * @param userId       The ID of the user who accepted.
+     * @return true if the user was selected and has been moved.
+     */
+    public static boolean accept(List<String> selected, List<String> participants, String userId) {
+        if (!selected.remove(userId)) {
+            return false;
+        }
+        participants.add(userId);
+        return true;
+    }
+
+    /**
+     * Moves a selected user off the waiting list and into the cancelled list.
+     *
+     * @param selected    The selected users.
+     * @param waitingList The users on the waiting list.
+     * @param cancelled   The users who have cancelled.
+     * @param userId      The ID of the user who declined.
+     * @return true if the user was selected and has been moved.
+     */
+    public static boolean decline(List<String> selected, List<String> waitingList, List<String> cancelled, String userId) {
+        if (!selected.remove(userId)) {
+            return false;
+        }
+        waitingList.remove(userId);
+        cancelled.add(userId);
+        return true;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.orange.data.model;
+
+/**
+ * This class defines EventCounters.
+ *
+ * Holds the number of entrants an event has in each role. The numbers are
+ * summed from the event's counter shards (events/{eventId}/counterShards),
+ * which are incremented in the same transactions that change entries, so
+ * screens can check sizes and capacity without reading any entries.
+ */
+public class EventCounters {
+    public static final String WAITLIST = "waitlist";
+    public static final String SELECTED = "selected";
+    public static final String PARTICIPANTS = "participants";
+    public static final String CANCELLED = "cancelled";
+
+    private long waitlist;
+    private long selected;
+    private long participants;
+    private long cancelled;
+
+    /**
+     * Creates counters that are all zero.
+     */
+    public EventCounters() {
+    }
+
+    /**
+     * Constructor with parameters.
+     *
+     * @param waitlist     Number of users on the waitlist.
+     * @param selected     Number of users selected and not yet responded.
+     * @param participants Number of confirmed participants.
+     * @param cancelled    Number of users who cancelled or declined.
+     */
+    public EventCounters(long waitlist, long selected, long participants, long cancelled) {
+        this.waitlist = waitlist;
+        this.selected = selected;
+        this.participants = participants;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Returns the counter field that tracks a role.
+     *
+     * @param role The role.
+     * @return The counter field name.
+     */
+    public static String fieldFor(EventRole role) {
+        switch (role) {
+            case WAITLISTED:
+                return WAITLIST;
+            case SELECTED:
+                return SELECTED;
+            case PARTICIPANT:
+                return PARTICIPANTS;
+            default:
+                return CANCELLED;
+        }
+    }
+
+    /**
+     * Adds a shard's value to the counter with the given field name.
+     *
+     * @param field The counter field name.
+     * @param value The value to add.
+     */
+    public void add(String field, long value) {
+        switch (field) {
+            case WAITLIST:
+                waitlist += value;
+                break;
+            case SELECTED:
+                selected += value;
+                break;
+            case PARTICIPANTS:
+                participants += value;
+                break;
+            case CANCELLED:
+                cancelled += value;
+                break;
+        }
+    }
+
+    /**
+     * Gets the number of users on the waitlist.
+     *
+     * @return The waitlist size.
+     */
+    public long getWaitlist() {
+        return Math.max(0, waitlist);
+    }
+
+    /**
+     * Gets the number of users selected who have not yet responded.
+     *
+     * @return The number of selected users.
+     */
+    public long getSelected() {
+        return Math.max(0, selected);
+    }
+
+    /**
+     * Gets the number of confirmed participants.
+     *
+     * @return The number of participants.
+     */
+    public long getParticipants() {
+        return Math.max(0, participants);
+    }
+
+    /**
+     * Gets the number of users who cancelled or declined.
+     *
+     * @return The number of cancelled users.
+     */
+    public long getCancelled() {
+        return Math.max(0, cancelled);
+    }
+
+    /**
+     * Gets the number of places taken by selected users and participants.
+     *
+     * @return The number of places taken.
+     */
+    public long getTaken() {
+        return getSelected() + getParticipants();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.orange.data.model;
+
+/**
+ * Enum representing a user's role in an event, as stored in the per-user
+ * membership index.
+ */
+public enum EventRole {
+    WAITLISTED,
+    SELECTED,
+    PARTICIPANT,
+    CANCELLED
+}
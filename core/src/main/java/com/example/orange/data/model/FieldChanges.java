@@ -0,0 +1,73 @@
+package com.example.orange.data.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class defines FieldChanges.
+ *
+ * Records the fields of a model that were changed since it was read or last
+ * saved, with their new values, so saving it can update just those fields
+ * instead of rewriting the whole document. Setting a field to the value it
+ * already has is not a change.
+ */
+public class FieldChanges {
+    private final Map<String, Object> changes = new LinkedHashMap<>();
+
+    /**
+     * Records a change to a field, if its value actually changed. Lists are copied,
+     * so later changes to the model's list do not alter the recorded value.
+     *
+     * @param field    The name of the field in the document.
+     * @param oldValue The value before the change.
+     * @param newValue The value after the change, as it is stored in the document.
+     */
+    public void record(String field, Object oldValue, Object newValue) {
+        if (oldValue == null ? newValue == null : oldValue.equals(newValue)) {
+            return;
+        }
+        changes.put(field, newValue instanceof List ? new ArrayList<>((List<?>) newValue) : newValue);
+    }
+
+    /**
+     * Returns the changed fields and their new values.
+     *
+     * @return A copy of the changes, in the order the fields were first changed.
+     */
+    public Map<String, Object> get() {
+        return new LinkedHashMap<>(changes);
+    }
+
+    /**
+     * Checks whether any field has changed.
+     *
+     * @return true if there are no changes to save.
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Forgets the changes that have been saved. A field changed again since the
+     * saved values were taken is kept, so the newer value is saved next time.
+     *
+     * @param saved The changes that were written, as returned by get.
+     */
+    public void saved(Map<String, Object> saved) {
+        for (Map.Entry<String, Object> field : saved.entrySet()) {
+            Object current = changes.get(field.getKey());
+            if (current == null ? field.getValue() == null : current.equals(field.getValue())) {
+                changes.remove(field.getKey());
+            }
+        }
+    }
+
+    /**
+     * Forgets every change, for a model that has just been read or written whole.
+     */
+    public void clear() {
+        changes.clear();
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.orange.data.summaries;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.FieldOp;
+import com.example.orange.data.gateway.GatewayQuery;
+import com.example.orange.data.gateway.GatewayTransaction;
+import com.example.orange.data.model.EventCounters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * EventSummaryStore maintains eventSummaries/{eventId}, a small copy of each event
+ * holding only what list screens show: the title, dates, poster and the limits used
+ * to check joins, with the entrant counts in place of entrant lists. Lists read
+ * summaries instead of event documents, which on older events still carry every
+ * entrant and their location inline.
+ *
+ * Summaries are derived data. refresh rewrites one from its event and counter shards
+ * after the event changes; refreshCounts updates only the counts after entrants move.
+ * The counts are copied from the shards rather than incremented alongside them, and
+ * are rewritten at most once per COUNTS_REFRESH_MILLIS however many entrants move,
+ * so a surge of joins does not turn the summary into a document every join writes.
+ * Checking whether the counts are current reads the shards outside any transaction,
+ * so it does not contend with the joins themselves.
+ */
+public class EventSummaryStore {
+    public static final String COLLECTION = "eventSummaries";
+    public static final String COUNTS = "counts";
+    public static final String COUNTS_AT = "countsAt";
+    public static final String LEGACY_ENTRANTS = "legacyEntrants";
+    // Records that summaries were built for the events created before they existed
+    public static final String BACKFILL_PATH = "migrations/eventSummaries";
+    // Counts in a summary are rewritten at most this often; list screens tolerate this much lag
+    public static final long COUNTS_REFRESH_MILLIS = 30 * 1000L;
+    // The event fields copied into a summary
+    public static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "title", "startDate", "endDate", "registrationOpens", "registrationDeadline", "lotteryDrawDate",
+            "eventDate", "eventImageId", "organizerId", "facilityId", "capacity", "waitlistLimit",
+            "geolocationEvent", "queuedAdmission"));
+
+    private final DataGateway gateway;
+
+    /**
+     * Constructor
+     *
+     * @param gateway The gateway to read and write through.
+     */
+    public EventSummaryStore(DataGateway gateway) {
+        this.gateway = gateway;
+    }
+
+    /**
+     * Returns the path of an event's summary.
+     *
+     * @param eventId The ID of the event.
+     * @return The document path.
+     */
+    public static String summaryPath(String eventId) {
+        return COLLECTION + "/" + eventId;
+    }
+
+    /**
+     * Builds the summary of an event.
+     *
+     * @param event    The event document's fields.
+     * @param counters The event's entrant counts.
+     * @return The summary's fields.
+     */
+    public static Map<String, Object> summaryData(Map<String, Object> event, EventCounters counters) {
+        Map<String, Object> summary = new HashMap<>();
+        for (String field : FIELDS) {
+            Object value = event.get(field);
+            if (value != null) {
+                summary.put(field, value);
+            }
+        }
+        for (String field : EntrantStore.LEGACY_ENTRANT_FIELDS) {
+            if (event.containsKey(field)) {
+                summary.put(LEGACY_ENTRANTS, true);
+                break;
+            }
+        }
+        summary.put(COUNTS, countsData(counters));
+        return summary;
+    }
+
+    /**
+     * Builds the counts field of a summary.
+     *
+     * @param counters The event's entrant counts.
+     * @return The counts, keyed by counter field.
+     */
+    public static Map<String, Object> countsData(EventCounters counters) {
+        Map<String, Object> counts = new HashMap<>();
+        counts.put(EventCounters.WAITLIST, counters.getWaitlist());
+        counts.put(EventCounters.SELECTED, counters.getSelected());
+        counts.put(EventCounters.PARTICIPANTS, counters.getParticipants());
+        counts.put(EventCounters.CANCELLED, counters.getCancelled());
+        return counts;
+    }
+
+    /**
+     * Rewrites an event's summary from the event and its counters, or deletes it if the
+     * event no longer exists. Run after the event's own fields change.
+     *
+     * @param eventId The ID of the event.
+     * @return A future completing once the summary is written.
+     */
+    public CompletableFuture<Void> refresh(String eventId) {
+        return gateway.runTransaction(transaction -> {
+            DocumentData event = transaction.get(EntrantStore.eventPath(eventId));
+            EventCounters counters = EntrantStore.readCounters(transaction, eventId);
+            write(transaction, eventId, event, counters);
+            return null;
+        });
+    }
+
+    /**
+     * Brings the counts in an event's summary up to date with its counter shards, building
+     * the whole summary if the event has none yet. Counts written less than
+     * COUNTS_REFRESH_MILLIS ago are left alone; the caller is told how long to wait before
+     * calling again, so the last change of a burst is still shown. Run after entrants of
+     * the event move, and again after the returned delay until it returns 0.
+     *
+     * @param eventId The ID of the event.
+     * @param now     The current time, in milliseconds.
+     * @return A future with 0 once the summary shows the counts read by this call, or the
+     * milliseconds to wait before calling again.
+     */
+    public CompletableFuture<Long> refreshCounts(String eventId, long now) {
+        CompletableFuture<DocumentData> summaryRead = gateway.get(summaryPath(eventId));
+        CompletableFuture<EventCounters> countersRead = gateway.query(
+                GatewayQuery.collection(EntrantStore.counterShardsPath(eventId))).thenApply(EntrantStore::sumCounterShards);
+        return summaryRead.thenCombine(countersRead, (summary, counters) -> {
+            if (!summary.exists()) {
+                return refresh(eventId).thenApply(done -> 0L);
+            }
+            Map<String, Object> counts = countsData(counters);
+            if (counts.equals(summary.get(COUNTS))) {
+                return CompletableFuture.completedFuture(0L);
+            }
+            Date countsAt = summary.getDate(COUNTS_AT);
+            long wait = countsAt != null ? countsAt.getTime() + COUNTS_REFRESH_MILLIS - now : 0;
+            if (wait > 0) {
+                return CompletableFuture.completedFuture(wait);
+            }
+            return gateway.runTransaction(transaction -> {
+                DocumentData current = transaction.get(summary.getPath());
+                // Counts written by another device since the read are newer than these
+                if (!current.exists() || !sameTime(current.getDate(COUNTS_AT), countsAt)) {
+                    return false;
+                }
+                Map<String, Object> update = new HashMap<>();
+                update.put(COUNTS, counts);
+                update.put(COUNTS_AT, new Date(now));
+                transaction.update(current.getPath(), update);
+                return true;
+            }).thenCompose(written -> written ? CompletableFuture.completedFuture(0L) : refreshCounts(eventId, now));
+        }).thenCompose(refreshed -> refreshed);
+    }
+
+    /**
+     * Deletes an event's summary. Run when the event is deleted.
+     *
+     * @param eventId The ID of the event.
+     * @return A future completing once the summary is deleted.
+     */
+    public CompletableFuture<Void> delete(String eventId) {
+        return gateway.delete(summaryPath(eventId));
+    }
+
+    /**
+     * Builds summaries for every event, once. Later calls find the backfill recorded and
+     * return at once; from then on the write paths keep summaries current. Safe to run
+     * from several devices at the same time.
+     *
+     * @return A future with the number of summaries built.
+     */
+    public CompletableFuture<Integer> backfill() {
+        return gateway.get(BACKFILL_PATH).thenCompose(marker -> {
+            if (marker.exists()) {
+                return CompletableFuture.completedFuture(0);
+            }
+            return gateway.query(GatewayQuery.collection(EntrantStore.EVENTS)).thenCompose(events -> {
+                List<CompletableFuture<Void>> refreshes = new ArrayList<>();
+                for (DocumentData event : events) {
+                    refreshes.add(refresh(event.getId()));
+                }
+                Map<String, Object> done = new HashMap<>();
+                done.put("completedAt", FieldOp.serverTimestamp());
+                return CompletableFuture.allOf(refreshes.toArray(new CompletableFuture<?>[0]))
+                        .thenCompose(refreshed -> gateway.set(BACKFILL_PATH, done, false))
+                        .thenApply(recorded -> events.size());
+            });
+        });
+    }
+
+    private static boolean sameTime(Date a, Date b) {
+        return a == null ? b == null : b != null && a.getTime() == b.getTime();
+    }
+
+    private static void write(GatewayTransaction transaction, String eventId, DocumentData event, EventCounters counters) {
+        if (event.exists()) {
+            Map<String, Object> summary = summaryData(event.getData(), counters);
+            summary.put(COUNTS_AT, new Date());
+            transaction.set(summaryPath(eventId), summary, false);
+        } else {
+            transaction.delete(summaryPath(eventId));
+        }
+    }
+}
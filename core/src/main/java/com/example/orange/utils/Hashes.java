@@ -0,0 +1,36 @@
+package com.example.orange.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashing helpers shared by the app and the benchmarks.
+ */
+public final class Hashes {
+    private Hashes() {
+    }
+
+    /**
+     * Hashes text with SHA-256, as stored in an event's qr_hash.
+     *
+     * @param data The text to hash.
+     * @return The lowercase hex digest, or null if SHA-256 is unavailable.
+     */
+    public static String sha256Hex(String data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hash) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) hexString.append('0');
+                hexString.append(hex);
+            }
+            return hexString.toString();
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
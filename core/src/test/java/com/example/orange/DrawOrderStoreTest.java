@@ -0,0 +1,136 @@
+package com.example.orange;
+
+import static com.example.orange.EventFixture.EVENT_ID;
+import static org.junit.Assert.*;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.gateway.InMemoryGateway;
+import com.example.orange.data.lottery.DrawOrderStore;
+import com.example.orange.data.lottery.DrawResult;
+import com.example.orange.data.lottery.LotteryEngine;
+import com.example.orange.data.model.EventCounters;
+import com.example.orange.data.model.EventRole;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Unit tests for DrawOrderStore, run against InMemoryGateway.
+ */
+public class DrawOrderStoreTest {
+    private EventFixture fixture;
+    private InMemoryGateway gateway;
+    private EntrantStore entrantStore;
+    private DrawOrderStore drawOrderStore;
+
+    /**
+     * Creates an event and fresh stores before each test.
+     */
+    @Before
+    public void setUp() {
+        fixture = new EventFixture();
+        gateway = fixture.gateway;
+        entrantStore = fixture.entrantStore;
+        drawOrderStore = new DrawOrderStore(gateway, entrantStore);
+    }
+
+    /**
+     * Tests that replacements follow the stored ranking and skip users who left.
+     */
+    @Test
+    public void testSelectNextFollowsRanking() {
+        DrawResult ranking = drawAndSave(30, 5);
+        List<String> order = ranking.getWinners();
+        entrantStore.move(EVENT_ID, order.get(5), Arrays.asList(EventRole.WAITLISTED), null).join();
+        entrantStore.move(EVENT_ID, order.get(7), Arrays.asList(EventRole.WAITLISTED), null).join();
+
+        DrawOrderStore.Selection replacements = drawOrderStore.selectNext(EVENT_ID, 3).join();
+
+        assertEquals(Arrays.asList(order.get(6), order.get(8), order.get(9)), replacements.getSelected());
+        assertEquals(DrawOrderStore.StopReason.FILLED, replacements.getStopReason());
+        assertEquals(10L, (long) gateway.peek(DrawOrderStore.statePath(EVENT_ID)).getLong("cursor"));
+        EventCounters counters = entrantStore.getCounters(EVENT_ID).join();
+        assertEquals(8, counters.getSelected());
+        assertEquals(20, counters.getWaitlist());
+    }
+
+    /**
+     * Tests that replacements cross chunk boundaries and stop when the ranking runs out.
+     */
+    @Test
+    public void testSelectNextUntilExhausted() {
+        DrawResult ranking = drawAndSave(2500, 990);
+
+        List<String> next = drawOrderStore.selectNext(EVENT_ID, 20).join().getSelected();
+        assertEquals(ranking.getWinners().subList(990, 1010), next);
+
+        DrawOrderStore.Selection rest = drawOrderStore.selectNext(EVENT_ID, 5000).join();
+        assertEquals(1490, rest.getSelected().size());
+        assertEquals(DrawOrderStore.StopReason.ORDER_USED_UP, rest.getStopReason());
+        DrawOrderStore.Selection none = drawOrderStore.selectNext(EVENT_ID, 1).join();
+        assertTrue(none.getSelected().isEmpty());
+        assertEquals(DrawOrderStore.StopReason.ORDER_USED_UP, none.getStopReason());
+        assertEquals(0, entrantStore.getCounters(EVENT_ID).join().getWaitlist());
+    }
+
+    /**
+     * Tests that backfills running at the same time fill each open place once, and that
+     * those finding the event full say so without moving the cursor.
+     */
+    @Test
+    public void testConcurrentSelectNextRespectsCapacity() {
+        drawAndSave(50, 5);
+        Map<String, Object> capacity = new HashMap<>();
+        capacity.put("capacity", 8L);
+        gateway.set(EntrantStore.eventPath(EVENT_ID), capacity, true).join();
+
+        List<CompletableFuture<DrawOrderStore.Selection>> backfills = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            backfills.add(drawOrderStore.selectNext(EVENT_ID, 3));
+        }
+        int moved = 0;
+        for (CompletableFuture<DrawOrderStore.Selection> backfill : backfills) {
+            DrawOrderStore.Selection selection = backfill.join();
+            moved += selection.getSelected().size();
+            // Backfills that lose the race see a full event, not a used up ranking
+            assertFalse(selection.getStopReason().needsRerank());
+        }
+
+        assertEquals(3, moved);
+        assertEquals(8, entrantStore.getCounters(EVENT_ID).join().getSelected());
+        long cursor = gateway.peek(DrawOrderStore.statePath(EVENT_ID)).getLong("cursor");
+        assertEquals(DrawOrderStore.StopReason.EVENT_FULL, drawOrderStore.selectNext(EVENT_ID, 1).join().getStopReason());
+        assertEquals(cursor, (long) gateway.peek(DrawOrderStore.statePath(EVENT_ID)).getLong("cursor"));
+    }
+
+    /**
+     * Tests that an event without a stored ranking selects nobody.
+     */
+    @Test
+    public void testSelectNextWithoutRanking() {
+        DrawOrderStore.Selection selection = drawOrderStore.selectNext(EVENT_ID, 3).join();
+        assertTrue(selection.getSelected().isEmpty());
+        assertEquals(DrawOrderStore.StopReason.NO_ORDER, selection.getStopReason());
+    }
+
+    /**
+     * Joins users, ranks them, selects the first few and stores the ranking.
+     */
+    private DrawResult drawAndSave(int entrants, int drawn) {
+        fixture.joinAll(entrants);
+        List<String> waitlist = entrantStore.getWaitlist(EVENT_ID).join();
+        Collections.sort(waitlist);
+        DrawResult ranking = LotteryEngine.draw(waitlist, waitlist.size(), 99L);
+        entrantStore.selectWaitlisted(EVENT_ID, ranking.getWinners().subList(0, drawn)).join();
+        drawOrderStore.save(EVENT_ID, ranking, drawn).join();
+        return ranking;
+    }
+}
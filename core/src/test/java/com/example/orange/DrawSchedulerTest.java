@@ -0,0 +1,133 @@
+package com.example.orange;
+
+import static org.junit.Assert.*;
+
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.InMemoryGateway;
+import com.example.orange.data.lottery.DrawSchedule;
+import com.example.orange.data.lottery.DrawScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for DrawSchedule and DrawScheduler, run against InMemoryGateway.
+ */
+public class DrawSchedulerTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private InMemoryGateway gateway;
+    private DrawSchedule schedule;
+    private Map<String, AtomicInteger> draws;
+    private Date now;
+
+    /**
+     * Creates a fresh gateway and schedule before each test.
+     */
+    @Before
+    public void setUp() {
+        gateway = new InMemoryGateway();
+        schedule = new DrawSchedule(gateway);
+        draws = new ConcurrentHashMap<>();
+        now = new Date(1_700_000_000_000L);
+    }
+
+    /**
+     * Tests that every due draw runs exactly once and later draws are left pending.
+     */
+    @Test
+    public void testRunsDueDrawsOnce() {
+        for (int i = 0; i < 250; i++) {
+            schedule.schedule("due" + i, new Date(now.getTime() - i * 1000L)).join();
+        }
+        schedule.schedule("later", new Date(now.getTime() + HOUR)).join();
+        DrawScheduler scheduler = new DrawScheduler(schedule, this::countDraw, 4);
+
+        DrawScheduler.RunSummary first = scheduler.runDue(now).join();
+        DrawScheduler.RunSummary second = scheduler.runDue(now).join();
+
+        assertEquals(250, first.getDrawn());
+        assertEquals(0, first.getFailed());
+        assertEquals(0, second.getDrawn());
+        for (int i = 0; i < 250; i++) {
+            assertEquals(1, draws.get("due" + i).get());
+        }
+        assertNull(draws.get("later"));
+        assertEquals(DrawSchedule.DONE, gateway.peek(DrawSchedule.drawPath("due0")).getString("status"));
+        assertEquals(DrawSchedule.PENDING, gateway.peek(DrawSchedule.drawPath("later")).getString("status"));
+    }
+
+    /**
+     * Tests that schedulers running at the same time never draw an event twice.
+     */
+    @Test
+    public void testConcurrentRunsDoNotDoubleDraw() {
+        for (int i = 0; i < 60; i++) {
+            schedule.schedule("event" + i, now).join();
+        }
+        DrawScheduler first = new DrawScheduler(schedule, this::countDraw, 8);
+        DrawScheduler second = new DrawScheduler(schedule, this::countDraw, 8);
+
+        CompletableFuture<DrawScheduler.RunSummary> a = first.runDue(now);
+        CompletableFuture<DrawScheduler.RunSummary> b = second.runDue(now);
+
+        assertEquals(60, a.join().getDrawn() + b.join().getDrawn());
+        for (int i = 0; i < 60; i++) {
+            assertEquals(1, draws.get("event" + i).get());
+        }
+    }
+
+    /**
+     * Tests that a failing draw is retried on later runs and then marked failed.
+     */
+    @Test
+    public void testFailedDrawRetriedThenFailed() {
+        schedule.schedule("broken", now).join();
+        DrawScheduler scheduler = new DrawScheduler(schedule, eventId -> {
+            countDraw(eventId);
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("draw failed"));
+            return failed;
+        }, 2);
+
+        for (int run = 0; run < DrawSchedule.MAX_ATTEMPTS + 1; run++) {
+            scheduler.runDue(now).join();
+        }
+
+        assertEquals(DrawSchedule.MAX_ATTEMPTS, draws.get("broken").get());
+        DocumentData record = gateway.peek(DrawSchedule.drawPath("broken"));
+        assertEquals(DrawSchedule.FAILED, record.getString("status"));
+        assertEquals(DrawSchedule.MAX_ATTEMPTS, (long) record.getLong("attempts"));
+    }
+
+    /**
+     * Tests that running or finished draws cannot be claimed again until a claim is abandoned.
+     */
+    @Test
+    public void testClaims() {
+        schedule.schedule("event", now).join();
+
+        assertTrue(schedule.claim("event", now, false).join());
+        assertFalse(schedule.claim("event", now, true).join());
+        Date abandoned = new Date(now.getTime() + DrawSchedule.CLAIM_TIMEOUT_MILLIS);
+        assertEquals(1, schedule.findDue(abandoned, 10).join().size());
+        assertTrue(schedule.claim("event", abandoned, false).join());
+
+        schedule.complete("event", true, abandoned).join();
+        assertFalse(schedule.claim("event", abandoned, false).join());
+        assertFalse(schedule.schedule("event", new Date(now.getTime() + HOUR)).join());
+        assertTrue(schedule.claim("event", abandoned, true).join());
+        assertTrue(schedule.claim("unscheduled", now, true).join());
+    }
+
+    private CompletableFuture<Void> countDraw(String eventId) {
+        draws.computeIfAbsent(eventId, id -> new AtomicInteger()).incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+    }
+}
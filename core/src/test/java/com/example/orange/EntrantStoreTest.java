@@ -0,0 +1,337 @@
+package com.example.orange;
+
+import static com.example.orange.EventFixture.EVENT_ID;
+import static org.junit.Assert.*;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.entrants.InvitationResponse;
+import com.example.orange.data.gateway.InMemoryGateway;
+import com.example.orange.data.model.EventCounters;
+import com.example.orange.data.model.EventRole;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Unit tests for EntrantStore, run against InMemoryGateway.
+ */
+public class EntrantStoreTest {
+    private EventFixture fixture;
+    private InMemoryGateway gateway;
+    private EntrantStore store;
+
+    /**
+     * Creates an event and a fresh store before each test.
+     */
+    @Before
+    public void setUp() {
+        fixture = new EventFixture();
+        gateway = fixture.gateway;
+        store = fixture.entrantStore;
+    }
+
+    /**
+     * Tests that joining writes the entry, the membership index and the counters.
+     */
+    @Test
+    public void testJoinWaitlist() {
+        fixture.addUser("user1");
+        store.joinWaitlist(EVENT_ID, "user1").join();
+
+        assertEquals(Arrays.asList("user1"), store.getWaitlist(EVENT_ID).join());
+        assertEquals(1, store.getCounters(EVENT_ID).join().getWaitlist());
+        Map<?, ?> events = (Map<?, ?>) gateway.peek("memberships/user1").get("events");
+        assertEquals(EventRole.WAITLISTED.name(), events.get(EVENT_ID));
+        assertEquals(Arrays.asList(EVENT_ID), gateway.peek("users/user1").get("eventsWaitlisted"));
+    }
+
+    /**
+     * Tests that joining twice fails with the message shown to the user.
+     */
+    @Test
+    public void testJoinWaitlistTwice() {
+        fixture.addUser("user1");
+        store.joinWaitlist(EVENT_ID, "user1").join();
+        try {
+            store.joinWaitlist(EVENT_ID, "user1").join();
+            fail("Joining twice should fail");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof EntrantStore.EntrantException);
+            assertEquals("You are already on the waitlist for this event.", e.getCause().getMessage());
+        }
+        assertEquals(1, store.getCounters(EVENT_ID).join().getWaitlist());
+    }
+
+    /**
+     * Tests that repeating a join under the same request ID succeeds without joining twice,
+     * as when a retry follows a commit whose reply was lost.
+     */
+    @Test
+    public void testJoinWaitlistReplayedRequest() {
+        fixture.addUser("user1");
+        store.joinWaitlist(EVENT_ID, "user1", "request1").join();
+        store.joinWaitlist(EVENT_ID, "user1", "request1").join();
+
+        assertEquals(1, store.getCounters(EVENT_ID).join().getWaitlist());
+        Map<?, ?> requests = (Map<?, ?>) gateway.peek(EntrantStore.requestLogPath("user1")).get("requests");
+        assertTrue(requests.get("request1") instanceof Date);
+        try {
+            store.joinWaitlist(EVENT_ID, "user1", "request2").join();
+            fail("A new request should still be refused");
+        } catch (CompletionException e) {
+            assertEquals("You are already on the waitlist for this event.", e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Tests that a replayed move reports success without moving the user again.
+     */
+    @Test
+    public void testMoveReplayedRequest() {
+        fixture.addUser("user1");
+        store.joinWaitlist(EVENT_ID, "user1").join();
+        List<EventRole> fromWaitlist = Collections.singletonList(EventRole.WAITLISTED);
+        assertTrue(store.move(EVENT_ID, "user1", fromWaitlist, EventRole.PARTICIPANT, "request1").join());
+        assertTrue(store.move(EVENT_ID, "user1", fromWaitlist, EventRole.PARTICIPANT, "request1").join());
+        assertFalse(store.move(EVENT_ID, "user1", fromWaitlist, EventRole.PARTICIPANT, "request2").join());
+
+        EventCounters counters = store.getCounters(EVENT_ID).join();
+        assertEquals(0, counters.getWaitlist());
+        assertEquals(1, counters.getParticipants());
+    }
+
+    /**
+     * Tests that concurrent joins are all counted exactly once.
+     */
+    @Test
+    public void testConcurrentJoins() {
+        List<CompletableFuture<Void>> joins = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            fixture.addUser("user" + i);
+            joins.add(store.joinWaitlist(EVENT_ID, "user" + i));
+        }
+        CompletableFuture.allOf(joins.toArray(new CompletableFuture<?>[0])).join();
+
+        assertEquals(200, store.getWaitlist(EVENT_ID).join().size());
+        assertEquals(200, store.getCounters(EVENT_ID).join().getWaitlist());
+    }
+
+    /**
+     * Tests that selecting moves only users still on the waitlist and updates the counters.
+     */
+    @Test
+    public void testSelectWaitlisted() {
+        for (int i = 0; i < 5; i++) {
+            fixture.addUser("user" + i);
+            store.joinWaitlist(EVENT_ID, "user" + i).join();
+        }
+
+        List<String> moved = store.selectWaitlisted(EVENT_ID, Arrays.asList("user1", "user3", "missing")).join();
+
+        assertEquals(Arrays.asList("user1", "user3"), moved);
+        EventCounters counters = store.getCounters(EVENT_ID).join();
+        assertEquals(3, counters.getWaitlist());
+        assertEquals(2, counters.getSelected());
+        assertEquals(Arrays.asList("user1", "user3"), sorted(store.getUserIds(EVENT_ID, EventRole.SELECTED).join()));
+    }
+
+    /**
+     * Tests that draws running at the same time never select more users than the event
+     * has places, and that a rerun only fills the places still open.
+     */
+    @Test
+    public void testConcurrentSelectionsRespectCapacity() {
+        setEventField("capacity", 10L);
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            fixture.addUser("user" + i);
+            store.joinWaitlist(EVENT_ID, "user" + i).join();
+            userIds.add("user" + i);
+        }
+
+        CompletableFuture<List<String>> first = store.selectWaitlisted(EVENT_ID, userIds.subList(0, 10));
+        CompletableFuture<List<String>> second = store.selectWaitlisted(EVENT_ID, userIds.subList(10, 20));
+        int moved = first.join().size() + second.join().size();
+
+        assertEquals(10, moved);
+        assertEquals(10, store.getCounters(EVENT_ID).join().getSelected());
+        assertTrue(store.selectWaitlisted(EVENT_ID, userIds.subList(20, 30)).join().isEmpty());
+        assertEquals(20, store.getCounters(EVENT_ID).join().getWaitlist());
+    }
+
+    /**
+     * Tests that answering an invitation moves the user, resolves the invitation and
+     * writes the organizer's notice in one go, and that a missing invitation is skipped.
+     */
+    @Test
+    public void testRespondToInvitation() {
+        for (String userId : Arrays.asList("user1", "user2")) {
+            fixture.addUser(userId);
+            store.joinWaitlist(EVENT_ID, userId).join();
+        }
+        store.selectWaitlisted(EVENT_ID, Arrays.asList("user1", "user2")).join();
+        Map<String, Object> invitation = new HashMap<>();
+        invitation.put("status", "PENDING");
+        gateway.set("notifications/invite1", invitation, false).join();
+        Map<String, Object> resolved = new HashMap<>();
+        resolved.put("status", "ACCEPTED");
+        Map<String, Object> notice = new HashMap<>();
+        notice.put("type", "ORGANIZER");
+
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("status", "PENDING");
+        gateway.set("notifications/legacy1", legacy, false).join();
+
+        InvitationResponse accept = new InvitationResponse(EVENT_ID, "user1", true)
+                .resolving("notifications/invite1", resolved)
+                .resolving("notifications/legacy1", resolved)
+                .notifying("notifications/notice1", notice);
+        assertTrue(store.respond(accept, "request1").join());
+        assertTrue(store.respond(accept, "request1").join());
+        InvitationResponse decline = new InvitationResponse(EVENT_ID, "user2", false)
+                .resolving("notifications/missing", resolved);
+        assertTrue(store.respond(decline, null).join());
+        assertFalse(store.respond(decline, null).join());
+
+        assertEquals("ACCEPTED", gateway.peek("notifications/invite1").get("status"));
+        assertEquals("ACCEPTED", gateway.peek("notifications/legacy1").get("status"));
+        assertEquals("ORGANIZER", gateway.peek("notifications/notice1").get("type"));
+        assertFalse(gateway.peek("notifications/missing").exists());
+        EventCounters counters = store.getCounters(EVENT_ID).join();
+        assertEquals(0, counters.getSelected());
+        assertEquals(1, counters.getParticipants());
+        assertEquals(1, counters.getCancelled());
+    }
+
+    /**
+     * Tests that a move is refused when the user does not hold an allowed role.
+     */
+    @Test
+    public void testMoveRefusedFromWrongRole() {
+        fixture.addUser("user1");
+        boolean moved = store.move(EVENT_ID, "user1",
+                Arrays.asList(EventRole.WAITLISTED), EventRole.PARTICIPANT).join();
+
+        assertFalse(moved);
+        assertEquals(0, store.getCounters(EVENT_ID).join().getParticipants());
+    }
+
+    /**
+     * Tests that concurrent joins never take the waitlist past its limit, and that the
+     * joins refused fail with the message shown to the user.
+     */
+    @Test
+    public void testConcurrentJoinsRespectWaitlistLimit() {
+        setEventField("waitlistLimit", 25L);
+        List<CompletableFuture<Boolean>> joins = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            fixture.addUser("user" + i);
+            joins.add(store.joinWaitlist(EVENT_ID, "user" + i).handle((done, error) -> {
+                if (error == null) {
+                    return true;
+                }
+                assertEquals(EntrantStore.WAITLIST_FULL, error.getCause().getMessage());
+                return false;
+            }));
+        }
+        int joined = 0;
+        for (CompletableFuture<Boolean> join : joins) {
+            joined += join.join() ? 1 : 0;
+        }
+
+        assertEquals(25, joined);
+        assertEquals(25, store.getCounters(EVENT_ID).join().getWaitlist());
+        assertEquals(25, store.getWaitlist(EVENT_ID).join().size());
+        fixture.addUser("added");
+        try {
+            store.move(EVENT_ID, "added", Arrays.asList(null, EventRole.CANCELLED), EventRole.WAITLISTED).join();
+            fail("Adding to a full waitlist should fail");
+        } catch (CompletionException e) {
+            assertEquals(EntrantStore.WAITLIST_FULL, e.getCause().getMessage());
+        }
+        assertEquals(25, store.getCounters(EVENT_ID).join().getWaitlist());
+    }
+
+    /**
+     * Tests that a waitlist limit set after users joined is enforced once the counters are rebalanced.
+     */
+    @Test
+    public void testRebalanceBeforeNewLimit() {
+        for (int i = 0; i < 12; i++) {
+            fixture.addUser("user" + i);
+            store.joinWaitlist(EVENT_ID, "user" + i).join();
+        }
+        setEventField("waitlistLimit", 13L);
+        store.rebalanceWaitlist(EVENT_ID).join();
+
+        fixture.addUser("user12");
+        fixture.addUser("user13");
+        store.joinWaitlist(EVENT_ID, "user12").join();
+        try {
+            store.joinWaitlist(EVENT_ID, "user13").join();
+            fail("Joining a full waitlist should fail");
+        } catch (CompletionException e) {
+            assertEquals(EntrantStore.WAITLIST_FULL, e.getCause().getMessage());
+        }
+        assertEquals(13, store.getCounters(EVENT_ID).join().getWaitlist());
+    }
+
+    /**
+     * Tests that joins outside the registration window are refused.
+     */
+    @Test
+    public void testJoinOutsideRegistrationWindow() {
+        fixture.addUser("user1");
+        setEventField("registrationOpens", new Date(System.currentTimeMillis() + 60_000));
+        try {
+            store.joinWaitlist(EVENT_ID, "user1").join();
+            fail("Joining before registration opens should fail");
+        } catch (CompletionException e) {
+            assertEquals(EntrantStore.REGISTRATION_NOT_OPEN, e.getCause().getMessage());
+        }
+
+        setEventField("registrationOpens", new Date(System.currentTimeMillis() - 120_000));
+        setEventField("registrationDeadline", new Date(System.currentTimeMillis() - 60_000));
+        try {
+            store.joinWaitlist(EVENT_ID, "user1").join();
+            fail("Joining after registration closes should fail");
+        } catch (CompletionException e) {
+            assertEquals(EntrantStore.REGISTRATION_CLOSED, e.getCause().getMessage());
+        }
+        assertEquals(0, store.getCounters(EVENT_ID).join().getWaitlist());
+    }
+
+    /**
+     * Tests the client-side precheck against a counter snapshot.
+     */
+    @Test
+    public void testRegistrationRefusal() {
+        long now = System.currentTimeMillis();
+        assertNull(EntrantStore.registrationRefusal(null, null, 10L, 9L, now));
+        assertEquals(EntrantStore.WAITLIST_FULL, EntrantStore.registrationRefusal(null, null, 10L, 10L, now));
+        assertNull(EntrantStore.registrationRefusal(null, null, 10L, null, now));
+        assertNull(EntrantStore.registrationRefusal(new Date(now), new Date(now), null, null, now));
+    }
+
+    private void setEventField(String field, Object value) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(field, value);
+        gateway.set(EntrantStore.eventPath(EVENT_ID), data, true).join();
+    }
+
+    private List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.orange;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.gateway.InMemoryGateway;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shared fixture for the entrant tests: an InMemoryGateway holding a test event,
+ * an EntrantStore on top of it, and helpers to add users and join them.
+ */
+public class EventFixture {
+    public static final String EVENT_ID = "event1";
+
+    public final InMemoryGateway gateway = new InMemoryGateway();
+    public final EntrantStore entrantStore = new EntrantStore(gateway);
+
+    /**
+     * Creates the fixture with a plain test event.
+     */
+    public EventFixture() {
+        this(Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Creates the fixture with a test event that has extra fields.
+     *
+     * @param fields Fields to add to or replace in the test event.
+     */
+    public EventFixture(Map<String, Object> fields) {
+        addEvent(EVENT_ID, "Test Event", fields);
+    }
+
+    /**
+     * Stores an event document.
+     *
+     * @param eventId The ID of the event.
+     * @param title   Its title.
+     * @param fields  Further fields of the event.
+     */
+    public void addEvent(String eventId, String title, Map<String, Object> fields) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("title", title);
+        event.putAll(fields);
+        gateway.set(EntrantStore.eventPath(eventId), event, false).join();
+    }
+
+    /**
+     * Stores a user document, which list updates on joins and moves require.
+     *
+     * @param userId The ID of the user.
+     */
+    public void addUser(String userId) {
+        Map<String, Object> user = new HashMap<>();
+        user.put("name", userId);
+        gateway.set("users/" + userId, user, false).join();
+    }
+
+    /**
+     * Adds users and joins each to the test event's waitlist, one at a time.
+     *
+     * @param userIds The IDs of the users.
+     */
+    public void join(String... userIds) {
+        for (String userId : userIds) {
+            addUser(userId);
+            entrantStore.joinWaitlist(EVENT_ID, userId).join();
+        }
+    }
+
+    /**
+     * Adds users user0 to user(count - 1) and joins them all to the test event's
+     * waitlist at the same time.
+     *
+     * @param count The number of users.
+     * @return Their IDs, in order.
+     */
+    public List<String> joinAll(int count) {
+        List<String> userIds = new ArrayList<>();
+        List<CompletableFuture<Void>> joins = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String userId = "user" + i;
+            addUser(userId);
+            joins.add(entrantStore.joinWaitlist(EVENT_ID, userId));
+            userIds.add(userId);
+        }
+        CompletableFuture.allOf(joins.toArray(new CompletableFuture<?>[0])).join();
+        return userIds;
+    }
+}
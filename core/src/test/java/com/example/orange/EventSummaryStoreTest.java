@@ -0,0 +1,143 @@
+package com.example.orange;
+
+import static com.example.orange.EventFixture.EVENT_ID;
+import static org.junit.Assert.*;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.gateway.InMemoryGateway;
+import com.example.orange.data.model.EventCounters;
+import com.example.orange.data.summaries.EventSummaryStore;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for EventSummaryStore, run against InMemoryGateway.
+ */
+public class EventSummaryStoreTest {
+    private EventFixture fixture;
+    private InMemoryGateway gateway;
+    private EntrantStore entrantStore;
+    private EventSummaryStore summaryStore;
+
+    /**
+     * Creates an event and fresh stores before each test.
+     */
+    @Before
+    public void setUp() {
+        Map<String, Object> event = new HashMap<>();
+        event.put("description", "Not shown in lists");
+        event.put("registrationDeadline", new Date(System.currentTimeMillis() + 60_000));
+        event.put("capacity", 10L);
+        fixture = new EventFixture(event);
+        gateway = fixture.gateway;
+        entrantStore = fixture.entrantStore;
+        summaryStore = new EventSummaryStore(gateway);
+    }
+
+    /**
+     * Tests that a summary copies the listed fields and the counts, and nothing else.
+     */
+    @Test
+    public void testRefresh() {
+        fixture.join("user1", "user2");
+        summaryStore.refresh(EVENT_ID).join();
+
+        Map<String, Object> summary = gateway.peek(EventSummaryStore.summaryPath(EVENT_ID)).getData();
+        assertEquals("Test Event", summary.get("title"));
+        assertEquals(10L, summary.get("capacity"));
+        assertTrue(summary.get("registrationDeadline") instanceof Date);
+        assertFalse(summary.containsKey("description"));
+        assertFalse(summary.containsKey(EventSummaryStore.LEGACY_ENTRANTS));
+        assertEquals(2L, counts().get(EventCounters.WAITLIST));
+        assertEquals(0L, counts().get(EventCounters.PARTICIPANTS));
+    }
+
+    /**
+     * Tests that refreshing the counts leaves the copied fields alone, and builds the whole
+     * summary for an event that has none.
+     */
+    @Test
+    public void testRefreshCounts() {
+        long now = System.currentTimeMillis();
+        fixture.join("user1");
+        assertEquals(0L, (long) summaryStore.refreshCounts(EVENT_ID, now).join());
+        assertEquals("Test Event", gateway.peek(EventSummaryStore.summaryPath(EVENT_ID)).get("title"));
+        assertEquals(1L, counts().get(EventCounters.WAITLIST));
+
+        fixture.join("user2", "user3");
+        entrantStore.selectWaitlisted(EVENT_ID, Arrays.asList("user1")).join();
+        long later = now + EventSummaryStore.COUNTS_REFRESH_MILLIS + 1000;
+        assertEquals(0L, (long) summaryStore.refreshCounts(EVENT_ID, later).join());
+        assertEquals(2L, counts().get(EventCounters.WAITLIST));
+        assertEquals(1L, counts().get(EventCounters.SELECTED));
+    }
+
+    /**
+     * Tests that counts written moments ago are not rewritten, and that the caller is told
+     * when to try again, while counts already current need no wait.
+     */
+    @Test
+    public void testRefreshCountsThrottled() {
+        long now = System.currentTimeMillis();
+        fixture.join("user1");
+        summaryStore.refreshCounts(EVENT_ID, now).join();
+        assertEquals(0L, (long) summaryStore.refreshCounts(EVENT_ID, now + 1000).join());
+
+        fixture.join("user2");
+        long wait = summaryStore.refreshCounts(EVENT_ID, now + 1000).join();
+        assertTrue(wait > 0 && wait <= EventSummaryStore.COUNTS_REFRESH_MILLIS);
+        assertEquals(1L, counts().get(EventCounters.WAITLIST));
+
+        Date written = gateway.peek(EventSummaryStore.summaryPath(EVENT_ID)).getDate(EventSummaryStore.COUNTS_AT);
+        assertEquals(0L, (long) summaryStore.refreshCounts(EVENT_ID, written.getTime() + EventSummaryStore.COUNTS_REFRESH_MILLIS).join());
+        assertEquals(2L, counts().get(EventCounters.WAITLIST));
+    }
+
+    /**
+     * Tests that events still holding entrants inline are flagged, and that refreshing the
+     * summary of a deleted event removes it.
+     */
+    @Test
+    public void testLegacyAndDeletedEvents() {
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("title", "Old Event");
+        legacy.put("waitingList", new ArrayList<>(Arrays.asList("user1")));
+        gateway.set(EntrantStore.eventPath("old"), legacy, false).join();
+        summaryStore.refresh("old").join();
+        assertEquals(true, gateway.peek(EventSummaryStore.summaryPath("old")).get(EventSummaryStore.LEGACY_ENTRANTS));
+        assertFalse(gateway.peek(EventSummaryStore.summaryPath("old")).getData().containsKey("waitingList"));
+
+        gateway.delete(EntrantStore.eventPath("old")).join();
+        summaryStore.refresh("old").join();
+        assertFalse(gateway.peek(EventSummaryStore.summaryPath("old")).exists());
+    }
+
+    /**
+     * Tests that the backfill builds every missing summary once and is skipped afterwards.
+     */
+    @Test
+    public void testBackfill() {
+        Map<String, Object> other = new HashMap<>();
+        other.put("title", "Other Event");
+        gateway.set(EntrantStore.eventPath("event2"), other, false).join();
+
+        assertEquals(2, (int) summaryStore.backfill().join());
+        assertTrue(gateway.peek(EventSummaryStore.summaryPath(EVENT_ID)).exists());
+        assertEquals("Other Event", gateway.peek(EventSummaryStore.summaryPath("event2")).get("title"));
+
+        gateway.set(EntrantStore.eventPath("event3"), other, false).join();
+        assertEquals(0, (int) summaryStore.backfill().join());
+        assertFalse(gateway.peek(EventSummaryStore.summaryPath("event3")).exists());
+    }
+
+    private Map<?, ?> counts() {
+        return (Map<?, ?>) gateway.peek(EventSummaryStore.summaryPath(EVENT_ID)).get(EventSummaryStore.COUNTS);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.orange;
+
+import static org.junit.Assert.*;
+
+import com.example.orange.data.model.FieldChanges;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for FieldChanges.
+ */
+public class FieldChangesTest {
+    private final FieldChanges changes = new FieldChanges();
+
+    /**
+     * Tests that only fields whose value actually changed are recorded, with their latest value.
+     */
+    @Test
+    public void testRecordsOnlyRealChanges() {
+        changes.record("email", "a@example.com", "a@example.com");
+        changes.record("phone", null, null);
+        assertTrue(changes.isEmpty());
+
+        changes.record("email", "a@example.com", "b@example.com");
+        changes.record("email", "b@example.com", "c@example.com");
+        changes.record("profileImageId", "image1", null);
+
+        Map<String, Object> pending = changes.get();
+        assertEquals(2, pending.size());
+        assertEquals("c@example.com", pending.get("email"));
+        assertTrue(pending.containsKey("profileImageId"));
+        assertNull(pending.get("profileImageId"));
+    }
+
+    /**
+     * Tests that a recorded list is a copy, unaffected by later changes to the model's list.
+     */
+    @Test
+    public void testCopiesLists() {
+        List<String> events = new ArrayList<>(Arrays.asList("event1"));
+        changes.record("eventsWaitlisted", new ArrayList<String>(), events);
+        events.add("event2");
+
+        assertEquals(Arrays.asList("event1"), changes.get().get("eventsWaitlisted"));
+    }
+
+    /**
+     * Tests that saving forgets the written values but keeps fields changed again meanwhile.
+     */
+    @Test
+    public void testSavedKeepsNewerChanges() {
+        changes.record("title", "Old", "New");
+        changes.record("capacity", 10, 20);
+        Map<String, Object> written = changes.get();
+
+        changes.record("capacity", 20, 30);
+        changes.saved(written);
+
+        Map<String, Object> pending = changes.get();
+        assertEquals(1, pending.size());
+        assertEquals(30, pending.get("capacity"));
+
+        changes.clear();
+        assertTrue(changes.isEmpty());
+    }
+}
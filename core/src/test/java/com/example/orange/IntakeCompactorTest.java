@@ -0,0 +1,176 @@
+package com.example.orange;
+
+import static com.example.orange.EventFixture.EVENT_ID;
+import static org.junit.Assert.*;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.entrants.IntakeCompactor;
+import com.example.orange.data.entrants.JoinTicket;
+import com.example.orange.data.gateway.DataGateway;
+import com.example.orange.data.gateway.InMemoryGateway;
+import com.example.orange.data.model.EventRole;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the queued admission intake log and IntakeCompactor, run against InMemoryGateway.
+ */
+public class IntakeCompactorTest {
+    private EventFixture fixture;
+    private InMemoryGateway gateway;
+    private EntrantStore store;
+    private IntakeCompactor compactor;
+
+    /**
+     * Creates an event and a fresh compactor before each test.
+     */
+    @Before
+    public void setUp() {
+        fixture = new EventFixture();
+        gateway = fixture.gateway;
+        store = fixture.entrantStore;
+        compactor = new IntakeCompactor(gateway, store);
+    }
+
+    /**
+     * Tests that a surge of queued joins, each followed by its own compaction attempt,
+     * admits every user exactly once.
+     */
+    @Test
+    public void testSurgeAdmitsEveryoneOnce() {
+        List<CompletableFuture<Integer>> joins = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String userId = "user" + i;
+            fixture.addUser(userId);
+            joins.add(compactor.submit(EVENT_ID, userId).thenCompose(ticket -> compactor.compact(EVENT_ID)));
+        }
+        int processed = 0;
+        for (CompletableFuture<Integer> join : joins) {
+            processed += join.join();
+        }
+
+        assertEquals(1000, processed);
+        assertEquals(1000, store.getCounters(EVENT_ID).join().getWaitlist());
+        assertEquals(1000, store.getWaitlist(EVENT_ID).join().size());
+        assertEquals(JoinTicket.ADMITTED, compactor.getTicket(EVENT_ID, "user999").join().getStatus());
+        assertEquals(0, gateway.getTransactionFailureCount());
+    }
+
+    /**
+     * Tests that users who cannot join are rejected with the message shown to them.
+     */
+    @Test
+    public void testRejectsUsersAlreadyEntered() {
+        fixture.addUser("user1");
+        store.joinWaitlist(EVENT_ID, "user1").join();
+
+        compactor.submit(EVENT_ID, "user1").join();
+        compactor.submit(EVENT_ID, "ghost").join();
+        assertTrue(compactor.getTicket(EVENT_ID, "user1").join().isQueued());
+        compactor.compact(EVENT_ID).join();
+
+        JoinTicket duplicate = compactor.getTicket(EVENT_ID, "user1").join();
+        assertEquals(JoinTicket.REJECTED, duplicate.getStatus());
+        assertEquals("You are already on the waitlist for this event.", duplicate.getReason());
+        assertEquals("User does not exist.", compactor.getTicket(EVENT_ID, "ghost").join().getReason());
+        assertEquals(1, store.getCounters(EVENT_ID).join().getWaitlist());
+        Map<?, ?> events = (Map<?, ?>) gateway.peek("memberships/user1").get("events");
+        assertEquals(EventRole.WAITLISTED.name(), events.get(EVENT_ID));
+    }
+
+    /**
+     * Tests that compaction admits queued users in arrival order until the waitlist limit.
+     */
+    @Test
+    public void testCompactionStopsAtWaitlistLimit() {
+        Map<String, Object> limit = new HashMap<>();
+        limit.put("waitlistLimit", 30L);
+        gateway.set(EntrantStore.eventPath(EVENT_ID), limit, true).join();
+        for (int i = 0; i < 50; i++) {
+            fixture.addUser("user" + i);
+            compactor.submit(EVENT_ID, "user" + i).join();
+        }
+
+        assertEquals(50, (int) compactor.compact(EVENT_ID).join());
+
+        assertEquals(30, store.getCounters(EVENT_ID).join().getWaitlist());
+        assertEquals(JoinTicket.ADMITTED, compactor.getTicket(EVENT_ID, "user0").join().getStatus());
+        JoinTicket late = compactor.getTicket(EVENT_ID, "user49").join();
+        assertEquals(JoinTicket.REJECTED, late.getStatus());
+        assertEquals(EntrantStore.WAITLIST_FULL, late.getReason());
+    }
+
+    /**
+     * Tests that the periodic pass merges tickets left queued by a compactor that died,
+     * and leaves events with a live compactor to it.
+     */
+    @Test
+    public void testCompactPendingAfterCompactorDied() {
+        fixture.addEvent("event2", "Other Event", Collections.<String, Object>emptyMap());
+        Map<String, Object> lapsed = new HashMap<>();
+        lapsed.put("claimedAt", new Date(System.currentTimeMillis() - 2 * IntakeCompactor.LEASE_MILLIS));
+        gateway.set("intakeLeases/" + EVENT_ID, lapsed, false).join();
+        Map<String, Object> live = new HashMap<>();
+        live.put("claimedAt", new Date());
+        gateway.set("intakeLeases/event2", live, false).join();
+        for (int i = 0; i < 3; i++) {
+            fixture.addUser("user" + i);
+            compactor.submit(EVENT_ID, "user" + i).join();
+            compactor.submit("event2", "user" + i).join();
+        }
+
+        Map<String, Integer> processed = compactor.compactPending().join();
+
+        assertEquals(Collections.singletonMap(EVENT_ID, 3), processed);
+        assertEquals(3, store.getCounters(EVENT_ID).join().getWaitlist());
+        assertTrue(compactor.getTicket("event2", "user0").join().isQueued());
+    }
+
+    /**
+     * Tests that a watched ticket is seen queued, then rejected once compaction decides it.
+     */
+    @Test
+    public void testWatchTicketSeesOutcome() throws InterruptedException {
+        Map<String, Object> limit = new HashMap<>();
+        limit.put("waitlistLimit", 1L);
+        gateway.set(EntrantStore.eventPath(EVENT_ID), limit, true).join();
+        fixture.addUser("user1");
+        fixture.addUser("user2");
+        store.joinWaitlist(EVENT_ID, "user1").join();
+        BlockingQueue<String> statuses = new LinkedBlockingQueue<>();
+        DataGateway.Registration watch = compactor.watchTicket(EVENT_ID, "user2", (ticket, error) -> {
+            if (ticket != null) {
+                statuses.add(ticket.getStatus() + ":" + ticket.getReason());
+            }
+        });
+
+        compactor.submit(EVENT_ID, "user2").thenCompose(ticket -> compactor.compact(EVENT_ID)).join();
+
+        String status = statuses.poll(5, TimeUnit.SECONDS);
+        while (status != null && status.startsWith(JoinTicket.QUEUED)) {
+            status = statuses.poll(5, TimeUnit.SECONDS);
+        }
+        watch.remove();
+        assertEquals(JoinTicket.REJECTED + ":" + EntrantStore.WAITLIST_FULL, status);
+    }
+
+    /**
+     * Tests that a user who never queued has no ticket.
+     */
+    @Test
+    public void testNoTicketBeforeJoining() {
+        assertNull(compactor.getTicket(EVENT_ID, "user1").join());
+    }
+}
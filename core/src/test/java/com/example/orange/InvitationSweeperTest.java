@@ -0,0 +1,160 @@
+package com.example.orange;
+
+import static com.example.orange.EventFixture.EVENT_ID;
+import static org.junit.Assert.*;
+
+import com.example.orange.data.entrants.EntrantStore;
+import com.example.orange.data.entrants.InvitationResponse;
+import com.example.orange.data.entrants.InvitationSweeper;
+import com.example.orange.data.gateway.DocumentData;
+import com.example.orange.data.gateway.InMemoryGateway;
+import com.example.orange.data.model.EventCounters;
+import com.example.orange.data.model.EventRole;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unit tests for invitation expiry and InvitationSweeper, run against InMemoryGateway.
+ */
+public class InvitationSweeperTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private EventFixture fixture;
+    private InMemoryGateway gateway;
+    private EntrantStore store;
+    private Map<String, Integer> backfills;
+    private InvitationSweeper sweeper;
+
+    /**
+     * Creates an event with a one hour accept window and a fresh sweeper before each test.
+     */
+    @Before
+    public void setUp() {
+        fixture = new EventFixture(Collections.<String, Object>singletonMap("acceptWindowHours", 1L));
+        gateway = fixture.gateway;
+        store = fixture.entrantStore;
+        backfills = new ConcurrentHashMap<>();
+        sweeper = new InvitationSweeper(gateway, store, (eventId, released) -> {
+            backfills.merge(eventId, released, Integer::sum);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Tests that every expired invitation is released and its places backfilled once,
+     * across more than one query page.
+     */
+    @Test
+    public void testSweepReleasesExpiredSelections() {
+        List<String> selected = joinAndSelect(1500, 1200);
+
+        InvitationSweeper.SweepSummary summary = sweeper.sweep(new Date(System.currentTimeMillis() + 2 * HOUR)).join();
+
+        assertEquals(1200, summary.getExpired());
+        assertEquals(1, summary.getEvents());
+        assertEquals(Integer.valueOf(1200), backfills.get(EVENT_ID));
+        EventCounters counters = store.getCounters(EVENT_ID).join();
+        assertEquals(0, counters.getSelected());
+        assertEquals(1200, counters.getCancelled());
+        assertEquals(300, counters.getWaitlist());
+        Map<?, ?> events = (Map<?, ?>) gateway.peek("memberships/" + selected.get(0)).get("events");
+        assertEquals(EventRole.CANCELLED.name(), events.get(EVENT_ID));
+        assertFalse(gateway.peek(EntrantStore.entryPath(EVENT_ID, selected.get(0))).contains("expiresAt"));
+        DocumentData user = gateway.peek("users/" + selected.get(0));
+        assertEquals(Collections.emptyList(), user.get("eventsWaitlisted"));
+        assertEquals(Collections.singletonList(EVENT_ID), user.get("eventsCancelled"));
+    }
+
+    /**
+     * Tests that expiring the same invitations twice, as when an overdue sweep overlaps
+     * the next one, moves each user and changes the counters once.
+     */
+    @Test
+    public void testExpireTwiceCountsOnce() {
+        List<String> selected = joinAndSelect(10, 6);
+        Date cutoff = new Date(System.currentTimeMillis() + 2 * HOUR);
+
+        CompletableFuture<List<String>> first = store.expireSelections(EVENT_ID, selected, cutoff);
+        CompletableFuture<List<String>> second = store.expireSelections(EVENT_ID, selected, cutoff);
+
+        assertEquals(6, first.join().size() + second.join().size());
+        EventCounters counters = store.getCounters(EVENT_ID).join();
+        assertEquals(0, counters.getSelected());
+        assertEquals(6, counters.getCancelled());
+    }
+
+    /**
+     * Tests that invitations still within their window are left alone.
+     */
+    @Test
+    public void testSweepKeepsOpenInvitations() {
+        joinAndSelect(10, 5);
+
+        InvitationSweeper.SweepSummary summary = sweeper.sweep(new Date()).join();
+
+        assertEquals(0, summary.getExpired());
+        assertTrue(backfills.isEmpty());
+        assertEquals(5, store.getCounters(EVENT_ID).join().getSelected());
+    }
+
+    /**
+     * Tests that an expired invitation can no longer be accepted, but that the organizer
+     * can still move the user before the sweeper releases it.
+     */
+    @Test
+    public void testAcceptAfterDeadlineRefused() {
+        String userId = joinAndSelect(1, 1).get(0);
+        Map<String, Object> expired = new HashMap<>();
+        expired.put("expiresAt", new Date(System.currentTimeMillis() - 1000));
+        gateway.set(EntrantStore.entryPath(EVENT_ID, userId), expired, true).join();
+
+        try {
+            store.respond(new InvitationResponse(EVENT_ID, userId, true), null).join();
+            fail("Accepting an expired invitation should fail");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof EntrantStore.EntrantException);
+            assertEquals("This invitation has expired.", e.getCause().getMessage());
+        }
+        assertEquals(1, store.getCounters(EVENT_ID).join().getSelected());
+
+        assertTrue(store.move(EVENT_ID, userId, Collections.singletonList(EventRole.SELECTED), EventRole.CANCELLED).join());
+        EventCounters counters = store.getCounters(EVENT_ID).join();
+        assertEquals(0, counters.getSelected());
+        assertEquals(1, counters.getCancelled());
+    }
+
+    /**
+     * Tests that a sweep is skipped while another device holds the lease.
+     */
+    @Test
+    public void testSweepSkippedWhileLeased() {
+        joinAndSelect(4, 4);
+        Date now = new Date(System.currentTimeMillis() + 2 * HOUR);
+        Map<String, Object> lease = new HashMap<>();
+        lease.put("claimedAt", now);
+        gateway.set(InvitationSweeper.LEASE_PATH, lease, false).join();
+
+        assertTrue(sweeper.sweep(now).join().isSkipped());
+        assertEquals(4, store.getCounters(EVENT_ID).join().getSelected());
+
+        gateway.delete(InvitationSweeper.LEASE_PATH).join();
+        assertEquals(4, sweeper.sweep(now).join().getExpired());
+    }
+
+    private List<String> joinAndSelect(int entrants, int selectedCount) {
+        List<String> userIds = fixture.joinAll(entrants);
+        List<String> selected = store.selectWaitlisted(EVENT_ID, userIds.subList(0, selectedCount)).join();
+        assertEquals(selectedCount, selected.size());
+        return selected;
+    }
+}
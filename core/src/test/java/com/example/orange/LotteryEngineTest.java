@@ -0,0 +1,212 @@
+package com.example.orange;
+
+import static org.junit.Assert.*;
+
+import com.example.orange.data.lottery.DrawResult;
+import com.example.orange.data.lottery.LotteryEngine;
+import com.example.orange.data.lottery.WeightTree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for LotteryEngine.
+ */
+public class LotteryEngineTest {
+
+    private List<String> entrants(int size) {
+        List<String> entrants = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            entrants.add("user" + i);
+        }
+        return entrants;
+    }
+
+    /**
+     * Tests that a draw returns the requested number of distinct entrants.
+     */
+    @Test
+    public void testDrawCount() {
+        List<String> entrants = entrants(1000);
+        DrawResult result = LotteryEngine.draw(entrants, 50, 7L);
+
+        assertEquals(50, result.getWinners().size());
+        assertEquals(50, new HashSet<>(result.getWinners()).size());
+        assertTrue(entrants.containsAll(result.getWinners()));
+        assertEquals(1000, result.getEntrantCount());
+        assertEquals(7L, result.getSeed());
+    }
+
+    /**
+     * Tests that the same seed replays the same draw and a different seed does not.
+     */
+    @Test
+    public void testDrawIsReproducible() {
+        List<String> entrants = entrants(10000);
+        DrawResult first = LotteryEngine.draw(entrants, 100, 12345L);
+        DrawResult replay = LotteryEngine.draw(entrants, 100, 12345L);
+        DrawResult other = LotteryEngine.draw(entrants, 100, 54321L);
+
+        assertEquals(first.getWinners(), replay.getWinners());
+        assertNotEquals(first.getWinners(), other.getWinners());
+    }
+
+    /**
+     * Tests that excluded entrants are never drawn.
+     */
+    @Test
+    public void testDrawSkipsExcluded() {
+        List<String> entrants = entrants(100);
+        Set<String> excluded = LotteryEngine.exclusions(entrants.subList(0, 60), Arrays.asList("user99"));
+        DrawResult result = LotteryEngine.draw(entrants, excluded, 100, 3L);
+
+        assertEquals(39, result.getWinners().size());
+        for (String winner : result.getWinners()) {
+            assertFalse(excluded.contains(winner));
+        }
+    }
+
+    /**
+     * Tests draws asking for more winners than there are entrants, or for none.
+     */
+    @Test
+    public void testDrawBounds() {
+        List<String> entrants = entrants(5);
+        assertEquals(5, LotteryEngine.draw(entrants, 10, 1L).getWinners().size());
+        assertTrue(LotteryEngine.draw(entrants, 0, 1L).getWinners().isEmpty());
+        assertTrue(LotteryEngine.draw(Collections.<String>emptyList(), 3, 1L).getWinners().isEmpty());
+    }
+
+    /**
+     * Tests that duplicate entries do not give a user two wins.
+     */
+    @Test
+    public void testDrawIgnoresDuplicates() {
+        List<String> entrants = Arrays.asList("a", "a", "b", "b");
+        DrawResult result = LotteryEngine.draw(entrants, 4, 9L);
+
+        assertEquals(2, result.getWinners().size());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(result.getWinners()));
+    }
+
+    /**
+     * Tests that every entrant is about equally likely to be drawn.
+     */
+    @Test
+    public void testDrawIsUniform() {
+        List<String> entrants = entrants(10);
+        int[] wins = new int[10];
+        for (long seed = 0; seed < 20000; seed++) {
+            for (String winner : LotteryEngine.draw(entrants, 3, seed).getWinners()) {
+                wins[Integer.parseInt(winner.substring(4))]++;
+            }
+        }
+        // Each entrant expects 6000 wins
+        for (int count : wins) {
+            assertTrue("Win count " + count + " is far from uniform", count > 5600 && count < 6400);
+        }
+    }
+
+    /**
+     * Tests that a weight tree samples each index in proportion to its weight, and never
+     * samples an index taken out.
+     */
+    @Test
+    public void testWeightTreeDistribution() {
+        WeightTree tree = new WeightTree(new double[]{1, 2, 3, 4});
+        Random random = new Random(5L);
+        int[] hits = new int[4];
+        for (int i = 0; i < 100000; i++) {
+            hits[tree.sample(random)]++;
+        }
+        assertEquals(10.0, tree.getTotalWeight(), 0.0);
+        for (int i = 0; i < 4; i++) {
+            assertEquals((i + 1) * 10000, hits[i], 1000);
+        }
+
+        tree.remove(3);
+        tree.remove(1);
+        assertEquals(4.0, tree.getTotalWeight(), 0.0);
+        int first = 0;
+        for (int i = 0; i < 10000; i++) {
+            int index = tree.sample(random);
+            assertTrue(index == 0 || index == 2);
+            if (index == 0) {
+                first++;
+            }
+        }
+        assertEquals(2500, first, 300);
+    }
+
+    /**
+     * Tests that a weighted draw favours heavier entrants and is reproducible.
+     */
+    @Test
+    public void testWeightedDraw() {
+        List<String> entrants = Arrays.asList("light", "heavy");
+        double[] weights = {1, 9};
+        int heavyFirst = 0;
+        for (long seed = 0; seed < 10000; seed++) {
+            if (LotteryEngine.drawWeighted(entrants, weights, 1, seed).getWinners().get(0).equals("heavy")) {
+                heavyFirst++;
+            }
+        }
+        assertEquals(9000, heavyFirst, 300);
+
+        List<String> many = entrants(5000);
+        double[] manyWeights = new double[5000];
+        for (int i = 0; i < manyWeights.length; i++) {
+            manyWeights[i] = 1 + i % 5;
+        }
+        assertEquals(LotteryEngine.drawWeighted(many, manyWeights, 200, 77L).getWinners(),
+                LotteryEngine.drawWeighted(many, manyWeights, 200, 77L).getWinners());
+    }
+
+    /**
+     * Tests that a full weighted ranking draws every eligible entrant exactly once.
+     */
+    @Test
+    public void testWeightedRankingSkipsIneligible() {
+        List<String> entrants = entrants(1000);
+        double[] weights = new double[1000];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = i % 10 == 0 ? 0 : i % 7 + 0.5;
+        }
+        Set<String> excluded = new HashSet<>(Arrays.asList("user1", "user2"));
+        DrawResult ranking = LotteryEngine.drawWeighted(entrants, weights, excluded, 1000, 11L);
+
+        assertEquals(898, ranking.getWinners().size());
+        assertEquals(898, new HashSet<>(ranking.getWinners()).size());
+        assertFalse(ranking.getWinners().contains("user0"));
+        assertFalse(ranking.getWinners().contains("user1"));
+    }
+
+    /**
+     * Tests that a full ranking over heavily skewed weights, where one entrant always holds
+     * more than half the weight left, draws the heaviest first, draws everyone once and
+     * stays fast.
+     */
+    @Test(timeout = 5000)
+    public void testWeightedRankingWithSkewedWeights() {
+        int size = 20000;
+        List<String> entrants = entrants(size);
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            // Powers of two from 2^-1000 to 2^1000, repeated; the heaviest are listed last
+            weights[i] = Math.scalb(1.0, i * 2000 / size - 1000);
+        }
+        DrawResult ranking = LotteryEngine.drawWeighted(entrants, weights, size, 3L);
+
+        assertEquals(size, ranking.getWinners().size());
+        assertEquals(size, new HashSet<>(ranking.getWinners()).size());
+        // The ten heaviest powers of two hold all but 2^-10 of the weight
+        assertTrue(Integer.parseInt(ranking.getWinners().get(0).substring(4)) >= size - 100);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.orange;
+
+import static org.junit.Assert.*;
+
+import com.example.orange.data.gateway.GatewayException;
+import com.example.orange.data.gateway.RetryPolicy;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for RetryPolicy.
+ */
+public class RetryPolicyTest {
+    private final RetryPolicy policy = new RetryPolicy(4, 1, 4);
+
+    /**
+     * Tests that transient failures are retried until the operation succeeds.
+     */
+    @Test
+    public void testRetriesTransientFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+        String result = policy.run(() -> attempts.incrementAndGet() < 3
+                ? failed(new GatewayException("Contention", true))
+                : CompletableFuture.completedFuture("done"), RetryPolicy::isRetryableGatewayFailure).join();
+
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+    }
+
+    /**
+     * Tests that a failure that is not transient ends the operation at once.
+     */
+    @Test
+    public void testStopsOnPermanentFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            policy.run(() -> {
+                attempts.incrementAndGet();
+                return failed(new GatewayException("No document to update"));
+            }, RetryPolicy::isRetryableGatewayFailure).join();
+            fail("A permanent failure should not be retried");
+        } catch (CompletionException e) {
+            assertEquals("No document to update", e.getCause().getMessage());
+        }
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * Tests that the last failure is reported once every attempt is used.
+     */
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            policy.run(() -> failed(new GatewayException("Contention " + attempts.incrementAndGet(), true)),
+                    RetryPolicy::isRetryableGatewayFailure).join();
+            fail("The operation should give up");
+        } catch (CompletionException e) {
+            assertEquals("Contention 4", e.getCause().getMessage());
+        }
+        assertEquals(4, attempts.get());
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+}
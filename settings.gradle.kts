@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "orange"
 include(":app")
+include(":core")
+include(":benchmarks")